@@ -5,27 +5,39 @@
 package io.strimzi.controller.cluster;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.common.ProfilingEvent;
 import io.strimzi.controller.cluster.operations.cluster.AbstractClusterOperations;
 import io.strimzi.controller.cluster.operations.cluster.KafkaClusterOperations;
 import io.strimzi.controller.cluster.operations.cluster.KafkaConnectClusterOperations;
 import io.strimzi.controller.cluster.operations.cluster.KafkaConnectS2IClusterOperations;
+import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
+import io.strimzi.controller.cluster.operations.resource.ResourceCache;
 import io.strimzi.controller.cluster.resources.KafkaCluster;
 import io.strimzi.controller.cluster.resources.KafkaConnectCluster;
 import io.strimzi.controller.cluster.resources.KafkaConnectS2ICluster;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ClusterController extends AbstractVerticle {
 
@@ -40,6 +52,7 @@ public class ClusterController extends AbstractVerticle {
     public static final String STRIMZI_CLUSTER_CONTROLLER_SERVICE_ACCOUNT = "strimzi-cluster-controller";
 
     private static final int HEALTH_SERVER_PORT = 8080;
+    private static final long WATCH_RETRY_DELAY_MS = 5_000;
 
     private final KubernetesClient client;
     private final Map<String, String> labels;
@@ -47,8 +60,14 @@ public class ClusterController extends AbstractVerticle {
     private final long reconciliationInterval;
 
     private Watch configMapWatch;
+    private volatile String lastResourceVersion;
+    private volatile boolean relistOnClose;
+    private final Map<String, ConfigMap> knownConfigMaps = new ConcurrentHashMap<>();
+    private final ResourceCache.Listener<ConfigMap> cacheListener = this::configMapEventReceived;
 
     private long reconcileTimer;
+    private final AtomicBoolean reconciling = new AtomicBoolean(false);
+    private final ConfigMapOperations configMapOperations;
     private final KafkaClusterOperations kafkaClusterOperations;
     private final KafkaConnectClusterOperations kafkaConnectClusterOperations;
     private final KafkaConnectS2IClusterOperations kafkaConnectS2IClusterOperations;
@@ -58,6 +77,7 @@ public class ClusterController extends AbstractVerticle {
                              Map<String, String> labels,
                              long reconciliationInterval,
                              KubernetesClient client,
+                             ConfigMapOperations configMapOperations,
                              KafkaClusterOperations kafkaClusterOperations,
                              KafkaConnectClusterOperations kafkaConnectClusterOperations,
                              KafkaConnectS2IClusterOperations kafkaConnectS2IClusterOperations) {
@@ -66,22 +86,46 @@ public class ClusterController extends AbstractVerticle {
         this.labels = labels;
         this.reconciliationInterval = reconciliationInterval;
         this.client = client;
+        this.configMapOperations = configMapOperations;
         this.kafkaClusterOperations = kafkaClusterOperations;
         this.kafkaConnectClusterOperations = kafkaConnectClusterOperations;
         this.kafkaConnectS2IClusterOperations = kafkaConnectS2IClusterOperations;
     }
 
+    /**
+     * Configure the worker pool used for the blocking Kubernetes operations. It has to be configured before
+     * it's first used, since later configurations of the same shared pool are ignored.
+     * @param vertx The Vertx instance
+     */
+    static void configureWorkerPool(Vertx vertx) {
+        vertx.createSharedWorkerExecutor("kubernetes-ops-pool", 10, TimeUnit.SECONDS.toNanos(120));
+    }
+
     @Override
     public void start(Future<Void> start) {
         log.info("Starting ClusterController for namespace {}", namespace);
 
-        // Configure the executor here, but it is used only in other places
-        getVertx().createSharedWorkerExecutor("kubernetes-ops-pool", 10, TimeUnit.SECONDS.toNanos(120));
+        configureWorkerPool(getVertx());
 
-        createConfigMapWatch(res -> {
-            if (res.succeeded())    {
-                configMapWatch = res.result();
+        Future<Void> watching = Future.future();
+        ResourceCache<ConfigMap> cache = configMapOperations.cache();
+        if (cache != null) {
+            log.info("Using the shared ConfigMap cache for namespace {}", namespace);
+            cache.addListener(namespace, cacheListener);
+            watching.complete();
+        } else {
+            createConfigMapWatch(true, res -> {
+                if (res.succeeded()) {
+                    configMapWatch = res.result();
+                    watching.complete();
+                } else {
+                    watching.fail(res.cause());
+                }
+            });
+        }
 
+        watching.setHandler(res -> {
+            if (res.succeeded())    {
                 log.info("Setting up periodical reconciliation for namespace {}", namespace);
                 this.reconcileTimer = vertx.setPeriodic(this.reconciliationInterval, res2 -> {
                     log.info("Triggering periodic reconciliation for namespace {}...", namespace);
@@ -106,56 +150,44 @@ public class ClusterController extends AbstractVerticle {
         stopping = true;
         log.info("Stopping ClusterController for namespace {}", namespace);
         vertx.cancelTimer(reconcileTimer);
-        configMapWatch.close();
+        if (configMapWatch != null) {
+            configMapWatch.close();
+        } else {
+            configMapOperations.cache().removeListener(namespace, cacheListener);
+        }
         client.close();
 
         stop.complete();
     }
 
-    private void createConfigMapWatch(Handler<AsyncResult<Watch>> handler) {
+    /**
+     * Create the ConfigMap watch.
+     * The watch resumes from the last resource version observed, so the changes made while it wasn't open are
+     * received as events. The ConfigMaps are listed first (reconciling the clusters whose ConfigMaps
+     * changed since they were last observed) when the watch is created for the first time or when {@code relist}
+     * is true, because the last resource version observed is too old to resume from.
+     */
+    private void createConfigMapWatch(boolean relist, Handler<AsyncResult<Watch>> handler) {
         getVertx().executeBlocking(
             future -> {
-                Watch watch = client.configMaps().inNamespace(namespace).withLabels(labels).watch(new Watcher<ConfigMap>() {
+                if (relist || lastResourceVersion == null) {
+                    lastResourceVersion = relistConfigMaps();
+                }
+                log.debug("Watching ConfigMaps in namespace {} from resource version {}", namespace, lastResourceVersion);
+                Watch watch = client.configMaps().inNamespace(namespace).withLabels(labels).watch(lastResourceVersion, new Watcher<ConfigMap>() {
+                    private final AtomicBoolean closed = new AtomicBoolean(false);
+
                     @Override
                     public void eventReceived(Action action, ConfigMap cm) {
-                        Map<String, String> labels = cm.getMetadata().getLabels();
-                        String type = labels.get(ClusterController.STRIMZI_TYPE_LABEL);
-
-                        final AbstractClusterOperations<?, ?> cluster;
-                        if (type == null) {
-                            log.warn("Missing label {} in Config Map {} in namespace {}", ClusterController.STRIMZI_TYPE_LABEL, cm.getMetadata().getName(), namespace);
-                            return;
-                        } else if (type.equals(KafkaCluster.TYPE)) {
-                            cluster = kafkaClusterOperations;
-                        } else if (type.equals(KafkaConnectCluster.TYPE)) {
-                            cluster = kafkaConnectClusterOperations;
-                        } else if (type.equals(KafkaConnectS2ICluster.TYPE)) {
-                            if (kafkaConnectS2IClusterOperations != null)   {
-                                cluster = kafkaConnectS2IClusterOperations;
+                        if (action != Action.ERROR && cm != null && cm.getMetadata() != null) {
+                            lastResourceVersion = cm.getMetadata().getResourceVersion();
+                            if (action == Action.DELETED) {
+                                knownConfigMaps.remove(cm.getMetadata().getName());
                             } else {
-                                log.warn("Cluster type {} cannot be used outside of OpenShift as requested by Config Map {} in namespace {}", type, cm.getMetadata().getName(), namespace);
-                                return;
+                                knownConfigMaps.put(cm.getMetadata().getName(), cm);
                             }
-                        } else {
-                            log.warn("Unknown type {} received in Config Map {} in namespace {}", labels.get(ClusterController.STRIMZI_TYPE_LABEL), cm.getMetadata().getName(), namespace);
-                            return;
-                        }
-                        String name = cm.getMetadata().getName();
-                        switch (action) {
-                            case ADDED:
-                            case DELETED:
-                            case MODIFIED:
-                                log.info("ConfigMap {} in namespace {} was {}", name, namespace, action);
-                                cluster.reconcile(namespace, name);
-                                break;
-                            case ERROR:
-                                log.error("Failed ConfigMap {} in namespace{} ", name, namespace);
-                                reconcile();
-                                break;
-                            default:
-                                log.error("Unknown action: {} in namespace {}", name, namespace);
-                                reconcile();
                         }
+                        configMapEventReceived(action, cm);
                     }
 
                     @Override
@@ -166,7 +198,13 @@ public class ClusterController extends AbstractVerticle {
                             log.info("Watcher closed in namespace {}", namespace);
                         }
 
-                        recreateConfigMapWatch();
+                        // this is the only place a closed watch is recreated, and only once per watch
+                        if (closed.compareAndSet(false, true)) {
+                            // 410 Gone: the last resource version observed is too old, list the ConfigMaps again
+                            boolean relist = relistOnClose || e != null && e.getCode() == HttpResponseStatus.GONE.code();
+                            relistOnClose = false;
+                            recreateConfigMapWatch(relist);
+                        }
                     }
                 });
                 future.complete(watch);
@@ -182,32 +220,137 @@ public class ClusterController extends AbstractVerticle {
         );
     }
 
-    private void recreateConfigMapWatch() {
+    /**
+     * Synchronously list the cluster ConfigMaps, and reconcile the clusters whose ConfigMaps were added, modified
+     * or deleted since they were last observed.
+     * @return The resource version of the list.
+     */
+    private String relistConfigMaps() {
+        ConfigMapList list = client.configMaps().inNamespace(namespace).withLabels(labels).list();
+        Map<String, ConfigMap> listed = new HashMap<>();
+        for (ConfigMap cm : list.getItems()) {
+            String name = cm.getMetadata().getName();
+            listed.put(name, cm);
+            ConfigMap known = knownConfigMaps.put(name, cm);
+            if (known == null) {
+                configMapEventReceived(Watcher.Action.ADDED, cm);
+            } else if (!Objects.equals(known.getMetadata().getResourceVersion(), cm.getMetadata().getResourceVersion())) {
+                configMapEventReceived(Watcher.Action.MODIFIED, cm);
+            }
+        }
+        for (ConfigMap known : new ArrayList<>(knownConfigMaps.values())) {
+            if (!listed.containsKey(known.getMetadata().getName())) {
+                knownConfigMaps.remove(known.getMetadata().getName());
+                configMapEventReceived(Watcher.Action.DELETED, known);
+            }
+        }
+        log.info("Listed {} ConfigMaps in namespace {} at resource version {}", listed.size(), namespace, list.getMetadata().getResourceVersion());
+        return list.getMetadata().getResourceVersion();
+    }
+
+    /**
+     * Reconcile the cluster of a cluster ConfigMap which was added, modified or deleted.
+     */
+    private void configMapEventReceived(Watcher.Action action, ConfigMap cm) {
+        if (action == Watcher.Action.ERROR) {
+            log.error("Failed ConfigMap watch event in namespace {}", namespace);
+            if (configMapWatch != null) {
+                // rather than reconciling all the clusters, reconcile those whose ConfigMaps changed,
+                // once the closed watch is recreated
+                relistOnClose = true;
+                configMapWatch.close();
+            }
+            return;
+        }
+
+        Map<String, String> labels = cm.getMetadata().getLabels();
+        String type = labels.get(ClusterController.STRIMZI_TYPE_LABEL);
+
+        final AbstractClusterOperations<?, ?> cluster;
+        if (type == null) {
+            log.warn("Missing label {} in Config Map {} in namespace {}", ClusterController.STRIMZI_TYPE_LABEL, cm.getMetadata().getName(), namespace);
+            return;
+        } else if (type.equals(KafkaCluster.TYPE)) {
+            cluster = kafkaClusterOperations;
+        } else if (type.equals(KafkaConnectCluster.TYPE)) {
+            cluster = kafkaConnectClusterOperations;
+        } else if (type.equals(KafkaConnectS2ICluster.TYPE)) {
+            if (kafkaConnectS2IClusterOperations != null)   {
+                cluster = kafkaConnectS2IClusterOperations;
+            } else {
+                log.warn("Cluster type {} cannot be used outside of OpenShift as requested by Config Map {} in namespace {}", type, cm.getMetadata().getName(), namespace);
+                return;
+            }
+        } else {
+            log.warn("Unknown type {} received in Config Map {} in namespace {}", labels.get(ClusterController.STRIMZI_TYPE_LABEL), cm.getMetadata().getName(), namespace);
+            return;
+        }
+        String name = cm.getMetadata().getName();
+        switch (action) {
+            case ADDED:
+            case DELETED:
+            case MODIFIED:
+                log.info("ConfigMap {} in namespace {} was {}", name, namespace, action);
+                cluster.reconcile(namespace, name);
+                break;
+            default:
+                log.error("Unknown action: {} in namespace {}", name, namespace);
+                reconcile();
+        }
+    }
+
+    /**
+     * Create a new ConfigMap watch to replace the one which was closed.
+     */
+    private void recreateConfigMapWatch(boolean relist) {
         if (stopping) {
             return;
         }
-        configMapWatch.close();
 
-        createConfigMapWatch(res -> {
+        createConfigMapWatch(relist, res -> {
             if (res.succeeded())    {
                 log.info("ConfigMap watch recreated in namespace {}", namespace);
                 configMapWatch = res.result();
             } else {
-                log.error("Failed to recreate ConfigMap watch in namespace {}", namespace);
+                log.error("Failed to recreate ConfigMap watch in namespace {}, retrying in {} ms", namespace, WATCH_RETRY_DELAY_MS);
+                vertx.setTimer(WATCH_RETRY_DELAY_MS, timer -> recreateConfigMapWatch(true));
             }
         });
     }
 
     /**
-      Periodical reconciliation (in case we lost some event)
+      Periodical reconciliation (in case we lost some event).
+      The cluster ConfigMaps are listed once for all the cluster types, and the clusters are reconciled
+      through the reconciliation queue, which limits how many of them are reconciled concurrently.
+      A pass is skipped if the previous one is still running.
      */
     private void reconcile() {
-        kafkaClusterOperations.reconcileAll(namespace, labels);
-        kafkaConnectClusterOperations.reconcileAll(namespace, labels);
-
-        if (kafkaConnectS2IClusterOperations != null) {
-            kafkaConnectS2IClusterOperations.reconcileAll(namespace, labels);
+        if (!reconciling.compareAndSet(false, true)) {
+            log.info("Previous reconciliation for namespace {} is still running, skipping", namespace);
+            return;
         }
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.RECONCILIATION_PASS, "all")
+                .with("namespace", namespace);
+        long start = System.nanoTime();
+
+        configMapOperations.listAsync(namespace, labels).compose(cms -> {
+            List<Future> futures = new ArrayList<>(3);
+            futures.add(kafkaClusterOperations.reconcileAll(namespace, labels, cms));
+            futures.add(kafkaConnectClusterOperations.reconcileAll(namespace, labels, cms));
+            if (kafkaConnectS2IClusterOperations != null) {
+                futures.add(kafkaConnectS2IClusterOperations.reconcileAll(namespace, labels, cms));
+            }
+            return CompositeFuture.join(futures);
+        }).setHandler(res -> {
+            reconciling.set(false);
+            event.end(res);
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (res.succeeded()) {
+                log.info("Reconciliation for namespace {} completed in {} ms", namespace, durationMs);
+            } else {
+                log.warn("Reconciliation for namespace {} completed in {} ms with failures", namespace, durationMs, res.cause());
+            }
+        });
     }
 
     /**
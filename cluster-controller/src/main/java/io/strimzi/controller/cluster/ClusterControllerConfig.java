@@ -21,14 +21,30 @@ public class ClusterControllerConfig {
     public static final String STRIMZI_CONFIGMAP_LABELS = "STRIMZI_CONFIGMAP_LABELS";
     public static final String STRIMZI_FULL_RECONCILIATION_INTERVAL_MS = "STRIMZI_FULL_RECONCILIATION_INTERVAL_MS";
     public static final String STRIMZI_OPERATION_TIMEOUT_MS = "STRIMZI_OPERATION_TIMEOUT_MS";
+    public static final String STRIMZI_PROFILING_EVENTS_ENABLED = "STRIMZI_PROFILING_EVENTS_ENABLED";
+    public static final String STRIMZI_PROFILING_EVENTS_THRESHOLD_MS = "STRIMZI_PROFILING_EVENTS_THRESHOLD_MS";
+    public static final String STRIMZI_MAX_CONCURRENT_RECONCILIATIONS = "STRIMZI_MAX_CONCURRENT_RECONCILIATIONS";
+    public static final String STRIMZI_RECONCILIATION_BACKOFF_MS = "STRIMZI_RECONCILIATION_BACKOFF_MS";
+    public static final String STRIMZI_RECONCILIATION_MAX_BACKOFF_MS = "STRIMZI_RECONCILIATION_MAX_BACKOFF_MS";
+    public static final String STRIMZI_SHARED_CACHE_ENABLED = "STRIMZI_SHARED_CACHE_ENABLED";
 
     public static final long DEFAULT_FULL_RECONCILIATION_INTERVAL_MS = 120_000;
     public static final long DEFAULT_OPERATION_TIMEOUT_MS = 60_000;
+    public static final long DEFAULT_PROFILING_EVENTS_THRESHOLD_MS = 0;
+    public static final int DEFAULT_MAX_CONCURRENT_RECONCILIATIONS = 4;
+    public static final long DEFAULT_RECONCILIATION_BACKOFF_MS = 1_000;
+    public static final long DEFAULT_RECONCILIATION_MAX_BACKOFF_MS = 120_000;
 
     private Map<String, String> labels;
     private Set<String> namespaces;
     private long reconciliationIntervalMs;
     private long operationTimeoutMs;
+    private boolean profilingEventsEnabled;
+    private long profilingEventsThresholdMs;
+    private int maxConcurrentReconciliations;
+    private long reconciliationBackoffMs;
+    private long reconciliationMaxBackoffMs;
+    private boolean sharedCacheEnabled;
 
     /**
      * Constructor
@@ -39,10 +55,50 @@ public class ClusterControllerConfig {
      * @param operationTimeoutMs    timeout for internal operations specified in milliseconds
      */
     public ClusterControllerConfig(Set<String> namespaces, Map<String, String> labels, long reconciliationIntervalMs, long operationTimeoutMs) {
+        this(namespaces, labels, reconciliationIntervalMs, operationTimeoutMs, false, DEFAULT_PROFILING_EVENTS_THRESHOLD_MS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param namespaces namespace in which the controller will run and create resources
+     * @param labels    labels used for watching the cluster ConfigMap
+     * @param reconciliationIntervalMs    specify every how many milliseconds the reconciliation runs
+     * @param operationTimeoutMs    timeout for internal operations specified in milliseconds
+     * @param profilingEventsEnabled    whether {@link io.strimzi.common.ProfilingEvent}s are recorded
+     * @param profilingEventsThresholdMs    minimum duration in milliseconds of a recorded {@link io.strimzi.common.ProfilingEvent}
+     */
+    public ClusterControllerConfig(Set<String> namespaces, Map<String, String> labels, long reconciliationIntervalMs, long operationTimeoutMs,
+                                   boolean profilingEventsEnabled, long profilingEventsThresholdMs) {
+        this(namespaces, labels, reconciliationIntervalMs, operationTimeoutMs, profilingEventsEnabled, profilingEventsThresholdMs,
+                DEFAULT_MAX_CONCURRENT_RECONCILIATIONS, DEFAULT_RECONCILIATION_BACKOFF_MS, DEFAULT_RECONCILIATION_MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param namespaces namespace in which the controller will run and create resources
+     * @param labels    labels used for watching the cluster ConfigMap
+     * @param reconciliationIntervalMs    specify every how many milliseconds the reconciliation runs
+     * @param operationTimeoutMs    timeout for internal operations specified in milliseconds
+     * @param profilingEventsEnabled    whether {@link io.strimzi.common.ProfilingEvent}s are recorded
+     * @param profilingEventsThresholdMs    minimum duration in milliseconds of a recorded {@link io.strimzi.common.ProfilingEvent}
+     * @param maxConcurrentReconciliations    maximum number of clusters reconciled concurrently
+     * @param reconciliationBackoffMs    delay in milliseconds before retrying a failed reconciliation for the first time
+     * @param reconciliationMaxBackoffMs    maximum delay in milliseconds before retrying a failed reconciliation
+     */
+    public ClusterControllerConfig(Set<String> namespaces, Map<String, String> labels, long reconciliationIntervalMs, long operationTimeoutMs,
+                                   boolean profilingEventsEnabled, long profilingEventsThresholdMs,
+                                   int maxConcurrentReconciliations, long reconciliationBackoffMs, long reconciliationMaxBackoffMs) {
         this.namespaces = unmodifiableSet(new HashSet<>(namespaces));
         this.labels = labels;
         this.reconciliationIntervalMs = reconciliationIntervalMs;
         this.operationTimeoutMs = operationTimeoutMs;
+        this.profilingEventsEnabled = profilingEventsEnabled;
+        this.profilingEventsThresholdMs = profilingEventsThresholdMs;
+        this.maxConcurrentReconciliations = maxConcurrentReconciliations;
+        this.reconciliationBackoffMs = reconciliationBackoffMs;
+        this.reconciliationMaxBackoffMs = reconciliationMaxBackoffMs;
     }
 
     /**
@@ -63,39 +119,73 @@ public class ClusterControllerConfig {
      */
     public static ClusterControllerConfig fromMap(Map<String, String> map) {
 
-        String namespacesList = map.get(ClusterControllerConfig.STRIMZI_NAMESPACE);
-        Set<String> namespaces;
-        if (namespacesList == null || namespacesList.isEmpty()) {
-            throw new IllegalArgumentException(ClusterControllerConfig.STRIMZI_NAMESPACE + " cannot be null");
-        } else {
-            namespaces = new HashSet(asList(namespacesList.trim().split("\\s*,+\\s*")));
-        }
-        String stringLabels = map.get(ClusterControllerConfig.STRIMZI_CONFIGMAP_LABELS);
-        if (stringLabels == null || stringLabels.isEmpty()) {
-            throw new IllegalArgumentException(ClusterControllerConfig.STRIMZI_CONFIGMAP_LABELS + " cannot be null");
+        Set<String> namespaces = new HashSet(asList(required(map, ClusterControllerConfig.STRIMZI_NAMESPACE).trim().split("\\s*,+\\s*")));
+        Map<String, String> labelsMap = parseLabels(required(map, ClusterControllerConfig.STRIMZI_CONFIGMAP_LABELS));
+
+        long reconciliationInterval = parseDuration(map, ClusterControllerConfig.STRIMZI_FULL_RECONCILIATION_INTERVAL_MS, DEFAULT_FULL_RECONCILIATION_INTERVAL_MS);
+        long operationTimeout = parseDuration(map, ClusterControllerConfig.STRIMZI_OPERATION_TIMEOUT_MS, DEFAULT_OPERATION_TIMEOUT_MS);
+
+        boolean profilingEventsEnabled = Boolean.parseBoolean(map.get(ClusterControllerConfig.STRIMZI_PROFILING_EVENTS_ENABLED));
+        long profilingEventsThreshold = parseDuration(map, ClusterControllerConfig.STRIMZI_PROFILING_EVENTS_THRESHOLD_MS, DEFAULT_PROFILING_EVENTS_THRESHOLD_MS);
+
+        int maxConcurrentReconciliations = parseInt(map, ClusterControllerConfig.STRIMZI_MAX_CONCURRENT_RECONCILIATIONS, DEFAULT_MAX_CONCURRENT_RECONCILIATIONS);
+        if (maxConcurrentReconciliations <= 0) {
+            throw new IllegalArgumentException(ClusterControllerConfig.STRIMZI_MAX_CONCURRENT_RECONCILIATIONS + " must be positive");
         }
 
-        long reconciliationInterval = DEFAULT_FULL_RECONCILIATION_INTERVAL_MS;
-        String reconciliationIntervalEnvVar = map.get(ClusterControllerConfig.STRIMZI_FULL_RECONCILIATION_INTERVAL_MS);
-        if (reconciliationIntervalEnvVar != null) {
-            reconciliationInterval = Long.parseLong(reconciliationIntervalEnvVar);
+        long reconciliationBackoff = parseDuration(map, ClusterControllerConfig.STRIMZI_RECONCILIATION_BACKOFF_MS, DEFAULT_RECONCILIATION_BACKOFF_MS);
+        long reconciliationMaxBackoff = parseDuration(map, ClusterControllerConfig.STRIMZI_RECONCILIATION_MAX_BACKOFF_MS,
+                Math.max(DEFAULT_RECONCILIATION_MAX_BACKOFF_MS, reconciliationBackoff));
+        if (reconciliationBackoff <= 0 || reconciliationMaxBackoff < reconciliationBackoff) {
+            throw new IllegalArgumentException(ClusterControllerConfig.STRIMZI_RECONCILIATION_BACKOFF_MS + " must be positive and not greater than "
+                    + ClusterControllerConfig.STRIMZI_RECONCILIATION_MAX_BACKOFF_MS);
         }
 
-        long operationTimeout = DEFAULT_OPERATION_TIMEOUT_MS;
-        String operationTimeoutEnvVar = map.get(ClusterControllerConfig.STRIMZI_OPERATION_TIMEOUT_MS);
-        if (operationTimeoutEnvVar != null) {
-            operationTimeout = Long.parseLong(operationTimeoutEnvVar);
+        ClusterControllerConfig config = new ClusterControllerConfig(namespaces, labelsMap, reconciliationInterval, operationTimeout,
+                profilingEventsEnabled, profilingEventsThreshold,
+                maxConcurrentReconciliations, reconciliationBackoff, reconciliationMaxBackoff);
+        config.setSharedCacheEnabled(Boolean.parseBoolean(map.get(ClusterControllerConfig.STRIMZI_SHARED_CACHE_ENABLED)));
+        return config;
+    }
+
+    /**
+     * @return  the value of the given {@code key}
+     * @throws IllegalArgumentException if the value is missing or empty
+     */
+    private static String required(Map<String, String> map, String key) {
+        String value = map.get(key);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(key + " cannot be null");
         }
+        return value;
+    }
 
-        Map<String, String> labelsMap = new HashMap<>();
+    /**
+     * @return  the duration in milliseconds given by the value of the {@code key}, or {@code defaultMs} if it's missing
+     */
+    private static long parseDuration(Map<String, String> map, String key, long defaultMs) {
+        String value = map.get(key);
+        return value != null ? Long.parseLong(value) : defaultMs;
+    }
+
+    /**
+     * @return  the integer given by the value of the {@code key}, or {@code defaultValue} if it's missing
+     */
+    private static int parseInt(Map<String, String> map, String key, int defaultValue) {
+        String value = map.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
 
-        String[] labels = stringLabels.split(",");
-        for (String label : labels) {
+    /**
+     * @return  the labels given as a comma-separated list of {@code key=value} pairs
+     */
+    private static Map<String, String> parseLabels(String stringLabels) {
+        Map<String, String> labelsMap = new HashMap<>();
+        for (String label : stringLabels.split(",")) {
             String[] fields = label.split("=");
             labelsMap.put(fields[0].trim(), fields[1].trim());
         }
-
-        return new ClusterControllerConfig(namespaces, labelsMap, reconciliationInterval, operationTimeout);
+        return labelsMap;
     }
 
     /**
@@ -135,12 +225,68 @@ public class ClusterControllerConfig {
         return operationTimeoutMs;
     }
 
+    /**
+     * @return  whether {@link io.strimzi.common.ProfilingEvent}s are recorded
+     */
+    public boolean isProfilingEventsEnabled() {
+        return profilingEventsEnabled;
+    }
+
+    /**
+     * @return  minimum duration in milliseconds of a recorded {@link io.strimzi.common.ProfilingEvent}
+     */
+    public long getProfilingEventsThresholdMs() {
+        return profilingEventsThresholdMs;
+    }
+
+    /**
+     * @return  maximum number of clusters reconciled concurrently
+     */
+    public int getMaxConcurrentReconciliations() {
+        return maxConcurrentReconciliations;
+    }
+
+    /**
+     * @return  delay in milliseconds before retrying a failed reconciliation for the first time
+     */
+    public long getReconciliationBackoffMs() {
+        return reconciliationBackoffMs;
+    }
+
+    /**
+     * @return  maximum delay in milliseconds before retrying a failed reconciliation
+     */
+    public long getReconciliationMaxBackoffMs() {
+        return reconciliationMaxBackoffMs;
+    }
+
+    /**
+     * @return  whether the resources of all the namespaces are watched and read through shared caches
+     */
+    public boolean isSharedCacheEnabled() {
+        return sharedCacheEnabled;
+    }
+
+    /**
+     * Set whether the resources of all the namespaces are watched and read through shared caches
+     *
+     * @param sharedCacheEnabled    whether the resources are watched and read through shared caches
+     */
+    public void setSharedCacheEnabled(boolean sharedCacheEnabled) {
+        this.sharedCacheEnabled = sharedCacheEnabled;
+    }
+
     @Override
     public String toString() {
         return "ClusterControllerConfig(" +
                 "namespaces=" + namespaces +
                 ",labels=" + labels +
                 ",reconciliationIntervalMs=" + reconciliationIntervalMs +
+                ",profilingEventsEnabled=" + profilingEventsEnabled +
+                ",maxConcurrentReconciliations=" + maxConcurrentReconciliations +
+                ",reconciliationBackoffMs=" + reconciliationBackoffMs +
+                ",reconciliationMaxBackoffMs=" + reconciliationMaxBackoffMs +
+                ",sharedCacheEnabled=" + sharedCacheEnabled +
                 ")";
     }
 }
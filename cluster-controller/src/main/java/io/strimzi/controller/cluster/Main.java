@@ -8,9 +8,12 @@ import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.openshift.client.OpenShiftClient;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.common.ProfilingEvent;
 import io.strimzi.controller.cluster.operations.cluster.KafkaClusterOperations;
 import io.strimzi.controller.cluster.operations.cluster.KafkaConnectClusterOperations;
 import io.strimzi.controller.cluster.operations.cluster.KafkaConnectS2IClusterOperations;
+import io.strimzi.controller.cluster.operations.cluster.ReconciliationQueue;
+import io.strimzi.controller.cluster.operations.connect.KafkaConnectAdminOperations;
 import io.strimzi.controller.cluster.operations.resource.BuildConfigOperations;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.operations.resource.DeploymentConfigOperations;
@@ -56,8 +59,11 @@ public class Main {
         });
     }
 
-    static CompositeFuture run(Vertx vertx, KubernetesClient client, boolean isOpenShift, Map<String, String> env) {
+    static Future<CompositeFuture> run(Vertx vertx, KubernetesClient client, boolean isOpenShift, Map<String, String> env) {
         ClusterControllerConfig config = ClusterControllerConfig.fromMap(env);
+        if (config.isProfilingEventsEnabled()) {
+            ProfilingEvent.enable(config.getProfilingEventsThresholdMs());
+        }
 
         ServiceOperations serviceOperations = new ServiceOperations(vertx, client);
         StatefulSetOperations statefulSetOperations = new StatefulSetOperations(vertx, client);
@@ -68,7 +74,8 @@ public class Main {
         EndpointOperations endpointOperations = new EndpointOperations(vertx, client);
 
         KafkaClusterOperations kafkaClusterOperations = new KafkaClusterOperations(vertx, isOpenShift, config.getOperationTimeoutMs(), configMapOperations, serviceOperations, statefulSetOperations, pvcOperations, podOperations, endpointOperations, deploymentOperations);
-        KafkaConnectClusterOperations kafkaConnectClusterOperations = new KafkaConnectClusterOperations(vertx, isOpenShift, configMapOperations, deploymentOperations, serviceOperations);
+        KafkaConnectClusterOperations kafkaConnectClusterOperations = new KafkaConnectClusterOperations(vertx, isOpenShift, configMapOperations, deploymentOperations, serviceOperations,
+                new KafkaConnectAdminOperations(vertx, config.getOperationTimeoutMs()));
 
         DeploymentConfigOperations deploymentConfigOperations = null;
         ImageStreamOperations imagesStreamOperations = null;
@@ -83,6 +90,41 @@ public class Main {
                     serviceOperations, imagesStreamOperations, buildConfigOperations);
         }
 
+        // a single queue, so the limit on concurrent reconciliations applies to all the cluster types
+        ReconciliationQueue reconciliationQueue = new ReconciliationQueue(vertx, config.getMaxConcurrentReconciliations(),
+                config.getReconciliationBackoffMs(), config.getReconciliationMaxBackoffMs());
+        kafkaClusterOperations.setReconciliationQueue(reconciliationQueue);
+        kafkaConnectClusterOperations.setReconciliationQueue(reconciliationQueue);
+        if (kafkaConnectS2IClusterOperations != null) {
+            kafkaConnectS2IClusterOperations.setReconciliationQueue(reconciliationQueue);
+        }
+
+        Future<?> caches;
+        if (config.isSharedCacheEnabled()) {
+            ClusterController.configureWorkerPool(vertx);
+            // a single watch per resource kind for all the namespaces, rather than one per namespace
+            List<Future> cacheFutures = new ArrayList<>();
+            cacheFutures.add(configMapOperations.startCache(config.getNamespaces(), config.getLabels()));
+            cacheFutures.add(statefulSetOperations.startCache(config.getNamespaces(), config.getLabels()));
+            cacheFutures.add(deploymentOperations.startCache(config.getNamespaces(), config.getLabels()));
+            if (deploymentConfigOperations != null) {
+                cacheFutures.add(deploymentConfigOperations.startCache(config.getNamespaces(), config.getLabels()));
+            }
+            caches = CompositeFuture.all(cacheFutures);
+        } else {
+            caches = Future.succeededFuture();
+        }
+
+        KafkaConnectS2IClusterOperations s2iOperations = kafkaConnectS2IClusterOperations;
+        return caches.compose(ignored -> deployControllers(vertx, client, config, configMapOperations,
+                kafkaClusterOperations, kafkaConnectClusterOperations, s2iOperations));
+    }
+
+    private static CompositeFuture deployControllers(Vertx vertx, KubernetesClient client, ClusterControllerConfig config,
+                                                     ConfigMapOperations configMapOperations,
+                                                     KafkaClusterOperations kafkaClusterOperations,
+                                                     KafkaConnectClusterOperations kafkaConnectClusterOperations,
+                                                     KafkaConnectS2IClusterOperations kafkaConnectS2IClusterOperations) {
         List<Future> futures = new ArrayList<>();
         for (String namespace : config.getNamespaces()) {
             Future<String> fut = Future.future();
@@ -91,6 +133,7 @@ public class Main {
                     config.getLabels(),
                     config.getReconciliationIntervalMs(),
                     client,
+                    configMapOperations,
                     kafkaClusterOperations,
                     kafkaConnectClusterOperations,
                     kafkaConnectS2IClusterOperations);
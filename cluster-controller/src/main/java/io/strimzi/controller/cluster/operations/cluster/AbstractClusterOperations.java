@@ -6,7 +6,9 @@ package io.strimzi.controller.cluster.operations.cluster;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.strimzi.common.ProfilingEvent;
 import io.strimzi.controller.cluster.ClusterController;
+import io.strimzi.controller.cluster.ClusterControllerConfig;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.resources.AbstractCluster;
 import io.strimzi.controller.cluster.resources.ClusterDiffResult;
@@ -15,12 +17,14 @@ import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.shareddata.Lock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,7 +37,9 @@ import java.util.stream.Collectors;
  * then creating resources to match ({@link CompositeOperation#composite(String, ClusterOperation)}.</p>
  *
  * <p>This class manages a per-cluster-type and per-cluster locking strategy so only one operation per cluster
- * can proceed at once.</p>
+ * can proceed at once. Reconciliations go through a {@link ReconciliationQueue}, which collapses duplicate requests
+ * for the same cluster, retries failed reconciliations with an exponential back-off and limits how many clusters
+ * are reconciled concurrently.</p>
  * @param <C> The type of cluster
  * @param <R> The type of resource from which the cluster state can be recovered
  */
@@ -52,6 +58,8 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
     protected final boolean isOpenShift;
     protected final String clusterDescription;
     protected final ConfigMapOperations configMapOperations;
+    private ReconciliationQueue reconciliationQueue;
+    private WorkerExecutor workerExecutor;
 
     /**
      * @param vertx The Vertx instance
@@ -66,6 +74,31 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
         this.isOpenShift = isOpenShift;
         this.clusterDescription = clusterDescription;
         this.configMapOperations = configMapOperations;
+        this.reconciliationQueue = new ReconciliationQueue(vertx,
+                ClusterControllerConfig.DEFAULT_MAX_CONCURRENT_RECONCILIATIONS,
+                ClusterControllerConfig.DEFAULT_RECONCILIATION_BACKOFF_MS,
+                ClusterControllerConfig.DEFAULT_RECONCILIATION_MAX_BACKOFF_MS);
+    }
+
+    /**
+     * The worker pool for listing the resources, obtained on first use and then reused, as each
+     * {@link Vertx#createSharedWorkerExecutor(String)} adds a reference to the pool which is only released on close.
+     */
+    private synchronized WorkerExecutor workerExecutor() {
+        if (workerExecutor == null) {
+            workerExecutor = vertx.createSharedWorkerExecutor("kubernetes-ops-pool");
+        }
+        return workerExecutor;
+    }
+
+    /**
+     * Use the given queue for the reconciliations, instead of a queue of its own.
+     * Sharing a queue between the operations for the different cluster types makes its limit on
+     * concurrent reconciliations apply to all of them.
+     * @param reconciliationQueue The queue
+     */
+    public void setReconciliationQueue(ReconciliationQueue reconciliationQueue) {
+        this.reconciliationQueue = reconciliationQueue;
     }
 
     /**
@@ -87,6 +120,7 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
     protected static class ClusterOperation<C extends AbstractCluster> {
         private final C cluster;
         private final ClusterDiffResult diff;
+        private final String desiredStateHash;
 
         /**
          * @param cluster A cluster representing the target state (i.e.
@@ -94,8 +128,20 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
          * @param diff The diff if this is an update, otherwise null.
          */
         public ClusterOperation(C cluster, ClusterDiffResult diff) {
+            this(cluster, diff, null);
+        }
+
+        /**
+         * @param cluster A cluster representing the target state (i.e.
+         *                a cluster obtained from a cluster ConfigMap).
+         * @param diff The diff if this is an update, otherwise null.
+         * @param desiredStateHash The hash of the target state to record on the resources once the operation
+         *                         succeeded, or null if they already record it.
+         */
+        public ClusterOperation(C cluster, ClusterDiffResult diff, String desiredStateHash) {
             this.cluster = cluster;
             this.diff = diff;
+            this.desiredStateHash = desiredStateHash;
         }
 
         public C cluster() {
@@ -106,6 +152,10 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
             return diff;
         }
 
+        public String desiredStateHash() {
+            return desiredStateHash;
+        }
+
     }
 
     /**
@@ -144,18 +194,24 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
     protected final <C extends AbstractCluster> void execute(String namespace, String name, CompositeOperation<C> compositeOperation, Handler<AsyncResult<Void>> handler) {
         String clusterType = compositeOperation.clusterType();
         String operationType = compositeOperation.operationType();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.RECONCILIATION, clusterType)
+                .with("operation", operationType)
+                .with("namespace", namespace)
+                .with("name", name);
         ClusterOperation<C> clusterOp;
         try {
             clusterOp = compositeOperation.getCluster(namespace, name);
             log.info("{} {} cluster {} in namespace {}", operationType, clusterType, clusterOp.cluster().getName(), namespace);
         } catch (Throwable ex) {
             log.error("Error while getting required {} cluster state for {} operation", clusterType, operationType, ex);
+            event.end(Future.failedFuture(ex));
             handler.handle(Future.failedFuture("getCluster error"));
             return;
         }
         Future<?> composite = compositeOperation.composite(namespace, clusterOp);
 
         composite.setHandler(ar -> {
+            event.end(ar);
             if (ar.succeeded()) {
                 log.info("{} cluster {} in namespace {}: successful {}", clusterType, clusterOp.cluster().getName(), namespace, operationType);
                 handler.handle(Future.succeededFuture());
@@ -223,14 +279,35 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
      * <li>A cluster will be {@linkplain #delete(String, String, Handler) deleted} if resources without same-named ConfigMap</li>
      * <li>A cluster will be {@linkplain #update(String, String, Handler) updated} if it has a cluster ConfigMap and a resource with the same name.</li>
      * </ul>
+     * The reconciliation is {@linkplain ReconciliationQueue#enqueue(String, Handler) enqueued}: it's collapsed
+     * with a pending reconciliation of the same cluster, and retried with a back-off if it fails.
      * @param namespace The namespace
      * @param name The name of the cluster
      */
     public final void reconcile(String namespace, String name) {
+        reconcile(namespace, name, null);
+    }
+
+    /**
+     * Reconcile cluster resources in the given namespace having the given cluster name, as
+     * {@link #reconcile(String, String)}, calling the given {@code handler} once the reconciliation has run.
+     * @param namespace The namespace
+     * @param name The name of the cluster
+     * @param handler Completion handler (or null)
+     */
+    public final void reconcile(String namespace, String name, Handler<AsyncResult<Void>> handler) {
+        String lockName = getLockName(clusterType(), namespace, name);
+        reconciliationQueue.enqueue(lockName, fut -> reconcile(namespace, name, lockName, fut), handler);
+    }
+
+    private void reconcile(String namespace, String name, String lockName, Future<Void> fut) {
         String clusterType = clusterType();
 
-        final String lockName = getLockName(clusterType, namespace, name);
+        ProfilingEvent lockEvent = ProfilingEvent.begin(ProfilingEvent.Kind.LOCK_WAIT, clusterType)
+                .with("namespace", namespace)
+                .with("name", name);
         vertx.sharedData().getLockWithTimeout(lockName, LOCK_TIMEOUT, res -> {
+            lockEvent.end(res);
             if (res.succeeded()) {
                 log.debug("Lock {} acquired", lockName);
                 Lock lock = res.result();
@@ -258,6 +335,7 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
                                 }
                                 lock.release();
                                 log.debug("Lock {} released", lockName);
+                                fut.completer().handle(updateResult);
                             });
                         } else {
                             log.info("Reconciliation: {} cluster {} should be created", clusterDescription, cm.getMetadata().getName());
@@ -270,6 +348,7 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
                                 }
                                 lock.release();
                                 log.debug("Lock {} released", lockName);
+                                fut.completer().handle(createResult);
                             });
                         }
                     } else {
@@ -288,22 +367,29 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
                                 } else {
                                     log.error("Failed to delete {} cluster {} in namespace {}", clusterDescription, nameFromResource, namespace);
                                 }
-                                deleteFuture.complete();
+                                deleteFuture.completer().handle(deleteResult);
                             });
                         }
 
                         CompositeFuture.join(result).setHandler(res2 -> {
                             lock.release();
                             log.debug("Lock {} released", lockName);
+                            if (res2.succeeded()) {
+                                fut.complete();
+                            } else {
+                                fut.fail(res2.cause());
+                            }
                         });
                     }
                 } catch (Throwable ex) {
                     log.error("Error while reconciling {} cluster", clusterDescription, ex);
                     lock.release();
                     log.debug("Lock {} released", lockName);
+                    fut.tryFail(ex);
                 }
             } else {
                 log.warn("Failed to acquire lock for {} cluster {}.", clusterType, lockName);
+                fut.fail(res.cause());
             }
         });
     }
@@ -317,27 +403,62 @@ public abstract class AbstractClusterOperations<C extends AbstractCluster,
      * <li>A cluster will be {@linkplain #delete(String, String, Handler) deleted} for all resources without same-named ConfigMaps</li>
      * <li>A cluster will be {@linkplain #update(String, String, Handler) updated} if it has a cluster ConfigMap and a resource with the same name.</li>
      * </ul>
+     * The ConfigMaps and the resources are listed on a worker thread, and each cluster is reconciled through the
+     * reconciliation queue, which limits how many clusters are reconciled concurrently.
      * @param namespace The namespace
      * @param labels The labels
+     * @return A future which completes once every cluster has been reconciled, failed if any reconciliation failed.
      */
-    public final void reconcileAll(String namespace, Map<String, String> labels) {
+    public final Future<Void> reconcileAll(String namespace, Map<String, String> labels) {
+        Map<String, String> newLabels = new HashMap<>(labels);
+        newLabels.put(ClusterController.STRIMZI_TYPE_LABEL, clusterType());
+
+        Future<List<ConfigMap>> cms = Future.future();
+        workerExecutor().<List<ConfigMap>>executeBlocking(
+            future -> future.complete(configMapOperations.list(namespace, newLabels)),
+            false,
+            cms.completer());
+        return cms.compose(list -> reconcileAll(namespace, labels, list));
+    }
+
+    /**
+     * Reconcile cluster resources in the given namespace having the given labels, as
+     * {@link #reconcileAll(String, Map)}, given the ConfigMaps in the namespace with the given labels.
+     * This allows listing the ConfigMaps once for all the cluster types: those for other cluster types are ignored.
+     * @param namespace The namespace
+     * @param labels The labels
+     * @param cms The ConfigMaps in the namespace with the given labels
+     * @return A future which completes once every cluster has been reconciled, failed if any reconciliation failed.
+     */
+    public final Future<Void> reconcileAll(String namespace, Map<String, String> labels, List<ConfigMap> cms) {
         String clusterType = clusterType();
         Map<String, String> newLabels = new HashMap<>(labels);
         newLabels.put(ClusterController.STRIMZI_TYPE_LABEL, clusterType);
 
-        // get ConfigMap for the corresponding cluster type
-        List<ConfigMap> cms = configMapOperations.list(namespace, newLabels);
-        Set<String> cmsNames = cms.stream().map(cm -> cm.getMetadata().getName()).collect(Collectors.toSet());
+        Set<String> cmsNames = cms.stream()
+                .filter(cm -> clusterType.equals(cm.getMetadata().getLabels().get(ClusterController.STRIMZI_TYPE_LABEL)))
+                .map(cm -> cm.getMetadata().getName())
+                .collect(Collectors.toSet());
 
         // get resources for the corresponding cluster name (they are part of)
-        List<R> resources = getResources(namespace, newLabels);
-        Set<String> resourceNames = resources.stream().map(res -> res.getMetadata().getLabels().get(ClusterController.STRIMZI_CLUSTER_LABEL)).collect(Collectors.toSet());
-
-        cmsNames.addAll(resourceNames);
-
-        for (String name: cmsNames) {
-            reconcile(namespace, name);
-        }
+        Future<List<R>> resources = Future.future();
+        workerExecutor().<List<R>>executeBlocking(
+            future -> future.complete(getResources(namespace, newLabels)),
+            false,
+            resources.completer());
+
+        return resources.compose(list -> {
+            Set<String> names = new HashSet<>(cmsNames);
+            list.stream().map(res -> res.getMetadata().getLabels().get(ClusterController.STRIMZI_CLUSTER_LABEL)).forEach(names::add);
+
+            List<Future> result = new ArrayList<>(names.size());
+            for (String name : names) {
+                Future<Void> fut = Future.future();
+                result.add(fut);
+                reconcile(namespace, name, fut.completer());
+            }
+            return CompositeFuture.join(result).map((Void) null);
+        });
     }
 
     /**
@@ -5,8 +5,11 @@
 package io.strimzi.controller.cluster.operations.cluster;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.extensions.Deployment;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
+import io.strimzi.common.ProfilingEvent;
+import io.strimzi.controller.cluster.operations.kafka.KafkaAdminOperations;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.operations.resource.DeploymentOperations;
 import io.strimzi.controller.cluster.operations.resource.EndpointOperations;
@@ -14,8 +17,11 @@ import io.strimzi.controller.cluster.operations.resource.PodOperations;
 import io.strimzi.controller.cluster.operations.resource.PvcOperations;
 import io.strimzi.controller.cluster.operations.resource.ServiceOperations;
 import io.strimzi.controller.cluster.operations.resource.StatefulSetOperations;
+import io.strimzi.controller.cluster.operations.zookeeper.ZookeeperAdminOperations;
+import io.strimzi.controller.cluster.resources.AbstractCluster;
 import io.strimzi.controller.cluster.resources.ClusterDiffResult;
 import io.strimzi.controller.cluster.resources.KafkaCluster;
+import io.strimzi.controller.cluster.resources.LagExporter;
 import io.strimzi.controller.cluster.resources.Storage;
 import io.strimzi.controller.cluster.resources.TopicController;
 import io.strimzi.controller.cluster.resources.ZookeeperCluster;
@@ -28,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +48,7 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
     private static final String CLUSTER_TYPE_ZOOKEEPER = "zookeeper";
     private static final String CLUSTER_TYPE_KAFKA = "kafka";
     private static final String CLUSTER_TYPE_TOPIC_CONTROLLER = "topic-controller";
+    private static final String CLUSTER_TYPE_LAG_EXPORTER = "lag-exporter";
 
     private final long operationTimeoutMs;
 
@@ -50,6 +58,8 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
     private final PodOperations podOperations;
     private final EndpointOperations endpointOperations;
     private final DeploymentOperations deploymentOperations;
+    private final KafkaAdminOperations kafkaAdminOperations;
+    private final ZookeeperAdminOperations zookeeperAdminOperations;
 
     /**
      * @param vertx The Vertx instance
@@ -70,6 +80,60 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                                   PodOperations podOperations,
                                   EndpointOperations endpointOperations,
                                   DeploymentOperations deploymentOperations) {
+        this(vertx, isOpenShift, operationTimeoutMs, configMapOperations, serviceOperations, statefulSetOperations,
+                pvcOperations, podOperations, endpointOperations, deploymentOperations,
+                new KafkaAdminOperations(vertx, operationTimeoutMs));
+    }
+
+    /**
+     * @param vertx The Vertx instance
+     * @param isOpenShift Whether we're running with OpenShift
+     * @param configMapOperations For operating on ConfigMaps
+     * @param serviceOperations For operating on Services
+     * @param statefulSetOperations For operating on StatefulSets
+     * @param pvcOperations For operating on PersistentVolumeClaims
+     * @param podOperations For operating on Pods
+     * @param deploymentOperations For operating on Deployments
+     * @param kafkaAdminOperations For operating on the running Kafka brokers
+     */
+    public KafkaClusterOperations(Vertx vertx, boolean isOpenShift,
+                                  long operationTimeoutMs,
+                                  ConfigMapOperations configMapOperations,
+                                  ServiceOperations serviceOperations,
+                                  StatefulSetOperations statefulSetOperations,
+                                  PvcOperations pvcOperations,
+                                  PodOperations podOperations,
+                                  EndpointOperations endpointOperations,
+                                  DeploymentOperations deploymentOperations,
+                                  KafkaAdminOperations kafkaAdminOperations) {
+        this(vertx, isOpenShift, operationTimeoutMs, configMapOperations, serviceOperations, statefulSetOperations,
+                pvcOperations, podOperations, endpointOperations, deploymentOperations, kafkaAdminOperations,
+                new ZookeeperAdminOperations(vertx, operationTimeoutMs));
+    }
+
+    /**
+     * @param vertx The Vertx instance
+     * @param isOpenShift Whether we're running with OpenShift
+     * @param configMapOperations For operating on ConfigMaps
+     * @param serviceOperations For operating on Services
+     * @param statefulSetOperations For operating on StatefulSets
+     * @param pvcOperations For operating on PersistentVolumeClaims
+     * @param podOperations For operating on Pods
+     * @param deploymentOperations For operating on Deployments
+     * @param kafkaAdminOperations For operating on the running Kafka brokers
+     * @param zookeeperAdminOperations For operating on the running Zookeeper ensemble
+     */
+    public KafkaClusterOperations(Vertx vertx, boolean isOpenShift,
+                                  long operationTimeoutMs,
+                                  ConfigMapOperations configMapOperations,
+                                  ServiceOperations serviceOperations,
+                                  StatefulSetOperations statefulSetOperations,
+                                  PvcOperations pvcOperations,
+                                  PodOperations podOperations,
+                                  EndpointOperations endpointOperations,
+                                  DeploymentOperations deploymentOperations,
+                                  KafkaAdminOperations kafkaAdminOperations,
+                                  ZookeeperAdminOperations zookeeperAdminOperations) {
         super(vertx, isOpenShift, "Kafka", configMapOperations);
         this.operationTimeoutMs = operationTimeoutMs;
         this.statefulSetOperations = statefulSetOperations;
@@ -78,6 +142,8 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         this.podOperations = podOperations;
         this.endpointOperations = endpointOperations;
         this.deploymentOperations = deploymentOperations;
+        this.kafkaAdminOperations = kafkaAdminOperations;
+        this.zookeeperAdminOperations = zookeeperAdminOperations;
     }
 
     @Override
@@ -92,9 +158,15 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                     } else {
                         ClusterOperation<TopicController> clusterOp = createTopicController.getCluster(namespace, name);
                         if (clusterOp.cluster() != null) {
-                            execute(namespace, name, createTopicController, handler);
+                            execute(namespace, name, createTopicController, topicControllerResult -> {
+                                if (topicControllerResult.failed()) {
+                                    handler.handle(topicControllerResult);
+                                } else {
+                                    createLagExporterIfConfigured(namespace, name, handler);
+                                }
+                            });
                         } else {
-                            handler.handle(kafkaResult);
+                            createLagExporterIfConfigured(namespace, name, handler);
                         }
                     }
                 });
@@ -102,6 +174,15 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         });
     }
 
+    private void createLagExporterIfConfigured(String namespace, String name, Handler<AsyncResult<Void>> handler) {
+        ClusterOperation<LagExporter> clusterOp = createLagExporter.getCluster(namespace, name);
+        if (clusterOp.cluster() != null) {
+            execute(namespace, name, createLagExporter, handler);
+        } else {
+            handler.handle(Future.succeededFuture());
+        }
+    }
+
     private final CompositeOperation<KafkaCluster> createKafka = new CompositeOperation<KafkaCluster>() {
 
         @Override
@@ -116,7 +197,8 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
 
         @Override
         public ClusterOperation<KafkaCluster> getCluster(String namespace, String name) {
-            return new ClusterOperation<>(KafkaCluster.fromConfigMap(configMapOperations.get(namespace, name)), null);
+            KafkaCluster kafka = KafkaCluster.fromConfigMap(configMapOperations.get(namespace, name));
+            return new ClusterOperation<>(kafka, null, kafka.getDesiredStateHash(isOpenShift));
         }
 
         @Override
@@ -155,6 +237,7 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                     waitEndpointResult.add(endpointOperations.readiness(namespace, kafka.getHeadlessName(), 1_000, operationTimeoutMs));
                     return CompositeFuture.join(waitEndpointResult);
                 })
+                .compose(res -> recordDesiredState(kafka, namespace, clusterOp.desiredStateHash()))
                 .compose(res -> {
                     fut.complete();
                 }, fut);
@@ -178,7 +261,8 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
 
         @Override
         public ClusterOperation<ZookeeperCluster> getCluster(String namespace, String name) {
-            return new ClusterOperation<>(ZookeeperCluster.fromConfigMap(configMapOperations.get(namespace, name)), null);
+            ZookeeperCluster zk = ZookeeperCluster.fromConfigMap(configMapOperations.get(namespace, name));
+            return new ClusterOperation<>(zk, null, zk.getDesiredStateHash(isOpenShift));
         }
 
         @Override
@@ -216,6 +300,7 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                     waitEndpointResult.add(endpointOperations.readiness(namespace, zk.getHeadlessName(), 1_000, operationTimeoutMs));
                     return CompositeFuture.join(waitEndpointResult);
                 })
+                .compose(res -> recordDesiredState(zk, namespace, clusterOp.desiredStateHash()))
                 .compose(res -> {
                     fut.complete();
                 }, fut);
@@ -249,6 +334,31 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         }
     };
 
+    private final CompositeOperation<LagExporter> createLagExporter = new CompositeOperation<LagExporter>() {
+
+        @Override
+        public String operationType() {
+            return OP_CREATE;
+        }
+
+        @Override
+        public String clusterType() {
+            return CLUSTER_TYPE_LAG_EXPORTER;
+        }
+
+        @Override
+        public ClusterOperation<LagExporter> getCluster(String namespace, String name) {
+            return new ClusterOperation<>(LagExporter.fromConfigMap(configMapOperations.get(namespace, name)), null);
+        }
+
+        @Override
+        public Future<?> composite(String namespace, ClusterOperation<LagExporter> clusterOp) {
+
+            LagExporter lagExporter = clusterOp.cluster();
+            return deploymentOperations.create(lagExporter.generateDeployment());
+        }
+    };
+
     private final CompositeOperation<KafkaCluster> deleteKafka = new CompositeOperation<KafkaCluster>() {
         @Override
         public String operationType() {
@@ -263,7 +373,7 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         @Override
         public Future<?> composite(String namespace, ClusterOperation<KafkaCluster> clusterOp) {
             KafkaCluster kafka = clusterOp.cluster();
-            boolean deleteClaims = kafka.getStorage().type() == Storage.StorageType.PERSISTENT_CLAIM
+            boolean deleteClaims = kafka.getStorage().isPersistentClaim()
                     && kafka.getStorage().isDeleteClaim();
             List<Future> result = new ArrayList<>(4 + (deleteClaims ? kafka.getReplicas() : 0));
 
@@ -279,7 +389,9 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
 
             if (deleteClaims) {
                 for (int i = 0; i < kafka.getReplicas(); i++) {
-                    result.add(pvcOperations.delete(namespace, kafka.getPersistentVolumeClaimName(i)));
+                    for (String pvcName : kafka.getPersistentVolumeClaimNames(i)) {
+                        result.add(pvcOperations.delete(namespace, pvcName));
+                    }
                 }
             }
 
@@ -367,10 +479,52 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         }
     };
 
+    private final CompositeOperation<LagExporter> deleteLagExporter = new CompositeOperation<LagExporter>() {
+
+        @Override
+        public String operationType() {
+            return OP_DELETE;
+        }
+
+        @Override
+        public String clusterType() {
+            return CLUSTER_TYPE_LAG_EXPORTER;
+        }
+
+        @Override
+        public Future<?> composite(String namespace, ClusterOperation<LagExporter> clusterOp) {
+            LagExporter lagExporter = clusterOp.cluster();
+            return deploymentOperations.delete(namespace, lagExporter.getName());
+        }
+
+        @Override
+        public ClusterOperation<LagExporter> getCluster(String namespace, String name) {
+            Deployment dep = deploymentOperations.get(namespace, LagExporter.lagExporterName(name));
+            return new ClusterOperation<>(LagExporter.fromDeployment(namespace, name, dep), null);
+        }
+    };
+
     @Override
     protected void delete(String namespace, String name, Handler<AsyncResult<Void>> handler) {
 
-        // first check if the topic controller was really deployed
+        // first check if the lag exporter was really deployed
+        ClusterOperation<LagExporter> clusterOp = deleteLagExporter.getCluster(namespace, name);
+        if (clusterOp.cluster() != null) {
+            execute(namespace, name, deleteLagExporter, lagExporterResult -> {
+                if (lagExporterResult.failed()) {
+                    handler.handle(lagExporterResult);
+                } else {
+                    deleteTopicControllerKafkaAndZookeeper(namespace, name, handler);
+                }
+            });
+        } else {
+            deleteTopicControllerKafkaAndZookeeper(namespace, name, handler);
+        }
+    }
+
+    private void deleteTopicControllerKafkaAndZookeeper(String namespace, String name, Handler<AsyncResult<Void>> handler) {
+
+        // check if the topic controller was really deployed
         ClusterOperation<TopicController> clusterOp = deleteTopicController.getCluster(namespace, name);
         if (clusterOp.cluster() != null) {
             execute(namespace, name, deleteTopicController, topicControllerResult -> {
@@ -413,13 +567,17 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
             ClusterDiffResult diff = clusterOp.diff();
 
             Future<Void> chainFuture = Future.future();
-            scaleDown(kafka, namespace, diff)
+            recreateStatefulSet(kafka, namespace)
+                    .compose(i -> scaleDown(kafka, namespace, diff))
                     .compose(i -> patchService(kafka, namespace, diff))
                     .compose(i -> patchHeadlessService(kafka, namespace, diff))
                     .compose(i -> patchStatefulSet(kafka, namespace, diff))
                     .compose(i -> patchMetricsConfigMap(kafka, namespace, diff))
+                    .compose(i -> updateDynamicConfig(kafka, namespace, diff))
                     .compose(i -> rollingUpdate(kafka, namespace, diff))
                     .compose(i -> scaleUp(kafka, namespace, diff))
+                    .compose(i -> rebalance(kafka, namespace, diff, clusterOp.desiredStateHash() == null))
+                    .compose(i -> recordDesiredState(kafka, namespace, clusterOp.desiredStateHash()))
                     .compose(chainFuture::complete, chainFuture);
 
             return chainFuture;
@@ -429,25 +587,75 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         public ClusterOperation<KafkaCluster> getCluster(String namespace, String name) {
             ClusterDiffResult diff;
             KafkaCluster kafka;
+            String desiredStateHash;
             ConfigMap kafkaConfigMap = configMapOperations.get(namespace, name);
 
             if (kafkaConfigMap != null)    {
                 kafka = KafkaCluster.fromConfigMap(kafkaConfigMap);
-                log.info("Updating Kafka cluster {} in namespace {}", kafka.getName(), namespace);
                 StatefulSet ss = statefulSetOperations.get(namespace, kafka.getName());
+                desiredStateHash = kafka.getDesiredStateHash(isOpenShift);
+                if (ss == null) {
+                    // the pods left by a replace which failed to create the new StatefulSet have an outdated spec
+                    int pods = existingPods(kafka, namespace);
+                    log.warn("StatefulSet of Kafka cluster {} in namespace {} is missing, recreating it for its {} pods",
+                            kafka.getName(), namespace, pods);
+                    return new ClusterOperation<>(kafka,
+                            new ClusterDiffResult(true, pods > 0, kafka.getReplicas() > pods && pods > 0, kafka.getReplicas() < pods, false),
+                            desiredStateHash);
+                }
+                if (kafka.isUpToDate(ss, desiredStateHash)) {
+                    log.info("Kafka cluster {} in namespace {} is up to date", kafka.getName(), namespace);
+                    return new ClusterOperation<>(kafka, new ClusterDiffResult(), null);
+                }
+                log.info("Updating Kafka cluster {} in namespace {}", kafka.getName(), namespace);
                 ConfigMap metricsConfigMap = configMapOperations.get(namespace, kafka.getMetricsConfigName());
+                ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, CLUSTER_TYPE_KAFKA)
+                        .with("namespace", namespace)
+                        .with("name", kafka.getName());
                 diff = kafka.diff(metricsConfigMap, ss);
+                diffEvent.end();
             } else {
                 throw new IllegalStateException("ConfigMap " + name + " doesn't exist anymore in namespace " + namespace);
             }
-            return new ClusterOperation<>(kafka, diff);
+            return new ClusterOperation<>(kafka, diff, desiredStateHash);
         }
 
 
+        /**
+         * Recreate the StatefulSet if it's missing, because a replace failed to create the new StatefulSet,
+         * so the pods which are still running are adopted again.
+         * It's created with as many replicas as there are pods, so that scaling is done as usual afterwards.
+         */
+        private Future<Void> recreateStatefulSet(KafkaCluster kafka, String namespace) {
+            if (statefulSetOperations.getUncached(namespace, kafka.getName()) != null) {
+                return Future.succeededFuture();
+            }
+            StatefulSet ss = kafka.generateStatefulSet(isOpenShift);
+            int pods = existingPods(kafka, namespace);
+            if (pods > 0) {
+                ss.getSpec().setReplicas(pods);
+            }
+            log.info("Recreating stateful set {} in namespace {} with {} replicas", kafka.getName(), namespace, ss.getSpec().getReplicas());
+            return statefulSetOperations.create(ss);
+        }
+
+        /**
+         * Scale down, having first moved the partition replicas off the brokers being removed (unless disabled),
+         * so that they're stopped without making partitions under-replicated.
+         */
         private Future<Void> scaleDown(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
             if (diff.isScaleDown()) {
-                log.info("Scaling down stateful set {} in namespace {}", kafka.getName(), namespace);
-                return statefulSetOperations.scaleDown(namespace, kafka.getName(), kafka.getReplicas());
+                Future<Void> drained;
+                if (kafka.getRebalancing().isScaleDown()) {
+                    drained = kafkaAdminOperations.drain(namespace, kafka.getCluster(), kafka.getReplicas(),
+                            kafka.getStorage().capacityBytes(), kafka.getRebalancing());
+                } else {
+                    drained = Future.succeededFuture();
+                }
+                return drained.compose(i -> {
+                    log.info("Scaling down stateful set {} in namespace {}", kafka.getName(), namespace);
+                    return statefulSetOperations.scaleDown(namespace, kafka.getName(), kafka.getReplicas());
+                });
             } else {
                 return Future.succeededFuture();
             }
@@ -455,7 +663,7 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
 
         private Future<Void> patchService(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
-                return serviceOperations.patch(namespace, kafka.getName(), kafka.patchService(serviceOperations.get(namespace, kafka.getName())));
+                return serviceOperations.patch(namespace, kafka.getName(), kafka.patchService(serviceOperations.getUncached(namespace, kafka.getName())));
             } else {
                 return Future.succeededFuture();
             }
@@ -464,16 +672,20 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         private Future<Void> patchHeadlessService(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return serviceOperations.patch(namespace, kafka.getHeadlessName(),
-                        kafka.patchHeadlessService(serviceOperations.get(namespace, kafka.getHeadlessName())));
+                        kafka.patchHeadlessService(serviceOperations.getUncached(namespace, kafka.getHeadlessName())));
             } else {
                 return Future.succeededFuture();
             }
         }
 
         private Future<Void> patchStatefulSet(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
-            if (diff.isDifferent()) {
+            if (diff.isVolumesAdded()) {
+                // the volume claim templates can't be patched, the pods get the new volumes in the rolling update
+                return statefulSetOperations.replace(namespace, kafka.getName(), operationTimeoutMs,
+                        kafka.generateStatefulSet(isOpenShift));
+            } else if (diff.isDifferent()) {
                 return statefulSetOperations.patch(namespace, kafka.getName(), false,
-                        kafka.patchStatefulSet(statefulSetOperations.get(namespace, kafka.getName())));
+                        kafka.patchStatefulSet(statefulSetOperations.getUncached(namespace, kafka.getName())));
             } else {
                 return Future.succeededFuture();
             }
@@ -482,18 +694,48 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         private Future<Void> patchMetricsConfigMap(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
             if (diff.isMetricsChanged()) {
                 return configMapOperations.patch(namespace, kafka.getMetricsConfigName(),
-                        kafka.patchMetricsConfigMap(configMapOperations.get(namespace, kafka.getMetricsConfigName())));
+                        kafka.patchMetricsConfigMap(configMapOperations.getUncached(namespace, kafka.getMetricsConfigName())));
             } else {
                 return Future.succeededFuture();
             }
         }
 
+        /**
+         * Update the configuration of the running brokers, falling back to a rolling update if that fails
+         * (for example because the brokers don't support dynamic configuration).
+         * When a rolling update is needed anyway the dynamic configuration is still updated,
+         * because the brokers give it precedence over their configuration file.
+         */
+        private Future<Void> updateDynamicConfig(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
+            Future<Void> updateDynamicConfig = Future.future();
+
+            if (diff.isDynamicConfigChanged()) {
+                kafkaAdminOperations.alterBrokerConfigs(namespace, kafka.getCluster(), kafka.getConfiguration().getDynamicOptions())
+                        .setHandler(res -> {
+                            if (res.succeeded() || diff.isRollingUpdate()) {
+                                updateDynamicConfig.complete();
+                            } else {
+                                log.warn("Failed to update the configuration of the running brokers of {} in namespace {}, doing a rolling update instead",
+                                        kafka.getName(), namespace);
+                                statefulSetOperations.rollingUpdate(namespace, kafka.getName(),
+                                    podId -> restoreBroker(kafka, namespace, podId),
+                                    updateDynamicConfig.completer());
+                            }
+                        });
+            } else {
+                updateDynamicConfig.complete();
+            }
+
+            return updateDynamicConfig;
+        }
+
         private Future<Void> rollingUpdate(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
             Future<Void> rollingUpdate = Future.future();
 
             if (diff.isRollingUpdate()) {
                 statefulSetOperations.rollingUpdate(namespace, kafka.getName(),
-                        rollingUpdate.completer());
+                    podId -> restoreBroker(kafka, namespace, podId),
+                    rollingUpdate.completer());
             } else {
                 rollingUpdate.complete();
             }
@@ -501,6 +743,14 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
             return rollingUpdate;
         }
 
+        /**
+         * Wait for a restarted broker (whose id is the ordinal of its pod) to catch up and take back leadership
+         * of its preferred partitions before the next one is restarted.
+         */
+        private Future<Void> restoreBroker(KafkaCluster kafka, String namespace, int podId) {
+            return kafkaAdminOperations.restoreBroker(namespace, kafka.getCluster(), podId, kafka.getRebalancing().getTimeoutMs());
+        }
+
         private Future<Void> scaleUp(KafkaCluster kafka, String namespace, ClusterDiffResult diff) {
             if (diff.isScaleUp()) {
                 return statefulSetOperations.scaleUp(namespace, kafka.getName(), kafka.getReplicas());
@@ -508,6 +758,21 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                 return Future.succeededFuture();
             }
         }
+
+        /**
+         * When enabled, move partition replicas onto the brokers added by scaling up, so that they take a share of the load.
+         * This is also done when a previous update scaled up but didn't complete the rebalancing, which is known
+         * because the desired state is only recorded once the rebalancing has completed: so it's skipped when the
+         * StatefulSet is up to date, rather than describing all the topics on every periodic reconciliation.
+         */
+        private Future<Void> rebalance(KafkaCluster kafka, String namespace, ClusterDiffResult diff, boolean upToDate) {
+            if (!upToDate && kafka.getRebalancing().isScaleUp()) {
+                return kafkaAdminOperations.rebalance(namespace, kafka.getCluster(), kafka.getReplicas(), diff.isScaleUp(),
+                        kafka.getRebalancing());
+            } else {
+                return Future.succeededFuture();
+            }
+        }
     };
 
     private final CompositeOperation<ZookeeperCluster> updateZk = new CompositeOperation<ZookeeperCluster>() {
@@ -526,31 +791,26 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
             ClusterDiffResult diff = operation.diff();
             Future<Void> chainFuture = Future.future();
 
-            scaleDown(zk, namespace, diff)
-                    .compose(i -> patchService(zk, namespace, diff))
+            int servers = statefulSetOperations.getUncached(namespace, zk.getName()).getSpec().getReplicas();
+            // the StatefulSet already records the target state, so no server can be left over from a previous update
+            boolean upToDate = operation.desiredStateHash() == null;
+
+            patchService(zk, namespace, diff)
                     .compose(i -> patchHeadlessService(zk, namespace, diff))
-                    .compose(i -> patchStatefulSet(zk, namespace, diff))
+                    .compose(i -> patchStatefulSet(zk, namespace, diff, servers))
                     .compose(i -> patchMetricsConfigMap(zk, namespace, diff))
-                    .compose(i -> rollingUpdate(zk, namespace, diff))
-                    .compose(i -> scaleUp(zk, namespace, diff))
+                    .compose(i -> rollingUpdate(zk, namespace, diff, servers, upToDate))
+                    .compose(i -> scale(zk, namespace, servers))
+                    .compose(i -> recordDesiredState(zk, namespace, operation.desiredStateHash()))
                     .compose(chainFuture::complete, chainFuture);
 
             return chainFuture;
         }
 
-        private Future<Void> scaleDown(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
-            if (diff.isScaleDown()) {
-                log.info("Scaling down stateful set {} in namespace {}", zk.getName(), namespace);
-                return statefulSetOperations.scaleDown(namespace, zk.getName(), zk.getReplicas());
-            } else {
-                return Future.succeededFuture();
-            }
-        }
-
         private Future<Void> patchService(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return serviceOperations.patch(namespace, zk.getName(),
-                        zk.patchService(serviceOperations.get(namespace, zk.getName())));
+                        zk.patchService(serviceOperations.getUncached(namespace, zk.getName())));
             } else {
                 return Future.succeededFuture();
             }
@@ -559,16 +819,20 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         private Future<Void> patchHeadlessService(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return serviceOperations.patch(namespace, zk.getHeadlessName(),
-                        zk.patchHeadlessService(serviceOperations.get(namespace, zk.getHeadlessName())));
+                        zk.patchHeadlessService(serviceOperations.getUncached(namespace, zk.getHeadlessName())));
             } else {
                 return Future.succeededFuture();
             }
         }
 
-        private Future<Void> patchStatefulSet(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
+        /**
+         * Patch the StatefulSet, keeping the current ensemble size: when scaling, it's changed one server at a time.
+         */
+        private Future<Void> patchStatefulSet(ZookeeperCluster zk, String namespace, ClusterDiffResult diff, int servers) {
             if (diff.isDifferent()) {
-                return statefulSetOperations.patch(namespace, zk.getName(), false,
-                        zk.patchStatefulSet(statefulSetOperations.get(namespace, zk.getName())));
+                StatefulSet ss = zk.patchStatefulSet(statefulSetOperations.getUncached(namespace, zk.getName()));
+                ZookeeperCluster.setEnsembleSize(ss.getSpec().getTemplate().getSpec(), servers);
+                return statefulSetOperations.patch(namespace, zk.getName(), false, ss);
             } else {
                 return Future.succeededFuture();
             }
@@ -577,50 +841,101 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         private Future<Void> patchMetricsConfigMap(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
             if (diff.isMetricsChanged()) {
                 return configMapOperations.patch(namespace, zk.getMetricsConfigName(),
-                        zk.patchMetricsConfigMap(configMapOperations.get(namespace, zk.getMetricsConfigName())));
+                        zk.patchMetricsConfigMap(configMapOperations.getUncached(namespace, zk.getMetricsConfigName())));
             } else {
                 return Future.succeededFuture();
             }
         }
 
-        private Future<Void> rollingUpdate(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
-            Future<Void> rollingUpdate = Future.future();
-
-            if (diff.isRollingUpdate()) {
-                statefulSetOperations.rollingUpdate(namespace, zk.getName(),
-                        rollingUpdate.completer());
-            } else {
-                rollingUpdate.complete();
+        /**
+         * Restart all the servers if the diff needs a rolling update, otherwise only those which aren't configured
+         * with the current ensemble (because a previous scaling didn't complete).
+         * Scaling restarts all the servers which are kept anyway, so they're left to it.
+         */
+        private Future<Void> rollingUpdate(ZookeeperCluster zk, String namespace, ClusterDiffResult diff, int servers,
+                                           boolean upToDate) {
+            if (upToDate || zk.getReplicas() != servers) {
+                return Future.succeededFuture();
             }
+            return restartServers(zk, namespace, servers, diff.isRollingUpdate());
+        }
 
-            return rollingUpdate;
+        /**
+         * Scale the ensemble one server at a time, waiting for it to have a quorum between the steps.
+         * To add a server, it's started with the new ensemble, then the other servers are restarted with it.
+         * To remove a server, it's stopped, then the other servers are restarted without it.
+         */
+        private Future<Void> scale(ZookeeperCluster zk, String namespace, int servers) {
+            Future<Void> scaled = Future.succeededFuture();
+            int step = zk.getReplicas() > servers ? 1 : -1;
+            for (int from = servers; from != zk.getReplicas(); from += step) {
+                int to = from + step;
+                scaled = scaled.compose(i -> {
+                    log.info("Scaling Zookeeper ensemble of {} in namespace {} from {} to {} servers", zk.getName(), namespace, to - step, to);
+                    StatefulSet ss = statefulSetOperations.getUncached(namespace, zk.getName());
+                    ZookeeperCluster.setEnsembleSize(ss.getSpec().getTemplate().getSpec(), to);
+                    return statefulSetOperations.patch(namespace, zk.getName(), false, ss);
+                }).compose(i -> step > 0
+                        ? statefulSetOperations.scaleUp(namespace, zk.getName(), to)
+                        : statefulSetOperations.scaleDown(namespace, zk.getName(), to)
+                ).compose(i -> restartServers(zk, namespace, to, false));
+            }
+            return scaled;
         }
 
-        private Future<Void> scaleUp(ZookeeperCluster zk, String namespace, ClusterDiffResult diff) {
-            if (diff.isScaleUp()) {
-                return statefulSetOperations.scaleUp(namespace, zk.getName(), zk.getReplicas());
-            } else {
+        /**
+         * Restart the given servers of the ensemble of the given size (all of them, or those which aren't configured
+         * with that ensemble) one at a time, leaving the leader until last so that there's a single leader election,
+         * and waiting for the ensemble to have a quorum before each restart.
+         */
+        private Future<Void> restartServers(ZookeeperCluster zk, String namespace, int servers, boolean all) {
+            List<Integer> pods = new ArrayList<>();
+            for (int i = 0; i < servers; i++) {
+                Pod pod = all ? null : podOperations.getUncached(namespace, zk.getName() + "-" + i);
+                if (all || (pod != null && !Integer.valueOf(servers).equals(ZookeeperCluster.getEnsembleSize(pod.getSpec())))) {
+                    pods.add(i);
+                }
+            }
+            if (pods.isEmpty()) {
                 return Future.succeededFuture();
             }
+            return zookeeperAdminOperations.awaitQuorum(namespace, zk.getCluster(), servers)
+                    .compose(leader -> {
+                        if (pods.remove(leader)) {
+                            pods.add(leader);
+                        }
+                        return statefulSetOperations.restartPods(namespace, zk.getName(), pods,
+                            podId -> zookeeperAdminOperations.awaitQuorum(namespace, zk.getCluster(), servers).map((Void) null));
+                    });
         }
 
         @Override
         public ClusterOperation<ZookeeperCluster> getCluster(String namespace, String name) {
             ClusterDiffResult diff;
             ZookeeperCluster zk;
+            String desiredStateHash;
             ConfigMap zkConfigMap = configMapOperations.get(namespace, name);
 
             if (zkConfigMap != null)    {
                 zk = ZookeeperCluster.fromConfigMap(zkConfigMap);
-                log.info("Updating Zookeeper cluster {} in namespace {}", zk.getName(), namespace);
                 StatefulSet ss = statefulSetOperations.get(namespace, zk.getName());
+                desiredStateHash = zk.getDesiredStateHash(isOpenShift);
+                if (zk.isUpToDate(ss, desiredStateHash)) {
+                    log.info("Zookeeper cluster {} in namespace {} is up to date", zk.getName(), namespace);
+                    return new ClusterOperation<>(zk, new ClusterDiffResult(), null);
+                }
+                log.info("Updating Zookeeper cluster {} in namespace {}", zk.getName(), namespace);
                 ConfigMap metricsConfigMap = configMapOperations.get(namespace, zk.getMetricsConfigName());
+                ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, CLUSTER_TYPE_ZOOKEEPER)
+                        .with("namespace", namespace)
+                        .with("name", zk.getName());
                 diff = zk.diff(metricsConfigMap, ss);
+                diffEvent.end();
             } else {
                 throw new IllegalStateException("ConfigMap " + name + " doesn't exist anymore in namespace " + namespace);
             }
 
-            return new ClusterOperation<>(zk, diff);
+            return new ClusterOperation<>(zk, diff, desiredStateHash);
         }
     };
 
@@ -664,7 +979,11 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                 if (topicController != null) {
                     log.info("Updating Topic Controller {} in namespace {}", topicController.getName(), namespace);
                     Deployment dep = deploymentOperations.get(namespace, topicController.getName());
+                    ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, CLUSTER_TYPE_TOPIC_CONTROLLER)
+                            .with("namespace", namespace)
+                            .with("name", topicController.getName());
                     diff = topicController.diff(dep);
+                    diffEvent.end();
                 }
             } else {
                 throw new IllegalStateException("ConfigMap " + name + " doesn't exist anymore in namespace " + namespace);
@@ -676,13 +995,68 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         private Future<Void> patchDeployment(TopicController topicController, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return deploymentOperations.patch(namespace, topicController.getName(),
-                        topicController.patchDeployment(deploymentOperations.get(namespace, topicController.getName())));
+                        topicController.patchDeployment(deploymentOperations.getUncached(namespace, topicController.getName())));
             } else {
                 return Future.succeededFuture();
             }
         }
     };
 
+    private final CompositeOperation<LagExporter> updateLagExporter = new CompositeOperation<LagExporter>() {
+        @Override
+        public String operationType() {
+            return OP_UPDATE;
+        }
+
+        @Override
+        public String clusterType() {
+            return CLUSTER_TYPE_LAG_EXPORTER;
+        }
+
+        @Override
+        public Future<?> composite(String namespace, ClusterOperation<LagExporter> operation) {
+            LagExporter lagExporter = operation.cluster();
+            ClusterDiffResult diff = operation.diff();
+
+            Future<Void> fut;
+            if (diff == null) {
+                // the lag exporter configuration was added to the cluster ConfigMap, so there is no Deployment to patch
+                fut = deploymentOperations.create(lagExporter.generateDeployment());
+            } else if (diff.isDifferent()) {
+                fut = deploymentOperations.patch(namespace, lagExporter.getName(),
+                        lagExporter.patchDeployment(deploymentOperations.getUncached(namespace, lagExporter.getName())));
+            } else {
+                fut = Future.succeededFuture();
+            }
+
+            return fut;
+        }
+
+        @Override
+        public ClusterOperation<LagExporter> getCluster(String namespace, String name) {
+            ClusterDiffResult diff = null;
+            LagExporter lagExporter = null;
+            ConfigMap leConfigMap = configMapOperations.get(namespace, name);
+
+            if (leConfigMap != null) {
+                lagExporter = LagExporter.fromConfigMap(leConfigMap);
+                if (lagExporter != null) {
+                    log.info("Updating Lag Exporter {} in namespace {}", lagExporter.getName(), namespace);
+                    Deployment dep = deploymentOperations.get(namespace, lagExporter.getName());
+                    ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, CLUSTER_TYPE_LAG_EXPORTER)
+                            .with("namespace", namespace)
+                            .with("name", lagExporter.getName());
+                    diff = lagExporter.diff(dep);
+                    diffEvent.end();
+                }
+            } else {
+                throw new IllegalStateException("ConfigMap " + name + " doesn't exist anymore in namespace " + namespace);
+            }
+
+            return new ClusterOperation<>(lagExporter, diff);
+        }
+    };
+
     @Override
     public void update(String namespace, String name, Handler<AsyncResult<Void>> handler) {
         execute(namespace, name, updateZk, zookeeperResult -> {
@@ -695,9 +1069,15 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
                     } else {
                         ClusterOperation<TopicController> clusterOp = updateTopicController.getCluster(namespace, name);
                         if (clusterOp.cluster() != null) {
-                            execute(namespace, name, updateTopicController, handler);
+                            execute(namespace, name, updateTopicController, topicControllerResult -> {
+                                if (topicControllerResult.failed()) {
+                                    handler.handle(topicControllerResult);
+                                } else {
+                                    updateLagExporterIfConfigured(namespace, name, handler);
+                                }
+                            });
                         } else {
-                            handler.handle(kafkaResult);
+                            updateLagExporterIfConfigured(namespace, name, handler);
                         }
                     }
                 });
@@ -705,6 +1085,62 @@ public class KafkaClusterOperations extends AbstractClusterOperations<KafkaClust
         });
     }
 
+    private void updateLagExporterIfConfigured(String namespace, String name, Handler<AsyncResult<Void>> handler) {
+        ClusterOperation<LagExporter> clusterOp = updateLagExporter.getCluster(namespace, name);
+        if (clusterOp.cluster() != null) {
+            execute(namespace, name, updateLagExporter, handler);
+        } else if (deleteLagExporter.getCluster(namespace, name).cluster() != null) {
+            // the lag exporter configuration was removed from the cluster ConfigMap
+            execute(namespace, name, deleteLagExporter, handler);
+        } else {
+            handler.handle(Future.succeededFuture());
+        }
+    }
+
+    /**
+     * @return The number of pods of the given cluster which exist, counting from the first one.
+     */
+    private int existingPods(AbstractCluster cluster, String namespace) {
+        int pods = 0;
+        while (podOperations.getUncached(namespace, cluster.getPodName(pods)) != null) {
+            pods++;
+        }
+        return pods;
+    }
+
+    /**
+     * Record the desired state which has been applied on the StatefulSet of the given cluster, so that following
+     * reconciliations can skip the cluster until its ConfigMap, the generated resources or the StatefulSet change.
+     * Failing to record it only means that the next reconciliation can't skip the cluster, so it isn't an error.
+     * @param cluster The cluster
+     * @param namespace The namespace of the cluster
+     * @param desiredStateHash The hash of the desired state, or null if it's already recorded
+     */
+    private Future<Void> recordDesiredState(AbstractCluster cluster, String namespace, String desiredStateHash) {
+        if (desiredStateHash == null || cluster.getConfigMapRevision() == null) {
+            return Future.succeededFuture();
+        }
+
+        StatefulSet ss = statefulSetOperations.getUncached(namespace, cluster.getName());
+        if (ss == null) {
+            return Future.succeededFuture();
+        }
+        // the annotations don't change the spec, so the generation stays the same
+        if (ss.getMetadata().getAnnotations() == null) {
+            ss.getMetadata().setAnnotations(new HashMap<>());
+        }
+        ss.getMetadata().getAnnotations().putAll(cluster.getDesiredStateAnnotations(desiredStateHash, ss.getMetadata().getGeneration()));
+
+        Future<Void> fut = Future.future();
+        statefulSetOperations.patch(namespace, cluster.getName(), false, ss).setHandler(res -> {
+            if (res.failed()) {
+                log.warn("Failed to record the desired state of {} in namespace {}", cluster.getName(), namespace, res.cause());
+            }
+            fut.complete();
+        });
+        return fut;
+    }
+
     @Override
     public String clusterType() {
         return CLUSTER_TYPE_KAFKA;
@@ -6,9 +6,13 @@ package io.strimzi.controller.cluster.operations.cluster;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.strimzi.common.ProfilingEvent;
+import io.strimzi.controller.cluster.ClusterControllerConfig;
+import io.strimzi.controller.cluster.operations.connect.KafkaConnectAdminOperations;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.operations.resource.DeploymentOperations;
 import io.strimzi.controller.cluster.operations.resource.ServiceOperations;
+import io.strimzi.controller.cluster.resources.Autoscaling;
 import io.strimzi.controller.cluster.resources.ClusterDiffResult;
 import io.strimzi.controller.cluster.resources.KafkaConnectCluster;
 import io.vertx.core.AsyncResult;
@@ -32,6 +36,7 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
     private static final String CLUSTER_TYPE_CONNECT = "kafka-connect";
     private final ServiceOperations serviceOperations;
     private final DeploymentOperations deploymentOperations;
+    private final KafkaConnectAdminOperations kafkaConnectAdminOperations;
 
     /**
      * @param vertx The Vertx instance
@@ -44,9 +49,27 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
                                          ConfigMapOperations configMapOperations,
                                          DeploymentOperations deploymentOperations,
                                          ServiceOperations serviceOperations) {
+        this(vertx, isOpenShift, configMapOperations, deploymentOperations, serviceOperations,
+                new KafkaConnectAdminOperations(vertx, ClusterControllerConfig.DEFAULT_OPERATION_TIMEOUT_MS));
+    }
+
+    /**
+     * @param vertx The Vertx instance
+     * @param isOpenShift Whether we're running with OpenShift
+     * @param configMapOperations For operating on ConfigMaps
+     * @param deploymentOperations For operating on Deployments
+     * @param serviceOperations For operating on Services
+     * @param kafkaConnectAdminOperations For operating on the running Kafka Connect workers
+     */
+    public KafkaConnectClusterOperations(Vertx vertx, boolean isOpenShift,
+                                         ConfigMapOperations configMapOperations,
+                                         DeploymentOperations deploymentOperations,
+                                         ServiceOperations serviceOperations,
+                                         KafkaConnectAdminOperations kafkaConnectAdminOperations) {
         super(vertx, isOpenShift, "Kafka Connect", configMapOperations);
         this.serviceOperations = serviceOperations;
         this.deploymentOperations = deploymentOperations;
+        this.kafkaConnectAdminOperations = kafkaConnectAdminOperations;
     }
 
     private final CompositeOperation<KafkaConnectCluster> create = new CompositeOperation<KafkaConnectCluster>() {
@@ -127,6 +150,7 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
                     .compose(i -> patchService(connect, namespace, diff))
                     .compose(i -> patchDeployment(connect, namespace, diff))
                     .compose(i -> scaleUp(connect, namespace, diff))
+                    .compose(i -> autoscale(connect, namespace))
                     .compose(chainFuture::complete, chainFuture);
 
             return chainFuture;
@@ -142,7 +166,11 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
                 connect = KafkaConnectCluster.fromConfigMap(connectConfigMap);
                 Deployment dep = deploymentOperations.get(namespace, connect.getName());
                 log.info("Updating Kafka Connect cluster {} in namespace {}", connect.getName(), namespace);
+                ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, CLUSTER_TYPE_CONNECT)
+                        .with("namespace", namespace)
+                        .with("name", connect.getName());
                 diff = connect.diff(dep);
+                diffEvent.end();
             } else  {
                 throw new IllegalStateException("ConfigMap " + name + " doesn't exist anymore in namespace " + namespace);
             }
@@ -163,7 +191,7 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
     private Future<Void> patchService(KafkaConnectCluster connect, String namespace, ClusterDiffResult diff) {
         if (diff.isDifferent()) {
             return serviceOperations.patch(namespace, connect.getName(),
-                connect.patchService(serviceOperations.get(namespace, connect.getName())));
+                connect.patchService(serviceOperations.getUncached(namespace, connect.getName())));
         } else {
             return Future.succeededFuture();
         }
@@ -172,7 +200,7 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
     private Future<Void> patchDeployment(KafkaConnectCluster connect, String namespace, ClusterDiffResult diff) {
         if (diff.isDifferent()) {
             return deploymentOperations.patch(namespace, connect.getName(),
-                    connect.patchDeployment(deploymentOperations.get(namespace, connect.getName())));
+                    connect.patchDeployment(deploymentOperations.getUncached(namespace, connect.getName())));
         } else {
             return Future.succeededFuture();
         }
@@ -186,6 +214,57 @@ public class KafkaConnectClusterOperations extends AbstractClusterOperations<Kaf
         }
     }
 
+    /**
+     * Scale the workers to follow the load on the cluster, if it's autoscaled.
+     * The cluster is only scaled once all its workers are ready, so the load isn't read during a rebalance
+     * of the tasks. Failing to read the load doesn't fail the update: the cluster is simply left as it is
+     * until the next reconciliation.
+     */
+    private Future<Void> autoscale(KafkaConnectCluster connect, String namespace) {
+        Autoscaling autoscaling = connect.getAutoscaling();
+        if (autoscaling == null) {
+            return Future.succeededFuture();
+        }
+        Deployment dep = deploymentOperations.getUncached(namespace, connect.getName());
+        int current = dep.getSpec().getReplicas();
+        Integer ready = dep.getStatus() != null ? dep.getStatus().getReadyReplicas() : null;
+        if (ready == null || ready != current) {
+            log.info("Not autoscaling Kafka Connect cluster {} in namespace {}: {} of its {} workers are ready",
+                    connect.getName(), namespace, ready, current);
+            return Future.succeededFuture();
+        }
+        long sinceLastScaleMs = System.currentTimeMillis() - KafkaConnectCluster.getLastScaleTime(dep);
+
+        Future<Void> result = Future.future();
+        kafkaConnectAdminOperations.load(namespace, connect).setHandler(load -> {
+            if (load.failed()) {
+                log.warn("Not autoscaling Kafka Connect cluster {} in namespace {}: unable to get its load",
+                        connect.getName(), namespace, load.cause());
+                result.complete();
+                return;
+            }
+            int desired = autoscaling.desiredReplicas(load.result().getTasks(), load.result().getLag());
+            int next = autoscaling.nextReplicas(current, desired, sinceLastScaleMs);
+            if (next == current) {
+                log.debug("Kafka Connect cluster {} in namespace {} with {}: keeping {} workers (desired {})",
+                        connect.getName(), namespace, load.result(), current, desired);
+                result.complete();
+                return;
+            }
+            log.info("Autoscaling Kafka Connect cluster {} in namespace {} with {} from {} to {} workers",
+                    connect.getName(), namespace, load.result(), current, next);
+            Future<Void> scaled = next > current
+                    ? deploymentOperations.scaleUp(namespace, connect.getName(), next)
+                    : deploymentOperations.scaleDown(namespace, connect.getName(), next);
+            scaled.compose(i -> {
+                Deployment scaledDep = deploymentOperations.getUncached(namespace, connect.getName());
+                KafkaConnectCluster.setLastScaleTime(scaledDep, System.currentTimeMillis());
+                return deploymentOperations.patch(namespace, connect.getName(), scaledDep);
+            }).setHandler(result.completer());
+        });
+        return result;
+    }
+
     @Override
     protected void create(String namespace, String name, Handler<AsyncResult<Void>> handler) {
         execute(namespace, name, create, handler);
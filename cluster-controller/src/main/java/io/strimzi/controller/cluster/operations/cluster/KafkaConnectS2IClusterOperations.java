@@ -8,6 +8,7 @@ import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.openshift.api.model.BuildConfig;
 import io.fabric8.openshift.api.model.DeploymentConfig;
 import io.fabric8.openshift.api.model.ImageStream;
+import io.strimzi.common.ProfilingEvent;
 import io.strimzi.controller.cluster.operations.resource.BuildConfigOperations;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.operations.resource.DeploymentConfigOperations;
@@ -194,7 +195,11 @@ public class KafkaConnectS2IClusterOperations extends AbstractClusterOperations<
                 ImageStream sis = imagesStreamOperations.get(namespace, connect.getSourceImageStreamName());
                 ImageStream tis = imagesStreamOperations.get(namespace, connect.getName());
                 BuildConfig bc = buildConfigOperations.get(namespace, connect.getName());
+                ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, CLUSTER_TYPE_CONNECT_S2I)
+                        .with("namespace", namespace)
+                        .with("name", connect.getName());
                 diff = connect.diff(dep, sis, tis, bc);
+                diffEvent.end();
             } else  {
                 throw new IllegalStateException("ConfigMap " + name + " doesn't exist anymore in namespace " + namespace);
             }
@@ -214,7 +219,7 @@ public class KafkaConnectS2IClusterOperations extends AbstractClusterOperations<
         private Future<Void> patchService(KafkaConnectS2ICluster connect, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return serviceOperations.patch(namespace, connect.getName(),
-                        connect.patchService(serviceOperations.get(namespace, connect.getName())));
+                        connect.patchService(serviceOperations.getUncached(namespace, connect.getName())));
             } else {
                 return Future.succeededFuture();
             }
@@ -223,25 +228,25 @@ public class KafkaConnectS2IClusterOperations extends AbstractClusterOperations<
         private Future<Void> patchDeploymentConfig(KafkaConnectS2ICluster connect, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return deploymentConfigOperations.patch(namespace, connect.getName(),
-                        connect.patchDeploymentConfig(deploymentConfigOperations.get(namespace, connect.getName())));
+                        connect.patchDeploymentConfig(deploymentConfigOperations.getUncached(namespace, connect.getName())));
             } else {
                 return Future.succeededFuture();
             }
         }
 
         private Future<Void> patchBuildConfig(KafkaConnectS2ICluster connect, String namespace, ClusterDiffResult diff) {
-            if (diff.isDifferent()) {
+            if (diff.isBuildChanged()) {
                 return buildConfigOperations.patch(namespace, connect.getName(),
-                        connect.patchBuildConfig(buildConfigOperations.get(namespace, connect.getName())));
+                        connect.patchBuildConfig(buildConfigOperations.getUncached(namespace, connect.getName())));
             } else {
                 return Future.succeededFuture();
             }
         }
 
         private Future<Void> patchSourceImageStream(KafkaConnectS2ICluster connect, String namespace, ClusterDiffResult diff) {
-            if (diff.isDifferent()) {
+            if (diff.isBuildChanged()) {
                 return imagesStreamOperations.patch(namespace, connect.getSourceImageStreamName(),
-                        connect.patchSourceImageStream(imagesStreamOperations.get(namespace, connect.getSourceImageStreamName())));
+                        connect.patchSourceImageStream(imagesStreamOperations.getUncached(namespace, connect.getSourceImageStreamName())));
             } else {
                 return Future.succeededFuture();
             }
@@ -250,7 +255,7 @@ public class KafkaConnectS2IClusterOperations extends AbstractClusterOperations<
         private Future<Void> patchTargetImageStream(KafkaConnectS2ICluster connect, String namespace, ClusterDiffResult diff) {
             if (diff.isDifferent()) {
                 return imagesStreamOperations.patch(namespace, connect.getName(),
-                        connect.patchTargetImageStream(imagesStreamOperations.get(namespace, connect.getName())));
+                        connect.patchTargetImageStream(imagesStreamOperations.getUncached(namespace, connect.getName())));
             } else {
                 return Future.succeededFuture();
             }
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.cluster;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A keyed work queue for reconciliations, where the key identifies a cluster.</p>
+ *
+ * <ul>
+ * <li>Requests for a key which is already waiting to run are collapsed into the waiting one.</li>
+ * <li>A request for a key which is running is deferred until the running one completes, so at most one
+ *     action per key runs at once and the latest request always runs after the latest change.</li>
+ * <li>An action which fails is retried after an exponential back-off (doubling from the initial back-off
+ *     up to the maximum back-off), until it succeeds or has failed {@link #MAX_CONSECUTIVE_FAILURES} consecutive
+ *     times, so that a cluster which can't be reconciled (for example because its ConfigMap is invalid) is only
+ *     retried on the next request for it. Requests received while backing off are collapsed into the retry.</li>
+ * <li>At most the given number of actions run concurrently, the others wait in FIFO order.</li>
+ * <li>The result handler of a request is called with the outcome of the first run after the request,
+ *     so the handlers of collapsed requests are all called with the outcome of the same run.</li>
+ * </ul>
+ *
+ * <p>The queue can be shared by several {@link AbstractClusterOperations}, so that the limit on concurrent
+ * reconciliations applies to all the cluster types.</p>
+ */
+public class ReconciliationQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationQueue.class.getName());
+
+    /**
+     * The number of consecutive failures of an action after which it isn't retried anymore
+     */
+    static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+    private enum State {
+        /** Waiting for a free slot */
+        WAITING,
+        /** Running */
+        RUNNING,
+        /** Waiting for the back-off timer after a failure */
+        BACKING_OFF
+    }
+
+    private static class Item {
+        private final String key;
+        private Handler<Future<Void>> action;
+        private State state = State.WAITING;
+        private boolean requeued;
+        private int failures;
+        private List<Handler<AsyncResult<Void>>> waitingHandlers = new ArrayList<>();
+        private List<Handler<AsyncResult<Void>>> runningHandlers = new ArrayList<>();
+
+        Item(String key, Handler<Future<Void>> action) {
+            this.key = key;
+            this.action = action;
+        }
+    }
+
+    private final Vertx vertx;
+    private final int maxConcurrent;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Map<String, Item> items = new HashMap<>();
+    private final Deque<Item> waiting = new ArrayDeque<>();
+    private int running = 0;
+
+    /**
+     * @param vertx The Vertx instance
+     * @param maxConcurrent The maximum number of actions running concurrently
+     * @param initialBackoffMs The delay in milliseconds before retrying an action which failed once
+     * @param maxBackoffMs The maximum delay in milliseconds before retrying an action which failed
+     */
+    public ReconciliationQueue(Vertx vertx, int maxConcurrent, long initialBackoffMs, long maxBackoffMs) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("The maximum number of concurrent reconciliations must be positive");
+        }
+        if (initialBackoffMs <= 0 || maxBackoffMs < initialBackoffMs) {
+            throw new IllegalArgumentException("The back-off must be positive and not greater than the maximum back-off");
+        }
+        this.vertx = vertx;
+        this.maxConcurrent = maxConcurrent;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Request that the given {@code action} runs for the given {@code key}.
+     * When the {@code action} is complete it must complete its argument future; failing it schedules a retry.
+     * @param key The key, identifying the cluster
+     * @param action The action
+     */
+    public void enqueue(String key, Handler<Future<Void>> action) {
+        enqueue(key, action, null);
+    }
+
+    /**
+     * Request that the given {@code action} runs for the given {@code key}, calling the given {@code resultHandler}
+     * with the outcome of the first run after the request.
+     * When the {@code action} is complete it must complete its argument future; failing it schedules a retry.
+     * @param key The key, identifying the cluster
+     * @param action The action
+     * @param resultHandler The result handler (or null)
+     */
+    public void enqueue(String key, Handler<Future<Void>> action, Handler<AsyncResult<Void>> resultHandler) {
+        synchronized (this) {
+            Item item = items.get(key);
+            if (item == null) {
+                item = new Item(key, action);
+                items.put(key, item);
+                waiting.add(item);
+                log.debug("Queued reconciliation {}", key);
+            } else {
+                item.action = action;
+                if (item.state == State.RUNNING) {
+                    item.requeued = true;
+                    log.debug("Reconciliation {} is running, it will run again once complete", key);
+                } else {
+                    log.debug("Reconciliation {} is already queued", key);
+                }
+            }
+            if (resultHandler != null) {
+                item.waitingHandlers.add(resultHandler);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * @return The number of keys which are waiting, running or backing off
+     */
+    public synchronized int size() {
+        return items.size();
+    }
+
+    /**
+     * @return The number of actions currently running
+     */
+    public synchronized int running() {
+        return running;
+    }
+
+    /**
+     * The delay before retrying an action which failed the given number of consecutive times.
+     */
+    long backoffMs(int failures) {
+        long delay = initialBackoffMs;
+        for (int i = 1; i < failures && delay < maxBackoffMs; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxBackoffMs);
+    }
+
+    private void dispatch() {
+        List<Item> toRun = new ArrayList<>();
+        List<Handler<Future<Void>>> actions = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrent && !waiting.isEmpty()) {
+                Item item = waiting.poll();
+                item.state = State.RUNNING;
+                item.runningHandlers = item.waitingHandlers;
+                item.waitingHandlers = new ArrayList<>();
+                running++;
+                toRun.add(item);
+                actions.add(item.action);
+            }
+        }
+        for (int i = 0; i < toRun.size(); i++) {
+            Item item = toRun.get(i);
+            Handler<Future<Void>> action = actions.get(i);
+            vertx.runOnContext(ignored -> run(item, action));
+        }
+    }
+
+    private void run(Item item, Handler<Future<Void>> action) {
+        Future<Void> fut = Future.future();
+        fut.setHandler(ar -> completed(item, ar));
+        try {
+            action.handle(fut);
+        } catch (Throwable t) {
+            log.error("Reconciliation {} threw", item.key, t);
+            fut.tryFail(t);
+        }
+    }
+
+    private void completed(Item item, AsyncResult<Void> result) {
+        List<Handler<AsyncResult<Void>>> handlers;
+        synchronized (this) {
+            running--;
+            handlers = item.runningHandlers;
+            item.runningHandlers = new ArrayList<>();
+            if (result.succeeded()) {
+                item.failures = 0;
+                if (item.requeued) {
+                    item.requeued = false;
+                    item.state = State.WAITING;
+                    waiting.add(item);
+                } else {
+                    items.remove(item.key);
+                }
+            } else if (++item.failures >= MAX_CONSECUTIVE_FAILURES) {
+                if (item.requeued) {
+                    // a new request was received while running, which gets its own attempts
+                    log.warn("Reconciliation {} failed {} times, running it again for a later request", item.key, item.failures);
+                    item.failures = 0;
+                    item.requeued = false;
+                    item.state = State.WAITING;
+                    waiting.add(item);
+                } else {
+                    log.error("Reconciliation {} failed {} times, giving up until it's requested again", item.key, item.failures);
+                    items.remove(item.key);
+                }
+            } else {
+                item.requeued = false;
+                item.state = State.BACKING_OFF;
+                long delay = backoffMs(item.failures);
+                log.warn("Reconciliation {} failed {} time(s), retrying in {} ms", item.key, item.failures, delay);
+                vertx.setTimer(delay, timer -> retry(item));
+            }
+        }
+        for (Handler<AsyncResult<Void>> handler : handlers) {
+            handler.handle(result);
+        }
+        dispatch();
+    }
+
+    private void retry(Item item) {
+        synchronized (this) {
+            item.state = State.WAITING;
+            waiting.add(item);
+        }
+        dispatch();
+    }
+}
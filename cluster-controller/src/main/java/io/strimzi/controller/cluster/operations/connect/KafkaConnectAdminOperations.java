@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.connect;
+
+import io.strimzi.common.ProfilingEvent;
+import io.strimzi.controller.cluster.resources.KafkaConnectCluster;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Operations on a running Kafka Connect cluster: its connectors and tasks are read through its REST API,
+ * and the lag of its sink connectors through the committed offsets of their consumer groups.
+ */
+public class KafkaConnectAdminOperations {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaConnectAdminOperations.class);
+
+    /** The prefix Kafka Connect gives the consumer group of a sink connector to the name of the connector */
+    private static final String SINK_GROUP_PREFIX = "connect-";
+
+    protected final Vertx vertx;
+    protected final long operationTimeoutMs;
+    private final WorkerExecutor workerExecutor;
+
+    /**
+     * The load on a Kafka Connect cluster.
+     */
+    public static class Load {
+        private final int tasks;
+        private final long lag;
+
+        public Load(int tasks, long lag) {
+            this.tasks = tasks;
+            this.lag = lag;
+        }
+
+        /**
+         * @return The number of tasks of all the connectors.
+         */
+        public int getTasks() {
+            return tasks;
+        }
+
+        /**
+         * @return The total lag in records of the sink connectors.
+         */
+        public long getLag() {
+            return lag;
+        }
+
+        @Override
+        public String toString() {
+            return tasks + " tasks and a sink lag of " + lag + " records";
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param vertx The vertx instance.
+     * @param operationTimeoutMs The timeout for each REST API request.
+     */
+    public KafkaConnectAdminOperations(Vertx vertx, long operationTimeoutMs) {
+        this.vertx = vertx;
+        this.operationTimeoutMs = operationTimeoutMs;
+        this.workerExecutor = vertx.createSharedWorkerExecutor("kafka-connect-admin-ops-pool");
+    }
+
+    /**
+     * Asynchronously get the load on the given Kafka Connect cluster: the number of tasks of its connectors, and the
+     * total lag of its sink connectors over the partitions of their topics.
+     * @param namespace The namespace of the cluster.
+     * @param connect The cluster.
+     */
+    public Future<Load> load(String namespace, KafkaConnectCluster connect) {
+        Future<Load> fut = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.API_CALL, "KafkaConnect")
+                .with("operation", "load")
+                .with("namespace", namespace)
+                .with("name", connect.getCluster());
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost(KafkaConnectCluster.restApiHost(namespace, connect.getCluster()))
+                .setDefaultPort(KafkaConnectCluster.REST_API_PORT));
+
+        get(client, "/connectors").compose(body -> {
+            JsonArray connectors = body.toJsonArray();
+            List<Future> futures = new ArrayList<>(2 * connectors.size());
+            for (int i = 0; i < connectors.size(); i++) {
+                String connector = connectors.getString(i);
+                futures.add(get(client, "/connectors/" + connector + "/status"));
+                futures.add(get(client, "/connectors/" + connector + "/config"));
+            }
+            return CompositeFuture.all(futures);
+        }).compose(responses -> {
+            int tasks = 0;
+            Map<String, List<String>> sinkTopics = new HashMap<>();
+            for (int i = 0; i < responses.size(); i += 2) {
+                JsonObject status = responses.<Buffer>resultAt(i).toJsonObject();
+                JsonObject config = responses.<Buffer>resultAt(i + 1).toJsonObject();
+                tasks += status.getJsonArray("tasks", new JsonArray()).size();
+                if ("sink".equals(status.getString("type"))) {
+                    String topics = config.getString("topics");
+                    if (topics != null) {
+                        List<String> list = new ArrayList<>();
+                        for (String topic : topics.split(",")) {
+                            if (!topic.trim().isEmpty()) {
+                                list.add(topic.trim());
+                            }
+                        }
+                        sinkTopics.put(status.getString("name"), list);
+                    } else {
+                        log.debug("Sink connector {} has no topics list, so its lag isn't known", status.getString("name"));
+                    }
+                }
+            }
+            int totalTasks = tasks;
+            return sinkLag(connect.getBootstrapServers(), sinkTopics).map(lag -> new Load(totalTasks, lag));
+        }).setHandler(res -> {
+            client.close();
+            event.ending(fut.completer()).handle(res);
+        });
+        return fut;
+    }
+
+    /**
+     * Asynchronously GET the given path of the REST API, returning a future for the response body.
+     */
+    private Future<Buffer> get(HttpClient client, String path) {
+        Future<Buffer> fut = Future.future();
+        client.get(path, response -> {
+            if (response.statusCode() == 200) {
+                response.bodyHandler(fut::complete);
+            } else {
+                fut.fail("GET " + path + " returned " + response.statusCode() + " " + response.statusMessage());
+            }
+        }).exceptionHandler(fut::tryFail)
+                .setTimeout(operationTimeoutMs)
+                .end();
+        return fut;
+    }
+
+    /**
+     * Asynchronously get the total lag of the given sink connectors.
+     * The consumer never subscribes to the topics, so it doesn't join the consumer groups of the connectors.
+     * @param bootstrapServers The bootstrap servers of the Kafka cluster of the Kafka Connect cluster.
+     * @param sinkTopics The topics of each sink connector.
+     */
+    private Future<Long> sinkLag(String bootstrapServers, Map<String, List<String>> sinkTopics) {
+        Future<Long> fut = Future.future();
+        if (sinkTopics.isEmpty()) {
+            fut.complete(0L);
+            return fut;
+        }
+        workerExecutor.<Long>executeBlocking(
+            future -> {
+                long lag = 0;
+                try {
+                    for (Map.Entry<String, List<String>> connector : sinkTopics.entrySet()) {
+                        lag += sinkLag(bootstrapServers, connector.getKey(), connector.getValue());
+                    }
+                    future.complete(lag);
+                } catch (Exception e) {
+                    log.error("Caught exception while getting the lag of sink connectors {}", sinkTopics.keySet(), e);
+                    future.fail(e);
+                }
+            },
+            false,
+            fut.completer()
+        );
+        return fut;
+    }
+
+    /**
+     * The lag of the given sink connector: over the partitions of its topics, the number of records after the
+     * offset committed by its consumer group, or after the start of the partition if it hasn't committed any offset.
+     */
+    protected long sinkLag(String bootstrapServers, String connector, List<String> topics) {
+        Properties props = new Properties();
+        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, SINK_GROUP_PREFIX + connector);
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (String topic : topics) {
+                List<PartitionInfo> infos = consumer.partitionsFor(topic);
+                if (infos != null) {
+                    for (PartitionInfo info : infos) {
+                        partitions.add(new TopicPartition(info.topic(), info.partition()));
+                    }
+                }
+            }
+            Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            long lag = 0;
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata committed = consumer.committed(partition);
+                long position = committed != null ? committed.offset() : beginningOffsets.get(partition);
+                lag += Math.max(0, endOffsets.get(partition) - position);
+            }
+            log.debug("Sink connector {} has a lag of {} records over {} partitions", connector, lag, partitions.size());
+            return lag;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one of Kafka's {@code kafka.admin} commands, for the operations which the admin client of this version of
+ * Kafka doesn't support.
+ *
+ * <p>The command runs in a separate JVM because it reports errors on stdout rather than throwing,
+ * and stdout can't be captured in isolation within this JVM.</p>
+ */
+abstract class AdminCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminCommand.class);
+
+    private final String mainClass;
+    private final String zookeeper;
+    private final long timeoutMs;
+
+    /**
+     * @param mainClass The main class of the command
+     * @param zookeeper The Zookeeper connection string of the Kafka cluster
+     * @param timeoutMs The timeout for each run of the command
+     */
+    AdminCommand(String mainClass, String zookeeper, long timeoutMs) {
+        this.mainClass = mainClass;
+        this.zookeeper = zookeeper;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * The command line for running the command with the given arguments.
+     */
+    protected List<String> commandLine(List<String> args) {
+        List<String> commandLine = new ArrayList<>();
+        // the same java executable and classpath as this JVM
+        commandLine.add(System.getProperty("java.home") + "/bin/java");
+        commandLine.add("-cp");
+        commandLine.add(System.getProperty("java.class.path"));
+        commandLine.add(mainClass);
+        commandLine.add("--zookeeper");
+        commandLine.add(zookeeper);
+        commandLine.addAll(args);
+        return commandLine;
+    }
+
+    /**
+     * Run the command with the given arguments, returning the lines of its stdout.
+     */
+    protected List<String> run(List<String> args) throws IOException, InterruptedException {
+        List<String> commandLine = commandLine(args);
+        // stdout and stderr go to files: reading both pipes without deadlocking would need a thread for each
+        File stdout = File.createTempFile("admin-command-", ".out");
+        File stderr = File.createTempFile("admin-command-", ".err");
+        try {
+            Process process = new ProcessBuilder(commandLine)
+                    .redirectOutput(stdout)
+                    .redirectError(stderr)
+                    .start();
+            log.debug("Started process {} with command line {}", process, commandLine);
+            process.getOutputStream().close();
+            if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IllegalStateException("Command " + commandLine + " didn't complete within " + timeoutMs + " ms");
+            }
+            if (process.exitValue() != 0) {
+                log.warn("Command {} exited with status {}: {}", commandLine, process.exitValue(),
+                        new String(Files.readAllBytes(stderr.toPath()), StandardCharsets.UTF_8));
+            }
+            return Files.readAllLines(stdout.toPath(), StandardCharsets.UTF_8);
+        } finally {
+            delete(stdout);
+            delete(stderr);
+        }
+    }
+
+    /**
+     * Write the given JSON to a new temporary file, for passing to the command.
+     */
+    static File writeJson(String prefix, String json) throws IOException {
+        File file = File.createTempFile(prefix, ".json");
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    static void delete(File file) {
+        if (!file.delete()) {
+            log.warn("Unable to delete temporary file {}", file);
+        }
+    }
+}
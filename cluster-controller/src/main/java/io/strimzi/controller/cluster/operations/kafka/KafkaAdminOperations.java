@@ -0,0 +1,533 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.kafka;
+
+import io.strimzi.common.ProfilingEvent;
+import io.strimzi.controller.cluster.operations.resource.TimeoutException;
+import io.strimzi.controller.cluster.resources.KafkaCluster;
+import io.strimzi.controller.cluster.resources.Rebalancing;
+import io.strimzi.controller.cluster.resources.ZookeeperCluster;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.ListTopicsOptions;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.requests.DescribeLogDirsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Operations on a running Kafka cluster, made through the Kafka admin client.
+ * The admin client is blocking, so the operations are executed on a worker thread.
+ */
+public class KafkaAdminOperations {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaAdminOperations.class);
+
+    /**
+     * The name of the broker config resource for the cluster-wide default configuration,
+     * which applies to all the brokers (including those added later)
+     */
+    private static final String CLUSTER_DEFAULT_BROKER = "";
+
+    /** The interval in milliseconds between checks of the progress of a partition reassignment */
+    private static final long REASSIGNMENT_POLL_MS = 10_000;
+
+    /**
+     * The fraction of the storage capacity of a broker which can be used by the replicas moved to it when draining,
+     * leaving room for the logs to grow
+     */
+    private static final double MAX_STORAGE_USAGE = 0.85;
+
+    protected final Vertx vertx;
+    protected final long operationTimeoutMs;
+    private final WorkerExecutor workerExecutor;
+
+    /**
+     * Constructor.
+     * @param vertx The vertx instance.
+     * @param operationTimeoutMs The timeout for each admin client operation.
+     */
+    public KafkaAdminOperations(Vertx vertx, long operationTimeoutMs) {
+        this.vertx = vertx;
+        this.operationTimeoutMs = operationTimeoutMs;
+        this.workerExecutor = vertx.createSharedWorkerExecutor("kafka-admin-ops-pool");
+    }
+
+    /**
+     * Create an admin client for the given Kafka cluster.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     */
+    protected AdminClient adminClient(String namespace, String cluster) {
+        Properties props = new Properties();
+        props.setProperty(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, KafkaCluster.bootstrapServers(namespace, cluster));
+        props.setProperty(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, String.valueOf(operationTimeoutMs));
+        return AdminClient.create(props);
+    }
+
+    /**
+     * Asynchronously set the cluster-wide dynamic broker configuration of the given Kafka cluster to the given options,
+     * returning a future for the outcome.
+     * Options which were previously set dynamically but aren't given revert to the brokers' static configuration.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     * @param options The dynamic broker configuration options.
+     */
+    public Future<Void> alterBrokerConfigs(String namespace, String cluster, Map<String, String> options) {
+        Future<Void> fut = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.API_CALL, "Kafka")
+                .with("operation", "alterConfigs")
+                .with("namespace", namespace)
+                .with("name", cluster);
+        workerExecutor.executeBlocking(
+            future -> {
+                List<ConfigEntry> entries = new ArrayList<>(options.size());
+                for (Map.Entry<String, String> option : options.entrySet()) {
+                    entries.add(new ConfigEntry(option.getKey(), option.getValue()));
+                }
+                ConfigResource resource = new ConfigResource(ConfigResource.Type.BROKER, CLUSTER_DEFAULT_BROKER);
+                try (AdminClient admin = adminClient(namespace, cluster)) {
+                    log.info("Updating dynamic broker configuration of Kafka cluster {} in namespace {} to {}", cluster, namespace, options);
+                    admin.alterConfigs(Collections.singletonMap(resource, new Config(entries)))
+                            .all().get(operationTimeoutMs, TimeUnit.MILLISECONDS);
+                    log.info("Dynamic broker configuration of Kafka cluster {} in namespace {} has been updated", cluster, namespace);
+                    future.complete();
+                } catch (Exception e) {
+                    log.error("Caught exception while updating dynamic broker configuration of Kafka cluster {} in namespace {}", cluster, namespace, e);
+                    future.fail(e);
+                }
+            },
+            false,
+            event.ending(fut.completer())
+        );
+        return fut;
+    }
+
+    /**
+     * Create the command for reassigning the partitions of the given Kafka cluster.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     */
+    protected ReassignPartitionsCommand reassignPartitionsCommand(String namespace, String cluster) {
+        return new ReassignPartitionsCommand(ZookeeperCluster.zookeeperConnect(namespace, cluster), operationTimeoutMs);
+    }
+
+    /**
+     * Create the command for electing the preferred replicas as the partition leaders of the given Kafka cluster.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     */
+    protected PreferredReplicaElectionCommand preferredReplicaElectionCommand(String namespace, String cluster) {
+        return new PreferredReplicaElectionCommand(ZookeeperCluster.zookeeperConnect(namespace, cluster), operationTimeoutMs);
+    }
+
+    /**
+     * Asynchronously move partition replicas between the brokers of the given Kafka cluster so that they all
+     * have the same number of replicas (give or take one), returning a future which completes once the
+     * moved replicas have caught up.
+     * The replication traffic of the moved replicas is limited to the throttle of the given {@code rebalancing}.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     * @param brokers The number of brokers in the cluster, which must all be running.
+     * @param scaledUp Whether brokers have just been added. Otherwise the replicas are only moved when some broker
+     *                 has none, which is the case when a rebalance after scaling up didn't complete.
+     * @param rebalancing The rebalancing configuration.
+     */
+    public Future<Void> rebalance(String namespace, String cluster, int brokers, boolean scaledUp, Rebalancing rebalancing) {
+        Future<Void> fut = Future.future();
+        Future<Void> reassigned = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.REASSIGNMENT, "Kafka")
+                .with("operation", "rebalance")
+                .with("namespace", namespace)
+                .with("name", cluster);
+        reassigned.setHandler(event.ending(fut.completer()));
+        ReassignPartitionsCommand command = reassignPartitionsCommand(namespace, cluster);
+        workerExecutor.<File>executeBlocking(
+            future -> {
+                try (AdminClient admin = adminClient(namespace, cluster)) {
+                    List<Integer> brokerIds = brokerIds(admin);
+                    if (brokerIds.size() < brokers) {
+                        future.fail(new IllegalStateException("Only " + brokerIds.size() + " of the " + brokers
+                                + " brokers of Kafka cluster " + cluster + " in namespace " + namespace + " are running"));
+                        return;
+                    }
+                    Map<TopicPartition, List<Integer>> current = assignment(admin);
+                    if (!scaledUp && !hasEmptyBroker(current, brokerIds)) {
+                        future.complete();
+                        return;
+                    }
+                    Map<TopicPartition, List<Integer>> reassignment = ReassignmentPlanner.balance(current, brokerIds);
+                    if (reassignment.isEmpty()) {
+                        log.info("Partition replicas of Kafka cluster {} in namespace {} are balanced", cluster, namespace);
+                        future.complete();
+                        return;
+                    }
+                    log.info("Reassigning {} partitions of Kafka cluster {} in namespace {} to balance them over brokers {}",
+                            reassignment.size(), cluster, namespace, brokerIds);
+                    future.complete(startReassignment(command, reassignment, rebalancing.getThrottle()));
+                } catch (Exception e) {
+                    log.error("Caught exception while rebalancing Kafka cluster {} in namespace {}", cluster, namespace, e);
+                    future.fail(e);
+                }
+            },
+            false,
+            res -> {
+                if (res.failed()) {
+                    reassigned.fail(res.cause());
+                } else if (res.result() == null) {
+                    reassigned.complete();
+                } else {
+                    awaitReassignment(namespace, cluster, command, res.result(),
+                            System.currentTimeMillis() + rebalancing.getTimeoutMs(), reassigned);
+                }
+            }
+        );
+        return fut;
+    }
+
+    /**
+     * Asynchronously move all the partition replicas off the brokers of the given Kafka cluster which are removed by
+     * scaling it down to the given number of brokers (those with the highest ids), returning a future which completes
+     * once the moved replicas have caught up and every partition is fully in sync and led by a remaining broker,
+     * so that the removed brokers can be stopped without making partitions under-replicated.
+     * The replication traffic of the moved replicas is limited to the throttle of the given {@code rebalancing}.
+     * Leadership moves off the removed brokers when the reassignment completes, to the first kept replica.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     * @param brokers The number of brokers remaining after scaling down.
+     * @param capacityBytes The storage capacity of each broker, or null if it isn't known (so isn't checked).
+     * @param rebalancing The rebalancing configuration.
+     * @return A future which fails without moving any replica if the remaining brokers can't hold all the replicas.
+     */
+    public Future<Void> drain(String namespace, String cluster, int brokers, Long capacityBytes, Rebalancing rebalancing) {
+        Future<Void> fut = Future.future();
+        Future<Void> drained = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.REASSIGNMENT, "Kafka")
+                .with("operation", "drain")
+                .with("namespace", namespace)
+                .with("name", cluster);
+        drained.setHandler(event.ending(fut.completer()));
+        ReassignPartitionsCommand command = reassignPartitionsCommand(namespace, cluster);
+        long deadline = System.currentTimeMillis() + rebalancing.getTimeoutMs();
+        workerExecutor.<File>executeBlocking(
+            future -> {
+                try (AdminClient admin = adminClient(namespace, cluster)) {
+                    List<Integer> remaining = new ArrayList<>(brokers);
+                    for (int i = 0; i < brokers; i++) {
+                        remaining.add(i);
+                    }
+                    Map<TopicPartition, List<Integer>> current = assignment(admin);
+                    Map<TopicPartition, List<Integer>> reassignment = ReassignmentPlanner.drain(current, remaining);
+                    if (reassignment.isEmpty()) {
+                        log.info("Brokers of Kafka cluster {} in namespace {} being removed have no partition replicas", cluster, namespace);
+                        future.complete();
+                        return;
+                    }
+                    if (capacityBytes != null) {
+                        checkCapacity(admin, current, reassignment, remaining, capacityBytes);
+                    }
+                    log.info("Reassigning {} partitions of Kafka cluster {} in namespace {} to move them off the brokers being removed",
+                            reassignment.size(), cluster, namespace);
+                    future.complete(startReassignment(command, reassignment, rebalancing.getThrottle()));
+                } catch (Exception e) {
+                    log.error("Caught exception while draining brokers of Kafka cluster {} in namespace {}", cluster, namespace, e);
+                    future.fail(e);
+                }
+            },
+            false,
+            res -> {
+                if (res.failed()) {
+                    drained.fail(res.cause());
+                } else {
+                    Future<Void> reassigned = Future.future();
+                    if (res.result() == null) {
+                        reassigned.complete();
+                    } else {
+                        awaitReassignment(namespace, cluster, command, res.result(), deadline, reassigned);
+                    }
+                    Predicate<TopicPartitionInfo> unsettled = partition -> partition.isr().size() < partition.replicas().size()
+                            || partition.leader() == null || partition.leader().id() >= brokers;
+                    reassigned.compose(i -> awaitNoPartition(namespace, cluster, "not in sync or led by a broker being removed",
+                            unsettled, deadline))
+                            .setHandler(drained.completer());
+                }
+            }
+        );
+        return fut;
+    }
+
+    /**
+     * Asynchronously wait for a restarted broker of the given Kafka cluster to catch up, returning a future which
+     * completes once none of the partitions it has a replica of are missing it from their in-sync replicas,
+     * and the election of the preferred replica as leader has been started for the partitions whose preferred
+     * replica it is, so that the broker takes back the leadership it lost when it was stopped.
+     * Restarting the next broker before this completes could make partitions under-replicated, or leave their
+     * leadership concentrated on the brokers which were restarted first.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     * @param brokerId The id of the restarted broker.
+     * @param timeoutMs How long to wait for the broker to catch up.
+     */
+    public Future<Void> restoreBroker(String namespace, String cluster, int brokerId, long timeoutMs) {
+        Future<Void> fut = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.READINESS_WAIT, "BrokerInSync")
+                .with("namespace", namespace)
+                .with("name", cluster)
+                .with("broker", brokerId);
+        awaitNoPartition(namespace, cluster, "under-replicated on broker " + brokerId,
+            partition -> containsBroker(partition.replicas(), brokerId) && !containsBroker(partition.isr(), brokerId),
+            System.currentTimeMillis() + timeoutMs)
+            .compose(i -> electPreferredLeaders(namespace, cluster, brokerId))
+            .setHandler(event.ending(fut.completer()));
+        return fut;
+    }
+
+    /**
+     * Start the election of the given broker as the leader of the partitions whose preferred replica it is,
+     * but which are led by another broker.
+     */
+    private Future<Void> electPreferredLeaders(String namespace, String cluster, int brokerId) {
+        Future<Void> fut = Future.future();
+        PreferredReplicaElectionCommand command = preferredReplicaElectionCommand(namespace, cluster);
+        workerExecutor.executeBlocking(
+            future -> {
+                try (AdminClient admin = adminClient(namespace, cluster)) {
+                    List<TopicPartition> partitions = new ArrayList<>();
+                    for (TopicDescription description : describeTopics(admin)) {
+                        for (TopicPartitionInfo partition : description.partitions()) {
+                            if (!partition.replicas().isEmpty() && partition.replicas().get(0).id() == brokerId
+                                    && (partition.leader() == null || partition.leader().id() != brokerId)) {
+                                partitions.add(new TopicPartition(description.name(), partition.partition()));
+                            }
+                        }
+                    }
+                    if (!partitions.isEmpty()) {
+                        log.info("Electing broker {} as the leader of {} partitions of Kafka cluster {} in namespace {}",
+                                brokerId, partitions.size(), cluster, namespace);
+                        File file = PreferredReplicaElectionCommand.writePartitions(partitions);
+                        try {
+                            command.execute(file);
+                        } finally {
+                            AdminCommand.delete(file);
+                        }
+                    }
+                    future.complete();
+                } catch (IllegalStateException e) {
+                    // the broker stays in sync, it just doesn't lead its partitions until the controller rebalances leadership
+                    log.warn("Unable to elect broker {} as the leader of its preferred partitions of Kafka cluster {} in namespace {}: {}",
+                            brokerId, cluster, namespace, e.getMessage());
+                    future.complete();
+                } catch (Exception e) {
+                    log.error("Caught exception while electing preferred leaders of Kafka cluster {} in namespace {}", cluster, namespace, e);
+                    future.fail(e);
+                }
+            },
+            false,
+            fut.completer()
+        );
+        return fut;
+    }
+
+    /**
+     * Refuse the given reassignment if some remaining broker would use more than {@link #MAX_STORAGE_USAGE}
+     * of the given capacity once it's complete.
+     */
+    private void checkCapacity(AdminClient admin, Map<TopicPartition, List<Integer>> current,
+                               Map<TopicPartition, List<Integer>> reassignment, List<Integer> remaining,
+                               long capacityBytes) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+        Map<Integer, Long> brokerBytes = new HashMap<>();
+        Map<TopicPartition, Long> partitionBytes = new HashMap<>();
+        Map<Integer, Map<String, DescribeLogDirsResponse.LogDirInfo>> logDirs = admin.describeLogDirs(brokerIds(admin)).all()
+                .get(operationTimeoutMs, TimeUnit.MILLISECONDS);
+        for (Map.Entry<Integer, Map<String, DescribeLogDirsResponse.LogDirInfo>> brokerDirs : logDirs.entrySet()) {
+            for (DescribeLogDirsResponse.LogDirInfo dirInfo : brokerDirs.getValue().values()) {
+                for (Map.Entry<TopicPartition, DescribeLogDirsResponse.ReplicaInfo> replica : dirInfo.replicaInfos.entrySet()) {
+                    brokerBytes.merge(brokerDirs.getKey(), replica.getValue().size, Long::sum);
+                    partitionBytes.merge(replica.getKey(), replica.getValue().size, Math::max);
+                }
+            }
+        }
+        Map<Integer, Long> bytesAfter = ReassignmentPlanner.bytesAfter(current, reassignment, brokerBytes, partitionBytes);
+        long maxBytes = (long) (capacityBytes * MAX_STORAGE_USAGE);
+        for (Integer broker : remaining) {
+            long bytes = bytesAfter.getOrDefault(broker, 0L);
+            if (bytes > maxBytes) {
+                throw new IllegalStateException("The remaining brokers can't hold the partition replicas: broker " + broker
+                        + " would hold " + bytes + " bytes, more than " + (int) (MAX_STORAGE_USAGE * 100)
+                        + "% of its " + capacityBytes + " bytes of storage");
+            }
+        }
+    }
+
+    /**
+     * Start the given reassignment, returning the file describing it.
+     */
+    private File startReassignment(ReassignPartitionsCommand command, Map<TopicPartition, List<Integer>> reassignment,
+                                   Long throttle) throws IOException, InterruptedException {
+        File file = ReassignPartitionsCommand.writeReassignment(reassignment);
+        try {
+            command.execute(file, throttle);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            ReassignPartitionsCommand.delete(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Check, then periodically until the deadline, that no partition of the given Kafka cluster matches the given
+     * predicate, returning a future which completes once this holds.
+     * @param what What the matching partitions are, for logging.
+     */
+    private Future<Void> awaitNoPartition(String namespace, String cluster, String what,
+                                         Predicate<TopicPartitionInfo> predicate, long deadline) {
+        Future<Void> fut = Future.future();
+        workerExecutor.<Integer>executeBlocking(
+            future -> {
+                try (AdminClient admin = adminClient(namespace, cluster)) {
+                    int matching = 0;
+                    for (TopicDescription description : describeTopics(admin)) {
+                        for (TopicPartitionInfo partition : description.partitions()) {
+                            if (predicate.test(partition)) {
+                                matching++;
+                            }
+                        }
+                    }
+                    future.complete(matching);
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            },
+            false,
+            res -> {
+                if (res.failed()) {
+                    fut.fail(res.cause());
+                } else if (res.result() == 0) {
+                    log.info("No partitions of Kafka cluster {} in namespace {} are {}", cluster, namespace, what);
+                    fut.complete();
+                } else if (System.currentTimeMillis() > deadline) {
+                    log.error("{} partitions of Kafka cluster {} in namespace {} are still {}", res.result(), cluster, namespace, what);
+                    fut.fail(new TimeoutException());
+                } else {
+                    log.info("Waiting for {} partitions of Kafka cluster {} in namespace {} which are {}", res.result(), cluster, namespace, what);
+                    vertx.setTimer(REASSIGNMENT_POLL_MS, timer -> awaitNoPartition(namespace, cluster, what, predicate, deadline)
+                            .setHandler(fut.completer()));
+                }
+            }
+        );
+        return fut;
+    }
+
+    /**
+     * Periodically verify the reassignment in the given file until it's complete (which also removes its throttle),
+     * failed, or the deadline has passed, then complete the given future accordingly.
+     */
+    private void awaitReassignment(String namespace, String cluster, ReassignPartitionsCommand command, File reassignment,
+                                   long deadline, Future<Void> fut) {
+        vertx.setTimer(REASSIGNMENT_POLL_MS, timer -> workerExecutor.<Integer>executeBlocking(
+            future -> {
+                try {
+                    future.complete(command.verify(reassignment));
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            },
+            false,
+            res -> {
+                if (res.failed()) {
+                    log.error("Reassignment of partitions of Kafka cluster {} in namespace {} failed", cluster, namespace, res.cause());
+                    ReassignPartitionsCommand.delete(reassignment);
+                    fut.fail(res.cause());
+                } else if (res.result() == 0) {
+                    log.info("Reassignment of partitions of Kafka cluster {} in namespace {} is complete", cluster, namespace);
+                    ReassignPartitionsCommand.delete(reassignment);
+                    fut.complete();
+                } else if (System.currentTimeMillis() > deadline) {
+                    log.error("Reassignment of partitions of Kafka cluster {} in namespace {} timed out with {} partitions in progress",
+                            cluster, namespace, res.result());
+                    ReassignPartitionsCommand.delete(reassignment);
+                    fut.fail(new TimeoutException());
+                } else {
+                    log.info("Reassignment of {} partitions of Kafka cluster {} in namespace {} is in progress",
+                            res.result(), cluster, namespace);
+                    awaitReassignment(namespace, cluster, command, reassignment, deadline, fut);
+                }
+            }
+        ));
+    }
+
+    /** The ids of the running brokers, in order */
+    private List<Integer> brokerIds(AdminClient admin) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+        List<Integer> ids = new ArrayList<>();
+        for (Node node : admin.describeCluster().nodes().get(operationTimeoutMs, TimeUnit.MILLISECONDS)) {
+            ids.add(node.id());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /** The descriptions of all the topics, including the internal topics */
+    private Collection<TopicDescription> describeTopics(AdminClient admin) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+        Set<String> topics = admin.listTopics(new ListTopicsOptions().listInternal(true)).names()
+                .get(operationTimeoutMs, TimeUnit.MILLISECONDS);
+        return admin.describeTopics(topics).all().get(operationTimeoutMs, TimeUnit.MILLISECONDS).values();
+    }
+
+    /** The replicas of every partition, including those of the internal topics */
+    private Map<TopicPartition, List<Integer>> assignment(AdminClient admin) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+        Map<TopicPartition, List<Integer>> assignment = new HashMap<>();
+        for (TopicDescription description : describeTopics(admin)) {
+            for (TopicPartitionInfo partition : description.partitions()) {
+                List<Integer> replicas = new ArrayList<>(partition.replicas().size());
+                for (Node replica : partition.replicas()) {
+                    replicas.add(replica.id());
+                }
+                assignment.put(new TopicPartition(description.name(), partition.partition()), replicas);
+            }
+        }
+        return assignment;
+    }
+
+    private static boolean containsBroker(List<Node> nodes, int brokerId) {
+        for (Node node : nodes) {
+            if (node.id() == brokerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasEmptyBroker(Map<TopicPartition, List<Integer>> assignment, List<Integer> brokerIds) {
+        Set<Integer> withReplicas = new HashSet<>();
+        for (List<Integer> replicas : assignment.values()) {
+            withReplicas.addAll(replicas);
+        }
+        return !withReplicas.containsAll(brokerIds);
+    }
+}
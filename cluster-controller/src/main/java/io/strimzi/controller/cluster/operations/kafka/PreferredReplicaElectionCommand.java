@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.kafka;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs Kafka's {@code kafka.admin.PreferredReplicaLeaderElectionCommand}, which is how leadership is moved back to
+ * the preferred replicas with this version of Kafka, whose admin client has no leader election API.
+ */
+class PreferredReplicaElectionCommand extends AdminCommand {
+
+    /**
+     * @param zookeeper The Zookeeper connection string of the Kafka cluster
+     * @param timeoutMs The timeout for each run of the command
+     */
+    PreferredReplicaElectionCommand(String zookeeper, long timeoutMs) {
+        super("kafka.admin.PreferredReplicaLeaderElectionCommand", zookeeper, timeoutMs);
+    }
+
+    /**
+     * Write the given partitions to a new temporary file, in the format expected by the command.
+     */
+    static File writePartitions(Collection<TopicPartition> partitions) throws IOException {
+        JsonArray array = new JsonArray();
+        for (TopicPartition partition : partitions) {
+            array.add(new JsonObject()
+                    .put("topic", partition.topic())
+                    .put("partition", partition.partition()));
+        }
+        return writeJson("preferred-replica-election-", new JsonObject().put("partitions", array).encode());
+    }
+
+    /**
+     * Start the election of the preferred replica as the leader of each of the partitions in the given file.
+     * The election completes asynchronously in the controller.
+     * @throws IllegalStateException If the election couldn't be started,
+     * for example because another election is in progress.
+     */
+    void execute(File partitions) throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>();
+        args.add("--path-to-json-file");
+        args.add(partitions.toString());
+
+        boolean started = false;
+        for (String line : run(args)) {
+            if (line.contains("Failed to start preferred replica election")
+                    || line.contains("Preferred replica leader election currently in progress")) {
+                throw new IllegalStateException("Preferred replica election failed: " + line);
+            } else if (line.contains("Successfully started preferred replica election")) {
+                started = true;
+            }
+        }
+        if (!started) {
+            throw new IllegalStateException("Preferred replica election neither failed nor started");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.kafka;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Runs Kafka's {@code kafka.admin.ReassignPartitionsCommand}, which is how partitions are reassigned
+ * (and reassignment traffic throttled) with this version of Kafka, whose admin client has no reassignment API.
+ */
+class ReassignPartitionsCommand extends AdminCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(ReassignPartitionsCommand.class);
+
+    private static final Pattern COMPLETED = Pattern.compile("Reassignment of partition .* completed successfully");
+    private static final Pattern IN_PROGRESS = Pattern.compile("Reassignment of partition .* is still in progress");
+    private static final Pattern FAILED = Pattern.compile("Reassignment of partition .* failed");
+
+    /**
+     * @param zookeeper The Zookeeper connection string of the Kafka cluster
+     * @param timeoutMs The timeout for each run of the command
+     */
+    ReassignPartitionsCommand(String zookeeper, long timeoutMs) {
+        super("kafka.admin.ReassignPartitionsCommand", zookeeper, timeoutMs);
+    }
+
+    /**
+     * Write the given reassignment to a new temporary file, in the format expected by the command.
+     */
+    static File writeReassignment(Map<TopicPartition, List<Integer>> reassignment) throws IOException {
+        JsonArray partitions = new JsonArray();
+        for (Map.Entry<TopicPartition, List<Integer>> entry : reassignment.entrySet()) {
+            partitions.add(new JsonObject()
+                    .put("topic", entry.getKey().topic())
+                    .put("partition", entry.getKey().partition())
+                    .put("replicas", new JsonArray(new ArrayList<>(entry.getValue()))));
+        }
+        return writeJson("reassignment-", new JsonObject().put("version", 1).put("partitions", partitions).encode());
+    }
+
+    /**
+     * Start the reassignment in the given file, limiting its replication traffic to the given throttle.
+     * @throws IllegalStateException If the reassignment couldn't be started,
+     * for example because another reassignment is in progress.
+     */
+    void execute(File reassignment, Long throttle) throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>();
+        if (throttle != null) {
+            args.add("--throttle");
+            args.add(Long.toString(throttle));
+        }
+        args.add("--reassignment-json-file");
+        args.add(reassignment.toString());
+        args.add("--execute");
+
+        boolean started = false;
+        for (String line : run(args)) {
+            if (line.contains("There is an existing assignment running")
+                    || line.contains("Partitions reassignment failed due to")
+                    || line.contains("Failed to reassign partitions")) {
+                throw new IllegalStateException("Reassignment failed: " + line);
+            } else if (line.contains("Successfully started reassignment of partitions")) {
+                started = true;
+            }
+        }
+        if (!started) {
+            throw new IllegalStateException("Reassignment neither failed nor started");
+        }
+    }
+
+    /**
+     * Check the progress of the reassignment in the given file.
+     * Once it's complete this also removes the throttle set by {@link #execute(File, Long)}.
+     * @return The number of partitions whose reassignment is still in progress.
+     * @throws IllegalStateException If the reassignment of some partition failed.
+     */
+    int verify(File reassignment) throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>();
+        args.add("--reassignment-json-file");
+        args.add(reassignment.toString());
+        args.add("--verify");
+
+        int inProgress = 0;
+        for (String line : run(args)) {
+            if (FAILED.matcher(line).matches() || line.contains("Partitions reassignment failed due to")) {
+                throw new IllegalStateException("Reassignment failed: " + line);
+            } else if (IN_PROGRESS.matcher(line).matches()) {
+                inProgress++;
+            } else if (!COMPLETED.matcher(line).matches()) {
+                log.debug("Reassignment verification: {}", line);
+            }
+        }
+        return inProgress;
+    }
+}
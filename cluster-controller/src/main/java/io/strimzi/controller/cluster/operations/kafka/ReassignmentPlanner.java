@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Computes partition reassignments which move as few replicas as possible.
+ */
+class ReassignmentPlanner {
+
+    static final Comparator<TopicPartition> TOPIC_PARTITION_ORDER =
+            Comparator.comparing(TopicPartition::topic).thenComparingInt(TopicPartition::partition);
+
+    private ReassignmentPlanner() {
+    }
+
+    /**
+     * Compute the reassignment which evens out the number of replicas on each of the given brokers.
+     * Replicas are moved one at a time from the most loaded broker to the least loaded broker not already having a
+     * replica of the partition, until no two brokers differ by more than one replica, so brokers which are already
+     * balanced (for example all the existing brokers, when new brokers have been added) keep their replicas.
+     * A moved replica takes the place of the one it replaces in the replica list, so a broker which gains the
+     * preferred (first) replica of a partition also becomes its preferred leader.
+     * @param current The current replicas of each partition.
+     * @param brokers The ids of the brokers to balance the replicas over.
+     * @return The new replicas of the partitions which need reassigning.
+     */
+    static Map<TopicPartition, List<Integer>> balance(Map<TopicPartition, List<Integer>> current, Collection<Integer> brokers) {
+        Map<TopicPartition, List<Integer>> assignment = new TreeMap<>(TOPIC_PARTITION_ORDER);
+        for (Map.Entry<TopicPartition, List<Integer>> entry : current.entrySet()) {
+            assignment.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        Map<Integer, TreeSet<TopicPartition>> replicas = new HashMap<>();
+        for (Integer broker : brokers) {
+            replicas.put(broker, new TreeSet<>(TOPIC_PARTITION_ORDER));
+        }
+        for (Map.Entry<TopicPartition, List<Integer>> entry : assignment.entrySet()) {
+            for (Integer broker : entry.getValue()) {
+                TreeSet<TopicPartition> brokerReplicas = replicas.get(broker);
+                if (brokerReplicas != null) {
+                    brokerReplicas.add(entry.getKey());
+                }
+            }
+        }
+
+        Map<TopicPartition, List<Integer>> reassignment = new LinkedHashMap<>();
+        Comparator<Integer> byLoad = Comparator.<Integer>comparingInt(broker -> replicas.get(broker).size())
+                .thenComparing(Comparator.naturalOrder());
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            List<Integer> ascending = new ArrayList<>(replicas.keySet());
+            ascending.sort(byLoad);
+            search:
+            for (int i = ascending.size() - 1; i > 0; i--) {
+                Integer from = ascending.get(i);
+                for (int j = 0; j < i; j++) {
+                    Integer to = ascending.get(j);
+                    if (replicas.get(from).size() - replicas.get(to).size() <= 1) {
+                        // the remaining brokers are at least as loaded as this one
+                        break;
+                    }
+                    for (TopicPartition partition : replicas.get(from)) {
+                        List<Integer> partitionReplicas = assignment.get(partition);
+                        if (!partitionReplicas.contains(to)) {
+                            partitionReplicas.set(partitionReplicas.indexOf(from), to);
+                            replicas.get(from).remove(partition);
+                            replicas.get(to).add(partition);
+                            reassignment.put(partition, partitionReplicas);
+                            moved = true;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+
+        // a replica moved back to where it was doesn't need reassigning
+        reassignment.entrySet().removeIf(entry -> entry.getValue().equals(current.get(entry.getKey())));
+        return reassignment;
+    }
+
+    /**
+     * Compute the reassignment which moves all the replicas off the brokers which aren't in {@code remaining}.
+     * Each moved replica goes to the remaining broker with the fewest replicas which doesn't already have a replica
+     * of the partition. The kept replicas come first in the new replica list, so a partition whose preferred
+     * leader is removed gets an in-sync replica as its new preferred leader, rather than a new replica
+     * which is still catching up.
+     * @param current The current replicas of each partition.
+     * @param remaining The ids of the brokers which are kept.
+     * @return The new replicas of the partitions which need reassigning.
+     * @throws IllegalArgumentException If some partition has more replicas than there are remaining brokers.
+     */
+    static Map<TopicPartition, List<Integer>> drain(Map<TopicPartition, List<Integer>> current, Collection<Integer> remaining) {
+        Map<Integer, Integer> load = new HashMap<>();
+        for (Integer broker : remaining) {
+            load.put(broker, 0);
+        }
+        for (List<Integer> replicas : current.values()) {
+            for (Integer broker : replicas) {
+                load.computeIfPresent(broker, (b, count) -> count + 1);
+            }
+        }
+
+        Map<TopicPartition, List<Integer>> sorted = new TreeMap<>(TOPIC_PARTITION_ORDER);
+        sorted.putAll(current);
+        Map<TopicPartition, List<Integer>> reassignment = new LinkedHashMap<>();
+        for (Map.Entry<TopicPartition, List<Integer>> entry : sorted.entrySet()) {
+            List<Integer> replicas = entry.getValue();
+            if (remaining.containsAll(replicas)) {
+                continue;
+            }
+            if (replicas.size() > remaining.size()) {
+                throw new IllegalArgumentException("Partition " + entry.getKey() + " has " + replicas.size()
+                        + " replicas, more than the " + remaining.size() + " remaining brokers");
+            }
+            List<Integer> proposed = new ArrayList<>(replicas.size());
+            for (Integer broker : replicas) {
+                if (load.containsKey(broker)) {
+                    proposed.add(broker);
+                }
+            }
+            int moved = replicas.size() - proposed.size();
+            for (int i = 0; i < moved; i++) {
+                Integer to = null;
+                for (Map.Entry<Integer, Integer> candidate : new TreeMap<>(load).entrySet()) {
+                    if (!proposed.contains(candidate.getKey()) && (to == null || candidate.getValue() < load.get(to))) {
+                        to = candidate.getKey();
+                    }
+                }
+                proposed.add(to);
+                load.put(to, load.get(to) + 1);
+            }
+            reassignment.put(entry.getKey(), proposed);
+        }
+        return reassignment;
+    }
+
+    /**
+     * Compute how many bytes each broker will hold once the given reassignment is complete,
+     * assuming a new replica grows to the size of the largest replica of its partition.
+     * The replicas dropped by the reassignment are still counted, because they're only deleted once it's complete.
+     * @param current The current replicas of each partition.
+     * @param reassignment The new replicas of the reassigned partitions.
+     * @param brokerBytes The current size in bytes of the logs of each broker.
+     * @param partitionBytes The size in bytes of the largest replica of each partition.
+     * @return The size in bytes of the logs of each broker once the reassignment is complete.
+     */
+    static Map<Integer, Long> bytesAfter(Map<TopicPartition, List<Integer>> current, Map<TopicPartition, List<Integer>> reassignment,
+                                         Map<Integer, Long> brokerBytes, Map<TopicPartition, Long> partitionBytes) {
+        Map<Integer, Long> result = new HashMap<>(brokerBytes);
+        for (Map.Entry<TopicPartition, List<Integer>> entry : reassignment.entrySet()) {
+            List<Integer> replicas = current.get(entry.getKey());
+            for (Integer broker : entry.getValue()) {
+                if (replicas == null || !replicas.contains(broker)) {
+                    result.merge(broker, partitionBytes.getOrDefault(entry.getKey(), 0L), Long::sum);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -9,14 +9,17 @@ import io.fabric8.kubernetes.api.model.KubernetesResourceList;
 import io.fabric8.kubernetes.client.dsl.MixedOperation;
 import io.fabric8.kubernetes.client.dsl.Resource;
 import io.fabric8.kubernetes.client.internal.readiness.Readiness;
+import io.strimzi.common.ProfilingEvent;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Abstract resource creation, for a generic resource type {@code R}.
@@ -34,6 +37,8 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
     protected final Vertx vertx;
     protected final C client;
     private final String resourceKind;
+    private volatile ResourceCache<T> cache;
+    private WorkerExecutor workerExecutor;
 
     /**
      * Constructor.
@@ -49,6 +54,31 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
 
     protected abstract MixedOperation<T, L, D, R> operation();
 
+    /**
+     * The worker pool for the blocking Kubernetes operations. It's only obtained on first use, after
+     * {@link io.strimzi.controller.cluster.ClusterController} has configured it, and then reused, since each
+     * {@link Vertx#createSharedWorkerExecutor(String)} adds a reference to the pool which is only released on close.
+     */
+    protected synchronized WorkerExecutor workerExecutor() {
+        if (workerExecutor == null) {
+            workerExecutor = vertx.createSharedWorkerExecutor("kubernetes-ops-pool");
+        }
+        return workerExecutor;
+    }
+
+    /**
+     * Begin a {@link ProfilingEvent.Kind#API_CALL} event for the given operation on the given resource.
+     * @param operation The operation.
+     * @param namespace The namespace of the resource.
+     * @param name The name of the resource.
+     */
+    protected ProfilingEvent apiCall(String operation, String namespace, String name) {
+        return ProfilingEvent.begin(ProfilingEvent.Kind.API_CALL, resourceKind)
+                .with("operation", operation)
+                .with("namespace", namespace)
+                .with("name", name);
+    }
+
     /**
      * Asynchronously create the given {@code resource} if it doesn't already exists,
      * returning a future for the outcome.
@@ -58,7 +88,8 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
     @SuppressWarnings("unchecked")
     public Future<Void> create(T resource) {
         Future<Void> fut = Future.future();
-        vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
+        ProfilingEvent event = apiCall("create", resource.getMetadata().getNamespace(), resource.getMetadata().getName());
+        workerExecutor().executeBlocking(
             future -> {
                 String namespace = resource.getMetadata().getNamespace();
                 String name = resource.getMetadata().getName();
@@ -78,7 +109,7 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
                 }
             },
             false,
-            fut.completer()
+            event.ending(fut.completer())
         );
         return fut;
     }
@@ -92,7 +123,8 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
      */
     public Future<Void> delete(String namespace, String name) {
         Future<Void> fut = Future.future();
-        vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
+        ProfilingEvent event = apiCall("delete", namespace, name);
+        workerExecutor().executeBlocking(
             future -> {
                 if (operation().inNamespace(namespace).withName(name).get() != null) {
                     try {
@@ -109,7 +141,7 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
                     future.complete();
                 }
             }, false,
-            fut.completer()
+            event.ending(fut.completer())
         );
         return fut;
     }
@@ -136,7 +168,8 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
      */
     public Future<Void> patch(String namespace, String name, boolean cascading, T patch) {
         Future<Void> fut = Future.future();
-        vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
+        ProfilingEvent event = apiCall("patch", namespace, name);
+        workerExecutor().executeBlocking(
             future -> {
                 try {
                     log.info("Patching {} resource {} in namespace {} with {}", resourceKind, name, namespace, patch);
@@ -149,30 +182,135 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
                 }
             },
             true,
-            fut.completer()
+            event.ending(fut.completer())
         );
         return fut;
     }
 
+    /**
+     * Asynchronously start a {@link ResourceCache} of the resources with the given {@code labels} in the given
+     * {@code namespaces}, returning a future which completes once it has been populated.
+     * From then on {@link #get(String, String)}, {@link #list(String, Map)} and {@link #listAsync(String, Map)}
+     * read through the cache whenever it holds the requested resources.
+     * @param namespaces The namespaces.
+     * @param labels The labels.
+     */
+    public Future<ResourceCache<T>> startCache(Set<String> namespaces, Map<String, String> labels) {
+        Future<ResourceCache<T>> fut = Future.future();
+        ResourceCache<T> cache = new ResourceCache<>(vertx, resourceKind,
+                operation().inAnyNamespace().withLabels(labels), namespaces, labels);
+        workerExecutor().<ResourceCache<T>>executeBlocking(
+            future -> {
+                try {
+                    cache.start();
+                    future.complete(cache);
+                } catch (Exception e) {
+                    log.error("Caught exception while starting {} cache", resourceKind, e);
+                    future.fail(e);
+                }
+            },
+            false,
+            res -> {
+                if (res.succeeded()) {
+                    this.cache = cache;
+                }
+                fut.completer().handle(res);
+            }
+        );
+        return fut;
+    }
+
+    /**
+     * @return The {@linkplain #startCache(Set, Map) cache} of the resources, or null if there's none.
+     */
+    public ResourceCache<T> cache() {
+        return cache;
+    }
+
     /**
      * Synchronously gets the resource with the given {@code name} in the given {@code namespace}.
+     * The resource is read from the {@linkplain #startCache(Set, Map) cache} if it holds it,
+     * so it can be older than a write which just completed: use {@link #getUncached(String, String)}
+     * to read a resource which is going to be modified and patched.
      * @param namespace The namespace.
      * @param name The name.
      * @return The resource, or null if it doesn't exist.
      */
     public T get(String namespace, String name) {
-        return operation().inNamespace(namespace).withName(name).get();
+        ResourceCache<T> cache = this.cache;
+        if (cache != null && cache.covers(namespace)) {
+            T cached = cache.get(namespace, name);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return getUncached(namespace, name);
+    }
+
+    /**
+     * Synchronously gets the resource with the given {@code name} in the given {@code namespace} from the API server,
+     * bypassing the {@linkplain #startCache(Set, Map) cache}, so the resource reflects all the completed writes.
+     * @param namespace The namespace.
+     * @param name The name.
+     * @return The resource, or null if it doesn't exist.
+     */
+    public T getUncached(String namespace, String name) {
+        ProfilingEvent event = apiCall("get", namespace, name);
+        try {
+            return operation().inNamespace(namespace).withName(name).get();
+        } finally {
+            event.end();
+        }
     }
 
     /**
      * Synchronously list the resources in the given {@code namespace} with the given {@code labels}.
+     * The resources are read from the {@linkplain #startCache(Set, Map) cache} if it holds them.
      * @param namespace The namespace.
      * @param labels The labels.
      * @return A list of matching resources.
      */
     @SuppressWarnings("unchecked")
     public List<T> list(String namespace, Map<String, String> labels) {
-        return operation().inNamespace(namespace).withLabels(labels).list().getItems();
+        ResourceCache<T> cache = this.cache;
+        if (cache != null && cache.covers(namespace, labels)) {
+            return cache.list(namespace, labels);
+        }
+        ProfilingEvent event = apiCall("list", namespace, null);
+        try {
+            return operation().inNamespace(namespace).withLabels(labels).list().getItems();
+        } finally {
+            event.end();
+        }
+    }
+
+    /**
+     * Asynchronously list the resources in the given {@code namespace} with the given {@code labels},
+     * returning a future for the matching resources.
+     * @param namespace The namespace.
+     * @param labels The labels.
+     */
+    @SuppressWarnings("unchecked")
+    public Future<List<T>> listAsync(String namespace, Map<String, String> labels) {
+        ResourceCache<T> cache = this.cache;
+        if (cache != null && cache.covers(namespace, labels)) {
+            return Future.succeededFuture(cache.list(namespace, labels));
+        }
+        Future<List<T>> fut = Future.future();
+        ProfilingEvent event = apiCall("list", namespace, null);
+        workerExecutor().<List<T>>executeBlocking(
+            future -> {
+                try {
+                    future.complete(operation().inNamespace(namespace).withLabels(labels).list().getItems());
+                } catch (Exception e) {
+                    log.error("Caught exception while listing {} resources in namespace {}", resourceKind, namespace, e);
+                    future.fail(e);
+                }
+            },
+            false,
+            event.ending(fut.completer())
+        );
+        return fut;
     }
 
     /**
@@ -186,6 +324,9 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
      */
     public Future<Void> readiness(String namespace, String name, long pollIntervalMs, long timeoutMs) {
         Future<Void> fut = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.READINESS_WAIT, resourceKind)
+                .with("namespace", namespace)
+                .with("name", name);
         log.info("Waiting for {} resource {} in namespace {} to get ready", resourceKind, name, namespace);
         long deadline = System.currentTimeMillis() + timeoutMs;
 
@@ -193,7 +334,7 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
             @Override
             public void handle(Long timerId) {
 
-                vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
+                workerExecutor().executeBlocking(
                     future -> {
                         try {
                             if (isReady(namespace, name))   {
@@ -213,11 +354,13 @@ public abstract class AbstractOperations<C, T extends HasMetadata, L extends Kub
                     res -> {
                         if (res.succeeded()) {
                             log.info("{} {} in namespace {} is ready", resourceKind, name, namespace);
+                            event.end();
                             fut.complete();
                         } else {
                             long timeLeft = deadline - System.currentTimeMillis();
                             if (timeLeft <= 0) {
                                 log.error("Exceeded timeoutMs of {} ms while waiting for {} {} in namespace {} to be ready", timeoutMs, resourceKind, name, namespace);
+                                event.end(res);
                                 fut.fail(new TimeoutException());
                             } else {
                                 // Schedule ourselves to run again
@@ -10,6 +10,7 @@ import io.fabric8.kubernetes.api.model.extensions.Deployment;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
 import io.fabric8.kubernetes.client.dsl.ScalableResource;
 import io.fabric8.openshift.api.model.DeploymentConfig;
+import io.strimzi.common.ProfilingEvent;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import org.slf4j.Logger;
@@ -51,7 +52,8 @@ public abstract class AbstractScalableOperations<C, T extends HasMetadata, L ext
      */
     public Future<Void> scaleUp(String namespace, String name, int scaleTo) {
         Future<Void> fut = Future.future();
-        vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
+        ProfilingEvent event = apiCall("scaleUp", namespace, name);
+        workerExecutor().executeBlocking(
             future -> {
                 try {
                     log.info("Scaling up to {} replicas", scaleTo);
@@ -63,7 +65,7 @@ public abstract class AbstractScalableOperations<C, T extends HasMetadata, L ext
                 }
             },
             false,
-            fut.completer()
+            event.ending(fut.completer())
         );
         return fut;
     }
@@ -77,7 +79,8 @@ public abstract class AbstractScalableOperations<C, T extends HasMetadata, L ext
      */
     public Future<Void> scaleDown(String namespace, String name, int scaleTo) {
         Future<Void> fut = Future.future();
-        vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
+        ProfilingEvent event = apiCall("scaleDown", namespace, name);
+        workerExecutor().executeBlocking(
             future -> {
                 try {
                     Object gettable = resource(namespace, name).get();
@@ -107,7 +110,7 @@ public abstract class AbstractScalableOperations<C, T extends HasMetadata, L ext
                 }
             },
             false,
-            fut.completer()
+            event.ending(fut.completer())
         );
         return fut;
     }
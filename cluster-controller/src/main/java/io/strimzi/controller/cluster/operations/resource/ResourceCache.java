@@ -0,0 +1,315 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.resource;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>A cache of the resources of one kind having the given labels in the given namespaces, kept up to date by a
+ * single watch in all namespaces, like a shared informer.
+ * So a controller operating in many namespaces opens one watch per resource kind, rather than one per namespace,
+ * and reads resources without calls to the Kubernetes/OpenShift API server.</p>
+ *
+ * <p>The cache is populated by listing the resources, then watching them from the revision of the list.
+ * When the watch closes the resources are listed again and listeners are notified of the differences,
+ * so they don't miss the changes made while the watch wasn't open.</p>
+ *
+ * <p>Reads return copies of the cached resources, so callers can modify them.</p>
+ * @param <T> The Kubernetes resource type.
+ */
+public class ResourceCache<T extends HasMetadata> {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceCache.class);
+
+    /** The delay in milliseconds before trying to restart the watch again, after failing to */
+    private static final long RESTART_DELAY_MS = 5_000;
+
+    /**
+     * Notified of the changes to the cached resources of a namespace.
+     * @param <T> The Kubernetes resource type.
+     */
+    public interface Listener<T> {
+        void eventReceived(Watcher.Action action, T resource);
+    }
+
+    private final Vertx vertx;
+    private final String resourceKind;
+    private final FilterWatchListDeletable<T, ? extends KubernetesResourceList, Boolean, Watch, Watcher<T>> operation;
+    private final Set<String> namespaces;
+    private final Map<String, String> labels;
+
+    /** The cached resources, by namespace and name */
+    private final Map<String, Map<String, T>> resources = new ConcurrentHashMap<>();
+    private final Map<String, List<Listener<T>>> listeners = new ConcurrentHashMap<>();
+
+    private volatile Watch watch;
+    private volatile boolean synced = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor.
+     * @param vertx The Vertx instance.
+     * @param resourceKind The kind of Kubernetes resource (used for logging).
+     * @param operation The operation for the resources with the given labels, in all namespaces.
+     * @param namespaces The namespaces whose resources are cached.
+     * @param labels The labels of the cached resources.
+     */
+    public ResourceCache(Vertx vertx, String resourceKind,
+                         FilterWatchListDeletable<T, ? extends KubernetesResourceList, Boolean, Watch, Watcher<T>> operation,
+                         Set<String> namespaces, Map<String, String> labels) {
+        this.vertx = vertx;
+        this.resourceKind = resourceKind;
+        this.operation = operation;
+        this.namespaces = Collections.unmodifiableSet(new HashSet<>(namespaces));
+        this.labels = Collections.unmodifiableMap(new HashMap<>(labels));
+        for (String namespace : namespaces) {
+            resources.put(namespace, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Synchronously populate the cache and open its watch.
+     * @throws KubernetesClientException If listing or watching the resources failed.
+     */
+    public void start() {
+        String resourceVersion = relist();
+        watch = operation.watch(resourceVersion, new CacheWatcher());
+        synced = true;
+        log.info("{} cache running for namespaces {} and labels {}", resourceKind, namespaces, labels);
+    }
+
+    /**
+     * Close the watch of the cache.
+     */
+    public void close() {
+        closed = true;
+        Watch watch = this.watch;
+        if (watch != null) {
+            watch.close();
+        }
+    }
+
+    /**
+     * Add a listener for the changes to the cached resources in the given namespace.
+     * @param namespace The namespace.
+     * @param listener The listener.
+     */
+    public void addListener(String namespace, Listener<T> listener) {
+        listeners.computeIfAbsent(namespace, ns -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Remove a listener previously {@linkplain #addListener(String, Listener) added}.
+     * @param namespace The namespace.
+     * @param listener The listener.
+     */
+    public void removeListener(String namespace, Listener<T> listener) {
+        List<Listener<T>> namespaceListeners = listeners.get(namespace);
+        if (namespaceListeners != null) {
+            namespaceListeners.remove(listener);
+        }
+    }
+
+    /**
+     * @param namespace The namespace.
+     * @return Whether the cache has been populated and holds the resources of the given namespace.
+     */
+    public boolean covers(String namespace) {
+        return synced && namespaces.contains(namespace);
+    }
+
+    /**
+     * @param namespace The namespace.
+     * @param labels The labels.
+     * @return Whether the cache has been populated and holds all the resources of the given namespace
+     * having the given labels.
+     */
+    public boolean covers(String namespace, Map<String, String> labels) {
+        return covers(namespace) && labels.entrySet().containsAll(this.labels.entrySet());
+    }
+
+    /**
+     * Gets a copy of the cached resource with the given {@code name} in the given {@code namespace}.
+     * @param namespace The namespace.
+     * @param name The name.
+     * @return The resource, or null if it isn't cached.
+     */
+    public T get(String namespace, String name) {
+        Map<String, T> namespaceResources = resources.get(namespace);
+        T resource = namespaceResources != null ? namespaceResources.get(name) : null;
+        return resource != null ? copy(resource) : null;
+    }
+
+    /**
+     * Gets copies of the cached resources in the given {@code namespace} with the given {@code labels}.
+     * @param namespace The namespace.
+     * @param labels The labels.
+     * @return The matching resources.
+     */
+    public List<T> list(String namespace, Map<String, String> labels) {
+        List<T> result = new ArrayList<>();
+        Map<String, T> namespaceResources = resources.get(namespace);
+        if (namespaceResources != null) {
+            for (T resource : namespaceResources.values()) {
+                Map<String, String> resourceLabels = resource.getMetadata().getLabels();
+                if (resourceLabels != null && resourceLabels.entrySet().containsAll(labels.entrySet())) {
+                    result.add(copy(resource));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A deep copy of the given resource, by serializing it, so that callers can modify what they read.
+     * (Jackson's convertValue can't be used, since it returns the same instance when the type already matches.)
+     */
+    @SuppressWarnings("unchecked")
+    private T copy(T resource) {
+        try {
+            return Json.mapper.readValue(Json.mapper.writeValueAsBytes(resource), (Class<T>) resource.getClass());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * List the resources, replacing the cached ones and notifying the listeners of the differences.
+     * @return The resource version of the list.
+     */
+    @SuppressWarnings("unchecked")
+    private String relist() {
+        KubernetesResourceList list = operation.list();
+
+        Map<String, Map<String, T>> listed = new HashMap<>();
+        for (String namespace : namespaces) {
+            listed.put(namespace, new HashMap<>());
+        }
+        for (HasMetadata item : (List<HasMetadata>) list.getItems()) {
+            Map<String, T> namespaceResources = listed.get(item.getMetadata().getNamespace());
+            if (namespaceResources != null) {
+                namespaceResources.put(item.getMetadata().getName(), (T) item);
+            }
+        }
+
+        for (String namespace : namespaces) {
+            Map<String, T> cached = resources.get(namespace);
+            Map<String, T> current = listed.get(namespace);
+            for (T resource : current.values()) {
+                T previous = cached.put(resource.getMetadata().getName(), resource);
+                if (previous == null) {
+                    notifyListeners(Watcher.Action.ADDED, resource);
+                } else if (!Objects.equals(previous.getMetadata().getResourceVersion(), resource.getMetadata().getResourceVersion())) {
+                    notifyListeners(Watcher.Action.MODIFIED, resource);
+                }
+            }
+            for (T resource : new ArrayList<>(cached.values())) {
+                if (!current.containsKey(resource.getMetadata().getName())) {
+                    cached.remove(resource.getMetadata().getName());
+                    notifyListeners(Watcher.Action.DELETED, resource);
+                }
+            }
+        }
+        return list.getMetadata().getResourceVersion();
+    }
+
+    private void notifyListeners(Watcher.Action action, T resource) {
+        List<Listener<T>> namespaceListeners = listeners.get(resource.getMetadata().getNamespace());
+        if (namespaceListeners != null) {
+            for (Listener<T> listener : namespaceListeners) {
+                try {
+                    listener.eventReceived(action, resource);
+                } catch (Exception e) {
+                    log.error("{} cache listener failed for {} {} in namespace {}", resourceKind, action,
+                            resource.getMetadata().getName(), resource.getMetadata().getNamespace(), e);
+                }
+            }
+        }
+    }
+
+    private void restart() {
+        if (closed) {
+            return;
+        }
+        vertx.executeBlocking(
+            future -> {
+                try {
+                    start();
+                    future.complete();
+                } catch (Exception e) {
+                    future.fail(e);
+                }
+            },
+            res -> {
+                if (res.failed()) {
+                    log.error("Failed to restart {} cache, retrying in {} ms", resourceKind, RESTART_DELAY_MS, res.cause());
+                    vertx.setTimer(RESTART_DELAY_MS, timer -> restart());
+                }
+            });
+    }
+
+    private class CacheWatcher implements Watcher<T> {
+        @Override
+        public void eventReceived(Action action, T resource) {
+            if (resource == null || resource.getMetadata() == null) {
+                log.error("Failed {} cache watch event {}", resourceKind, action);
+                return;
+            }
+            String namespace = resource.getMetadata().getNamespace();
+            Map<String, T> namespaceResources = resources.get(namespace);
+            if (namespaceResources == null) {
+                return;
+            }
+            switch (action) {
+                case ADDED:
+                case MODIFIED:
+                    namespaceResources.put(resource.getMetadata().getName(), resource);
+                    break;
+                case DELETED:
+                    namespaceResources.remove(resource.getMetadata().getName());
+                    break;
+                default:
+                    log.error("Failed {} {} in namespace {}", resourceKind, resource.getMetadata().getName(), namespace);
+            }
+            notifyListeners(action, resource);
+        }
+
+        @Override
+        public void onClose(KubernetesClientException e) {
+            if (closed) {
+                log.info("{} cache closed", resourceKind);
+                return;
+            }
+            if (e != null) {
+                log.error("{} cache watch closed with exception, restarting", resourceKind, e);
+            } else {
+                log.info("{} cache watch closed, restarting", resourceKind);
+            }
+            restart();
+        }
+    }
+}
@@ -14,13 +14,19 @@ import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.dsl.MixedOperation;
 import io.fabric8.kubernetes.client.dsl.RollableScalableResource;
+import io.strimzi.common.ProfilingEvent;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
 /**
  * Operations for {@code StatefulSets}s, which supports {@link #rollingUpdate(String, String, Handler)}
  * in addition to the usual operations.
@@ -46,55 +52,216 @@ public class StatefulSetOperations extends AbstractScalableOperations<Kubernetes
     }
 
     public void rollingUpdate(String namespace, String name, Handler<AsyncResult<Void>> handler) {
-        final int replicas = get(namespace, name).getSpec().getReplicas();
-        vertx.createSharedWorkerExecutor("kubernetes-ops-pool").executeBlocking(
-            future -> {
-                try {
-                    log.info("Doing rolling update of stateful set {} in namespace {}", name, namespace);
+        rollingUpdate(namespace, name, i -> Future.succeededFuture(), handler);
+    }
 
-                    for (int i = 0; i < replicas; i++) {
-                        String podName = name + "-" + i;
-                        log.info("Rolling pod {}", podName);
-                        Future deleted = Future.future();
-                        Watcher<Pod> watcher = new RollingUpdateWatcher(deleted);
+    /**
+     * Restart the pods of the stateful set with the given {@code name} in the given {@code namespace} one at a time,
+     * in order, waiting for each pod to be ready and then for the future returned by {@code podRolled}
+     * (applied to the ordinal of the pod) to complete before restarting the next pod.
+     * @param namespace The namespace of the stateful set.
+     * @param name The name of the stateful set.
+     * @param podRolled What to wait for after each pod has been restarted, once it's ready.
+     *                  The rolling update fails (leaving the remaining pods alone) if its future fails.
+     * @param handler The handler for the outcome of the rolling update.
+     */
+    public void rollingUpdate(String namespace, String name, Function<Integer, Future<Void>> podRolled,
+                              Handler<AsyncResult<Void>> handler) {
+        final int replicas = getUncached(namespace, name).getSpec().getReplicas();
+        List<Integer> pods = new ArrayList<>(replicas);
+        for (int i = 0; i < replicas; i++) {
+            pods.add(i);
+        }
+        restartPods(namespace, name, pods, podRolled).setHandler(handler);
+    }
 
-                        Watch watch = podOperations.watch(namespace, podName, watcher);
-                        Future fut = podOperations.delete(namespace, podName);
+    /**
+     * Asynchronously restart the given pods of the stateful set with the given {@code name} in the given
+     * {@code namespace} one at a time, in the given order, waiting for each pod to be ready and then for the future
+     * returned by {@code podRestarted} (applied to the ordinal of the pod) to complete before restarting the next pod.
+     * @param namespace The namespace of the stateful set.
+     * @param name The name of the stateful set.
+     * @param pods The ordinals of the pods to restart, in order.
+     * @param podRestarted What to wait for after each pod has been restarted, once it's ready.
+     *                     The restarts stop (leaving the remaining pods alone) if its future fails.
+     * @return A future which completes once all the given pods have been restarted.
+     */
+    public Future<Void> restartPods(String namespace, String name, List<Integer> pods,
+                                    Function<Integer, Future<Void>> podRestarted) {
+        log.info("Doing rolling update of pods {} of stateful set {} in namespace {}", pods, name, namespace);
+        Future<Void> rolled = Future.succeededFuture();
+        for (int i : pods) {
+            rolled = rolled.compose(ignored -> restartPod(namespace, name, i, podRestarted));
+        }
+        Future<Void> result = Future.future();
+        rolled.setHandler(res -> {
+            if (res.succeeded()) {
+                log.info("Stateful set {} in namespace {} has been rolled", name, namespace);
+                result.complete();
+            } else {
+                log.error("Failed to do rolling update of stateful set {} in namespace {}: {}", name, namespace, res.cause().toString());
+                result.fail(res.cause());
+            }
+        });
+        return result;
+    }
 
-                        // TODO do this async
-                        while (!fut.isComplete() && !deleted.isComplete()) {
-                            log.info("Waiting for pod {} to be deleted", podName);
-                            Thread.sleep(1000);
+    /**
+     * Asynchronously restart the pod with the given ordinal, then wait for it to be ready
+     * and for the future returned by {@code podRestarted} to complete.
+     */
+    private Future<Void> restartPod(String namespace, String name, int i, Function<Integer, Future<Void>> podRestarted) {
+        String podName = name + "-" + i;
+        log.info("Rolling pod {}", podName);
+        return deletePod(namespace, podName)
+                .compose(ignored -> podReady(namespace, podName))
+                .compose(ignored -> {
+                    Future<Void> recovered = Future.future();
+                    podRestarted.apply(i).setHandler(res -> {
+                        if (res.succeeded()) {
+                            log.info("Pod {} rolling update complete", podName);
+                            recovered.complete();
+                        } else {
+                            log.error("Pod {} didn't recover after its restart", podName);
+                            recovered.fail(res.cause());
                         }
-                        // TODO Check success of fut and deleted futures
+                    });
+                    return recovered;
+                });
+    }
 
-                        watch.close();
+    /**
+     * Asynchronously delete the pod with the given {@code podName}, returning a future which completes
+     * once either the deletion request has completed or the pod's deletion has been observed.
+     */
+    private Future<Void> deletePod(String namespace, String podName) {
+        Future<Void> result = Future.future();
+        Future<Void> deleted = Future.future();
+        Context context = vertx.getOrCreateContext();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.READINESS_WAIT, "PodDeleted")
+                .with("namespace", namespace)
+                .with("name", podName);
+        workerExecutor().<Watch>executeBlocking(
+            future -> future.complete(podOperations.watch(namespace, podName, new RollingUpdateWatcher(deleted))),
+            false,
+            watched -> {
+                if (watched.failed()) {
+                    log.error("Failed to watch pod {} in namespace {}", podName, namespace, watched.cause());
+                    event.end(watched);
+                    result.fail(watched.cause());
+                    return;
+                }
+                Handler<AsyncResult<Void>> done = res -> {
+                    if (!result.isComplete()) {
+                        watched.result().close();
+                        event.end(res);
+                        result.handle(res);
+                    }
+                };
+                // The watcher completes deleted on the client's thread, so hop back to our context
+                deleted.setHandler(res -> context.runOnContext(v -> done.handle(res)));
+                podOperations.delete(namespace, podName).setHandler(done);
+            }
+        );
+        return result;
+    }
 
-                        while (!podOperations.isPodReady(namespace, podName)) {
-                            log.info("Waiting for pod {} to get ready", podName);
-                            Thread.sleep(1000);
-                        }
+    /**
+     * Returns a future which completes once the pod with the given {@code podName} is ready,
+     * checking its readiness on a worker thread every second.
+     */
+    private Future<Void> podReady(String namespace, String podName) {
+        Future<Void> result = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.READINESS_WAIT, "PodReady")
+                .with("namespace", namespace)
+                .with("name", podName);
+        log.info("Waiting for pod {} to get ready", podName);
 
-                        log.info("Pod {} rolling update complete", podName);
+        Handler<Long> handler = new Handler<Long>() {
+            @Override
+            public void handle(Long timerId) {
+                workerExecutor().<Boolean>executeBlocking(
+                    future -> future.complete(podOperations.isPodReady(namespace, podName)),
+                    false,
+                    ready -> {
+                        if (ready.succeeded() && Boolean.TRUE.equals(ready.result())) {
+                            log.info("Pod {} in namespace {} is ready", podName, namespace);
+                            event.end();
+                            result.complete();
+                        } else {
+                            if (ready.failed()) {
+                                log.warn("Caught exception while waiting for pod {} in namespace {} to get ready", podName, namespace, ready.cause());
+                            } else if (log.isTraceEnabled()) {
+                                log.trace("Pod {} in namespace {} is not ready", podName, namespace);
+                            }
+                            // Schedule ourselves to run again
+                            vertx.setTimer(1_000, this);
+                        }
                     }
+                );
+            }
+        };
+        vertx.setTimer(1_000, handler);
+
+        return result;
+    }
 
+    /**
+     * Asynchronously replace the stateful set with the given {@code name} in the given {@code namespace}
+     * with the given one, returning a future for the outcome.
+     * The stateful set is deleted without deleting its pods, which are adopted by the new stateful set,
+     * so this is the way to change the parts of a stateful set (such as its volume claim templates) which can't be patched.
+     * The pods only get the changes when they're next restarted.
+     * The new stateful set keeps the current number of replicas, so that scaling is still done one step at a time.
+     * Creating the new stateful set is retried until the timeout, since the pods are left without a stateful set meanwhile.
+     * @param namespace The namespace of the stateful set.
+     * @param name The name of the stateful set.
+     * @param timeoutMs The maximum time to wait for the deletion of the old stateful set and the creation of the new one.
+     * @param statefulSet The new stateful set.
+     */
+    public Future<Void> replace(String namespace, String name, long timeoutMs, StatefulSet statefulSet) {
+        Future<Void> fut = Future.future();
+        ProfilingEvent event = apiCall("replace", namespace, name);
+        workerExecutor().executeBlocking(
+            future -> {
+                try {
+                    log.info("Replacing stateful set {} in namespace {}", name, namespace);
+                    long deadline = System.currentTimeMillis() + timeoutMs;
+                    StatefulSet current = operation().inNamespace(namespace).withName(name).get();
+                    if (current != null) {
+                        statefulSet.getSpec().setReplicas(current.getSpec().getReplicas());
+                    }
+                    operation().inNamespace(namespace).withName(name).cascading(false).delete();
+                    while (operation().inNamespace(namespace).withName(name).get() != null) {
+                        if (System.currentTimeMillis() > deadline) {
+                            throw new TimeoutException();
+                        }
+                        log.info("Waiting for stateful set {} to be deleted", name);
+                        Thread.sleep(1000);
+                    }
+                    while (true) {
+                        try {
+                            operation().inNamespace(namespace).create(statefulSet);
+                            break;
+                        } catch (KubernetesClientException e) {
+                            if (System.currentTimeMillis() > deadline) {
+                                throw e;
+                            }
+                            log.warn("Failed to create stateful set {} in namespace {}, retrying", name, namespace, e);
+                            Thread.sleep(1000);
+                        }
+                    }
+                    log.info("Stateful set {} in namespace {} has been replaced", name, namespace);
                     future.complete();
                 } catch (Exception e) {
-                    log.error("Caught exception while doing manual rolling update of stateful set {} in namespace {}", name, namespace);
+                    log.error("Caught exception while replacing stateful set {} in namespace {}", name, namespace, e);
                     future.fail(e);
                 }
             },
-            false,
-            res -> {
-                if (res.succeeded()) {
-                    log.info("Stateful set {} in namespace {} has been rolled", name, namespace);
-                    handler.handle(Future.succeededFuture());
-                } else {
-                    log.error("Failed to do rolling update of stateful set {} in namespace {}: {}", name, namespace, res.cause().toString());
-                    handler.handle(Future.failedFuture(res.cause()));
-                }
-            }
+            true,
+            event.ending(fut.completer())
         );
+        return fut;
     }
 
     static class RollingUpdateWatcher implements Watcher<Pod> {
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.zookeeper;
+
+import io.strimzi.common.ProfilingEvent;
+import io.strimzi.controller.cluster.operations.resource.TimeoutException;
+import io.strimzi.controller.cluster.resources.ZookeeperCluster;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Operations on a running Zookeeper ensemble, made through the Zookeeper "four letter word" commands on the client port.
+ * The commands are blocking, so the operations are executed on a worker thread.
+ */
+public class ZookeeperAdminOperations {
+
+    private static final Logger log = LoggerFactory.getLogger(ZookeeperAdminOperations.class);
+
+    /** The interval in milliseconds between checks of the quorum of an ensemble */
+    private static final long QUORUM_POLL_MS = 2_000;
+
+    /** The timeout in milliseconds for connecting to, and reading from, a Zookeeper server */
+    private static final int SOCKET_TIMEOUT_MS = 5_000;
+
+    protected final Vertx vertx;
+    protected final long operationTimeoutMs;
+    private final WorkerExecutor workerExecutor;
+
+    /**
+     * Constructor.
+     * @param vertx The vertx instance.
+     * @param operationTimeoutMs The timeout for waiting for an ensemble to have a quorum.
+     */
+    public ZookeeperAdminOperations(Vertx vertx, long operationTimeoutMs) {
+        this.vertx = vertx;
+        this.operationTimeoutMs = operationTimeoutMs;
+        this.workerExecutor = vertx.createSharedWorkerExecutor("zookeeper-admin-ops-pool");
+    }
+
+    /**
+     * Get the mode of the given Zookeeper server, with the {@code srvr} command.
+     * @param host The host of the server.
+     * @return The mode ({@code leader}, {@code follower} or {@code standalone}),
+     * or null if the server isn't serving requests (for example because it's not part of a quorum).
+     */
+    protected String mode(String host) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, ZookeeperCluster.CLIENT_PORT), SOCKET_TIMEOUT_MS);
+            socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+            OutputStream out = socket.getOutputStream();
+            out.write("srvr".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Mode: ")) {
+                    return line.substring("Mode: ".length()).trim();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Asynchronously wait for the first {@code servers} servers of the Zookeeper ensemble of the given cluster to form
+     * a quorum, with one of them leading and all the others following it, returning a future for the ordinal of the
+     * pod of the leader.
+     * @param namespace The namespace of the cluster.
+     * @param cluster The name of the cluster.
+     * @param servers The number of servers in the ensemble.
+     * @return A future which fails with a {@link TimeoutException} if there's no such quorum within the operation timeout.
+     */
+    public Future<Integer> awaitQuorum(String namespace, String cluster, int servers) {
+        Future<Integer> fut = Future.future();
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.READINESS_WAIT, "ZookeeperQuorum")
+                .with("namespace", namespace)
+                .with("name", cluster)
+                .with("servers", servers);
+        awaitQuorum(namespace, cluster, servers, System.currentTimeMillis() + operationTimeoutMs, event.ending(fut.completer()));
+        return fut;
+    }
+
+    private void awaitQuorum(String namespace, String cluster, int servers, long deadline,
+                             Handler<AsyncResult<Integer>> handler) {
+        workerExecutor.<Integer>executeBlocking(
+            future -> future.complete(leader(namespace, cluster, servers)),
+            false,
+            res -> {
+                if (res.failed()) {
+                    handler.handle(Future.failedFuture(res.cause()));
+                } else if (res.result() != null) {
+                    log.info("Zookeeper ensemble of {} servers of cluster {} in namespace {} has a quorum led by server {}",
+                            servers, cluster, namespace, res.result());
+                    handler.handle(Future.succeededFuture(res.result()));
+                } else if (System.currentTimeMillis() > deadline) {
+                    log.error("Zookeeper ensemble of {} servers of cluster {} in namespace {} has no quorum", servers, cluster, namespace);
+                    handler.handle(Future.failedFuture(new TimeoutException()));
+                } else {
+                    log.info("Waiting for the Zookeeper ensemble of {} servers of cluster {} in namespace {} to have a quorum",
+                            servers, cluster, namespace);
+                    vertx.setTimer(QUORUM_POLL_MS, timer -> awaitQuorum(namespace, cluster, servers, deadline, handler));
+                }
+            }
+        );
+    }
+
+    /**
+     * The ordinal of the pod of the leader, if the given number of servers all serve requests with a single leader,
+     * otherwise null.
+     */
+    private Integer leader(String namespace, String cluster, int servers) {
+        Integer leader = null;
+        for (int pod = 0; pod < servers; pod++) {
+            String host = ZookeeperCluster.zookeeperServerHost(namespace, cluster, pod);
+            String mode;
+            try {
+                mode = mode(host);
+            } catch (IOException e) {
+                log.debug("Unable to get the mode of Zookeeper server {}: {}", host, e.toString());
+                return null;
+            }
+            log.debug("Zookeeper server {} is in mode {}", host, mode);
+            if ("leader".equals(mode) || ("standalone".equals(mode) && servers == 1)) {
+                if (leader != null) {
+                    return null;
+                }
+                leader = pod;
+            } else if (!"follower".equals(mode)) {
+                return null;
+            }
+        }
+        return leader;
+    }
+}
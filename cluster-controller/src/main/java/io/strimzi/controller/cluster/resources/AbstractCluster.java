@@ -4,6 +4,9 @@
  */
 package io.strimzi.controller.cluster.resources;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
 import io.fabric8.kubernetes.api.model.ConfigMapVolumeSource;
@@ -13,9 +16,11 @@ import io.fabric8.kubernetes.api.model.ContainerBuilder;
 import io.fabric8.kubernetes.api.model.ContainerPort;
 import io.fabric8.kubernetes.api.model.ContainerPortBuilder;
 import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.LabelSelectorBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
+import io.fabric8.kubernetes.api.model.PodSpec;
 import io.fabric8.kubernetes.api.model.PodSecurityContext;
 import io.fabric8.kubernetes.api.model.PodSecurityContextBuilder;
 import io.fabric8.kubernetes.api.model.Probe;
@@ -36,15 +41,20 @@ import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSetBuilder;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSetUpdateStrategyBuilder;
 import io.strimzi.controller.cluster.ClusterController;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public abstract class AbstractCluster {
 
@@ -53,9 +63,27 @@ public abstract class AbstractCluster {
     private static final String VOLUME_MOUNT_HACK_IMAGE = "busybox";
     private static final String VOLUME_MOUNT_HACK_NAME = "volume-mount-hack";
     private static final Long VOLUME_MOUNT_HACK_GROUPID = 1001L;
+    private static final String VOLUME_MOUNT_HACK_MARKER = ".strimzi-ownership";
 
     public static final String METRICS_CONFIG_FILE = "config.yml";
 
+    /**
+     * The node label used by the default pod anti-affinity for spreading the pods of a cluster across nodes
+     */
+    public static final String HOSTNAME_TOPOLOGY_KEY = "kubernetes.io/hostname";
+
+    /**
+     * Annotations recording the desired state which was last applied to a resource: the resourceVersion of the
+     * cluster ConfigMap it was generated from, the hash of the generated resources and the generation of the resource
+     * once they were applied (a change to its spec by anybody else increments its generation)
+     */
+    public static final String ANNO_CONFIG_MAP_REVISION = ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN + "/config-map-revision";
+    public static final String ANNO_DESIRED_STATE_HASH = ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN + "/desired-state-hash";
+    public static final String ANNO_GENERATION = ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN + "/generation";
+
+    // map entries are sorted so that equal resources always have the same hash
+    private static final ObjectMapper HASH_MAPPER = Json.mapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
     protected final String cluster;
     protected final String namespace;
     protected Map<String, String> labels = new HashMap<>();
@@ -82,6 +110,12 @@ public abstract class AbstractCluster {
 
     protected Storage storage;
 
+    protected Resources resources = new Resources();
+
+    protected Placement placement = new Placement();
+
+    protected String configMapRevision;
+
     protected String mountPath;
     protected String volumeName;
     protected String metricsConfigVolumeName;
@@ -207,6 +241,114 @@ public abstract class AbstractCluster {
         this.storage = storage;
     }
 
+    public Resources getResources() {
+        return resources;
+    }
+
+    protected void setResources(Resources resources) {
+        this.resources = resources;
+    }
+
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    protected void setPlacement(Placement placement) {
+        this.placement = placement;
+    }
+
+    /**
+     * Returns the placement of the pods, with the default affinity if none is specified:
+     * a preferred pod anti-affinity, so that the scheduler spreads the pods of the cluster
+     * across the domains of each of the {@link #getAntiAffinityTopologyKeys()} where it can
+     *
+     * @return  the effective placement
+     */
+    public Placement getEffectivePlacement() {
+
+        if (placement.getAffinity() != null) {
+            return placement;
+        }
+
+        return new Placement()
+                .withAffinity(Placement.defaultAntiAffinity(Collections.singletonMap(ClusterController.STRIMZI_NAME_LABEL, name),
+                        getAntiAffinityTopologyKeys()))
+                .withTolerations(placement.getTolerations());
+    }
+
+    /**
+     * @return  the node labels across which the default pod anti-affinity spreads the pods of the cluster
+     */
+    protected List<String> getAntiAffinityTopologyKeys() {
+        return Collections.singletonList(HOSTNAME_TOPOLOGY_KEY);
+    }
+
+    /**
+     * @return  the resourceVersion of the cluster ConfigMap this cluster was created from, or null
+     */
+    public String getConfigMapRevision() {
+        return configMapRevision;
+    }
+
+    protected void setConfigMapRevision(String configMapRevision) {
+        this.configMapRevision = configMapRevision;
+    }
+
+    /**
+     * Compute a hash of the given generated resources, which changes iff any of them does
+     *
+     * @param desiredState  the resources (or other JSON serializable objects) making up the desired state
+     * @return  the hex encoded SHA-256 hash of the JSON representation of the resources
+     */
+    protected static String hash(Object... desiredState) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(HASH_MAPPER.writeValueAsBytes(desiredState));
+            StringBuilder sb = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Unable to hash the desired state", e);
+        }
+    }
+
+    /**
+     * Check whether the given deployed resource already reflects the desired state, as recorded by
+     * {@link #getDesiredStateAnnotations(String, Long)}: it was generated from the same revision of the cluster ConfigMap,
+     * the generated resources haven't changed since (e.g. because of a new version of the controller)
+     * and the resource spec hasn't been changed by anybody else.
+     *
+     * @param resource  the deployed resource
+     * @param desiredStateHash  the hash of the desired state
+     * @return  true iff there's nothing to reconcile
+     */
+    public boolean isUpToDate(HasMetadata resource, String desiredStateHash) {
+
+        if (resource == null || configMapRevision == null) {
+            return false;
+        }
+        Map<String, String> annotations = resource.getMetadata().getAnnotations();
+        Long generation = resource.getMetadata().getGeneration();
+        return annotations != null && generation != null
+                && configMapRevision.equals(annotations.get(ANNO_CONFIG_MAP_REVISION))
+                && desiredStateHash.equals(annotations.get(ANNO_DESIRED_STATE_HASH))
+                && String.valueOf(generation).equals(annotations.get(ANNO_GENERATION));
+    }
+
+    /**
+     * @param desiredStateHash  the hash of the desired state which has been applied
+     * @param generation    the generation of the resource once the desired state has been applied
+     * @return  the annotations recording the applied desired state on a resource
+     */
+    public Map<String, String> getDesiredStateAnnotations(String desiredStateHash, Long generation) {
+        Map<String, String> annotations = new HashMap<>(3);
+        annotations.put(ANNO_CONFIG_MAP_REVISION, configMapRevision);
+        annotations.put(ANNO_DESIRED_STATE_HASH, desiredStateHash);
+        annotations.put(ANNO_GENERATION, String.valueOf(generation));
+        return annotations;
+    }
+
     public String getVolumeName() {
         return this.volumeName;
     }
@@ -233,6 +375,14 @@ public abstract class AbstractCluster {
         return volumeName + "-" + name + "-" + podId;
     }
 
+    /**
+     * @param podId the pod index
+     * @return  the names of all the persistent volume claims of the pod
+     */
+    public List<String> getPersistentVolumeClaimNames(int podId) {
+        return Collections.singletonList(getPersistentVolumeClaimName(podId));
+    }
+
     public String getPodName(int podId) {
         return name + "-" + podId;
     }
@@ -268,6 +418,10 @@ public abstract class AbstractCluster {
     }
 
     protected PersistentVolumeClaim createPersistentVolumeClaim(String name) {
+        return createPersistentVolumeClaim(name, storage);
+    }
+
+    protected PersistentVolumeClaim createPersistentVolumeClaim(String name, Storage storage) {
 
         Map<String, Quantity> requests = new HashMap<>();
         requests.put("storage", storage.size());
@@ -410,33 +564,27 @@ public abstract class AbstractCluster {
                 .withPorts(ports)
                 .withLivenessProbe(livenessProbe)
                 .withReadinessProbe(readinessProbe)
+                .withResources(resources.toResourceRequirements())
                 .build();
 
         List<Container> initContainers = new ArrayList<>();
         PodSecurityContext securityContext = null;
         // if a persistent volume claim is requested and the running cluster is a Kubernetes one
         // there is an hack on volume mounting which needs an "init-container"
-        if ((this.storage.type() == Storage.StorageType.PERSISTENT_CLAIM) && !isOpenShift) {
-
-            String chown = String.format("chown -R %d:%d %s",
-                    AbstractCluster.VOLUME_MOUNT_HACK_GROUPID,
-                    AbstractCluster.VOLUME_MOUNT_HACK_GROUPID,
-                    volumeMounts.get(0).getMountPath());
-
-            Container initContainer = new ContainerBuilder()
-                    .withName(AbstractCluster.VOLUME_MOUNT_HACK_NAME)
-                    .withImage(AbstractCluster.VOLUME_MOUNT_HACK_IMAGE)
-                    .withVolumeMounts(volumeMounts.get(0))
-                    .withCommand("sh", "-c", chown)
-                    .build();
+        // (unless the volume plugin applies the fsGroup itself)
+        if (this.storage.isPersistentClaim() && !isOpenShift) {
 
-            initContainers.add(initContainer);
+            if (!this.storage.isFsGroupOnly()) {
+                initContainers.add(createVolumeMountHackContainer(volumeClaims, volumeMounts));
+            }
 
             securityContext = new PodSecurityContextBuilder()
                     .withFsGroup(AbstractCluster.VOLUME_MOUNT_HACK_GROUPID)
                     .build();
         }
 
+        Placement effectivePlacement = getEffectivePlacement();
+
         StatefulSet statefulSet = new StatefulSetBuilder()
                 .withNewMetadata()
                     .withName(name)
@@ -457,6 +605,9 @@ public abstract class AbstractCluster {
                             .withAnnotations(getPrometheusAnnotations())
                         .endMetadata()
                         .withNewSpec()
+                            .withServiceAccountName(getServiceAccountName())
+                            .withAffinity(effectivePlacement.getAffinity())
+                            .withTolerations(effectivePlacement.getTolerations())
                             .withSecurityContext(securityContext)
                             .withInitContainers(initContainers)
                             .withContainers(container)
@@ -470,6 +621,78 @@ public abstract class AbstractCluster {
         return statefulSet;
     }
 
+    /**
+     * Create the volume mount hack init container, which sets the ownership of the persistent volumes
+     *
+     * @param volumeClaims the volume claim templates of the StatefulSet
+     * @param volumeMounts the volume mounts of the container
+     * @return  the init container
+     */
+    private static Container createVolumeMountHackContainer(List<PersistentVolumeClaim> volumeClaims, List<VolumeMount> volumeMounts) {
+        Set<String> claimNames = volumeClaims.stream()
+                .map(claim -> claim.getMetadata().getName())
+                .collect(Collectors.toSet());
+        List<VolumeMount> claimMounts = volumeMounts.stream()
+                .filter(mount -> claimNames.contains(mount.getName()))
+                .collect(Collectors.toList());
+        return new ContainerBuilder()
+                .withName(AbstractCluster.VOLUME_MOUNT_HACK_NAME)
+                .withImage(AbstractCluster.VOLUME_MOUNT_HACK_IMAGE)
+                .withVolumeMounts(claimMounts)
+                .withCommand("sh", "-c", claimMounts.stream()
+                        .map(mount -> volumeMountHackCommand(mount.getMountPath()))
+                        .collect(Collectors.joining(" && ")))
+                .build();
+    }
+
+    /**
+     * @param podSpec the pod template of a deployed StatefulSet
+     * @return  if the pods have the fsGroup of the volume mount hack, which is only the case for persistent storage
+     *          on Kubernetes, where the ownership of the volumes is either set by the init container or left to the fsGroup
+     */
+    private static boolean hasVolumeMountHackFsGroup(PodSpec podSpec) {
+        return podSpec.getSecurityContext() != null
+                && AbstractCluster.VOLUME_MOUNT_HACK_GROUPID.equals(podSpec.getSecurityContext().getFsGroup());
+    }
+
+    private static boolean hasVolumeMountHackContainer(PodSpec podSpec) {
+        return podSpec.getInitContainers() != null && podSpec.getInitContainers().stream()
+                .anyMatch(initContainer -> AbstractCluster.VOLUME_MOUNT_HACK_NAME.equals(initContainer.getName()));
+    }
+
+    /**
+     * Compare the "fs-group-only" storage setting with the deployed StatefulSet, where it's recorded by the presence
+     * of the volume mount hack init container
+     *
+     * @param ss the deployed StatefulSet
+     * @return  if the setting changed, so that the pods have to be rolled to get or drop the init container
+     */
+    protected boolean isFsGroupOnlyChanged(StatefulSet ss) {
+        PodSpec podSpec = ss.getSpec().getTemplate().getSpec();
+        if (!storage.isPersistentClaim() || !hasVolumeMountHackFsGroup(podSpec)) {
+            return false;
+        }
+        return storage.isFsGroupOnly() == hasVolumeMountHackContainer(podSpec);
+    }
+
+    /**
+     * The command run by the volume mount hack init container.
+     * The recursive chown of the volume is only done when the volume root isn't owned by the expected user and group,
+     * or a previous chown didn't complete (as recorded by a marker file at the volume root),
+     * so that restarting a pod with a large volume doesn't have to walk the whole volume.
+     *
+     * @param mountPath the path where the volume is mounted
+     * @return  the shell command
+     */
+    static String volumeMountHackCommand(String mountPath) {
+        String owner = AbstractCluster.VOLUME_MOUNT_HACK_GROUPID + ":" + AbstractCluster.VOLUME_MOUNT_HACK_GROUPID;
+        String marker = mountPath + "/" + AbstractCluster.VOLUME_MOUNT_HACK_MARKER;
+        return String.format("if [ -f %2$s ] && [ \"$(stat -c %%u:%%g %1$s)\" = \"%3$s\" ]; then "
+                + "echo \"%1$s already owned by %3$s\"; "
+                + "else chown -R %3$s %1$s && touch %2$s && chown %3$s %2$s; fi",
+                mountPath, marker, owner);
+    }
+
     protected Deployment createDeployment(
             List<ContainerPort> ports,
             Probe livenessProbe,
@@ -536,11 +759,32 @@ public abstract class AbstractCluster {
         statefulSet.getMetadata().getAnnotations().putAll(annotations);
         statefulSet.getSpec().setSelector(new LabelSelectorBuilder().withMatchLabels(getLabelsWithName()).build());
         statefulSet.getSpec().getTemplate().getMetadata().setLabels(getLabelsWithName());
-        Container container = statefulSet.getSpec().getTemplate().getSpec().getContainers().get(0);
+        Placement effectivePlacement = getEffectivePlacement();
+        PodSpec podSpec = statefulSet.getSpec().getTemplate().getSpec();
+        podSpec.setServiceAccountName(getServiceAccountName());
+        podSpec.setAffinity(effectivePlacement.getAffinity());
+        podSpec.setTolerations(effectivePlacement.getTolerations());
+        Container container = podSpec.getContainers().get(0);
         container.setImage(getImage());
         container.setLivenessProbe(livenessProbe);
         container.setReadinessProbe(readinessProbe);
         container.setEnv(getEnvVars());
+        container.setResources(resources.toResourceRequirements());
+
+        // add or remove the volume mount hack init container when the "fs-group-only" setting changed
+        if (storage.isPersistentClaim() && hasVolumeMountHackFsGroup(podSpec)) {
+            List<Container> initContainers = new ArrayList<>();
+            if (podSpec.getInitContainers() != null) {
+                podSpec.getInitContainers().stream()
+                        .filter(initContainer -> !AbstractCluster.VOLUME_MOUNT_HACK_NAME.equals(initContainer.getName()))
+                        .forEach(initContainers::add);
+            }
+            if (!storage.isFsGroupOnly()) {
+                initContainers.add(createVolumeMountHackContainer(statefulSet.getSpec().getVolumeClaimTemplates(),
+                        container.getVolumeMounts()));
+            }
+            podSpec.setInitContainers(initContainers);
+        }
 
         return statefulSet;
     }
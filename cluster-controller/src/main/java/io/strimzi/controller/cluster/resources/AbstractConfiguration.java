@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Represents user provided configuration options, which are appended to a configuration file in the properties format
+ */
+public abstract class AbstractConfiguration {
+
+    private static final Pattern OPTION_NAME = Pattern.compile("[a-z][a-z0-9]*(\\.[a-z0-9]+)*");
+
+    private final Map<String, String> options;
+
+    protected AbstractConfiguration(Map<String, String> options) {
+        this.options = Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * Parse the options from a JSON object mapping option names to their values
+     *
+     * @param json  configuration JSON representation
+     * @param kind  the kind of configuration, for the error messages
+     * @param forbidden whether an option is managed by the cluster controller, so can't be provided
+     * @return  the options, sorted by name
+     * @throws IllegalArgumentException if an option is forbidden, isn't a valid option name or doesn't have a scalar value
+     */
+    protected static Map<String, String> parseJson(JsonObject json, String kind, Predicate<String> forbidden) {
+
+        Map<String, String> options = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : json) {
+            String name = entry.getKey();
+            Object value = entry.getValue();
+            if (forbidden.test(name)) {
+                throw new IllegalArgumentException(kind + " configuration option '" + name + "' is managed by the cluster controller and can't be configured");
+            }
+            if (!OPTION_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("'" + name + "' is not a valid " + kind + " configuration option name");
+            }
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                throw new IllegalArgumentException(kind + " configuration option '" + name + "' must have a string, number or boolean value");
+            }
+            String stringValue = String.valueOf(value);
+            if (stringValue.contains("\n") || stringValue.contains("\r")) {
+                throw new IllegalArgumentException(kind + " configuration option '" + name + "' can't have a multi-line value");
+            }
+            options.put(name, stringValue);
+        }
+        return options;
+    }
+
+    /**
+     * Parse the options from their properties file representation
+     *
+     * @param properties    the configuration in properties file format (or null)
+     * @return  the options, sorted by name
+     */
+    protected static Map<String, String> parseProperties(String properties) {
+
+        Map<String, String> options = new TreeMap<>();
+        if (properties != null) {
+            Properties props = new Properties();
+            try {
+                props.load(new StringReader(properties));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+            for (String name : props.stringPropertyNames()) {
+                options.put(name, props.getProperty(name));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return  the configuration in properties file format, as appended to the configuration file
+     */
+    public String toProperties() {
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue().replace("\\", "\\\\")).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return  the configuration options
+     */
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    /**
+     * Compute the names of the options which differ between this configuration and the other one
+     *
+     * @param other the other instance to compare with
+     * @return  the names of the options which were added, removed or changed
+     */
+    public Set<String> diff(AbstractConfiguration other) {
+
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            if (!entry.getValue().equals(other.options.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String name : other.options.keySet()) {
+            if (!options.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + options + ")";
+    }
+}
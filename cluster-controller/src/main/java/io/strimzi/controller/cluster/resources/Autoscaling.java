@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Represents how the number of workers of a Kafka Connect cluster follows the lag of its sink connectors
+ */
+public class Autoscaling {
+
+    public static final String MIN_NODES_FIELD = "min-nodes";
+    public static final String MAX_NODES_FIELD = "max-nodes";
+    public static final String LAG_PER_NODE_FIELD = "lag-per-node";
+    public static final String SCALE_UP_COOLDOWN_FIELD = "scale-up-cooldown";
+    public static final String SCALE_DOWN_COOLDOWN_FIELD = "scale-down-cooldown";
+
+    public static final int DEFAULT_MIN_NODES = 1;
+    public static final long DEFAULT_LAG_PER_NODE = 10_000;
+    public static final long DEFAULT_SCALE_UP_COOLDOWN_MS = 300_000;
+    public static final long DEFAULT_SCALE_DOWN_COOLDOWN_MS = 1_800_000;
+
+    private int minNodes = DEFAULT_MIN_NODES;
+    private int maxNodes;
+    private long lagPerNode = DEFAULT_LAG_PER_NODE;
+    private long scaleUpCooldownMs = DEFAULT_SCALE_UP_COOLDOWN_MS;
+    private long scaleDownCooldownMs = DEFAULT_SCALE_DOWN_COOLDOWN_MS;
+
+    /**
+     * Specify the bounds on the number of workers
+     *
+     * @param minNodes  the minimum number of workers
+     * @param maxNodes  the maximum number of workers
+     * @return  current Autoscaling instance
+     */
+    public Autoscaling withNodes(final int minNodes, final int maxNodes) {
+        this.minNodes = minNodes;
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * Specify the lag of the sink connectors which a single worker is expected to keep up with
+     *
+     * @param lagPerNode    the lag in records
+     * @return  current Autoscaling instance
+     */
+    public Autoscaling withLagPerNode(final long lagPerNode) {
+        this.lagPerNode = lagPerNode;
+        return this;
+    }
+
+    /**
+     * Specify the minimum time between a scaling of the cluster and a following scale up
+     *
+     * @param scaleUpCooldownMs the cooldown in milliseconds
+     * @return  current Autoscaling instance
+     */
+    public Autoscaling withScaleUpCooldownMs(final long scaleUpCooldownMs) {
+        this.scaleUpCooldownMs = scaleUpCooldownMs;
+        return this;
+    }
+
+    /**
+     * Specify the minimum time between a scaling of the cluster and a following scale down
+     *
+     * @param scaleDownCooldownMs   the cooldown in milliseconds
+     * @return  current Autoscaling instance
+     */
+    public Autoscaling withScaleDownCooldownMs(final long scaleDownCooldownMs) {
+        this.scaleDownCooldownMs = scaleDownCooldownMs;
+        return this;
+    }
+
+    /**
+     * Returns an Autoscaling instance from a corresponding JSON representation, for example
+     * <code>{"min-nodes": 2, "max-nodes": 10, "lag-per-node": 10000, "scale-up-cooldown": 300000, "scale-down-cooldown": 1800000}</code>
+     *
+     * @param json  autoscaling JSON representation
+     * @return  Autoscaling instance
+     * @throws IllegalArgumentException if the bounds are missing or inconsistent, or the lag or a cooldown isn't valid
+     */
+    public static Autoscaling fromJson(JsonObject json) {
+
+        Autoscaling autoscaling = new Autoscaling();
+
+        int minNodes = json.getInteger(Autoscaling.MIN_NODES_FIELD, DEFAULT_MIN_NODES);
+        Integer maxNodes = json.getInteger(Autoscaling.MAX_NODES_FIELD);
+        if (minNodes < 1) {
+            throw new IllegalArgumentException("The autoscaling '" + Autoscaling.MIN_NODES_FIELD + "' must be positive");
+        }
+        if (maxNodes == null || maxNodes < minNodes) {
+            throw new IllegalArgumentException("The autoscaling '" + Autoscaling.MAX_NODES_FIELD + "' must be given, and not be less than '"
+                    + Autoscaling.MIN_NODES_FIELD + "'");
+        }
+        autoscaling.withNodes(minNodes, maxNodes);
+
+        long lagPerNode = json.getLong(Autoscaling.LAG_PER_NODE_FIELD, DEFAULT_LAG_PER_NODE);
+        if (lagPerNode <= 0) {
+            throw new IllegalArgumentException("The autoscaling '" + Autoscaling.LAG_PER_NODE_FIELD + "' must be positive");
+        }
+        autoscaling.withLagPerNode(lagPerNode);
+
+        long scaleUpCooldownMs = json.getLong(Autoscaling.SCALE_UP_COOLDOWN_FIELD, DEFAULT_SCALE_UP_COOLDOWN_MS);
+        long scaleDownCooldownMs = json.getLong(Autoscaling.SCALE_DOWN_COOLDOWN_FIELD, DEFAULT_SCALE_DOWN_COOLDOWN_MS);
+        if (scaleUpCooldownMs < 0 || scaleDownCooldownMs < 0) {
+            throw new IllegalArgumentException("The autoscaling '" + Autoscaling.SCALE_UP_COOLDOWN_FIELD + "' and '"
+                    + Autoscaling.SCALE_DOWN_COOLDOWN_FIELD + "' can't be negative");
+        }
+        autoscaling.withScaleUpCooldownMs(scaleUpCooldownMs);
+        autoscaling.withScaleDownCooldownMs(scaleDownCooldownMs);
+
+        return autoscaling;
+    }
+
+    /**
+     * @param replicas  a number of workers
+     * @return  the given number of workers, brought within the bounds
+     */
+    public int bound(int replicas) {
+        return Math.max(minNodes, Math.min(maxNodes, replicas));
+    }
+
+    /**
+     * The number of workers needed to keep up with the given load: enough for each worker to have no more than
+     * the lag per node, but no more than there are tasks, because a worker without a task has nothing to do.
+     *
+     * @param tasks the number of tasks of all the connectors
+     * @param lag   the total lag in records of the sink connectors
+     * @return  the number of workers, within the bounds
+     */
+    public int desiredReplicas(int tasks, long lag) {
+        long forLag = (lag + lagPerNode - 1) / lagPerNode;
+        return bound((int) Math.min(forLag, tasks));
+    }
+
+    /**
+     * The number of workers to scale to now, from the current and the desired number of workers.
+     * Scaling up goes straight to the desired number, so a peak is absorbed with a single rebalance of the tasks,
+     * while scaling down removes one worker at a time. Either is held back until its cooldown has passed since the
+     * last scaling, so the cluster isn't rebalanced again before the lag reflects the previous rebalance.
+     *
+     * @param current   the current number of workers
+     * @param desired   the desired number of workers
+     * @param sinceLastScaleMs  the time in milliseconds since the cluster was last scaled
+     * @return  the number of workers to scale to, which is {@code current} when the cluster isn't to be scaled
+     */
+    public int nextReplicas(int current, int desired, long sinceLastScaleMs) {
+        if (desired > current && sinceLastScaleMs >= scaleUpCooldownMs) {
+            return desired;
+        } else if (desired < current && sinceLastScaleMs >= scaleDownCooldownMs) {
+            return current - 1;
+        } else {
+            return current;
+        }
+    }
+
+    /**
+     * @return  the minimum number of workers
+     */
+    public int getMinNodes() {
+        return minNodes;
+    }
+
+    /**
+     * @return  the maximum number of workers
+     */
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * @return  the lag in records of the sink connectors which a single worker is expected to keep up with
+     */
+    public long getLagPerNode() {
+        return lagPerNode;
+    }
+
+    /**
+     * @return  the minimum time in milliseconds between a scaling of the cluster and a following scale up
+     */
+    public long getScaleUpCooldownMs() {
+        return scaleUpCooldownMs;
+    }
+
+    /**
+     * @return  the minimum time in milliseconds between a scaling of the cluster and a following scale down
+     */
+    public long getScaleDownCooldownMs() {
+        return scaleDownCooldownMs;
+    }
+}
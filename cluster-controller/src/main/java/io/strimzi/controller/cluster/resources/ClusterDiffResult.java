@@ -14,6 +14,9 @@ public class ClusterDiffResult {
     private final boolean scaleUp;
     private final boolean scaleDown;
     private final boolean isMetricsChanged;
+    private final boolean isDynamicConfigChanged;
+    private final boolean isVolumesAdded;
+    private final boolean isBuildChanged;
 
     public ClusterDiffResult() {
         this(false);
@@ -28,11 +31,29 @@ public class ClusterDiffResult {
     }
 
     public ClusterDiffResult(boolean isDifferent, boolean needsRollingUpdate, boolean isScaleUp, boolean isScaleDown, boolean isMetricsChanged) {
-        this.different = isDifferent || needsRollingUpdate;
+        this(isDifferent, needsRollingUpdate, isScaleUp, isScaleDown, isMetricsChanged, false);
+    }
+
+    public ClusterDiffResult(boolean isDifferent, boolean needsRollingUpdate, boolean isScaleUp, boolean isScaleDown,
+                             boolean isMetricsChanged, boolean isDynamicConfigChanged) {
+        this(isDifferent, needsRollingUpdate, isScaleUp, isScaleDown, isMetricsChanged, isDynamicConfigChanged, false);
+    }
+
+    public ClusterDiffResult(boolean isDifferent, boolean needsRollingUpdate, boolean isScaleUp, boolean isScaleDown,
+                             boolean isMetricsChanged, boolean isDynamicConfigChanged, boolean isVolumesAdded) {
+        this(isDifferent, needsRollingUpdate, isScaleUp, isScaleDown, isMetricsChanged, isDynamicConfigChanged, isVolumesAdded, false);
+    }
+
+    public ClusterDiffResult(boolean isDifferent, boolean needsRollingUpdate, boolean isScaleUp, boolean isScaleDown,
+                             boolean isMetricsChanged, boolean isDynamicConfigChanged, boolean isVolumesAdded, boolean isBuildChanged) {
+        this.different = isDifferent || needsRollingUpdate || isDynamicConfigChanged || isVolumesAdded || isBuildChanged;
         this.rollingUpdate = needsRollingUpdate;
         this.scaleUp = isScaleUp;
         this.scaleDown = isScaleDown;
         this.isMetricsChanged = isMetricsChanged;
+        this.isDynamicConfigChanged = isDynamicConfigChanged;
+        this.isVolumesAdded = isVolumesAdded;
+        this.isBuildChanged = isBuildChanged;
     }
 
     /**
@@ -59,4 +80,31 @@ public class ClusterDiffResult {
     public boolean isMetricsChanged() {
         return isMetricsChanged;
     }
+
+    /**
+     * Determines whether configuration which can be updated on the running brokers has changed.
+     * This can be the case as well as a rolling update being needed, if both kinds of configuration changed.
+     * @return true iff the dynamic configuration needs to be updated
+     */
+    public boolean isDynamicConfigChanged() {
+        return isDynamicConfigChanged;
+    }
+
+    /**
+     * Determines whether volumes have been added to the storage.
+     * The volume claim templates of a StatefulSet can't be patched, so it has to be replaced.
+     * @return true iff volumes have been added
+     */
+    public boolean isVolumesAdded() {
+        return isVolumesAdded;
+    }
+
+    /**
+     * Determines whether the inputs of the S2I build (its builder image, its output or its strategy) have changed.
+     * The BuildConfig and the source ImageStream are only patched in that case, because touching them can start a new build.
+     * @return true iff the BuildConfig or the source ImageStream need to be patched
+     */
+    public boolean isBuildChanged() {
+        return isBuildChanged;
+    }
 }
@@ -9,6 +9,7 @@ import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerPort;
 import io.fabric8.kubernetes.api.model.EnvVar;
 import io.fabric8.kubernetes.api.model.EnvVarBuilder;
+import io.fabric8.kubernetes.api.model.EnvVarSourceBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServicePort;
@@ -23,6 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class KafkaCluster extends AbstractCluster {
@@ -44,6 +46,9 @@ public class KafkaCluster extends AbstractCluster {
     private int defaultReplicationFactor = DEFAULT_KAFKA_DEFAULT_REPLICATION_FACTOR;
     private int offsetsTopicReplicationFactor = DEFAULT_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR;
     private int transactionStateLogReplicationFactor = DEFAULT_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR;
+    private KafkaConfiguration configuration = KafkaConfiguration.fromProperties(null);
+    private String rackTopologyKey;
+    private Rebalancing rebalancing = new Rebalancing();
 
     // Configuration defaults
     private static final String DEFAULT_IMAGE = "strimzi/kafka:latest";
@@ -65,6 +70,19 @@ public class KafkaCluster extends AbstractCluster {
     public static final String KEY_HEALTHCHECK_TIMEOUT = "kafka-healthcheck-timeout";
     public static final String KEY_METRICS_CONFIG = "kafka-metrics-config";
     public static final String KEY_STORAGE = "kafka-storage";
+    public static final String KEY_RESOURCES = "kafka-resources";
+    public static final String KEY_KAFKA_CONFIG = "kafka-config";
+    public static final String KEY_PLACEMENT = "kafka-placement";
+    public static final String KEY_RACK = "kafka-rack";
+    public static final String KEY_REBALANCING = "kafka-rebalancing";
+
+    // Rack configuration fields
+    public static final String RACK_TOPOLOGY_KEY_FIELD = "topologyKey";
+
+    /**
+     * The service account used by the Kafka pods when rack awareness is enabled, for reading the labels of their node
+     */
+    public static final String RACK_SERVICE_ACCOUNT = "strimzi-kafka";
 
     // Kafka configuration keys
     private static final String KEY_KAFKA_ZOOKEEPER_CONNECT = "KAFKA_ZOOKEEPER_CONNECT";
@@ -72,6 +90,10 @@ public class KafkaCluster extends AbstractCluster {
     private static final String KEY_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR = "KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR";
     private static final String KEY_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR = "KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR";
     private static final String KEY_KAFKA_METRICS_ENABLED = "KAFKA_METRICS_ENABLED";
+    private static final String KEY_KAFKA_CONFIGURATION = "KAFKA_CONFIGURATION";
+    private static final String KEY_KAFKA_DATA_VOLUMES = "KAFKA_DATA_VOLUMES";
+    private static final String KEY_KAFKA_RACK_TOPOLOGY_KEY = "KAFKA_RACK_TOPOLOGY_KEY";
+    private static final String KEY_KAFKA_NODE_NAME = "KAFKA_NODE_NAME";
 
     /**
      * Constructor
@@ -110,6 +132,15 @@ public class KafkaCluster extends AbstractCluster {
         return cluster + KafkaCluster.HEADLESS_NAME_SUFFIX;
     }
 
+    /**
+     * @param namespace Kubernetes/OpenShift namespace where the cluster is deployed
+     * @param cluster   overall cluster name
+     * @return  the bootstrap servers for clients connecting to the Kafka cluster from within Kubernetes/OpenShift
+     */
+    public static String bootstrapServers(String namespace, String cluster) {
+        return kafkaClusterName(cluster) + "." + namespace + ".svc:" + CLIENT_PORT;
+    }
+
     /**
      * Create a Kafka cluster from the related ConfigMap resource
      *
@@ -120,6 +151,7 @@ public class KafkaCluster extends AbstractCluster {
 
         KafkaCluster kafka = new KafkaCluster(kafkaClusterCm.getMetadata().getNamespace(), kafkaClusterCm.getMetadata().getName());
         kafka.setLabels(kafkaClusterCm.getMetadata().getLabels());
+        kafka.setConfigMapRevision(kafkaClusterCm.getMetadata().getResourceVersion());
 
         kafka.setReplicas(Integer.parseInt(kafkaClusterCm.getData().getOrDefault(KEY_REPLICAS, String.valueOf(DEFAULT_REPLICAS))));
         kafka.setImage(kafkaClusterCm.getData().getOrDefault(KEY_IMAGE, DEFAULT_IMAGE));
@@ -131,15 +163,44 @@ public class KafkaCluster extends AbstractCluster {
         kafka.setOffsetsTopicReplicationFactor(Integer.parseInt(kafkaClusterCm.getData().getOrDefault(KEY_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR, String.valueOf(DEFAULT_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR))));
         kafka.setTransactionStateLogReplicationFactor(Integer.parseInt(kafkaClusterCm.getData().getOrDefault(KEY_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR, String.valueOf(DEFAULT_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR))));
 
+        String kafkaConfig = kafkaClusterCm.getData().get(KEY_KAFKA_CONFIG);
+        if (kafkaConfig != null) {
+            kafka.setConfiguration(KafkaConfiguration.fromJson(new JsonObject(kafkaConfig)));
+        }
+
         String metricsConfig = kafkaClusterCm.getData().get(KEY_METRICS_CONFIG);
         kafka.setMetricsEnabled(metricsConfig != null);
         if (kafka.isMetricsEnabled()) {
-            kafka.setMetricsConfig(new JsonObject(metricsConfig));
+            kafka.setMetricsConfig(KafkaMetricsConfig.fromJson(new JsonObject(metricsConfig)).getExporterConfig());
         }
 
         String storageConfig = kafkaClusterCm.getData().get(KEY_STORAGE);
         kafka.setStorage(Storage.fromJson(new JsonObject(storageConfig)));
 
+        String resourcesConfig = kafkaClusterCm.getData().get(KEY_RESOURCES);
+        if (resourcesConfig != null) {
+            kafka.setResources(Resources.fromJson(new JsonObject(resourcesConfig)));
+        }
+
+        String placementConfig = kafkaClusterCm.getData().get(KEY_PLACEMENT);
+        if (placementConfig != null) {
+            kafka.setPlacement(Placement.fromJson(new JsonObject(placementConfig)));
+        }
+
+        String rackConfig = kafkaClusterCm.getData().get(KEY_RACK);
+        if (rackConfig != null) {
+            String topologyKey = new JsonObject(rackConfig).getString(RACK_TOPOLOGY_KEY_FIELD);
+            if (topologyKey == null || topologyKey.isEmpty()) {
+                throw new IllegalArgumentException("The Kafka rack configuration requires a '" + RACK_TOPOLOGY_KEY_FIELD + "' field");
+            }
+            kafka.setRackTopologyKey(topologyKey);
+        }
+
+        String rebalancingConfig = kafkaClusterCm.getData().get(KEY_REBALANCING);
+        if (rebalancingConfig != null) {
+            kafka.setRebalancing(Rebalancing.fromJson(new JsonObject(rebalancingConfig)));
+        }
+
         return kafka;
     }
 
@@ -161,34 +222,54 @@ public class KafkaCluster extends AbstractCluster {
         kafka.setImage(container.getImage());
         kafka.setHealthCheckInitialDelay(container.getReadinessProbe().getInitialDelaySeconds());
         kafka.setHealthCheckTimeout(container.getReadinessProbe().getTimeoutSeconds());
+        kafka.setResources(Resources.fromResourceRequirements(container.getResources()));
+        kafka.setPlacement(Placement.fromPodSpec(ss.getSpec().getTemplate().getSpec()));
 
-        Map<String, String> vars = container.getEnv().stream().collect(
-                Collectors.toMap(EnvVar::getName, EnvVar::getValue));
+        Map<String, String> vars = container.getEnv().stream()
+                .filter(var -> var.getValue() != null)
+                .collect(Collectors.toMap(EnvVar::getName, EnvVar::getValue));
 
         kafka.setZookeeperConnect(vars.getOrDefault(KEY_KAFKA_ZOOKEEPER_CONNECT, ss.getMetadata().getName() + "-zookeeper:2181"));
         kafka.setDefaultReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_KAFKA_DEFAULT_REPLICATION_FACTOR, String.valueOf(DEFAULT_KAFKA_DEFAULT_REPLICATION_FACTOR))));
         kafka.setOffsetsTopicReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR, String.valueOf(DEFAULT_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR))));
         kafka.setTransactionStateLogReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR, String.valueOf(DEFAULT_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR))));
+        kafka.setConfiguration(KafkaConfiguration.fromProperties(vars.get(KEY_KAFKA_CONFIGURATION)));
+        kafka.setRackTopologyKey(vars.get(KEY_KAFKA_RACK_TOPOLOGY_KEY));
 
         kafka.setMetricsEnabled(Boolean.parseBoolean(vars.getOrDefault(KEY_KAFKA_METRICS_ENABLED, String.valueOf(DEFAULT_KAFKA_METRICS_ENABLED))));
         if (kafka.isMetricsEnabled()) {
             kafka.setMetricsConfigName(metricConfigsName(cluster));
         }
 
-        if (!ss.getSpec().getVolumeClaimTemplates().isEmpty()) {
+        kafka.setStorage(kafka.storageFromStatefulSet(ss));
 
-            Storage storage = Storage.fromPersistentVolumeClaim(ss.getSpec().getVolumeClaimTemplates().get(0));
-            if (ss.getMetadata().getAnnotations() != null) {
-                String deleteClaimAnnotation = String.format("%s/%s", ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN, Storage.DELETE_CLAIM_FIELD);
-                storage.withDeleteClaim(Boolean.valueOf(ss.getMetadata().getAnnotations().computeIfAbsent(deleteClaimAnnotation, s -> "false")));
-            }
-            kafka.setStorage(storage);
+        return kafka;
+    }
+
+    /**
+     * Get the kind of storage of the deployed StatefulSet
+     *
+     * @param ss The StatefulSet
+     * @return  the Storage
+     */
+    private Storage storageFromStatefulSet(StatefulSet ss) {
+
+        List<PersistentVolumeClaim> claims = ss.getSpec().getVolumeClaimTemplates();
+        Storage storage;
+        if (claims.isEmpty()) {
+            return new Storage(Storage.StorageType.EPHEMERAL);
+        } else if (claims.size() == 1 && volumeName.equals(claims.get(0).getMetadata().getName())) {
+            storage = Storage.fromPersistentVolumeClaim(claims.get(0));
         } else {
-            Storage storage = new Storage(Storage.StorageType.EPHEMERAL);
-            kafka.setStorage(storage);
+            // with JBOD storage there's a claim for each volume
+            storage = Storage.fromPersistentVolumeClaims(claims);
         }
-
-        return kafka;
+        // the delete-claim flag is backed by the StatefulSets
+        if (ss.getMetadata().getAnnotations() != null) {
+            String deleteClaimAnnotation = String.format("%s/%s", ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN, Storage.DELETE_CLAIM_FIELD);
+            storage.withDeleteClaim(Boolean.valueOf(ss.getMetadata().getAnnotations().getOrDefault(deleteClaimAnnotation, "false")));
+        }
+        return storage;
     }
 
     /**
@@ -207,6 +288,7 @@ public class KafkaCluster extends AbstractCluster {
         boolean different = false;
         boolean rollingUpdate = false;
         boolean metricsChanged = false;
+        boolean dynamicConfigChanged = false;
         if (replicas > ss.getSpec().getReplicas()) {
             log.info("Diff: Expected replicas {}, actual replicas {}", replicas, ss.getSpec().getReplicas());
             scaleUp = true;
@@ -229,8 +311,9 @@ public class KafkaCluster extends AbstractCluster {
             rollingUpdate = true;
         }
 
-        Map<String, String> vars = container.getEnv().stream().collect(
-                Collectors.toMap(EnvVar::getName, EnvVar::getValue));
+        Map<String, String> vars = container.getEnv().stream()
+                .filter(var -> var.getValue() != null)
+                .collect(Collectors.toMap(EnvVar::getName, EnvVar::getValue));
 
         if (!zookeeperConnect.equals(vars.getOrDefault(KEY_KAFKA_ZOOKEEPER_CONNECT, DEFAULT_KAFKA_ZOOKEEPER_CONNECT))
                 || defaultReplicationFactor != Integer.parseInt(vars.getOrDefault(KEY_KAFKA_DEFAULT_REPLICATION_FACTOR, String.valueOf(DEFAULT_KAFKA_DEFAULT_REPLICATION_FACTOR)))
@@ -241,6 +324,20 @@ public class KafkaCluster extends AbstractCluster {
             rollingUpdate = true;
         }
 
+        // options which the brokers can update on the fly don't need a rolling update
+        Set<String> changedOptions = configuration.diff(KafkaConfiguration.fromProperties(vars.get(KEY_KAFKA_CONFIGURATION)));
+        if (!changedOptions.isEmpty()) {
+            log.info("Diff: Kafka configuration options {} changed", changedOptions);
+            different = true;
+            for (String option : changedOptions) {
+                if (KafkaConfiguration.DYNAMIC_OPTIONS.contains(option)) {
+                    dynamicConfigChanged = true;
+                } else {
+                    rollingUpdate = true;
+                }
+            }
+        }
+
         if (healthCheckInitialDelay != container.getReadinessProbe().getInitialDelaySeconds()
                 || healthCheckTimeout != container.getReadinessProbe().getTimeoutSeconds()) {
             log.info("Diff: Kafka healthcheck timing changed");
@@ -248,6 +345,28 @@ public class KafkaCluster extends AbstractCluster {
             rollingUpdate = true;
         }
 
+        String ssRackTopologyKey = vars.get(KEY_KAFKA_RACK_TOPOLOGY_KEY);
+        if (rackTopologyKey == null ? ssRackTopologyKey != null : !rackTopologyKey.equals(ssRackTopologyKey)) {
+            log.info("Diff: Expected rack topology key {}, actual rack topology key {}", rackTopologyKey, ssRackTopologyKey);
+            different = true;
+            rollingUpdate = true;
+        }
+
+        Resources ssResources = Resources.fromResourceRequirements(container.getResources());
+        if (resources.isDifferent(ssResources)) {
+            log.info("Diff: Expected resources {}, actual resources {}", resources, ssResources);
+            different = true;
+            rollingUpdate = true;
+        }
+
+        Placement expectedPlacement = getEffectivePlacement();
+        Placement ssPlacement = Placement.fromPodSpec(ss.getSpec().getTemplate().getSpec());
+        if (expectedPlacement.isDifferent(ssPlacement)) {
+            log.info("Diff: Expected placement {}, actual placement {}", expectedPlacement, ssPlacement);
+            different = true;
+            rollingUpdate = true;
+        }
+
         if (isMetricsEnabled != Boolean.parseBoolean(vars.getOrDefault(KEY_KAFKA_METRICS_ENABLED, String.valueOf(DEFAULT_KAFKA_METRICS_ENABLED)))) {
             log.info("Diff: Kafka metrics enabled/disabled");
             metricsChanged = true;
@@ -262,36 +381,34 @@ public class KafkaCluster extends AbstractCluster {
             }
         }
 
-        // get the current (deployed) kind of storage
-        Storage ssStorage;
-        if (ss.getSpec().getVolumeClaimTemplates().isEmpty()) {
-            ssStorage = new Storage(Storage.StorageType.EPHEMERAL);
-        } else {
-            ssStorage = Storage.fromPersistentVolumeClaim(ss.getSpec().getVolumeClaimTemplates().get(0));
-            // the delete-claim flack is backed by the StatefulSets
-            if (ss.getMetadata().getAnnotations() != null) {
-                String deleteClaimAnnotation = String.format("%s/%s", ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN, Storage.DELETE_CLAIM_FIELD);
-                ssStorage.withDeleteClaim(Boolean.valueOf(ss.getMetadata().getAnnotations().computeIfAbsent(deleteClaimAnnotation, s -> "false")));
-            }
-        }
-
         // compute the differences with the requested storage (from the updated ConfigMap)
-        Storage.StorageDiffResult storageDiffResult = storage.diff(ssStorage);
+        Storage.StorageDiffResult storageDiffResult = storage.diff(storageFromStatefulSet(ss));
 
         // check for all the not allowed changes to the storage
         boolean isStorageRejected = storageDiffResult.isType() || storageDiffResult.isSize() ||
-                storageDiffResult.isStorageClass() || storageDiffResult.isSelector();
+                storageDiffResult.isStorageClass() || storageDiffResult.isSelector() || storageDiffResult.isVolumesRemoved();
 
-        // only delete-claim flag can be changed
-        if (!isStorageRejected && (storage.type() == Storage.StorageType.PERSISTENT_CLAIM)) {
+        // only delete-claim and fs-group-only flags can be changed, and volumes added to JBOD storage
+        boolean volumesAdded = false;
+        if (!isStorageRejected && storage.isPersistentClaim()) {
             if (storageDiffResult.isDeleteClaim()) {
                 different = true;
             }
+            if (isFsGroupOnlyChanged(ss)) {
+                log.info("Diff: Kafka storage {} changed", Storage.FS_GROUP_ONLY_FIELD);
+                different = true;
+                rollingUpdate = true;
+            }
+            if (storageDiffResult.isVolumesAdded()) {
+                log.info("Diff: Kafka storage volumes added");
+                volumesAdded = true;
+                rollingUpdate = true;
+            }
         } else if (isStorageRejected) {
-            log.warn("Changing storage configuration other than delete-claim is not supported !");
+            log.warn("Changing storage configuration other than delete-claim, fs-group-only and adding JBOD volumes is not supported !");
         }
 
-        return new ClusterDiffResult(different, rollingUpdate, scaleUp, scaleDown, metricsChanged);
+        return new ClusterDiffResult(different, rollingUpdate, scaleUp, scaleDown, metricsChanged, dynamicConfigChanged, volumesAdded);
     }
 
     private List<ServicePort> getServicePorts() {
@@ -372,6 +489,18 @@ public class KafkaCluster extends AbstractCluster {
         return patchConfigMap(cm, data);
     }
 
+    /**
+     * Computes the hash of the resources generated for this cluster, which are recorded on the StatefulSet
+     * once applied, so that a reconciliation can skip the cluster when nothing changed
+     * @param isOpenShift True iff this controller is operating within OpenShift.
+     * @return The hash of the desired state
+     */
+    public String getDesiredStateHash(boolean isOpenShift) {
+
+        return hash(generateStatefulSet(isOpenShift), generateService(), generateHeadlessService(),
+                metricsConfig != null ? metricsConfig.encode() : null);
+    }
+
     /**
      * Patches the given StatefulSet
      * @param statefulSet The StatefulSet to patch
@@ -416,13 +545,23 @@ public class KafkaCluster extends AbstractCluster {
         List<PersistentVolumeClaim> pvcList = new ArrayList<>();
         if (storage.type() == Storage.StorageType.PERSISTENT_CLAIM) {
             pvcList.add(createPersistentVolumeClaim(volumeName));
+        } else if (storage.type() == Storage.StorageType.JBOD) {
+            for (int i = 0; i < storage.volumes().size(); i++) {
+                pvcList.add(createPersistentVolumeClaim(jbodVolumeName(i), storage.volumes().get(i)));
+            }
         }
         return pvcList;
     }
 
     private List<VolumeMount> getVolumeMounts() {
         List<VolumeMount> volumeMountList = new ArrayList<>();
-        volumeMountList.add(createVolumeMount(volumeName, mountPath));
+        if (storage.type() == Storage.StorageType.JBOD) {
+            for (int i = 0; i < storage.volumes().size(); i++) {
+                volumeMountList.add(createVolumeMount(jbodVolumeName(i), jbodMountPath(i)));
+            }
+        } else {
+            volumeMountList.add(createVolumeMount(volumeName, mountPath));
+        }
         if (isMetricsEnabled) {
             volumeMountList.add(createVolumeMount(metricsConfigVolumeName, metricsConfigMountPath));
         }
@@ -438,10 +577,77 @@ public class KafkaCluster extends AbstractCluster {
         varList.add(new EnvVarBuilder().withName(KEY_KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR).withValue(String.valueOf(offsetsTopicReplicationFactor)).build());
         varList.add(new EnvVarBuilder().withName(KEY_KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR).withValue(String.valueOf(transactionStateLogReplicationFactor)).build());
         varList.add(new EnvVarBuilder().withName(KEY_KAFKA_METRICS_ENABLED).withValue(String.valueOf(isMetricsEnabled)).build());
+        if (!configuration.getOptions().isEmpty()) {
+            varList.add(new EnvVarBuilder().withName(KEY_KAFKA_CONFIGURATION).withValue(configuration.toProperties()).build());
+        }
+        if (storage.type() == Storage.StorageType.JBOD) {
+            List<String> mountPaths = new ArrayList<>(storage.volumes().size());
+            for (int i = 0; i < storage.volumes().size(); i++) {
+                mountPaths.add(jbodMountPath(i));
+            }
+            varList.add(new EnvVarBuilder().withName(KEY_KAFKA_DATA_VOLUMES).withValue(String.join(",", mountPaths)).build());
+        }
+        if (rackTopologyKey != null) {
+            // the broker gets its rack from the labels of the node it's scheduled on
+            varList.add(new EnvVarBuilder().withName(KEY_KAFKA_RACK_TOPOLOGY_KEY).withValue(rackTopologyKey).build());
+            varList.add(new EnvVarBuilder().withName(KEY_KAFKA_NODE_NAME)
+                    .withValueFrom(new EnvVarSourceBuilder().withNewFieldRef().withFieldPath("spec.nodeName").endFieldRef().build())
+                    .build());
+        }
 
         return varList;
     }
 
+    /**
+     * @param volumeId  the index of the volume of JBOD storage
+     * @return  the name of the volume
+     */
+    private String jbodVolumeName(int volumeId) {
+        return volumeName + "-" + volumeId;
+    }
+
+    /**
+     * @param volumeId  the index of the volume of JBOD storage
+     * @return  the path where the volume is mounted
+     */
+    private String jbodMountPath(int volumeId) {
+        return mountPath + "/" + jbodVolumeName(volumeId);
+    }
+
+    /**
+     * With rack awareness the brokers need to read the labels of their node, so they use a dedicated service account
+     */
+    @Override
+    protected String getServiceAccountName() {
+        return rackTopologyKey != null ? RACK_SERVICE_ACCOUNT : null;
+    }
+
+    /**
+     * With rack awareness the brokers are spread across racks as well as across nodes
+     */
+    @Override
+    protected List<String> getAntiAffinityTopologyKeys() {
+        if (rackTopologyKey != null) {
+            List<String> topologyKeys = new ArrayList<>(super.getAntiAffinityTopologyKeys());
+            topologyKeys.add(rackTopologyKey);
+            return topologyKeys;
+        }
+        return super.getAntiAffinityTopologyKeys();
+    }
+
+    @Override
+    public List<String> getPersistentVolumeClaimNames(int podId) {
+        if (storage.type() == Storage.StorageType.JBOD) {
+            List<String> names = new ArrayList<>(storage.volumes().size());
+            for (int i = 0; i < storage.volumes().size(); i++) {
+                names.add(jbodVolumeName(i) + "-" + name + "-" + podId);
+            }
+            return names;
+        } else {
+            return super.getPersistentVolumeClaimNames(podId);
+        }
+    }
+
     protected void setZookeeperConnect(String zookeeperConnect) {
         this.zookeeperConnect = zookeeperConnect;
     }
@@ -457,4 +663,34 @@ public class KafkaCluster extends AbstractCluster {
     protected void setTransactionStateLogReplicationFactor(int transactionStateLogReplicationFactor) {
         this.transactionStateLogReplicationFactor = transactionStateLogReplicationFactor;
     }
+
+    public KafkaConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    protected void setConfiguration(KafkaConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return  the node label whose value is used as the brokers' rack, or null if rack awareness isn't enabled
+     */
+    public String getRackTopologyKey() {
+        return rackTopologyKey;
+    }
+
+    protected void setRackTopologyKey(String rackTopologyKey) {
+        this.rackTopologyKey = rackTopologyKey;
+    }
+
+    /**
+     * @return  how partition replicas are moved between the brokers when the cluster is scaled
+     */
+    public Rebalancing getRebalancing() {
+        return rebalancing;
+    }
+
+    protected void setRebalancing(Rebalancing rebalancing) {
+        this.rebalancing = rebalancing;
+    }
 }
\ No newline at end of file
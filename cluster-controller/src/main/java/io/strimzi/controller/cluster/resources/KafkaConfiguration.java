@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Represents the user provided Kafka broker configuration, from the {@code kafka-config} field of the cluster ConfigMap
+ */
+public class KafkaConfiguration extends AbstractConfiguration {
+
+    /**
+     * Options which are managed by the cluster controller or the Kafka image, so can't be provided by the user
+     */
+    public static final Set<String> FORBIDDEN_OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "broker.id",
+            "broker.rack",
+            "listeners",
+            "advertised.listeners",
+            "listener.security.protocol.map",
+            "inter.broker.listener.name",
+            "zookeeper.connect",
+            "log.dir",
+            "log.dirs",
+            "default.replication.factor",
+            "offsets.topic.replication.factor",
+            "transaction.state.log.replication.factor")));
+
+    /**
+     * Options which can be updated on running brokers, as cluster-wide broker configs, without a restart
+     */
+    public static final Set<String> DYNAMIC_OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "num.network.threads",
+            "num.io.threads",
+            "num.replica.fetchers",
+            "num.recovery.threads.per.data.dir",
+            "background.threads",
+            "log.cleaner.threads",
+            "log.cleaner.io.max.bytes.per.second",
+            "log.cleaner.dedupe.buffer.size",
+            "log.cleaner.io.buffer.size",
+            "log.cleaner.io.buffer.load.factor",
+            "log.cleaner.backoff.ms",
+            "log.cleanup.policy",
+            "log.cleaner.delete.retention.ms",
+            "log.cleaner.min.compaction.lag.ms",
+            "log.cleaner.min.cleanable.ratio",
+            "log.segment.bytes",
+            "log.segment.delete.delay.ms",
+            "log.roll.ms",
+            "log.roll.hours",
+            "log.roll.jitter.ms",
+            "log.roll.jitter.hours",
+            "log.retention.bytes",
+            "log.retention.ms",
+            "log.retention.minutes",
+            "log.retention.hours",
+            "log.flush.interval.messages",
+            "log.flush.interval.ms",
+            "log.index.size.max.bytes",
+            "log.index.interval.bytes",
+            "log.preallocate",
+            "log.message.timestamp.type",
+            "log.message.timestamp.difference.max.ms",
+            "message.max.bytes",
+            "min.insync.replicas",
+            "compression.type",
+            "unclean.leader.election.enable")));
+
+    private KafkaConfiguration(Map<String, String> options) {
+        super(options);
+    }
+
+    /**
+     * Returns a KafkaConfiguration instance from a corresponding JSON representation, an object mapping
+     * broker configuration option names to their values
+     *
+     * @param json  configuration JSON representation
+     * @return  KafkaConfiguration instance
+     * @throws IllegalArgumentException if an option is forbidden, isn't a valid option name or doesn't have a scalar value
+     */
+    public static KafkaConfiguration fromJson(JsonObject json) {
+        return new KafkaConfiguration(parseJson(json, "Kafka", FORBIDDEN_OPTIONS::contains));
+    }
+
+    /**
+     * Returns a KafkaConfiguration instance from its properties file representation
+     *
+     * @param properties    the configuration in properties file format (or null)
+     * @return  KafkaConfiguration instance
+     */
+    public static KafkaConfiguration fromProperties(String properties) {
+        return new KafkaConfiguration(parseProperties(properties));
+    }
+
+    /**
+     * @return  the configuration options which can be updated without restarting the brokers
+     */
+    public Map<String, String> getDynamicOptions() {
+
+        Map<String, String> dynamic = new TreeMap<>();
+        for (Map.Entry<String, String> entry : getOptions().entrySet()) {
+            if (DYNAMIC_OPTIONS.contains(entry.getKey())) {
+                dynamic.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return dynamic;
+    }
+}
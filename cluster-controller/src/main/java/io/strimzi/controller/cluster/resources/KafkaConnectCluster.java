@@ -14,11 +14,15 @@ import io.fabric8.kubernetes.api.model.extensions.Deployment;
 import io.fabric8.kubernetes.api.model.extensions.DeploymentStrategy;
 import io.fabric8.kubernetes.api.model.extensions.DeploymentStrategyBuilder;
 import io.fabric8.kubernetes.api.model.extensions.RollingUpdateDeploymentBuilder;
+import io.strimzi.controller.cluster.ClusterController;
+import io.vertx.core.json.JsonObject;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class KafkaConnectCluster extends AbstractCluster {
@@ -26,7 +30,7 @@ public class KafkaConnectCluster extends AbstractCluster {
     public static final String TYPE = "kafka-connect";
 
     // Port configuration
-    protected static final int REST_API_PORT = 8083;
+    public static final int REST_API_PORT = 8083;
     protected static final String REST_API_PORT_NAME = "rest-api";
 
     private static final String NAME_SUFFIX = "-connect";
@@ -41,6 +45,8 @@ public class KafkaConnectCluster extends AbstractCluster {
     protected int configStorageReplicationFactor = DEFAULT_CONFIG_STORAGE_REPLICATION_FACTOR;
     protected int offsetStorageReplicationFactor = DEFAULT_OFFSET_STORAGE_REPLICATION_FACTOR;
     protected int statusStorageReplicationFactor = DEFAULT_STATUS_STORAGE_REPLICATION_FACTOR;
+    protected KafkaConnectConfiguration configuration = KafkaConnectConfiguration.fromProperties(null);
+    private Autoscaling autoscaling;
 
     // Configuration defaults
     protected static final String DEFAULT_IMAGE = "strimzi/kafka-connect:latest";
@@ -64,6 +70,10 @@ public class KafkaConnectCluster extends AbstractCluster {
     public static final String KEY_REPLICAS = "nodes";
     public static final String KEY_HEALTHCHECK_DELAY = "healthcheck-delay";
     public static final String KEY_HEALTHCHECK_TIMEOUT = "healthcheck-timeout";
+    public static final String KEY_CONNECT_CONFIG = "connect-config";
+    public static final String KEY_AUTOSCALING = "autoscaling";
+
+    public static final String ANNO_LAST_SCALE_TIME = ClusterController.STRIMZI_CLUSTER_CONTROLLER_DOMAIN + "/last-scale-time";
 
     // Kafka Connect configuration keys
     public static final String KEY_BOOTSTRAP_SERVERS = "KAFKA_CONNECT_BOOTSTRAP_SERVERS";
@@ -75,11 +85,41 @@ public class KafkaConnectCluster extends AbstractCluster {
     public static final String KEY_CONFIG_STORAGE_REPLICATION_FACTOR = "KAFKA_CONNECT_CONFIG_STORAGE_REPLICATION_FACTOR";
     public static final String KEY_OFFSET_STORAGE_REPLICATION_FACTOR = "KAFKA_CONNECT_OFFSET_STORAGE_REPLICATION_FACTOR";
     public static final String KEY_STATUS_STORAGE_REPLICATION_FACTOR = "KAFKA_CONNECT_STATUS_STORAGE_REPLICATION_FACTOR";
+    protected static final String KEY_KAFKA_CONNECT_CONFIGURATION = "KAFKA_CONNECT_CONFIGURATION";
 
     public static String kafkaConnectClusterName(String cluster) {
         return cluster + KafkaConnectCluster.NAME_SUFFIX;
     }
 
+    /**
+     * The host of the REST API of the given Kafka Connect cluster, through its service.
+     */
+    public static String restApiHost(String namespace, String cluster) {
+        return kafkaConnectClusterName(cluster) + "." + namespace + ".svc";
+    }
+
+    /**
+     * The time in milliseconds since the epoch when the given Deployment was last scaled by the autoscaling,
+     * or 0 if it never was.
+     */
+    public static long getLastScaleTime(Deployment dep) {
+        Map<String, String> annotations = dep.getMetadata().getAnnotations();
+        String lastScaleTime = annotations != null ? annotations.get(ANNO_LAST_SCALE_TIME) : null;
+        return lastScaleTime != null ? Long.parseLong(lastScaleTime) : 0;
+    }
+
+    /**
+     * Record in the given Deployment that it has been scaled by the autoscaling at the given time.
+     */
+    public static void setLastScaleTime(Deployment dep, long lastScaleTime) {
+        Map<String, String> annotations = new HashMap<>();
+        if (dep.getMetadata().getAnnotations() != null) {
+            annotations.putAll(dep.getMetadata().getAnnotations());
+        }
+        annotations.put(ANNO_LAST_SCALE_TIME, String.valueOf(lastScaleTime));
+        dep.getMetadata().setAnnotations(annotations);
+    }
+
     /**
      * Constructor
      *
@@ -122,6 +162,18 @@ public class KafkaConnectCluster extends AbstractCluster {
         kafkaConnect.setOffsetStorageReplicationFactor(Integer.parseInt(cm.getData().getOrDefault(KEY_OFFSET_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_OFFSET_STORAGE_REPLICATION_FACTOR))));
         kafkaConnect.setStatusStorageReplicationFactor(Integer.parseInt(cm.getData().getOrDefault(KEY_STATUS_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_STATUS_STORAGE_REPLICATION_FACTOR))));
 
+        String connectConfig = cm.getData().get(KEY_CONNECT_CONFIG);
+        if (connectConfig != null) {
+            kafkaConnect.setConfiguration(KafkaConnectConfiguration.fromJson(new JsonObject(connectConfig)));
+        }
+
+        String autoscalingConfig = cm.getData().get(KEY_AUTOSCALING);
+        if (autoscalingConfig != null) {
+            Autoscaling autoscaling = Autoscaling.fromJson(new JsonObject(autoscalingConfig));
+            kafkaConnect.setAutoscaling(autoscaling);
+            kafkaConnect.setReplicas(autoscaling.bound(kafkaConnect.getReplicas()));
+        }
+
         return kafkaConnect;
     }
 
@@ -158,18 +210,25 @@ public class KafkaConnectCluster extends AbstractCluster {
         kafkaConnect.setConfigStorageReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_CONFIG_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_CONFIG_STORAGE_REPLICATION_FACTOR))));
         kafkaConnect.setOffsetStorageReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_OFFSET_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_OFFSET_STORAGE_REPLICATION_FACTOR))));
         kafkaConnect.setStatusStorageReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_STATUS_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_STATUS_STORAGE_REPLICATION_FACTOR))));
+        kafkaConnect.setConfiguration(KafkaConnectConfiguration.fromProperties(vars.get(KEY_KAFKA_CONNECT_CONFIGURATION)));
 
         return kafkaConnect;
     }
 
     /**
-     * Return the differences between the current Kafka Connect cluster and the deployed one
+     * Return the differences between the current Kafka Connect cluster and the deployed one.
+     * With autoscaling, the deployed number of replicas is kept as long as it's within the autoscaling bounds,
+     * rather than being reset to the configured number of nodes.
      *
      * @param dep Deployment which should be diffed
      * @return  ClusterDiffResult instance with differences
      */
     public ClusterDiffResult diff(Deployment dep) {
 
+        if (autoscaling != null) {
+            replicas = autoscaling.bound(dep.getSpec().getReplicas());
+        }
+
         boolean scaleUp = false;
         boolean scaleDown = false;
         boolean different = false;
@@ -213,6 +272,11 @@ public class KafkaConnectCluster extends AbstractCluster {
             rollingUpdate = true;
         }
 
+        if (isConfigurationChanged(vars)) {
+            different = true;
+            rollingUpdate = true;
+        }
+
         if (healthCheckInitialDelay != container.getReadinessProbe().getInitialDelaySeconds()
                 || healthCheckTimeout != container.getReadinessProbe().getTimeoutSeconds()) {
             log.info("Diff: Kafka Connect healthcheck timing changed");
@@ -223,6 +287,19 @@ public class KafkaConnectCluster extends AbstractCluster {
         return new ClusterDiffResult(different, rollingUpdate, scaleUp, scaleDown, metricsChanged);
     }
 
+    /**
+     * Whether the worker configuration differs from the one in the given environment variables of the deployed workers.
+     * The workers only read their configuration on startup, so any change needs a rolling update.
+     */
+    protected boolean isConfigurationChanged(Map<String, String> vars) {
+        Set<String> changedOptions = configuration.diff(KafkaConnectConfiguration.fromProperties(vars.get(KEY_KAFKA_CONNECT_CONFIGURATION)));
+        if (!changedOptions.isEmpty()) {
+            log.info("Diff: Kafka Connect configuration options {} changed", changedOptions);
+            return true;
+        }
+        return false;
+    }
+
     public Service generateService() {
 
         return createService("ClusterIP",
@@ -249,10 +326,12 @@ public class KafkaConnectCluster extends AbstractCluster {
     }
 
     public Deployment patchDeployment(Deployment dep) {
+        // keep the time of the last autoscaling, so patching doesn't bypass its cooldown
+        long lastScaleTime = getLastScaleTime(dep);
         return patchDeployment(dep,
                 createHttpProbe(healthCheckPath, REST_API_PORT_NAME, healthCheckInitialDelay, healthCheckTimeout),
                 createHttpProbe(healthCheckPath, REST_API_PORT_NAME, healthCheckInitialDelay, healthCheckTimeout),
-                Collections.emptyMap(),
+                lastScaleTime != 0 ? Collections.singletonMap(ANNO_LAST_SCALE_TIME, String.valueOf(lastScaleTime)) : Collections.emptyMap(),
                 Collections.emptyMap()
                 );
     }
@@ -269,10 +348,39 @@ public class KafkaConnectCluster extends AbstractCluster {
         varList.add(new EnvVarBuilder().withName(KEY_CONFIG_STORAGE_REPLICATION_FACTOR).withValue(String.valueOf(configStorageReplicationFactor)).build());
         varList.add(new EnvVarBuilder().withName(KEY_OFFSET_STORAGE_REPLICATION_FACTOR).withValue(String.valueOf(offsetStorageReplicationFactor)).build());
         varList.add(new EnvVarBuilder().withName(KEY_STATUS_STORAGE_REPLICATION_FACTOR).withValue(String.valueOf(statusStorageReplicationFactor)).build());
+        if (!configuration.getOptions().isEmpty()) {
+            varList.add(new EnvVarBuilder().withName(KEY_KAFKA_CONNECT_CONFIGURATION).withValue(configuration.toProperties()).build());
+        }
 
         return varList;
     }
 
+    /**
+     * @return  the user provided worker configuration
+     */
+    public KafkaConnectConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    protected void setConfiguration(KafkaConnectConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return  the autoscaling of the workers, or null if the number of workers is fixed
+     */
+    public Autoscaling getAutoscaling() {
+        return autoscaling;
+    }
+
+    protected void setAutoscaling(Autoscaling autoscaling) {
+        this.autoscaling = autoscaling;
+    }
+
+    public String getBootstrapServers() {
+        return bootstrapServers;
+    }
+
     protected void setBootstrapServers(String bootstrapServers) {
         this.bootstrapServers = bootstrapServers;
     }
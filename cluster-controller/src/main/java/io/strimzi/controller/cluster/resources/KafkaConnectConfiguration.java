@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents the user provided Kafka Connect worker configuration, from the {@code connect-config} field of the
+ * cluster ConfigMap. Besides the worker options, it can hold the options of the producers of the source connectors
+ * and of the consumers of the sink connectors, with the {@code producer.} and {@code consumer.} prefixes.
+ */
+public class KafkaConnectConfiguration extends AbstractConfiguration {
+
+    public static final String PRODUCER_PREFIX = "producer.";
+    public static final String CONSUMER_PREFIX = "consumer.";
+
+    /**
+     * Options which are managed by the cluster controller or the Kafka Connect image, so can't be provided by the user
+     */
+    public static final Set<String> FORBIDDEN_OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "bootstrap.servers",
+            "group.id",
+            "key.converter",
+            "value.converter",
+            "key.converter.schemas.enable",
+            "value.converter.schemas.enable",
+            "internal.key.converter",
+            "internal.value.converter",
+            "internal.key.converter.schemas.enable",
+            "internal.value.converter.schemas.enable",
+            "config.storage.topic",
+            "offset.storage.topic",
+            "status.storage.topic",
+            "config.storage.replication.factor",
+            "offset.storage.replication.factor",
+            "status.storage.replication.factor",
+            "rest.port",
+            "rest.host.name",
+            "rest.advertised.host.name",
+            "rest.advertised.port",
+            "plugin.path")));
+
+    /**
+     * Options of the producers and consumers which are set by Kafka Connect itself, so can't be provided by the user
+     */
+    public static final Set<String> FORBIDDEN_CLIENT_OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "bootstrap.servers",
+            "group.id",
+            "key.serializer",
+            "value.serializer",
+            "key.deserializer",
+            "value.deserializer")));
+
+    /**
+     * The minimum values of the numeric tuning options
+     */
+    private static final Map<String, Long> MINIMUM_VALUES;
+
+    static {
+        Map<String, Long> minimumValues = new HashMap<>();
+        minimumValues.put("offset.flush.interval.ms", 1L);
+        minimumValues.put("offset.flush.timeout.ms", 1L);
+        minimumValues.put("offset.storage.partitions", 1L);
+        minimumValues.put("status.storage.partitions", 1L);
+        minimumValues.put("task.shutdown.graceful.timeout.ms", 0L);
+        minimumValues.put(PRODUCER_PREFIX + "batch.size", 0L);
+        minimumValues.put(PRODUCER_PREFIX + "linger.ms", 0L);
+        minimumValues.put(PRODUCER_PREFIX + "buffer.memory", 0L);
+        minimumValues.put(PRODUCER_PREFIX + "max.request.size", 1L);
+        minimumValues.put(PRODUCER_PREFIX + "max.in.flight.requests.per.connection", 1L);
+        minimumValues.put(CONSUMER_PREFIX + "fetch.min.bytes", 0L);
+        minimumValues.put(CONSUMER_PREFIX + "fetch.max.bytes", 0L);
+        minimumValues.put(CONSUMER_PREFIX + "fetch.max.wait.ms", 0L);
+        minimumValues.put(CONSUMER_PREFIX + "max.partition.fetch.bytes", 0L);
+        minimumValues.put(CONSUMER_PREFIX + "max.poll.records", 1L);
+        MINIMUM_VALUES = Collections.unmodifiableMap(minimumValues);
+    }
+
+    /**
+     * The compression codecs supported by the producers
+     */
+    private static final Set<String> COMPRESSION_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "none", "gzip", "snappy", "lz4")));
+
+    private KafkaConnectConfiguration(Map<String, String> options) {
+        super(options);
+    }
+
+    private static boolean isForbidden(String name) {
+        if (name.startsWith(PRODUCER_PREFIX)) {
+            return FORBIDDEN_CLIENT_OPTIONS.contains(name.substring(PRODUCER_PREFIX.length()));
+        } else if (name.startsWith(CONSUMER_PREFIX)) {
+            return FORBIDDEN_CLIENT_OPTIONS.contains(name.substring(CONSUMER_PREFIX.length()));
+        } else {
+            return FORBIDDEN_OPTIONS.contains(name);
+        }
+    }
+
+    /**
+     * Returns a KafkaConnectConfiguration instance from a corresponding JSON representation, an object mapping
+     * worker configuration option names to their values, for example
+     * <code>{"offset.flush.interval.ms": 10000, "producer.linger.ms": 20, "producer.compression.type": "lz4"}</code>
+     *
+     * @param json  configuration JSON representation
+     * @return  KafkaConnectConfiguration instance
+     * @throws IllegalArgumentException if an option is forbidden, isn't a valid option name, doesn't have a scalar value,
+     * or is a tuning option with an invalid value
+     */
+    public static KafkaConnectConfiguration fromJson(JsonObject json) {
+
+        Map<String, String> options = parseJson(json, "Kafka Connect", KafkaConnectConfiguration::isForbidden);
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String name = option.getKey();
+            Long minimum = MINIMUM_VALUES.get(name);
+            if (minimum != null) {
+                long value;
+                try {
+                    value = Long.parseLong(option.getValue());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Kafka Connect configuration option '" + name + "' must be an integer");
+                }
+                if (value < minimum) {
+                    throw new IllegalArgumentException("Kafka Connect configuration option '" + name + "' must be at least " + minimum);
+                }
+            }
+        }
+        String compressionType = options.get(PRODUCER_PREFIX + "compression.type");
+        if (compressionType != null && !COMPRESSION_TYPES.contains(compressionType)) {
+            throw new IllegalArgumentException("Kafka Connect configuration option '" + PRODUCER_PREFIX + "compression.type' must be one of "
+                    + COMPRESSION_TYPES);
+        }
+        return new KafkaConnectConfiguration(options);
+    }
+
+    /**
+     * Returns a KafkaConnectConfiguration instance from its properties file representation
+     *
+     * @param properties    the configuration in properties file format (or null)
+     * @return  KafkaConnectConfiguration instance
+     */
+    public static KafkaConnectConfiguration fromProperties(String properties) {
+        return new KafkaConnectConfiguration(parseProperties(properties));
+    }
+}
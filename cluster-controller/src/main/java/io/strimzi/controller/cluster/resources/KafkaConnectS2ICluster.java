@@ -25,6 +25,7 @@ import io.fabric8.openshift.api.model.ImageLookupPolicyBuilder;
 import io.fabric8.openshift.api.model.ImageStream;
 import io.fabric8.openshift.api.model.ImageStreamBuilder;
 import io.fabric8.openshift.api.model.TagReference;
+import io.vertx.core.json.JsonObject;
 
 import java.util.Collections;
 import java.util.Map;
@@ -79,6 +80,11 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
         kafkaConnect.setOffsetStorageReplicationFactor(Integer.parseInt(cm.getData().getOrDefault(KEY_OFFSET_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_OFFSET_STORAGE_REPLICATION_FACTOR))));
         kafkaConnect.setStatusStorageReplicationFactor(Integer.parseInt(cm.getData().getOrDefault(KEY_STATUS_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_STATUS_STORAGE_REPLICATION_FACTOR))));
 
+        String connectConfig = cm.getData().get(KEY_CONNECT_CONFIG);
+        if (connectConfig != null) {
+            kafkaConnect.setConfiguration(KafkaConnectConfiguration.fromJson(new JsonObject(connectConfig)));
+        }
+
         return kafkaConnect;
     }
 
@@ -115,6 +121,7 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
         kafkaConnect.setConfigStorageReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_CONFIG_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_CONFIG_STORAGE_REPLICATION_FACTOR))));
         kafkaConnect.setOffsetStorageReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_OFFSET_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_OFFSET_STORAGE_REPLICATION_FACTOR))));
         kafkaConnect.setStatusStorageReplicationFactor(Integer.parseInt(vars.getOrDefault(KEY_STATUS_STORAGE_REPLICATION_FACTOR, String.valueOf(DEFAULT_STATUS_STORAGE_REPLICATION_FACTOR))));
+        kafkaConnect.setConfiguration(KafkaConnectConfiguration.fromProperties(vars.get(KEY_KAFKA_CONNECT_CONFIGURATION)));
 
         String sourceImage = sis.getSpec().getTags().get(0).getFrom().getName();
         kafkaConnect.setImage(sourceImage);
@@ -137,6 +144,7 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
         boolean different = false;
         boolean rollingUpdate = false;
         boolean metricsChanged = false;
+        boolean buildChanged = false;
 
         if (replicas > dep.getSpec().getReplicas()) {
             log.info("Diff: Expected replicas {}, actual replicas {}", replicas, dep.getSpec().getReplicas());
@@ -168,6 +176,11 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
             rollingUpdate = true;
         }
 
+        if (isConfigurationChanged(vars)) {
+            different = true;
+            rollingUpdate = true;
+        }
+
         if (healthCheckInitialDelay != dep.getSpec().getTemplate().getSpec().getContainers().get(0).getReadinessProbe().getInitialDelaySeconds()
                 || healthCheckTimeout != dep.getSpec().getTemplate().getSpec().getContainers().get(0).getReadinessProbe().getTimeoutSeconds()) {
             log.info("Diff: Kafka Connect healthcheck timing changed");
@@ -181,26 +194,33 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
             different = true;
         }
 
+        if (!getLabelsWithName().equals(tis.getMetadata().getLabels())) {
+            log.info("Diff: Kafka Connect S2I target ImageStream labels do not match");
+            different = true;
+        }
+
         if (!getLabelsWithName(getSourceImageStreamName()).equals(sis.getMetadata().getLabels())
-                || !getLabelsWithName().equals(tis.getMetadata().getLabels())
                 || !getLabelsWithName().equals(bc.getMetadata().getLabels())) {
-            log.info("Diff: Kafka Connect S2I labels do not match");
-            different = true;
+            log.info("Diff: Kafka Connect S2I source ImageStream or BuildConfig labels do not match");
+            buildChanged = true;
         }
 
+        // Anything else, like the worker configuration or the number of replicas, doesn't change what the build
+        // produces, so it must not touch the BuildConfig or the source ImageStream and start a new build
         if (!image.equals(bc.getSpec().getOutput().getTo().getName())
-                || !(getSourceImageStreamName() + ":" + sourceImageTag).equals(bc.getSpec().getStrategy().getSourceStrategy().getFrom().getName()))    {
+                || !(getSourceImageStreamName() + ":" + sourceImageTag).equals(bc.getSpec().getStrategy().getSourceStrategy().getFrom().getName())
+                || !Boolean.TRUE.equals(bc.getSpec().getStrategy().getSourceStrategy().getIncremental()))    {
             log.info("Diff: Kafka Connect S2I BuildConfig does not match");
-            different = true;
+            buildChanged = true;
         }
 
         if (!sourceImageTag.equals(sis.getSpec().getTags().get(0).getName())
                 || !(sourceImageBaseName + ":" + sourceImageTag).equals(sis.getSpec().getTags().get(0).getFrom().getName()))   {
             log.info("Diff: Kafka Connect S2I source image name in BuildConfig or source ImageStream do not match");
-            different = true;
+            buildChanged = true;
         }
 
-        return new ClusterDiffResult(different, rollingUpdate, scaleUp, scaleDown, metricsChanged);
+        return new ClusterDiffResult(different, rollingUpdate, scaleUp, scaleDown, metricsChanged, false, false, buildChanged);
     }
 
     /**
@@ -354,6 +374,7 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
                                 .withKind("ImageStreamTag")
                                 .withName(getSourceImageStreamName() + ":" + sourceImageTag)
                             .endFrom()
+                            .withIncremental(true)
                         .endSourceStrategy()
                     .endStrategy()
                     .withTriggers(triggerConfigChange, triggerImageChange)
@@ -415,6 +436,7 @@ public class KafkaConnectS2ICluster extends KafkaConnectCluster {
     public BuildConfig patchBuildConfig(BuildConfig bc) {
         bc.getMetadata().setLabels(getLabelsWithName());
         bc.getSpec().getStrategy().getSourceStrategy().getFrom().setName(getSourceImageStreamName() + ":" + sourceImageTag);
+        bc.getSpec().getStrategy().getSourceStrategy().setIncremental(true);
 
         return bc;
     }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Represents the JMX exporter configuration of the Kafka brokers, from the {@code kafka-metrics-config} field of the
+ * cluster ConfigMap. It's either a complete JMX exporter configuration provided by the user, or generated from one
+ * of the profiles, which only query and export a bounded set of MBeans whatever the number of partitions.
+ * In both cases, the rules are checked not to export the MBeans which exist for each partition or client.
+ */
+public class KafkaMetricsConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaMetricsConfig.class.getName());
+
+    public static final String PROFILE_FIELD = "profile";
+    public static final String TOPICS_FIELD = "topics";
+    public static final String RULES_FIELD = "rules";
+    public static final String WHITELIST_FIELD = "whitelistObjectNames";
+
+    public static final String PROFILE_MINIMAL = "minimal";
+    public static final String PROFILE_STANDARD = "standard";
+    public static final String PROFILE_PER_TOPIC = "per-topic";
+
+    public static final String DEFAULT_TOPICS = ".+";
+
+    /**
+     * Examples of the MBeans which exist for each partition or client, as the JMX exporter formats them
+     * before matching them against the rules, with the description used in the error messages
+     */
+    private static final Map<String, String> HIGH_CARDINALITY_MBEANS;
+
+    static {
+        Map<String, String> mbeans = new LinkedHashMap<>();
+        mbeans.put("kafka.log<type=Log, name=Size, topic=my-topic, partition=0><>Value", "per-partition log");
+        mbeans.put("kafka.cluster<type=Partition, name=UnderReplicated, topic=my-topic, partition=0><>Value", "per-partition replication");
+        mbeans.put("kafka.server<type=FetcherLagMetrics, name=ConsumerLag, clientId=ReplicaFetcherThread-0-1, topic=my-topic, partition=0><>Value",
+                "per-partition fetcher lag");
+        mbeans.put("kafka.server<type=Produce, client-id=my-client><>byte-rate", "per-client quota");
+        mbeans.put("kafka.server<type=Fetch, client-id=my-client><>byte-rate", "per-client quota");
+        HIGH_CARDINALITY_MBEANS = Collections.unmodifiableMap(mbeans);
+    }
+
+    private final JsonObject exporterConfig;
+
+    private KafkaMetricsConfig(JsonObject exporterConfig) {
+        this.exporterConfig = exporterConfig;
+    }
+
+    /**
+     * Returns a KafkaMetricsConfig instance from a corresponding JSON representation. This is either a JMX exporter
+     * configuration, which is used as it is, or a profile, for example
+     * <code>{"profile": "per-topic", "topics": "orders|payments"}</code>, where the {@code topics} regular expression
+     * limits the topics which get their own series. Any other field given with a profile overrides the one of the
+     * profile, except for the {@code rules} and the {@code whitelistObjectNames}, which are added to those of the profile.
+     *
+     * @param json  metrics configuration JSON representation
+     * @return  KafkaMetricsConfig instance
+     * @throws IllegalArgumentException if the profile is unknown, or a rule is invalid or matches MBeans which exist
+     * for each partition or client
+     */
+    public static KafkaMetricsConfig fromJson(JsonObject json) {
+
+        JsonObject exporterConfig;
+        String profile = json.getString(PROFILE_FIELD);
+        if (profile != null) {
+            String topics = json.getString(TOPICS_FIELD, DEFAULT_TOPICS);
+            try {
+                Pattern.compile(topics);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("The metrics '" + TOPICS_FIELD + "' must be a regular expression: " + e.getDescription());
+            }
+            exporterConfig = profile(profile, topics);
+            for (Map.Entry<String, Object> field : json) {
+                String name = field.getKey();
+                if (RULES_FIELD.equals(name) || WHITELIST_FIELD.equals(name)) {
+                    exporterConfig.getJsonArray(name).addAll(json.getJsonArray(name));
+                } else if (!PROFILE_FIELD.equals(name) && !TOPICS_FIELD.equals(name)) {
+                    exporterConfig.put(name, field.getValue());
+                }
+            }
+        } else {
+            exporterConfig = json;
+        }
+
+        JsonArray rules = exporterConfig.getJsonArray(RULES_FIELD);
+        if (rules == null || rules.isEmpty()) {
+            log.warn("The metrics configuration has no rules, so every MBean is exported, including those of each partition");
+        } else {
+            validateRules(rules);
+        }
+
+        return new KafkaMetricsConfig(exporterConfig);
+    }
+
+    /**
+     * Check that none of the given rules would export MBeans which exist for each partition or client.
+     * As in the JMX exporter, a pattern can match any part of the formatted MBean name, and a rule without
+     * a pattern matches every MBean.
+     */
+    private static void validateRules(JsonArray rules) {
+        for (int i = 0; i < rules.size(); i++) {
+            Object rule = rules.getValue(i);
+            if (!(rule instanceof JsonObject)) {
+                throw new IllegalArgumentException("The metrics rule " + rule + " must be an object");
+            }
+            String pattern = ((JsonObject) rule).getString("pattern");
+            if (pattern == null) {
+                throw new IllegalArgumentException("The metrics rule " + rule + " has no pattern, so it exports every MBean");
+            }
+            Pattern compiled;
+            try {
+                compiled = Pattern.compile("^.*(?:" + pattern + ").*$");
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("The metrics rule pattern '" + pattern + "' isn't a regular expression: " + e.getDescription());
+            }
+            for (Map.Entry<String, String> mbean : HIGH_CARDINALITY_MBEANS.entrySet()) {
+                if (compiled.matcher(mbean.getKey()).matches()) {
+                    throw new IllegalArgumentException("The metrics rule pattern '" + pattern + "' matches the " + mbean.getValue()
+                            + " MBeans, which would export a series for each partition or client");
+                }
+            }
+        }
+    }
+
+    /**
+     * The JMX exporter configuration of the given profile. The MBeans queried on each scrape are limited by the
+     * {@code whitelistObjectNames}, so the cost of a scrape doesn't grow with the number of partitions.
+     */
+    private static JsonObject profile(String profile, String topics) {
+        List<String> whitelist;
+        JsonArray rules = new JsonArray()
+                .add(rule("kafka.server<type=BrokerTopicMetrics, name=(.+)PerSec><>Count",
+                        "kafka_server_brokertopicmetrics_$1_total", "COUNTER"))
+                .add(rule("kafka.server<type=ReplicaManager, name=(.+)><>Value",
+                        "kafka_server_replicamanager_$1", "GAUGE"))
+                .add(rule("kafka.controller<type=KafkaController, name=(.+)><>Value",
+                        "kafka_controller_kafkacontroller_$1", "GAUGE"))
+                .add(rule("kafka.server<type=KafkaRequestHandlerPool, name=RequestHandlerAvgIdlePercent><>OneMinuteRate",
+                        "kafka_server_kafkarequesthandlerpool_requesthandleravgidlepercent", "GAUGE"))
+                .add(rule("kafka.network<type=SocketServer, name=NetworkProcessorAvgIdlePercent><>Value",
+                        "kafka_network_socketserver_networkprocessoravgidlepercent", "GAUGE"));
+
+        switch (profile) {
+            case PROFILE_MINIMAL:
+                whitelist = minimalWhitelist();
+                break;
+            case PROFILE_STANDARD:
+                whitelist = standardWhitelist();
+                addStandardRules(rules);
+                break;
+            case PROFILE_PER_TOPIC:
+                whitelist = standardWhitelist();
+                whitelist.add("kafka.server:type=BrokerTopicMetrics,name=*,topic=*");
+                addStandardRules(rules);
+                rules.add(rule("kafka.server<type=BrokerTopicMetrics, name=(.+)PerSec, topic=(" + topics + ")><>Count",
+                        "kafka_server_brokertopicmetrics_$1_total", "COUNTER")
+                        .put("labels", new JsonObject().put("topic", "$2")));
+                break;
+            default:
+                throw new IllegalArgumentException("The metrics '" + PROFILE_FIELD + "' must be one of "
+                        + Arrays.asList(PROFILE_MINIMAL, PROFILE_STANDARD, PROFILE_PER_TOPIC));
+        }
+
+        return new JsonObject()
+                .put("lowercaseOutputName", true)
+                .put(WHITELIST_FIELD, new JsonArray(whitelist))
+                .put(RULES_FIELD, rules);
+    }
+
+    private static List<String> minimalWhitelist() {
+        return new ArrayList<>(Arrays.asList(
+                "kafka.server:type=BrokerTopicMetrics,name=*",
+                "kafka.server:type=ReplicaManager,name=*",
+                "kafka.controller:type=KafkaController,name=*",
+                "kafka.server:type=KafkaRequestHandlerPool,name=RequestHandlerAvgIdlePercent",
+                "kafka.network:type=SocketServer,name=NetworkProcessorAvgIdlePercent"));
+    }
+
+    private static List<String> standardWhitelist() {
+        List<String> whitelist = minimalWhitelist();
+        whitelist.add("kafka.network:type=RequestMetrics,name=RequestsPerSec,*");
+        whitelist.add("kafka.network:type=RequestMetrics,name=TotalTimeMs,*");
+        whitelist.add("kafka.controller:type=ControllerStats,name=*");
+        return whitelist;
+    }
+
+    private static void addStandardRules(JsonArray rules) {
+        rules.add(rule("kafka.network<type=RequestMetrics, name=RequestsPerSec, request=(\\w+)(?:, version=\\d+)?><>Count",
+                        "kafka_network_requestmetrics_requests_total", "COUNTER")
+                        .put("labels", new JsonObject().put("request", "$1")))
+                .add(rule("kafka.network<type=RequestMetrics, name=TotalTimeMs, request=(\\w+)><>(\\d+)thPercentile",
+                        "kafka_network_requestmetrics_totaltimems", "GAUGE")
+                        .put("labels", new JsonObject().put("request", "$1").put("quantile", "0.$2")))
+                .add(rule("kafka.controller<type=ControllerStats, name=(.+)><>Count",
+                        "kafka_controller_controllerstats_$1_total", "COUNTER"));
+    }
+
+    private static JsonObject rule(String pattern, String name, String type) {
+        return new JsonObject()
+                .put("pattern", pattern)
+                .put("name", name)
+                .put("type", type);
+    }
+
+    /**
+     * @return  the JMX exporter configuration
+     */
+    public JsonObject getExporterConfig() {
+        return exporterConfig;
+    }
+}
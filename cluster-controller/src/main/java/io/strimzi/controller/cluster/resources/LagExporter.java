@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.EnvVarBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentStrategy;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentStrategyBuilder;
+import io.strimzi.controller.cluster.ClusterController;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Represents the consumer group lag exporter deployment, which exposes the lag of the consumer groups of the
+ * Kafka cluster as Prometheus metrics
+ */
+public class LagExporter extends AbstractCluster {
+
+    private static final String NAME_SUFFIX = "-lag-exporter";
+
+    private static final String IMAGE_FIELD = "image";
+    private static final String POLL_INTERVAL_FIELD_MS = "pollIntervalMs";
+    private static final String GROUPS_FIELD = "groups";
+
+    // Configuration defaults
+    protected static final String DEFAULT_IMAGE = "strimzi/lag-exporter:latest";
+    protected static final int DEFAULT_REPLICAS = 1;
+    protected static final int DEFAULT_HEALTHCHECK_DELAY = 10;
+    protected static final int DEFAULT_HEALTHCHECK_TIMEOUT = 5;
+    protected static final int DEFAULT_BOOTSTRAP_SERVERS_PORT = 9092;
+    protected static final long DEFAULT_POLL_INTERVAL_MS = 30_000;
+    protected static final long MIN_POLL_INTERVAL_MS = 1_000;
+    protected static final String DEFAULT_GROUPS = ".+";
+
+    // Configuration keys
+    public static final String KEY_CONFIG = "lag-exporter-config";
+
+    // Lag exporter configuration keys
+    public static final String KEY_KAFKA_BOOTSTRAP_SERVERS = "STRIMZI_KAFKA_BOOTSTRAP_SERVERS";
+    public static final String KEY_POLL_INTERVAL_MS = "STRIMZI_POLL_INTERVAL_MS";
+    public static final String KEY_GROUPS = "STRIMZI_GROUPS";
+
+    // Kafka bootstrap servers can't be specified in the JSON
+    private String kafkaBootstrapServers;
+
+    private long pollIntervalMs;
+    private String groups;
+
+    /**
+     * @param namespace Kubernetes/OpenShift namespace where cluster resources are going to be created
+     * @param cluster   overall cluster name
+     */
+    protected LagExporter(String namespace, String cluster) {
+
+        super(namespace, cluster);
+        this.name = lagExporterName(cluster);
+        this.image = DEFAULT_IMAGE;
+        this.replicas = DEFAULT_REPLICAS;
+        this.healthCheckPath = "/";
+        this.healthCheckTimeout = DEFAULT_HEALTHCHECK_TIMEOUT;
+        this.healthCheckInitialDelay = DEFAULT_HEALTHCHECK_DELAY;
+        // the metrics are always exposed, that's the point of the lag exporter
+        this.isMetricsEnabled = true;
+
+        this.kafkaBootstrapServers = defaultBootstrapServers(cluster);
+        this.pollIntervalMs = DEFAULT_POLL_INTERVAL_MS;
+        this.groups = DEFAULT_GROUPS;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setGroups(String groups) {
+        this.groups = groups;
+    }
+
+    public String getGroups() {
+        return groups;
+    }
+
+    public void setKafkaBootstrapServers(String kafkaBootstrapServers) {
+        this.kafkaBootstrapServers = kafkaBootstrapServers;
+    }
+
+    public String getKafkaBootstrapServers() {
+        return kafkaBootstrapServers;
+    }
+
+    public static String lagExporterName(String cluster) {
+        return cluster + LagExporter.NAME_SUFFIX;
+    }
+
+    protected static String defaultBootstrapServers(String cluster) {
+        return KafkaCluster.kafkaClusterName(cluster) + ":" + DEFAULT_BOOTSTRAP_SERVERS_PORT;
+    }
+
+    /**
+     * Create a lag exporter from the related ConfigMap resource
+     *
+     * @param kafkaClusterCm ConfigMap with cluster configuration containing the lag exporter one
+     * @return Lag exporter instance, null if not configured in the ConfigMap
+     * @throws IllegalArgumentException if the poll interval is too short, or the groups aren't a regular expression
+     */
+    public static LagExporter fromConfigMap(ConfigMap kafkaClusterCm) {
+
+        LagExporter lagExporter = null;
+
+        String config = kafkaClusterCm.getData().get(KEY_CONFIG);
+        if (config != null) {
+            lagExporter = new LagExporter(kafkaClusterCm.getMetadata().getNamespace(), kafkaClusterCm.getMetadata().getName());
+            lagExporter.setLabels(kafkaClusterCm.getMetadata().getLabels());
+
+            JsonObject json = new JsonObject(config);
+
+            String image = json.getString(LagExporter.IMAGE_FIELD);
+            if (image != null) {
+                lagExporter.setImage(image);
+            }
+
+            long pollIntervalMs = json.getLong(LagExporter.POLL_INTERVAL_FIELD_MS, DEFAULT_POLL_INTERVAL_MS);
+            if (pollIntervalMs < MIN_POLL_INTERVAL_MS) {
+                throw new IllegalArgumentException("The lag exporter '" + LagExporter.POLL_INTERVAL_FIELD_MS + "' must be at least "
+                        + MIN_POLL_INTERVAL_MS);
+            }
+            lagExporter.setPollIntervalMs(pollIntervalMs);
+
+            String groups = json.getString(LagExporter.GROUPS_FIELD, DEFAULT_GROUPS);
+            try {
+                Pattern.compile(groups);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("The lag exporter '" + LagExporter.GROUPS_FIELD + "' must be a regular expression: "
+                        + e.getDescription());
+            }
+            lagExporter.setGroups(groups);
+        }
+
+        return lagExporter;
+    }
+
+    /**
+     * Create a lag exporter from the deployed Deployment resource
+     *
+     * @param namespace Kubernetes/OpenShift namespace where cluster resources are going to be created
+     * @param cluster overall cluster name
+     * @param dep the deployment from which to recover the lag exporter state
+     * @return Lag exporter instance, null if the corresponding Deployment doesn't exist
+     */
+    public static LagExporter fromDeployment(String namespace, String cluster, Deployment dep) {
+
+        LagExporter lagExporter = null;
+
+        if (dep != null) {
+
+            lagExporter = new LagExporter(namespace, cluster);
+
+            lagExporter.setLabels(dep.getMetadata().getLabels());
+            lagExporter.setReplicas(dep.getSpec().getReplicas());
+            Container container = dep.getSpec().getTemplate().getSpec().getContainers().get(0);
+            lagExporter.setImage(container.getImage());
+            lagExporter.setHealthCheckInitialDelay(container.getReadinessProbe().getInitialDelaySeconds());
+            lagExporter.setHealthCheckTimeout(container.getReadinessProbe().getTimeoutSeconds());
+
+            Map<String, String> vars = container.getEnv().stream().collect(
+                    Collectors.toMap(EnvVar::getName, EnvVar::getValue));
+
+            lagExporter.setKafkaBootstrapServers(vars.getOrDefault(KEY_KAFKA_BOOTSTRAP_SERVERS, defaultBootstrapServers(cluster)));
+            lagExporter.setPollIntervalMs(Long.parseLong(vars.getOrDefault(KEY_POLL_INTERVAL_MS, String.valueOf(DEFAULT_POLL_INTERVAL_MS))));
+            lagExporter.setGroups(vars.getOrDefault(KEY_GROUPS, DEFAULT_GROUPS));
+        }
+
+        return lagExporter;
+    }
+
+    /**
+     * Return the differences between the current lag exporter and the deployed one
+     *
+     * @param dep Deployment which should be diffed
+     * @return  ClusterDiffResult instance with differences, null if the Deployment doesn't exist
+     */
+    public ClusterDiffResult diff(Deployment dep) {
+
+        if (dep != null) {
+
+            boolean isDifferent = false;
+
+            Container container = dep.getSpec().getTemplate().getSpec().getContainers().get(0);
+            if (!image.equals(container.getImage())) {
+                log.info("Diff: Expected image {}, actual image {}", image, container.getImage());
+                isDifferent = true;
+            }
+
+            Map<String, String> vars = container.getEnv().stream().collect(
+                    Collectors.toMap(EnvVar::getName, EnvVar::getValue));
+
+            if (!kafkaBootstrapServers.equals(vars.getOrDefault(KEY_KAFKA_BOOTSTRAP_SERVERS, defaultBootstrapServers(cluster)))) {
+                log.info("Diff: Kafka bootstrap servers changed");
+                isDifferent = true;
+            }
+
+            if (pollIntervalMs != Long.parseLong(vars.getOrDefault(KEY_POLL_INTERVAL_MS, String.valueOf(DEFAULT_POLL_INTERVAL_MS)))) {
+                log.info("Diff: Poll interval changed");
+                isDifferent = true;
+            }
+
+            if (!groups.equals(vars.getOrDefault(KEY_GROUPS, DEFAULT_GROUPS))) {
+                log.info("Diff: Exported consumer groups changed");
+                isDifferent = true;
+            }
+
+            return new ClusterDiffResult(isDifferent);
+        } else {
+            return null;
+        }
+    }
+
+    public Deployment generateDeployment() {
+        DeploymentStrategy updateStrategy = new DeploymentStrategyBuilder()
+                .withType("Recreate")
+                .build();
+
+        return createDeployment(
+                Collections.singletonList(createContainerPort(metricsPortName, metricsPort, "TCP")),
+                createHttpProbe(healthCheckPath + "healthy", metricsPortName, DEFAULT_HEALTHCHECK_DELAY, DEFAULT_HEALTHCHECK_TIMEOUT),
+                createHttpProbe(healthCheckPath + "ready", metricsPortName, DEFAULT_HEALTHCHECK_DELAY, DEFAULT_HEALTHCHECK_TIMEOUT),
+                updateStrategy,
+                Collections.emptyMap(),
+                getPrometheusAnnotations());
+    }
+
+    public Deployment patchDeployment(Deployment dep) {
+        return patchDeployment(dep,
+                createHttpProbe(healthCheckPath + "healthy", metricsPortName, healthCheckInitialDelay, healthCheckTimeout),
+                createHttpProbe(healthCheckPath + "ready", metricsPortName, healthCheckInitialDelay, healthCheckTimeout),
+                Collections.emptyMap(),
+                getPrometheusAnnotations()
+        );
+    }
+
+    @Override
+    protected List<EnvVar> getEnvVars() {
+        List<EnvVar> varList = new ArrayList<>();
+        varList.add(new EnvVarBuilder().withName(KEY_KAFKA_BOOTSTRAP_SERVERS).withValue(kafkaBootstrapServers).build());
+        varList.add(new EnvVarBuilder().withName(KEY_POLL_INTERVAL_MS).withValue(String.valueOf(pollIntervalMs)).build());
+        varList.add(new EnvVarBuilder().withName(KEY_GROUPS).withValue(groups).build());
+
+        return varList;
+    }
+
+    @Override
+    protected void setLabels(Map<String, String> labels) {
+        Map<String, String> newLabels = new HashMap<>(labels);
+        newLabels.remove(ClusterController.STRIMZI_TYPE_LABEL);
+        super.setLabels(newLabels);
+    }
+}
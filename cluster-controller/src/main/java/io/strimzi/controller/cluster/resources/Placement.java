@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.fabric8.kubernetes.api.model.Affinity;
+import io.fabric8.kubernetes.api.model.AffinityBuilder;
+import io.fabric8.kubernetes.api.model.LabelSelectorBuilder;
+import io.fabric8.kubernetes.api.model.PodAffinityTermBuilder;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.Toleration;
+import io.fabric8.kubernetes.api.model.WeightedPodAffinityTerm;
+import io.fabric8.kubernetes.api.model.WeightedPodAffinityTermBuilder;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Represents where the pods of a cluster can be scheduled: their affinity (node affinity, pod affinity and
+ * pod anti-affinity) and their tolerations of node taints
+ */
+public class Placement {
+
+    public static final String AFFINITY_FIELD = "affinity";
+    public static final String TOLERATIONS_FIELD = "tolerations";
+
+    private static final int DEFAULT_ANTI_AFFINITY_WEIGHT = 100;
+
+    private Affinity affinity;
+    private List<Toleration> tolerations = Collections.emptyList();
+
+    /**
+     * Specify the affinity of the pods
+     *
+     * @param affinity  the affinity (or null, for the cluster's default affinity)
+     * @return  current Placement instance
+     */
+    public Placement withAffinity(final Affinity affinity) {
+        this.affinity = affinity;
+        return this;
+    }
+
+    /**
+     * Specify the tolerations of the pods
+     *
+     * @param tolerations   the tolerations (or null)
+     * @return  current Placement instance
+     */
+    public Placement withTolerations(final List<Toleration> tolerations) {
+        this.tolerations = tolerations != null ? tolerations : Collections.emptyList();
+        return this;
+    }
+
+    /**
+     * Returns a Placement instance from a corresponding JSON representation, where the affinity and the tolerations
+     * have the same format as in a Kubernetes/OpenShift pod spec, for example
+     * <code>{"affinity": {"nodeAffinity": {...}}, "tolerations": [{"key": "dedicated", "operator": "Equal", "value": "kafka", "effect": "NoSchedule"}]}</code>
+     *
+     * @param json  placement JSON representation
+     * @return  Placement instance
+     * @throws IllegalArgumentException if the affinity or a toleration isn't valid
+     */
+    public static Placement fromJson(JsonObject json) {
+
+        Placement placement = new Placement();
+
+        JsonObject affinity = json.getJsonObject(Placement.AFFINITY_FIELD);
+        if (affinity != null) {
+            placement.withAffinity(affinity.mapTo(Affinity.class));
+        }
+
+        JsonArray tolerations = json.getJsonArray(Placement.TOLERATIONS_FIELD);
+        if (tolerations != null) {
+            List<Toleration> list = new ArrayList<>(tolerations.size());
+            for (int i = 0; i < tolerations.size(); i++) {
+                list.add(tolerations.getJsonObject(i).mapTo(Toleration.class));
+            }
+            placement.withTolerations(list);
+        }
+
+        return placement;
+    }
+
+    /**
+     * Returns a Placement instance from the pod spec of a deployed StatefulSet
+     *
+     * @param podSpec   the pod spec
+     * @return  Placement instance
+     */
+    public static Placement fromPodSpec(PodSpec podSpec) {
+        return new Placement()
+                .withAffinity(podSpec.getAffinity())
+                .withTolerations(podSpec.getTolerations());
+    }
+
+    /**
+     * Returns the default affinity of the pods of a cluster: a preferred pod anti-affinity, so that the scheduler
+     * spreads the pods with the given labels across the domains of each of the given topology keys where it can
+     *
+     * @param podLabels the labels selecting the pods of the cluster
+     * @param topologyKeys  the node labels across which the pods are spread
+     * @return  the default affinity
+     */
+    public static Affinity defaultAntiAffinity(Map<String, String> podLabels, List<String> topologyKeys) {
+
+        List<WeightedPodAffinityTerm> terms = new ArrayList<>(topologyKeys.size());
+        for (String topologyKey : topologyKeys) {
+            terms.add(new WeightedPodAffinityTermBuilder()
+                    .withWeight(DEFAULT_ANTI_AFFINITY_WEIGHT)
+                    .withPodAffinityTerm(new PodAffinityTermBuilder()
+                            .withLabelSelector(new LabelSelectorBuilder()
+                                    .withMatchLabels(podLabels)
+                                    .build())
+                            .withTopologyKey(topologyKey)
+                            .build())
+                    .build());
+        }
+        return new AffinityBuilder()
+                .withNewPodAntiAffinity()
+                    .withPreferredDuringSchedulingIgnoredDuringExecution(terms)
+                .endPodAntiAffinity()
+                .build();
+    }
+
+    /**
+     * @return  the affinity, or null if the cluster's default affinity applies
+     */
+    public Affinity getAffinity() {
+        return affinity;
+    }
+
+    /**
+     * @return  the tolerations
+     */
+    public List<Toleration> getTolerations() {
+        return tolerations;
+    }
+
+    /**
+     * Compare with the placement of a deployed StatefulSet
+     *
+     * @param other the other instance to compare with
+     * @return  if the affinity or the tolerations are different
+     */
+    public boolean isDifferent(Placement other) {
+        return !Objects.equals(affinity, other.affinity) || !tolerations.equals(other.tolerations);
+    }
+
+    @Override
+    public String toString() {
+        return "Placement(affinity=" + affinity + ", tolerations=" + tolerations + ")";
+    }
+}
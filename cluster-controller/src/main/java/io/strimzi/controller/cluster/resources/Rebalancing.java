@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Represents how the partition replicas are moved between the brokers of a Kafka cluster when it's scaled
+ */
+public class Rebalancing {
+
+    public static final String SCALE_UP_FIELD = "scale-up";
+    public static final String SCALE_DOWN_FIELD = "scale-down";
+    public static final String THROTTLE_FIELD = "throttle";
+    public static final String TIMEOUT_FIELD = "timeout";
+
+    public static final long DEFAULT_TIMEOUT_MS = 3_600_000;
+
+    private boolean scaleUp = false;
+    private boolean scaleDown = true;
+    private Long throttle;
+    private long timeoutMs = DEFAULT_TIMEOUT_MS;
+
+    /**
+     * Specify whether partition replicas are moved onto the new brokers after scaling up
+     *
+     * @param scaleUp   whether to rebalance after scaling up
+     * @return  current Rebalancing instance
+     */
+    public Rebalancing withScaleUp(final boolean scaleUp) {
+        this.scaleUp = scaleUp;
+        return this;
+    }
+
+    /**
+     * Specify whether partition replicas are moved off the brokers being removed before scaling down
+     *
+     * @param scaleDown whether to drain the brokers before scaling down
+     * @return  current Rebalancing instance
+     */
+    public Rebalancing withScaleDown(final boolean scaleDown) {
+        this.scaleDown = scaleDown;
+        return this;
+    }
+
+    /**
+     * Specify the limit on the replication traffic of the moved replicas
+     *
+     * @param throttle  the limit in bytes per second (or null, for no limit)
+     * @return  current Rebalancing instance
+     */
+    public Rebalancing withThrottle(final Long throttle) {
+        this.throttle = throttle;
+        return this;
+    }
+
+    /**
+     * Specify how long to wait for the moved replicas to catch up
+     *
+     * @param timeoutMs the timeout in milliseconds
+     * @return  current Rebalancing instance
+     */
+    public Rebalancing withTimeoutMs(final long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Returns a Rebalancing instance from a corresponding JSON representation, for example
+     * <code>{"scale-up": true, "scale-down": true, "throttle": 10485760, "timeout": 3600000}</code>
+     *
+     * @param json  rebalancing JSON representation
+     * @return  Rebalancing instance
+     * @throws IllegalArgumentException if the throttle or the timeout isn't positive
+     */
+    public static Rebalancing fromJson(JsonObject json) {
+
+        Rebalancing rebalancing = new Rebalancing();
+
+        rebalancing.withScaleUp(json.getBoolean(Rebalancing.SCALE_UP_FIELD, false));
+        rebalancing.withScaleDown(json.getBoolean(Rebalancing.SCALE_DOWN_FIELD, true));
+
+        Long throttle = json.getLong(Rebalancing.THROTTLE_FIELD);
+        if (throttle != null && throttle <= 0) {
+            throw new IllegalArgumentException("The rebalancing '" + Rebalancing.THROTTLE_FIELD + "' must be positive");
+        }
+        rebalancing.withThrottle(throttle);
+
+        long timeoutMs = json.getLong(Rebalancing.TIMEOUT_FIELD, DEFAULT_TIMEOUT_MS);
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("The rebalancing '" + Rebalancing.TIMEOUT_FIELD + "' must be positive");
+        }
+        rebalancing.withTimeoutMs(timeoutMs);
+
+        return rebalancing;
+    }
+
+    /**
+     * @return  whether partition replicas are moved onto the new brokers after scaling up
+     */
+    public boolean isScaleUp() {
+        return scaleUp;
+    }
+
+    /**
+     * @return  whether partition replicas are moved off the brokers being removed before scaling down
+     */
+    public boolean isScaleDown() {
+        return scaleDown;
+    }
+
+    /**
+     * @return  the limit in bytes per second on the replication traffic of the moved replicas, or null for no limit
+     */
+    public Long getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * @return  how long to wait in milliseconds for the moved replicas to catch up
+     */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
+import io.fabric8.kubernetes.api.model.ResourceRequirementsBuilder;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Represents the CPU and memory requests and limits of a container
+ */
+public class Resources {
+
+    public static final String REQUESTS_FIELD = "requests";
+    public static final String LIMITS_FIELD = "limits";
+    public static final String CPU_FIELD = "cpu";
+    public static final String MEMORY_FIELD = "memory";
+
+    /**
+     * A quantity: a decimal number followed by a binary or decimal SI suffix, or by a decimal exponent
+     */
+    private static final Pattern QUANTITY = Pattern.compile("([+-]?(?:[0-9]+(?:\\.[0-9]*)?|\\.[0-9]+))(?:[eE]([+-]?[0-9]+)|([a-zA-Z]*))");
+
+    private static final Map<String, BigDecimal> SUFFIXES = new HashMap<>();
+
+    static {
+        BigDecimal kibi = BigDecimal.valueOf(1024);
+        String[] binary = {"Ki", "Mi", "Gi", "Ti", "Pi", "Ei"};
+        for (int i = 0; i < binary.length; i++) {
+            SUFFIXES.put(binary[i], kibi.pow(i + 1));
+        }
+        String[] decimal = {"n", "u", "m", "", "k", "M", "G", "T", "P", "E"};
+        for (int i = 0; i < decimal.length; i++) {
+            SUFFIXES.put(decimal[i], BigDecimal.ONE.scaleByPowerOfTen(3 * (i - 3)));
+        }
+    }
+
+    private final Map<String, Quantity> requests = new HashMap<>();
+    private final Map<String, Quantity> limits = new HashMap<>();
+
+    /**
+     * Specify the CPU and memory requests
+     *
+     * @param cpu   CPU request (or null)
+     * @param memory    memory request (or null)
+     * @return  current Resources instance
+     */
+    public Resources withRequests(final String cpu, final String memory) {
+        put(requests, CPU_FIELD, cpu);
+        put(requests, MEMORY_FIELD, memory);
+        return this;
+    }
+
+    /**
+     * Specify the CPU and memory limits
+     *
+     * @param cpu   CPU limit (or null)
+     * @param memory    memory limit (or null)
+     * @return  current Resources instance
+     */
+    public Resources withLimits(final String cpu, final String memory) {
+        put(limits, CPU_FIELD, cpu);
+        put(limits, MEMORY_FIELD, memory);
+        return this;
+    }
+
+    private static void put(Map<String, Quantity> map, String resource, String amount) {
+        if (amount != null) {
+            map.put(resource, new Quantity(amount));
+        } else {
+            map.remove(resource);
+        }
+    }
+
+    /**
+     * Returns a Resources instance from a corresponding JSON representation, for example
+     * <code>{"requests": {"cpu": "1", "memory": "2Gi"}, "limits": {"cpu": "2", "memory": "2Gi"}}</code>
+     *
+     * The quantities can also be given as JSON numbers, for example <code>{"requests": {"cpu": 0.5}}</code>
+     *
+     * @param json  resources JSON representation
+     * @return  Resources instance
+     * @throws IllegalArgumentException if a quantity is neither a string nor a number, or isn't a valid quantity
+     */
+    public static Resources fromJson(JsonObject json) {
+
+        Resources resources = new Resources();
+
+        JsonObject requests = json.getJsonObject(Resources.REQUESTS_FIELD);
+        if (requests != null) {
+            resources.withRequests(quantity(requests, Resources.CPU_FIELD), quantity(requests, Resources.MEMORY_FIELD));
+        }
+
+        JsonObject limits = json.getJsonObject(Resources.LIMITS_FIELD);
+        if (limits != null) {
+            resources.withLimits(quantity(limits, Resources.CPU_FIELD), quantity(limits, Resources.MEMORY_FIELD));
+        }
+
+        return resources;
+    }
+
+    private static String quantity(JsonObject json, String field) {
+        Object value = json.getValue(field);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof String) && !(value instanceof Number)) {
+            throw new IllegalArgumentException("The resources '" + field + "' must be a string or a number");
+        }
+        String amount = value.toString();
+        if (parseQuantity(amount) == null) {
+            throw new IllegalArgumentException("The resources '" + field + "' value '" + amount + "' isn't a valid quantity");
+        }
+        return amount;
+    }
+
+    /**
+     * Parse a quantity into its value in base units (cores or bytes), so that equivalent quantities written
+     * differently, such as "0.5" and "500m" or "2048Mi" and "2Gi", have equal values
+     *
+     * @param amount    the quantity
+     * @return  the value of the quantity, or null if it isn't a valid quantity
+     */
+    static BigDecimal parseQuantity(String amount) {
+        Matcher matcher = QUANTITY.matcher(amount.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        BigDecimal number = new BigDecimal(matcher.group(1));
+        if (matcher.group(2) != null) {
+            return number.scaleByPowerOfTen(Integer.parseInt(matcher.group(2)));
+        }
+        BigDecimal multiplier = SUFFIXES.get(matcher.group(3));
+        return multiplier != null ? number.multiply(multiplier) : null;
+    }
+
+    /**
+     * Returns a Resources instance from the ResourceRequirements of a deployed container
+     *
+     * @param resourceRequirements  the container's ResourceRequirements (or null)
+     * @return  Resources instance
+     */
+    public static Resources fromResourceRequirements(ResourceRequirements resourceRequirements) {
+
+        Resources resources = new Resources();
+        if (resourceRequirements != null) {
+            if (resourceRequirements.getRequests() != null) {
+                resources.requests.putAll(resourceRequirements.getRequests());
+            }
+            if (resourceRequirements.getLimits() != null) {
+                resources.limits.putAll(resourceRequirements.getLimits());
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * @return  the ResourceRequirements for a container, or null if neither requests nor limits are specified
+     */
+    public ResourceRequirements toResourceRequirements() {
+
+        if (requests.isEmpty() && limits.isEmpty()) {
+            return null;
+        }
+        return new ResourceRequirementsBuilder()
+                .withRequests(new HashMap<>(requests))
+                .withLimits(new HashMap<>(limits))
+                .build();
+    }
+
+    /**
+     * Compare with the resources of a deployed container.
+     * A missing request is taken to be equal to the corresponding limit, as the API server defaults it that way
+     *
+     * @param other the other instance to compare with
+     * @return  if the requests or limits are different
+     */
+    public boolean isDifferent(Resources other) {
+        return !compare(this.effectiveRequests(), other.effectiveRequests()) || !compare(this.limits, other.limits);
+    }
+
+    /**
+     * @return  the requests, with the limits standing in for the missing requests
+     */
+    private Map<String, Quantity> effectiveRequests() {
+        Map<String, Quantity> effective = new HashMap<>(limits);
+        effective.putAll(requests);
+        return effective;
+    }
+
+    /**
+     * Compare two maps of quantities by their values, as the API server canonicalizes how they are written
+     *
+     * @param map   one map of quantities
+     * @param other the other map of quantities
+     * @return  if the compared maps have the same amounts
+     */
+    private static boolean compare(Map<String, Quantity> map, Map<String, Quantity> other) {
+
+        if (map.size() != other.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Quantity> entry : map.entrySet()) {
+            Quantity otherQuantity = other.get(entry.getKey());
+            if (otherQuantity == null || !sameQuantity(entry.getValue().getAmount(), otherQuantity.getAmount())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameQuantity(String amount, String otherAmount) {
+        BigDecimal value = parseQuantity(amount);
+        BigDecimal otherValue = parseQuantity(otherAmount);
+        if (value == null || otherValue == null) {
+            return amount.equals(otherAmount);
+        }
+        return value.compareTo(otherValue) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Resources(requests=" + requests + ", limits=" + limits + ")";
+    }
+}
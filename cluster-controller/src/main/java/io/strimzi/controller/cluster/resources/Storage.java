@@ -7,9 +7,15 @@ package io.strimzi.controller.cluster.resources;
 import io.fabric8.kubernetes.api.model.LabelSelector;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.Quantity;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -23,12 +29,18 @@ public class Storage {
     public static final String SELECTOR_FIELD = "selector";
     public static final String SELECTOR_MATCH_LABELS_FIELD = "match-labels";
     public static final String DELETE_CLAIM_FIELD = "delete-claim";
+    public static final String FS_GROUP_ONLY_FIELD = "fs-group-only";
+    public static final String VOLUMES_FIELD = "volumes";
+
+    private static final Pattern QUANTITY = Pattern.compile("([0-9]+(?:\\.[0-9]+)?)([a-zA-Z]*)");
 
     private final StorageType type;
     private Quantity size;
     private String storageClass;
     private LabelSelector selector;
     private boolean isDeleteClaim = false;
+    private boolean isFsGroupOnly = false;
+    private List<Storage> volumes = Collections.emptyList();
 
     /**
      * Constructor
@@ -84,6 +96,29 @@ public class Storage {
         return this;
     }
 
+    /**
+     * Specify if the ownership of the volumes (for "persistent-claim" type) is left to the pod's fsGroup
+     * (because the volume plugin applies it), so no init container is needed to fix it
+     *
+     * @param isFsGroupOnly if the ownership is left to the pod's fsGroup
+     * @return  current Storage instance
+     */
+    public Storage withFsGroupOnly(final boolean isFsGroupOnly) {
+        this.isFsGroupOnly = isFsGroupOnly;
+        return this;
+    }
+
+    /**
+     * Specify the volumes (for "jbod" type), each of them a "persistent-claim" storage
+     *
+     * @param volumes   the volumes
+     * @return  current Storage instance
+     */
+    public Storage withVolumes(final List<Storage> volumes) {
+        this.volumes = volumes;
+        return this;
+    }
+
     /**
      * Returns a Storage instance from a corresponding JSON representation
      *
@@ -99,6 +134,10 @@ public class Storage {
 
         Storage storage = new Storage(StorageType.from(type));
 
+        if (storage.type() == StorageType.JBOD) {
+            storage.withVolumes(volumesFromJson(json.getJsonArray(Storage.VOLUMES_FIELD), type));
+        }
+
         String size = json.getString(Storage.SIZE_FIELD);
         if (size != null) {
             storage.withSize(new Quantity(size));
@@ -113,6 +152,10 @@ public class Storage {
             storage.withDeleteClaim(isDeleteClaim);
         }
 
+        if (json.getValue(Storage.FS_GROUP_ONLY_FIELD) instanceof Boolean) {
+            storage.withFsGroupOnly(json.getBoolean(Storage.FS_GROUP_ONLY_FIELD));
+        }
+
         JsonObject selector = json.getJsonObject(Storage.SELECTOR_FIELD);
         if (selector != null) {
 
@@ -128,6 +171,30 @@ public class Storage {
         return storage;
     }
 
+    /**
+     * Returns the volumes of a JBOD storage from their JSON representation
+     *
+     * @param volumesJson   volumes JSON representation (or null)
+     * @param type  the type of the storage, for the error message
+     * @return  the volumes
+     */
+    private static List<Storage> volumesFromJson(JsonArray volumesJson, String type) {
+
+        if (volumesJson == null || volumesJson.isEmpty()) {
+            throw new IllegalArgumentException("Storage '" + Storage.VOLUMES_FIELD + "' is mandatory for the '" + type + "' type");
+        }
+        List<Storage> volumes = new ArrayList<>(volumesJson.size());
+        for (int i = 0; i < volumesJson.size(); i++) {
+            Storage volume = Storage.fromJson(volumesJson.getJsonObject(i));
+            if (volume.type() != StorageType.PERSISTENT_CLAIM) {
+                throw new IllegalArgumentException("Storage '" + Storage.VOLUMES_FIELD + "' can only contain '"
+                        + StorageType.PERSISTENT_CLAIM.type + "' storage");
+            }
+            volumes.add(volume);
+        }
+        return volumes;
+    }
+
     /**
      * Returns a Storage instance from a corresponding PersistentVolumeClaim
      *
@@ -147,6 +214,21 @@ public class Storage {
         return storage;
     }
 
+    /**
+     * Returns a "jbod" Storage instance from the corresponding PersistentVolumeClaims, one for each volume
+     *
+     * @param pvcs  PersistentVolumeClaim representations
+     * @return  Storage instance
+     */
+    public static Storage fromPersistentVolumeClaims(List<PersistentVolumeClaim> pvcs) {
+
+        List<Storage> volumes = new ArrayList<>(pvcs.size());
+        for (PersistentVolumeClaim pvc : pvcs) {
+            volumes.add(Storage.fromPersistentVolumeClaim(pvc));
+        }
+        return new Storage(StorageType.JBOD).withVolumes(volumes);
+    }
+
     /**
      * Compute the difference between two Storage instances
      *
@@ -164,6 +246,17 @@ public class Storage {
                 .withDifferentStorageClass(!this.compareStorageClass(other.storageClass()))
                 .withDifferentSelector(!this.compareSelector(other.selector()));
 
+        // the existing volumes can't be changed or removed, but volumes can be added
+        for (int i = 0; i < Math.min(this.volumes.size(), other.volumes().size()); i++) {
+            StorageDiffResult volumeDiffResult = this.volumes.get(i).diff(other.volumes().get(i));
+            diffResult
+                    .withDifferentSize(diffResult.isSize() || volumeDiffResult.isSize())
+                    .withDifferentStorageClass(diffResult.isStorageClass() || volumeDiffResult.isStorageClass())
+                    .withDifferentSelector(diffResult.isSelector() || volumeDiffResult.isSelector());
+        }
+        diffResult
+                .withVolumesAdded(this.volumes.size() > other.volumes().size())
+                .withVolumesRemoved(this.volumes.size() < other.volumes().size());
 
         return diffResult;
     }
@@ -231,6 +324,8 @@ public class Storage {
         private boolean isStorageClass;
         private boolean isSelector;
         private boolean isDeleteClaim;
+        private boolean isVolumesAdded;
+        private boolean isVolumesRemoved;
 
         /**
          * @return  if the Storage type is different
@@ -267,6 +362,20 @@ public class Storage {
             return this.isDeleteClaim;
         }
 
+        /**
+         * @return  if volumes have been added (for "jbod" type)
+         */
+        public boolean isVolumesAdded() {
+            return this.isVolumesAdded;
+        }
+
+        /**
+         * @return  if volumes have been removed (for "jbod" type)
+         */
+        public boolean isVolumesRemoved() {
+            return this.isVolumesRemoved;
+        }
+
         /**
          * Set if the Storage type is different
          *
@@ -321,6 +430,28 @@ public class Storage {
             this.isDeleteClaim = isDeleteClaim;
             return this;
         }
+
+        /**
+         * Set if volumes have been added
+         *
+         * @param isVolumesAdded    if volumes have been added
+         * @return  current StorageDiffResult instance
+         */
+        public StorageDiffResult withVolumesAdded(boolean isVolumesAdded) {
+            this.isVolumesAdded = isVolumesAdded;
+            return this;
+        }
+
+        /**
+         * Set if volumes have been removed
+         *
+         * @param isVolumesRemoved  if volumes have been removed
+         * @return  current StorageDiffResult instance
+         */
+        public StorageDiffResult withVolumesRemoved(boolean isVolumesRemoved) {
+            this.isVolumesRemoved = isVolumesRemoved;
+            return this;
+        }
     }
 
 
@@ -331,7 +462,8 @@ public class Storage {
 
         EPHEMERAL("ephemeral"),
         PERSISTENT_CLAIM("persistent-claim"),
-        LOCAL("local");
+        LOCAL("local"),
+        JBOD("jbod");
 
         private final String type;
 
@@ -352,6 +484,8 @@ public class Storage {
                 return PERSISTENT_CLAIM;
             } else if (type.equals(LOCAL.type)) {
                 return LOCAL;
+            } else if (type.equals(JBOD.type)) {
+                return JBOD;
             } else {
                 throw new IllegalArgumentException("Unknown type: " + type);
             }
@@ -393,4 +527,70 @@ public class Storage {
     public boolean isDeleteClaim() {
         return this.isDeleteClaim;
     }
+
+    /**
+     * @return  if the ownership of the volumes (for "persistent-claim" type) is left to the pod's fsGroup
+     */
+    public boolean isFsGroupOnly() {
+        return this.isFsGroupOnly;
+    }
+
+    /**
+     * @return  the volumes (for "jbod" type)
+     */
+    public List<Storage> volumes() {
+        return this.volumes;
+    }
+
+    /**
+     * @return  the capacity in bytes of the storage of each pod (the sum of the sizes of the volumes, for "jbod" type),
+     *          or null if it isn't known (for "ephemeral" type, or when a size isn't given)
+     */
+    public Long capacityBytes() {
+        if (this.type == StorageType.JBOD) {
+            long capacity = 0;
+            for (Storage volume : this.volumes) {
+                Long volumeCapacity = volume.capacityBytes();
+                if (volumeCapacity == null) {
+                    return null;
+                }
+                capacity += volumeCapacity;
+            }
+            return capacity;
+        } else if (this.type == StorageType.EPHEMERAL || this.size == null) {
+            return null;
+        }
+        return bytes(this.size.getAmount() + (this.size.getFormat() != null ? this.size.getFormat() : ""));
+    }
+
+    /**
+     * @param quantity  a Kubernetes/OpenShift storage quantity, for example "100Gi" or "500M"
+     * @return  the number of bytes
+     * @throws IllegalArgumentException if the quantity isn't valid
+     */
+    static long bytes(String quantity) {
+        Matcher matcher = QUANTITY.matcher(quantity.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid storage size: " + quantity);
+        }
+        double amount = Double.parseDouble(matcher.group(1));
+        String suffix = matcher.group(2);
+        String[] binary = {"", "Ki", "Mi", "Gi", "Ti", "Pi", "Ei"};
+        String[] decimal = {"", "k", "M", "G", "T", "P", "E"};
+        for (int i = 0; i < binary.length; i++) {
+            if (binary[i].equals(suffix)) {
+                return (long) (amount * Math.pow(1024, i));
+            } else if (decimal[i].equals(suffix)) {
+                return (long) (amount * Math.pow(1000, i));
+            }
+        }
+        throw new IllegalArgumentException("Invalid storage size: " + quantity);
+    }
+
+    /**
+     * @return  if the storage is backed by persistent volume claims ("persistent-claim" or "jbod" type)
+     */
+    public boolean isPersistentClaim() {
+        return this.type == StorageType.PERSISTENT_CLAIM || this.type == StorageType.JBOD;
+    }
 }
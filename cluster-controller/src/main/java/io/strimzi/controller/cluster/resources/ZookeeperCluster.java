@@ -9,6 +9,7 @@ import io.fabric8.kubernetes.api.model.ContainerPort;
 import io.fabric8.kubernetes.api.model.EnvVar;
 import io.fabric8.kubernetes.api.model.EnvVarBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.PodSpec;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServicePort;
 import io.fabric8.kubernetes.api.model.Volume;
@@ -28,7 +29,7 @@ public class ZookeeperCluster extends AbstractCluster {
 
     public static final String TYPE = "zookeeper";
 
-    private static final int CLIENT_PORT = 2181;
+    public static final int CLIENT_PORT = 2181;
     private static final String CLIENT_PORT_NAME = "clients";
     private static final int CLUSTERING_PORT = 2888;
     private static final String CLUSTERING_PORT_NAME = "clustering";
@@ -59,6 +60,8 @@ public class ZookeeperCluster extends AbstractCluster {
     public static final String KEY_HEALTHCHECK_TIMEOUT = "zookeeper-healthcheck-timeout";
     public static final String KEY_METRICS_CONFIG = "zookeeper-metrics-config";
     public static final String KEY_STORAGE = "zookeeper-storage";
+    public static final String KEY_RESOURCES = "zookeeper-resources";
+    public static final String KEY_PLACEMENT = "zookeeper-placement";
 
     // Zookeeper configuration keys
     private static final String KEY_ZOOKEEPER_NODE_COUNT = "ZOOKEEPER_NODE_COUNT";
@@ -76,6 +79,51 @@ public class ZookeeperCluster extends AbstractCluster {
         return cluster + ZookeeperCluster.HEADLESS_NAME_SUFFIX;
     }
 
+    /**
+     * @param namespace Kubernetes/OpenShift namespace where the cluster is deployed
+     * @param cluster   overall cluster name
+     * @return  the connection string for clients connecting to the Zookeeper cluster from within Kubernetes/OpenShift
+     */
+    public static String zookeeperConnect(String namespace, String cluster) {
+        return zookeeperClusterName(cluster) + "." + namespace + ".svc:" + CLIENT_PORT;
+    }
+
+    /**
+     * @param namespace Kubernetes/OpenShift namespace where the cluster is deployed
+     * @param cluster   overall cluster name
+     * @param pod       the ordinal of the Zookeeper pod
+     * @return  the host name of the given Zookeeper server, which resolves even before the server is ready
+     */
+    public static String zookeeperServerHost(String namespace, String cluster, int pod) {
+        return zookeeperClusterName(cluster) + "-" + pod + "." + zookeeperHeadlessName(cluster) + "." + namespace + ".svc";
+    }
+
+    /**
+     * @param podSpec   the spec of a Zookeeper pod, or of the pod template of the Zookeeper StatefulSet
+     * @return  the number of servers in the ensemble which the pod is configured with, or null if it isn't set
+     */
+    public static Integer getEnsembleSize(PodSpec podSpec) {
+        for (EnvVar var : podSpec.getContainers().get(0).getEnv()) {
+            if (KEY_ZOOKEEPER_NODE_COUNT.equals(var.getName())) {
+                return Integer.valueOf(var.getValue());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set the number of servers in the ensemble which the pods created from the given spec are configured with.
+     * The servers read it when they start, so a running server keeps its ensemble until it's restarted.
+     *
+     * @param podSpec   the spec of the pod template of the Zookeeper StatefulSet
+     * @param servers   the number of servers in the ensemble
+     */
+    public static void setEnsembleSize(PodSpec podSpec, int servers) {
+        List<EnvVar> env = podSpec.getContainers().get(0).getEnv();
+        env.removeIf(var -> KEY_ZOOKEEPER_NODE_COUNT.equals(var.getName()));
+        env.add(0, new EnvVarBuilder().withName(KEY_ZOOKEEPER_NODE_COUNT).withValue(Integer.toString(servers)).build());
+    }
+
     /**
      * Constructor
      *
@@ -113,6 +161,7 @@ public class ZookeeperCluster extends AbstractCluster {
         ZookeeperCluster zk = new ZookeeperCluster(kafkaClusterCm.getMetadata().getNamespace(), kafkaClusterCm.getMetadata().getName());
 
         zk.setLabels(kafkaClusterCm.getMetadata().getLabels());
+        zk.setConfigMapRevision(kafkaClusterCm.getMetadata().getResourceVersion());
 
         zk.setReplicas(Integer.parseInt(kafkaClusterCm.getData().getOrDefault(KEY_REPLICAS, String.valueOf(DEFAULT_REPLICAS))));
         zk.setImage(kafkaClusterCm.getData().getOrDefault(KEY_IMAGE, DEFAULT_IMAGE));
@@ -126,7 +175,21 @@ public class ZookeeperCluster extends AbstractCluster {
         }
 
         String storageConfig = kafkaClusterCm.getData().get(KEY_STORAGE);
-        zk.setStorage(Storage.fromJson(new JsonObject(storageConfig)));
+        Storage storage = Storage.fromJson(new JsonObject(storageConfig));
+        if (storage.type() == Storage.StorageType.JBOD) {
+            throw new IllegalArgumentException("JBOD storage is only supported for Kafka");
+        }
+        zk.setStorage(storage);
+
+        String resourcesConfig = kafkaClusterCm.getData().get(KEY_RESOURCES);
+        if (resourcesConfig != null) {
+            zk.setResources(Resources.fromJson(new JsonObject(resourcesConfig)));
+        }
+
+        String placementConfig = kafkaClusterCm.getData().get(KEY_PLACEMENT);
+        if (placementConfig != null) {
+            zk.setPlacement(Placement.fromJson(new JsonObject(placementConfig)));
+        }
 
         return zk;
     }
@@ -148,6 +211,8 @@ public class ZookeeperCluster extends AbstractCluster {
         zk.setImage(ss.getSpec().getTemplate().getSpec().getContainers().get(0).getImage());
         zk.setHealthCheckInitialDelay(ss.getSpec().getTemplate().getSpec().getContainers().get(0).getReadinessProbe().getInitialDelaySeconds());
         zk.setHealthCheckInitialDelay(ss.getSpec().getTemplate().getSpec().getContainers().get(0).getReadinessProbe().getTimeoutSeconds());
+        zk.setResources(Resources.fromResourceRequirements(ss.getSpec().getTemplate().getSpec().getContainers().get(0).getResources()));
+        zk.setPlacement(Placement.fromPodSpec(ss.getSpec().getTemplate().getSpec()));
 
         Map<String, String> vars = ss.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv().stream().collect(
                 Collectors.toMap(EnvVar::getName, EnvVar::getValue));
@@ -186,14 +251,16 @@ public class ZookeeperCluster extends AbstractCluster {
         boolean different = false;
         boolean metricsChanged = false;
 
+        // scaling adds or removes one server at a time, restarting only the servers whose ensemble changes,
+        // so on its own it doesn't need a rolling update
         if (replicas > ss.getSpec().getReplicas()) {
             log.info("Diff: Expected replicas {}, actual replicas {}", replicas, ss.getSpec().getReplicas());
             scaleUp = true;
-            rollingUpdate = true;
+            different = true;
         } else if (replicas < ss.getSpec().getReplicas()) {
             log.info("Diff: Expected replicas {}, actual replicas {}", replicas, ss.getSpec().getReplicas());
             scaleDown = true;
-            rollingUpdate = true;
+            different = true;
         }
 
         if (!getLabelsWithName().equals(ss.getMetadata().getLabels()))    {
@@ -215,6 +282,21 @@ public class ZookeeperCluster extends AbstractCluster {
             rollingUpdate = true;
         }
 
+        Resources ssResources = Resources.fromResourceRequirements(ss.getSpec().getTemplate().getSpec().getContainers().get(0).getResources());
+        if (resources.isDifferent(ssResources)) {
+            log.info("Diff: Expected resources {}, actual resources {}", resources, ssResources);
+            different = true;
+            rollingUpdate = true;
+        }
+
+        Placement expectedPlacement = getEffectivePlacement();
+        Placement ssPlacement = Placement.fromPodSpec(ss.getSpec().getTemplate().getSpec());
+        if (expectedPlacement.isDifferent(ssPlacement)) {
+            log.info("Diff: Expected placement {}, actual placement {}", expectedPlacement, ssPlacement);
+            different = true;
+            rollingUpdate = true;
+        }
+
         Map<String, String> vars = ss.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv().stream().collect(
                 Collectors.toMap(EnvVar::getName, EnvVar::getValue));
 
@@ -252,13 +334,18 @@ public class ZookeeperCluster extends AbstractCluster {
         boolean isStorageRejected = storageDiffResult.isType() || storageDiffResult.isSize() ||
                 storageDiffResult.isStorageClass() || storageDiffResult.isSelector();
 
-        // only delete-claim flag can be changed
+        // only delete-claim and fs-group-only flags can be changed
         if (!isStorageRejected && (storage.type() == Storage.StorageType.PERSISTENT_CLAIM)) {
             if (storageDiffResult.isDeleteClaim()) {
                 different = true;
             }
+            if (isFsGroupOnlyChanged(ss)) {
+                log.info("Diff: Zookeeper storage {} changed", Storage.FS_GROUP_ONLY_FIELD);
+                different = true;
+                rollingUpdate = true;
+            }
         } else if (isStorageRejected) {
-            log.warn("Changing storage configuration other than delete-claim is not supported !");
+            log.warn("Changing storage configuration other than delete-claim and fs-group-only is not supported !");
         }
 
         return new ClusterDiffResult(different, rollingUpdate, scaleUp, scaleDown, metricsChanged);
@@ -308,6 +395,18 @@ public class ZookeeperCluster extends AbstractCluster {
         return patchConfigMap(cm, data);
     }
 
+    /**
+     * Computes the hash of the resources generated for this cluster, which are recorded on the StatefulSet
+     * once applied, so that a reconciliation can skip the cluster when nothing changed
+     * @param isOpenShift True iff this controller is operating within OpenShift.
+     * @return The hash of the desired state
+     */
+    public String getDesiredStateHash(boolean isOpenShift) {
+
+        return hash(generateStatefulSet(isOpenShift), generateService(), generateHeadlessService(),
+                metricsConfig != null ? metricsConfig.encode() : null);
+    }
+
     public StatefulSet patchStatefulSet(StatefulSet statefulSet) {
 
         Map<String, String> annotations = new HashMap<>();
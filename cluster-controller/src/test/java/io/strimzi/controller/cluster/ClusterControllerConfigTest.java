@@ -14,6 +14,8 @@ import java.util.Map;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ClusterControllerConfigTest {
 
@@ -90,6 +92,60 @@ public class ClusterControllerConfigTest {
         assertEquals(30_000, config.getOperationTimeoutMs());
     }
 
+    @Test
+    public void testProfilingEvents() {
+
+        assertFalse(ClusterControllerConfig.fromMap(envVars).isProfilingEventsEnabled());
+
+        Map<String, String> envVars = new HashMap<>(ClusterControllerConfigTest.envVars);
+        envVars.put(ClusterControllerConfig.STRIMZI_PROFILING_EVENTS_ENABLED, "true");
+        envVars.put(ClusterControllerConfig.STRIMZI_PROFILING_EVENTS_THRESHOLD_MS, "50");
+
+        ClusterControllerConfig config = ClusterControllerConfig.fromMap(envVars);
+        assertTrue(config.isProfilingEventsEnabled());
+        assertEquals(50, config.getProfilingEventsThresholdMs());
+    }
+
+    @Test
+    public void testReconciliationQueue() {
+
+        ClusterControllerConfig config = ClusterControllerConfig.fromMap(envVars);
+        assertEquals(ClusterControllerConfig.DEFAULT_MAX_CONCURRENT_RECONCILIATIONS, config.getMaxConcurrentReconciliations());
+        assertEquals(ClusterControllerConfig.DEFAULT_RECONCILIATION_BACKOFF_MS, config.getReconciliationBackoffMs());
+        assertEquals(ClusterControllerConfig.DEFAULT_RECONCILIATION_MAX_BACKOFF_MS, config.getReconciliationMaxBackoffMs());
+
+        Map<String, String> envVars = new HashMap<>(ClusterControllerConfigTest.envVars);
+        envVars.put(ClusterControllerConfig.STRIMZI_MAX_CONCURRENT_RECONCILIATIONS, "2");
+        envVars.put(ClusterControllerConfig.STRIMZI_RECONCILIATION_BACKOFF_MS, "500");
+        envVars.put(ClusterControllerConfig.STRIMZI_RECONCILIATION_MAX_BACKOFF_MS, "10000");
+
+        config = ClusterControllerConfig.fromMap(envVars);
+        assertEquals(2, config.getMaxConcurrentReconciliations());
+        assertEquals(500, config.getReconciliationBackoffMs());
+        assertEquals(10_000, config.getReconciliationMaxBackoffMs());
+    }
+
+    @Test
+    public void testSharedCache() {
+
+        assertFalse(ClusterControllerConfig.fromMap(envVars).isSharedCacheEnabled());
+
+        Map<String, String> envVars = new HashMap<>(ClusterControllerConfigTest.envVars);
+        envVars.put(ClusterControllerConfig.STRIMZI_SHARED_CACHE_ENABLED, "true");
+
+        assertTrue(ClusterControllerConfig.fromMap(envVars).isSharedCacheEnabled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidReconciliationBackoff() {
+
+        Map<String, String> envVars = new HashMap<>(ClusterControllerConfigTest.envVars);
+        envVars.put(ClusterControllerConfig.STRIMZI_RECONCILIATION_BACKOFF_MS, "10000");
+        envVars.put(ClusterControllerConfig.STRIMZI_RECONCILIATION_MAX_BACKOFF_MS, "500");
+
+        ClusterControllerConfig.fromMap(envVars);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testNoNamespace() {
 
@@ -4,10 +4,18 @@
  */
 package io.strimzi.controller.cluster;
 
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.dsl.MixedOperation;
+import io.strimzi.controller.cluster.operations.cluster.KafkaClusterOperations;
+import io.strimzi.controller.cluster.operations.cluster.KafkaConnectClusterOperations;
+import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.vertx.core.Vertx;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -22,11 +30,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(VertxUnitRunner.class)
@@ -69,11 +81,12 @@ public class ClusterControllerTest {
         for (String namespace: namespaceList) {
 
             MixedOperation mockNamespacedCms = mock(MixedOperation.class);
-            when(mockNamespacedCms.watch(any())).thenAnswer(invo -> {
+            when(mockNamespacedCms.list()).thenReturn(configMapList("1"));
+            when(mockNamespacedCms.watch(any(), any())).thenAnswer(invo -> {
                 numWatchers.incrementAndGet();
                 Watch mockWatch = mock(Watch.class);
                 doAnswer(invo2 -> {
-                    ((Watcher) invo.getArgument(0)).onClose(null);
+                    ((Watcher) invo.getArgument(1)).onClose(null);
                     return null;
                 }).when(mockWatch).close();
                 return mockWatch;
@@ -115,4 +128,78 @@ public class ClusterControllerTest {
         }
     }
 
+    private static ConfigMapList configMapList(String resourceVersion) {
+        return new ConfigMapListBuilder()
+                .withNewMetadata()
+                    .withResourceVersion(resourceVersion)
+                .endMetadata()
+                .build();
+    }
+
+    /**
+     * Does the CC resume its ConfigMap watch from the last resource version observed,
+     * and list the ConfigMaps again only when that resource version is gone?
+     */
+    @Test
+    public void testWatchResumesFromLastResourceVersion(TestContext context) {
+        KubernetesClient client = mock(KubernetesClient.class);
+        MixedOperation mockCms = mock(MixedOperation.class);
+        MixedOperation mockNamespacedCms = mock(MixedOperation.class);
+        when(client.configMaps()).thenReturn(mockCms);
+        when(mockCms.inNamespace("namespace")).thenReturn(mockNamespacedCms);
+        when(mockNamespacedCms.withLabels(any())).thenReturn(mockNamespacedCms);
+        when(mockNamespacedCms.list()).thenReturn(configMapList("10"), configMapList("20"));
+
+        List<String> watchedFrom = new ArrayList<>();
+        List<Watcher<ConfigMap>> watchers = new ArrayList<>();
+        AtomicReference<Async> watched = new AtomicReference<>(context.async());
+        when(mockNamespacedCms.watch(any(), any())).thenAnswer(invo -> {
+            watchedFrom.add(invo.getArgument(0));
+            watchers.add(invo.getArgument(1));
+            watched.get().complete();
+            return mock(Watch.class);
+        });
+
+        ClusterController controller = new ClusterController("namespace",
+                singletonMap("strimzi.io/kind", "cluster"),
+                120_000,
+                client,
+                mock(ConfigMapOperations.class),
+                mock(KafkaClusterOperations.class),
+                mock(KafkaConnectClusterOperations.class),
+                null);
+        Async deployed = context.async();
+        vertx.deployVerticle(controller, ar -> {
+            context.assertTrue(ar.succeeded());
+            deployed.complete();
+        });
+        deployed.await();
+        watched.get().await();
+        context.assertEquals(asList("10"), watchedFrom);
+
+        // a ConfigMap without a type label, so it's not reconciled
+        ConfigMap cm = new ConfigMapBuilder()
+                .withNewMetadata()
+                    .withName("foo")
+                    .withNamespace("namespace")
+                    .withResourceVersion("15")
+                    .withLabels(singletonMap("strimzi.io/kind", "cluster"))
+                .endMetadata()
+                .build();
+        watchers.get(0).eventReceived(Watcher.Action.MODIFIED, cm);
+
+        // the watch times out: it's resumed without listing the ConfigMaps
+        watched.set(context.async());
+        watchers.get(0).onClose(null);
+        watched.get().await();
+        context.assertEquals(asList("10", "15"), watchedFrom);
+        verify(mockNamespacedCms, times(1)).list();
+
+        // the resource version is gone: the ConfigMaps are listed again
+        watched.set(context.async());
+        watchers.get(1).onClose(new KubernetesClientException("Gone", 410, null));
+        watched.get().await();
+        context.assertEquals(asList("10", "15", "20"), watchedFrom);
+        verify(mockNamespacedCms, times(2)).list();
+    }
 }
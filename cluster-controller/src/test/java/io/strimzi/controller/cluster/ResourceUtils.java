@@ -6,6 +6,7 @@ package io.strimzi.controller.cluster;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.strimzi.controller.cluster.operations.resource.AbstractOperations;
 import io.strimzi.controller.cluster.resources.KafkaCluster;
 import io.strimzi.controller.cluster.resources.KafkaConnectCluster;
 import io.strimzi.controller.cluster.resources.KafkaConnectS2ICluster;
@@ -15,12 +16,27 @@ import io.strimzi.controller.cluster.resources.ZookeeperCluster;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 public class ResourceUtils {
 
     private ResourceUtils() {
 
     }
 
+    /**
+     * Creates a mock of the given resource operations, whose uncached gets return what its gets are stubbed to return
+     * @param type the class of the resource operations
+     * @return the mock
+     */
+    public static <O extends AbstractOperations<?, ?, ?, ?, ?>> O mockOperations(Class<O> type) {
+        O ops = mock(type);
+        when(ops.getUncached(anyString(), anyString())).thenAnswer(invocation -> ops.get(invocation.getArgument(0), invocation.getArgument(1)));
+        return ops;
+    }
+
     /**
      * Creates a map of labels
      * @param pairs (key, value) pairs. There must be an even number, obviously.
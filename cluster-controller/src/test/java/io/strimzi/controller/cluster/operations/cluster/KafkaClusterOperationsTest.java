@@ -6,12 +6,15 @@ package io.strimzi.controller.cluster.operations.cluster;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.extensions.Deployment;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
 import io.strimzi.controller.cluster.ClusterController;
 import io.strimzi.controller.cluster.ClusterControllerConfig;
 import io.strimzi.controller.cluster.ResourceUtils;
+import io.strimzi.controller.cluster.operations.kafka.KafkaAdminOperations;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.operations.resource.DeploymentOperations;
 import io.strimzi.controller.cluster.operations.resource.EndpointOperations;
@@ -19,9 +22,12 @@ import io.strimzi.controller.cluster.operations.resource.PodOperations;
 import io.strimzi.controller.cluster.operations.resource.PvcOperations;
 import io.strimzi.controller.cluster.operations.resource.ServiceOperations;
 import io.strimzi.controller.cluster.operations.resource.StatefulSetOperations;
+import io.strimzi.controller.cluster.operations.zookeeper.ZookeeperAdminOperations;
 import io.strimzi.controller.cluster.resources.AbstractCluster;
 import io.strimzi.controller.cluster.resources.ClusterDiffResult;
 import io.strimzi.controller.cluster.resources.KafkaCluster;
+import io.strimzi.controller.cluster.resources.LagExporter;
+import io.strimzi.controller.cluster.resources.Rebalancing;
 import io.strimzi.controller.cluster.resources.Storage;
 import io.strimzi.controller.cluster.resources.TopicController;
 import io.strimzi.controller.cluster.resources.ZookeeperCluster;
@@ -47,6 +53,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
@@ -57,6 +64,8 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -157,13 +166,13 @@ public class KafkaClusterOperationsTest {
 
     private void createCluster(TestContext context, ConfigMap clusterCm) {
         // create CM, Service, headless service, statefulset and so on
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        StatefulSetOperations mockSsOps = mock(StatefulSetOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
         PvcOperations mockPvcOps = mock(PvcOperations.class);
-        PodOperations mockPodOps = mock(PodOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
         EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
-        DeploymentOperations mockDepOps = mock(DeploymentOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         // Create a CM
         String clusterCmName = clusterCm.getMetadata().getName();
@@ -251,13 +260,13 @@ public class KafkaClusterOperationsTest {
         KafkaCluster kafkaCluster = KafkaCluster.fromConfigMap(clusterCm);
         TopicController topicController = TopicController.fromConfigMap(clusterCm);
         // create CM, Service, headless service, statefulset
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        StatefulSetOperations mockSsOps = mock(StatefulSetOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
         PvcOperations mockPvcOps = mock(PvcOperations.class);
-        PodOperations mockPodOps = mock(PodOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
         EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
-        DeploymentOperations mockDepOps = mock(DeploymentOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = clusterCm.getMetadata().getName();
         String clusterCmNamespace = clusterCm.getMetadata().getNamespace();
@@ -391,6 +400,14 @@ public class KafkaClusterOperationsTest {
         updateCluster(context, getConfigMap("bar"), clusterCm);
     }
 
+    @Test
+    public void testUpdateKafkaClusterScaleUpWithRebalancing(TestContext context) {
+        ConfigMap clusterCm = getConfigMap("bar");
+        clusterCm.getData().put(KafkaCluster.KEY_REPLICAS, "4");
+        clusterCm.getData().put(KafkaCluster.KEY_REBALANCING, "{\"scale-up\": true, \"throttle\": 1000000}");
+        updateCluster(context, getConfigMap("bar"), clusterCm);
+    }
+
     @Test
     public void testUpdateKafkaClusterScaleDown(TestContext context) {
         ConfigMap clusterCm = getConfigMap("bar");
@@ -405,6 +422,13 @@ public class KafkaClusterOperationsTest {
         updateCluster(context, getConfigMap("bar"), clusterCm);
     }
 
+    @Test
+    public void testUpdateZookeeperClusterScaleUpByTwo(TestContext context) {
+        ConfigMap clusterCm = getConfigMap("bar");
+        clusterCm.getData().put(ZookeeperCluster.KEY_REPLICAS, "5");
+        updateCluster(context, getConfigMap("bar"), clusterCm);
+    }
+
     @Test
     public void testUpdateZookeeperClusterScaleDown(TestContext context) {
         ConfigMap clusterCm = getConfigMap("bar");
@@ -428,6 +452,126 @@ public class KafkaClusterOperationsTest {
         }
     }
 
+    @Test
+    public void testUpdateClusterUpToDate(TestContext context) {
+        ConfigMap clusterCm = getConfigMap("bar");
+        clusterCm.getMetadata().setResourceVersion("42");
+        clusterCm.getData().put(KafkaCluster.KEY_REBALANCING, "{\"scale-up\": true}");
+        String clusterCmName = clusterCm.getMetadata().getName();
+        String clusterCmNamespace = clusterCm.getMetadata().getNamespace();
+
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
+        PvcOperations mockPvcOps = mock(PvcOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
+        EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
+
+        when(mockCmOps.get(clusterCmNamespace, clusterCmName)).thenReturn(clusterCm);
+
+        // the StatefulSets record that the desired state has already been applied
+        KafkaCluster kafkaCluster = KafkaCluster.fromConfigMap(clusterCm);
+        StatefulSet kafkaSs = kafkaCluster.generateStatefulSet(openShift);
+        kafkaSs.getMetadata().setGeneration(3L);
+        kafkaSs.getMetadata().getAnnotations().putAll(kafkaCluster.getDesiredStateAnnotations(kafkaCluster.getDesiredStateHash(openShift), 3L));
+        when(mockSsOps.get(clusterCmNamespace, KafkaCluster.kafkaClusterName(clusterCmName))).thenReturn(kafkaSs);
+        ZookeeperCluster zookeeperCluster = ZookeeperCluster.fromConfigMap(clusterCm);
+        StatefulSet zkSs = zookeeperCluster.generateStatefulSet(openShift);
+        zkSs.getMetadata().setGeneration(1L);
+        zkSs.getMetadata().getAnnotations().putAll(zookeeperCluster.getDesiredStateAnnotations(zookeeperCluster.getDesiredStateHash(openShift), 1L));
+        when(mockSsOps.get(clusterCmNamespace, ZookeeperCluster.zookeeperClusterName(clusterCmName))).thenReturn(zkSs);
+
+        TopicController topicController = TopicController.fromConfigMap(clusterCm);
+        if (topicController != null) {
+            when(mockDepOps.get(clusterCmNamespace, TopicController.topicControllerName(clusterCmName))).thenReturn(
+                    topicController.generateDeployment());
+        }
+
+        KafkaAdminOperations mockAdminOps = mock(KafkaAdminOperations.class);
+
+        KafkaClusterOperations ops = new KafkaClusterOperations(vertx, openShift,
+                ClusterControllerConfig.DEFAULT_OPERATION_TIMEOUT_MS,
+                mockCmOps,
+                mockServiceOps, mockSsOps,
+                mockPvcOps, mockPodOps, mockEndpointOps, mockDepOps, mockAdminOps);
+
+        Async async = context.async();
+        ops.update(clusterCmNamespace, clusterCmName, updateResult -> {
+            if (updateResult.failed()) updateResult.cause().printStackTrace();
+            context.assertTrue(updateResult.succeeded());
+
+            // nothing is read apart from the StatefulSets, and nothing is patched
+            verify(mockCmOps, never()).get(clusterCmNamespace, KafkaCluster.metricConfigsName(clusterCmName));
+            verify(mockCmOps, never()).get(clusterCmNamespace, ZookeeperCluster.zookeeperMetricsName(clusterCmName));
+            verify(mockCmOps, never()).patch(anyString(), anyString(), any());
+            verify(mockSsOps, never()).patch(anyString(), anyString(), anyBoolean(), any());
+            verify(mockSsOps, never()).rollingUpdate(anyString(), anyString(), any());
+            verify(mockSsOps, never()).rollingUpdate(anyString(), anyString(), any(), any());
+            verifyNoMoreInteractions(mockServiceOps);
+            // the rebalancing after scaling up was completed before the desired state was recorded
+            verify(mockAdminOps, never()).rebalance(anyString(), anyString(), anyInt(), anyBoolean(), any());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testUpdateClusterLagExporterRemoved(TestContext context) {
+        ConfigMap clusterCm = getConfigMap("bar");
+        clusterCm.getMetadata().setResourceVersion("42");
+        String clusterCmName = clusterCm.getMetadata().getName();
+        String clusterCmNamespace = clusterCm.getMetadata().getNamespace();
+
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
+        PvcOperations mockPvcOps = mock(PvcOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
+        EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
+
+        when(mockCmOps.get(clusterCmNamespace, clusterCmName)).thenReturn(clusterCm);
+
+        KafkaCluster kafkaCluster = KafkaCluster.fromConfigMap(clusterCm);
+        StatefulSet kafkaSs = kafkaCluster.generateStatefulSet(openShift);
+        kafkaSs.getMetadata().setGeneration(1L);
+        kafkaSs.getMetadata().getAnnotations().putAll(kafkaCluster.getDesiredStateAnnotations(kafkaCluster.getDesiredStateHash(openShift), 1L));
+        when(mockSsOps.get(clusterCmNamespace, KafkaCluster.kafkaClusterName(clusterCmName))).thenReturn(kafkaSs);
+        ZookeeperCluster zookeeperCluster = ZookeeperCluster.fromConfigMap(clusterCm);
+        StatefulSet zkSs = zookeeperCluster.generateStatefulSet(openShift);
+        zkSs.getMetadata().setGeneration(1L);
+        zkSs.getMetadata().getAnnotations().putAll(zookeeperCluster.getDesiredStateAnnotations(zookeeperCluster.getDesiredStateHash(openShift), 1L));
+        when(mockSsOps.get(clusterCmNamespace, ZookeeperCluster.zookeeperClusterName(clusterCmName))).thenReturn(zkSs);
+
+        TopicController topicController = TopicController.fromConfigMap(clusterCm);
+        if (topicController != null) {
+            when(mockDepOps.get(clusterCmNamespace, TopicController.topicControllerName(clusterCmName))).thenReturn(
+                    topicController.generateDeployment());
+        }
+
+        // the lag exporter is still deployed, but it isn't configured in the cluster ConfigMap anymore
+        ConfigMap previousCm = getConfigMap("bar");
+        previousCm.getData().put(LagExporter.KEY_CONFIG, "{ }");
+        when(mockDepOps.get(clusterCmNamespace, LagExporter.lagExporterName(clusterCmName))).thenReturn(
+                LagExporter.fromConfigMap(previousCm).generateDeployment());
+        when(mockDepOps.delete(anyString(), anyString())).thenReturn(Future.succeededFuture());
+
+        KafkaClusterOperations ops = new KafkaClusterOperations(vertx, openShift,
+                ClusterControllerConfig.DEFAULT_OPERATION_TIMEOUT_MS,
+                mockCmOps,
+                mockServiceOps, mockSsOps,
+                mockPvcOps, mockPodOps, mockEndpointOps, mockDepOps);
+
+        Async async = context.async();
+        ops.update(clusterCmNamespace, clusterCmName, updateResult -> {
+            if (updateResult.failed()) updateResult.cause().printStackTrace();
+            context.assertTrue(updateResult.succeeded());
+
+            verify(mockDepOps).delete(clusterCmNamespace, LagExporter.lagExporterName(clusterCmName));
+            async.complete();
+        });
+    }
+
     private void updateCluster(TestContext context, ConfigMap originalCm, ConfigMap clusterCm) {
 
         KafkaCluster originalKafkaCluster = KafkaCluster.fromConfigMap(originalCm);
@@ -447,13 +591,13 @@ public class KafkaClusterOperationsTest {
                 updatedTopicController.diff(originalTopicController.generateDeployment()) : new ClusterDiffResult();
 
         // create CM, Service, headless service, statefulset and so on
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        StatefulSetOperations mockSsOps = mock(StatefulSetOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
         PvcOperations mockPvcOps = mock(PvcOperations.class);
-        PodOperations mockPodOps = mock(PodOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
         EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
-        DeploymentOperations mockDepOps = mock(DeploymentOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = clusterCm.getMetadata().getName();
         String clusterCmNamespace = clusterCm.getMetadata().getNamespace();
@@ -517,13 +661,15 @@ public class KafkaClusterOperationsTest {
         when(mockServiceOps.patch(eq(clusterCmNamespace), patchedServicesCaptor.capture(), any())).thenReturn(Future.succeededFuture());
         // Mock StatefulSet patch
         when(mockSsOps.patch(anyString(), anyString(), anyBoolean(), any())).thenReturn(Future.succeededFuture());
-        // Mock StatefulSet rollingUpdate
+        // Mock StatefulSet rollingUpdate and restartPods
         Set<String> rollingRestarts = set();
-        doAnswer(invocation -> {
-            rollingRestarts.add(invocation.getArgument(1));
-            ((Handler<AsyncResult<Void>>) invocation.getArgument(2)).handle(Future.succeededFuture());
-            return null;
-        }).when(mockSsOps).rollingUpdate(eq(clusterCmNamespace), anyString(), any());
+        Set<String> podRestarts = set();
+        mockRestarts(mockSsOps, clusterCmNamespace, rollingRestarts, podRestarts);
+        // Mock the Zookeeper pods, which are configured with the original ensemble
+        Pod zkPod = new PodBuilder()
+                .withSpec(originalZookeeperCluster.generateStatefulSet(openShift).getSpec().getTemplate().getSpec())
+                .build();
+        when(mockPodOps.get(eq(clusterCmNamespace), startsWith(originalZookeeperCluster.getName() + "-"))).thenReturn(zkPod);
         // Mock StatefulSet scaleUp
         ArgumentCaptor<String> scaledUpCaptor = ArgumentCaptor.forClass(String.class);
         when(mockSsOps.scaleUp(anyString(), scaledUpCaptor.capture(), anyInt())).thenReturn(
@@ -539,11 +685,25 @@ public class KafkaClusterOperationsTest {
         ArgumentCaptor<String> depCaptor = ArgumentCaptor.forClass(String.class);
         when(mockDepOps.patch(anyString(), depCaptor.capture(), any())).thenReturn(Future.succeededFuture());
 
+        // Mock rebalancing
+        KafkaAdminOperations mockAdminOps = mock(KafkaAdminOperations.class);
+        ArgumentCaptor<Rebalancing> rebalancingCaptor = ArgumentCaptor.forClass(Rebalancing.class);
+        when(mockAdminOps.rebalance(eq(clusterCmNamespace), eq(clusterCmName), anyInt(), anyBoolean(), rebalancingCaptor.capture()))
+                .thenReturn(Future.succeededFuture());
+        when(mockAdminOps.drain(eq(clusterCmNamespace), eq(clusterCmName), anyInt(), any(), any()))
+                .thenReturn(Future.succeededFuture());
+        when(mockAdminOps.restoreBroker(eq(clusterCmNamespace), eq(clusterCmName), anyInt(), anyLong()))
+                .thenReturn(Future.succeededFuture());
+
+        // Mock the Zookeeper quorum, led by the first server
+        ZookeeperAdminOperations mockZkAdminOps = mock(ZookeeperAdminOperations.class);
+        when(mockZkAdminOps.awaitQuorum(eq(clusterCmNamespace), eq(clusterCmName), anyInt())).thenReturn(Future.succeededFuture(0));
+
         KafkaClusterOperations ops = new KafkaClusterOperations(vertx, openShift,
                 ClusterControllerConfig.DEFAULT_OPERATION_TIMEOUT_MS,
                 mockCmOps,
                 mockServiceOps, mockSsOps,
-                mockPvcOps, mockPodOps, mockEndpointOps, mockDepOps);
+                mockPvcOps, mockPodOps, mockEndpointOps, mockDepOps, mockAdminOps, mockZkAdminOps);
 
         // Now try to update a KafkaCluster based on this CM
         Async async = context.async();
@@ -578,30 +738,20 @@ public class KafkaClusterOperationsTest {
             if (kafkaDiff.isRollingUpdate()) {
                 expectedRollingRestarts.add(originalKafkaCluster.getName());
             }
-            if (zkDiff.isRollingUpdate()) {
-                expectedRollingRestarts.add(originalZookeeperCluster.getName());
-            }
             context.assertEquals(expectedRollingRestarts, rollingRestarts);
-
-            // scale down
-            Set<String> expectedScaleDown = set();
-            if (kafkaDiff.isScaleDown()) {
-                expectedScaleDown.add(originalKafkaCluster.getName());
-            }
-            if (zkDiff.isScaleDown()) {
-                expectedScaleDown.add(originalZookeeperCluster.getName());
+            assertZookeeperRestarts(context, clusterCmNamespace, zkDiff, originalZookeeperCluster, podRestarts, mockZkAdminOps);
+
+            assertScaled(context, originalKafkaCluster, kafkaDiff, originalZookeeperCluster, zkDiff, scaledDownCaptor, scaledUpCaptor);
+            assertRestoredAndDrained(context, clusterCmNamespace, updatedKafkaCluster, kafkaDiff, mockAdminOps);
+
+            // rebalance iff enabled
+            if (updatedKafkaCluster.getRebalancing().isScaleUp()) {
+                verify(mockAdminOps).rebalance(clusterCmNamespace, clusterCmName, updatedKafkaCluster.getReplicas(),
+                        kafkaDiff.isScaleUp(), rebalancingCaptor.getValue());
+                context.assertEquals(updatedKafkaCluster.getRebalancing().getThrottle(), rebalancingCaptor.getValue().getThrottle());
+            } else {
+                verify(mockAdminOps, never()).rebalance(anyString(), anyString(), anyInt(), anyBoolean(), any());
             }
-            context.assertEquals(expectedScaleDown, captured(scaledDownCaptor));
-
-            // scale up
-            Set<String> expectedScaleUp = set();
-            if (kafkaDiff.isScaleUp()) {
-                expectedScaleUp.add(originalKafkaCluster.getName());
-            }
-            if (zkDiff.isScaleUp()) {
-                expectedScaleUp.add(originalZookeeperCluster.getName());
-            }
-            context.assertEquals(expectedScaleUp, captured(scaledUpCaptor));
 
 
             if ((originalTopicController != null) && (updatedTopicController != null)) {
@@ -619,18 +769,104 @@ public class KafkaClusterOperationsTest {
         });
     }
 
+    /**
+     * Mock the rolling updates and the pod restarts of the stateful sets, recording which stateful sets they're for
+     */
+    private static void mockRestarts(StatefulSetOperations mockSsOps, String namespace, Set<String> rollingRestarts, Set<String> podRestarts) {
+        doAnswer(invocation -> {
+            rollingRestarts.add(invocation.getArgument(1));
+            ((Handler<AsyncResult<Void>>) invocation.getArgument(2)).handle(Future.succeededFuture());
+            return null;
+        }).when(mockSsOps).rollingUpdate(eq(namespace), anyString(), any());
+        doAnswer(invocation -> {
+            rollingRestarts.add(invocation.getArgument(1));
+            Future<Void> rolled = ((Function<Integer, Future<Void>>) invocation.getArgument(2)).apply(0);
+            ((Handler<AsyncResult<Void>>) invocation.getArgument(3)).handle(rolled);
+            return null;
+        }).when(mockSsOps).rollingUpdate(eq(namespace), anyString(), any(), any());
+        doAnswer(invocation -> {
+            podRestarts.add(invocation.getArgument(1));
+            Future<Void> restarted = Future.succeededFuture();
+            for (Integer pod : (List<Integer>) invocation.getArgument(2)) {
+                restarted = restarted.compose(i -> ((Function<Integer, Future<Void>>) invocation.getArgument(3)).apply(pod));
+            }
+            return restarted;
+        }).when(mockSsOps).restartPods(eq(namespace), anyString(), any(), any());
+    }
+
+    /**
+     * The Zookeeper servers are restarted one at a time, with a quorum before each restart
+     */
+    private void assertZookeeperRestarts(TestContext context, String namespace, ClusterDiffResult zkDiff, ZookeeperCluster originalZookeeperCluster,
+                                         Set<String> podRestarts, ZookeeperAdminOperations mockZkAdminOps) {
+        if (zkDiff.isRollingUpdate() || zkDiff.isScaleUp() || zkDiff.isScaleDown()) {
+            context.assertEquals(singleton(originalZookeeperCluster.getName()), podRestarts);
+            verify(mockZkAdminOps, atLeast(2)).awaitQuorum(eq(namespace), eq(originalZookeeperCluster.getCluster()), anyInt());
+        } else {
+            context.assertTrue(podRestarts.isEmpty());
+        }
+    }
+
+    private void assertScaled(TestContext context, KafkaCluster originalKafkaCluster, ClusterDiffResult kafkaDiff,
+                              ZookeeperCluster originalZookeeperCluster, ClusterDiffResult zkDiff,
+                              ArgumentCaptor<String> scaledDownCaptor, ArgumentCaptor<String> scaledUpCaptor) {
+        // scale down
+        Set<String> expectedScaleDown = set();
+        if (kafkaDiff.isScaleDown()) {
+            expectedScaleDown.add(originalKafkaCluster.getName());
+        }
+        if (zkDiff.isScaleDown()) {
+            expectedScaleDown.add(originalZookeeperCluster.getName());
+        }
+        context.assertEquals(expectedScaleDown, captured(scaledDownCaptor));
+
+        // scale up
+        Set<String> expectedScaleUp = set();
+        if (kafkaDiff.isScaleUp()) {
+            expectedScaleUp.add(originalKafkaCluster.getName());
+        }
+        if (zkDiff.isScaleUp()) {
+            expectedScaleUp.add(originalZookeeperCluster.getName());
+        }
+        context.assertEquals(expectedScaleUp, captured(scaledUpCaptor));
+    }
+
+    /**
+     * Each restarted broker catches up before the next is restarted, and the brokers are drained iff scaling down
+     */
+    private void assertRestoredAndDrained(TestContext context, String namespace, KafkaCluster updatedKafkaCluster, ClusterDiffResult kafkaDiff,
+                                          KafkaAdminOperations mockAdminOps) {
+        if (kafkaDiff.isRollingUpdate()) {
+            verify(mockAdminOps).restoreBroker(namespace, updatedKafkaCluster.getCluster(), 0,
+                    updatedKafkaCluster.getRebalancing().getTimeoutMs());
+        } else {
+            verify(mockAdminOps, never()).restoreBroker(anyString(), anyString(), anyInt(), anyLong());
+        }
+
+        if (kafkaDiff.isScaleDown()) {
+            ArgumentCaptor<Rebalancing> drainRebalancingCaptor = ArgumentCaptor.forClass(Rebalancing.class);
+            verify(mockAdminOps).drain(eq(namespace), eq(updatedKafkaCluster.getCluster()), eq(updatedKafkaCluster.getReplicas()),
+                    eq(updatedKafkaCluster.getStorage().capacityBytes()), drainRebalancingCaptor.capture());
+            context.assertEquals(updatedKafkaCluster.getRebalancing().isScaleDown(), drainRebalancingCaptor.getValue().isScaleDown());
+            context.assertEquals(updatedKafkaCluster.getRebalancing().getThrottle(), drainRebalancingCaptor.getValue().getThrottle());
+            context.assertEquals(updatedKafkaCluster.getRebalancing().getTimeoutMs(), drainRebalancingCaptor.getValue().getTimeoutMs());
+        } else {
+            verify(mockAdminOps, never()).drain(anyString(), anyString(), anyInt(), any(), any());
+        }
+    }
+
     @Test
     public void testReconcile(TestContext context) {
         Async async = context.async(3);
 
         // create CM, Service, headless service, statefulset
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        StatefulSetOperations mockSsOps = mock(StatefulSetOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
         PvcOperations mockPvcOps = mock(PvcOperations.class);
-        PodOperations mockPodOps = mock(PodOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
         EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
-        DeploymentOperations mockDepOps = mock(DeploymentOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmNamespace = "myNamespace";
 
@@ -705,4 +941,47 @@ public class KafkaClusterOperationsTest {
         context.assertEquals(singleton("bar"), updated);
         context.assertEquals(singleton("baz"), deleted);
     }
+
+    @Test
+    public void testReconcileAllWithConfigMaps(TestContext context) {
+        Async async = context.async();
+
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        StatefulSetOperations mockSsOps = ResourceUtils.mockOperations(StatefulSetOperations.class);
+        PvcOperations mockPvcOps = mock(PvcOperations.class);
+        PodOperations mockPodOps = ResourceUtils.mockOperations(PodOperations.class);
+        EndpointOperations mockEndpointOps = mock(EndpointOperations.class);
+        DeploymentOperations mockDepOps = ResourceUtils.mockOperations(DeploymentOperations.class);
+
+        String clusterCmNamespace = "myNamespace";
+
+        ConfigMap foo = getConfigMap("foo");
+        // a ConfigMap for another cluster type, listed together with the Kafka ones
+        ConfigMap connect = ResourceUtils.createEmptyKafkaConnectClusterConfigMap(clusterCmNamespace, "qux");
+        when(mockCmOps.get(eq(clusterCmNamespace), eq("foo"))).thenReturn(foo);
+        when(mockSsOps.list(eq(clusterCmNamespace), any())).thenReturn(Collections.emptyList());
+
+        Set<String> created = new HashSet<>();
+
+        KafkaClusterOperations ops = new KafkaClusterOperations(vertx, openShift,
+                ClusterControllerConfig.DEFAULT_OPERATION_TIMEOUT_MS,
+                mockCmOps,
+                mockServiceOps, mockSsOps,
+                mockPvcOps, mockPodOps, mockEndpointOps, mockDepOps) {
+            @Override
+            public void create(String namespace, String name, Handler h) {
+                created.add(name);
+                h.handle(Future.succeededFuture());
+            }
+        };
+
+        ops.reconcileAll(clusterCmNamespace, Collections.emptyMap(), asList(foo, connect)).setHandler(ar -> {
+            context.assertTrue(ar.succeeded());
+            context.assertEquals(singleton("foo"), created);
+            // the ConfigMaps were given, so they're not listed again
+            verify(mockCmOps, never()).list(any(), any());
+            async.complete();
+        });
+    }
 }
@@ -7,8 +7,10 @@ package io.strimzi.controller.cluster.operations.cluster;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentStatusBuilder;
 import io.strimzi.controller.cluster.ClusterController;
 import io.strimzi.controller.cluster.ResourceUtils;
+import io.strimzi.controller.cluster.operations.connect.KafkaConnectAdminOperations;
 import io.strimzi.controller.cluster.operations.resource.ConfigMapOperations;
 import io.strimzi.controller.cluster.operations.resource.DeploymentOperations;
 import io.strimzi.controller.cluster.operations.resource.ServiceOperations;
@@ -35,8 +37,11 @@ import java.util.Set;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(VertxUnitRunner.class)
@@ -56,9 +61,9 @@ public class KafkaConnectClusterOperationsTest {
 
     @Test
     public void testCreateCluster(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -101,9 +106,9 @@ public class KafkaConnectClusterOperationsTest {
 
     @Test
     public void testUpdateClusterNoDiff(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -159,9 +164,9 @@ public class KafkaConnectClusterOperationsTest {
 
     @Test
     public void testUpdateCluster(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -227,9 +232,9 @@ public class KafkaConnectClusterOperationsTest {
 
     @Test
     public void testUpdateClusterFailure(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -277,9 +282,9 @@ public class KafkaConnectClusterOperationsTest {
     public void testUpdateClusterScaleUp(TestContext context) {
         String newReplicas = "4";
 
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -344,9 +349,9 @@ public class KafkaConnectClusterOperationsTest {
     public void testUpdateClusterScaleDown(TestContext context) {
         String newReplicas = "2";
 
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -407,11 +412,69 @@ public class KafkaConnectClusterOperationsTest {
         });
     }
 
+    @Test
+    public void testUpdateClusterAutoscaleUp(TestContext context) {
+        // 4500 records of lag need 5 workers, and the last scaling was long enough ago
+        autoscale(context, System.currentTimeMillis() - 3_600_000, 5);
+    }
+
+    @Test
+    public void testUpdateClusterAutoscaleCooldown(TestContext context) {
+        // 4500 records of lag need 5 workers, but the cluster has just been scaled
+        autoscale(context, System.currentTimeMillis(), null);
+    }
+
+    private void autoscale(TestContext context, long lastScaleTime, Integer expectedReplicas) {
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
+        KafkaConnectAdminOperations mockAdminOps = mock(KafkaConnectAdminOperations.class);
+
+        String clusterCmName = "foo";
+        String clusterCmNamespace = "test";
+
+        ConfigMap clusterCm = ResourceUtils.createEmptyKafkaConnectClusterConfigMap(clusterCmNamespace, clusterCmName);
+        clusterCm.getData().put(KafkaConnectCluster.KEY_AUTOSCALING, "{\"min-nodes\": 1, \"max-nodes\": 6, \"lag-per-node\": 1000}");
+        KafkaConnectCluster connect = KafkaConnectCluster.fromConfigMap(clusterCm);
+        Deployment dep = connect.generateDeployment();
+        dep.setStatus(new DeploymentStatusBuilder().withReadyReplicas(connect.getReplicas()).build());
+        KafkaConnectCluster.setLastScaleTime(dep, lastScaleTime);
+
+        when(mockCmOps.get(clusterCmNamespace, clusterCmName)).thenReturn(clusterCm);
+        when(mockDcOps.get(clusterCmNamespace, connect.getName())).thenReturn(dep);
+        when(mockAdminOps.load(eq(clusterCmNamespace), any())).thenReturn(Future.succeededFuture(new KafkaConnectAdminOperations.Load(10, 4500)));
+
+        ArgumentCaptor<Deployment> dcCaptor = ArgumentCaptor.forClass(Deployment.class);
+        when(mockDcOps.patch(eq(clusterCmNamespace), eq(connect.getName()), dcCaptor.capture())).thenReturn(Future.succeededFuture());
+        when(mockDcOps.scaleUp(eq(clusterCmNamespace), eq(connect.getName()), anyInt())).thenReturn(Future.succeededFuture());
+
+        KafkaConnectClusterOperations ops = new KafkaConnectClusterOperations(vertx, true,
+                mockCmOps, mockDcOps, mockServiceOps, mockAdminOps);
+
+        Async async = context.async();
+        long before = System.currentTimeMillis();
+        ops.update(clusterCmNamespace, clusterCmName, updateResult -> {
+            context.assertTrue(updateResult.succeeded());
+
+            if (expectedReplicas != null) {
+                verify(mockDcOps).scaleUp(clusterCmNamespace, connect.getName(), expectedReplicas);
+                // the time of the scaling is recorded for the cooldown
+                context.assertEquals(1, dcCaptor.getAllValues().size());
+                context.assertTrue(KafkaConnectCluster.getLastScaleTime(dcCaptor.getValue()) >= before);
+            } else {
+                verify(mockDcOps, never()).scaleUp(any(), any(), anyInt());
+                context.assertEquals(0, dcCaptor.getAllValues().size());
+            }
+
+            async.complete();
+        });
+    }
+
     @Test
     public void testDeleteCluster(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -451,9 +514,9 @@ public class KafkaConnectClusterOperationsTest {
 
     @Test
     public void testReconcile(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentOperations mockDcOps = mock(DeploymentOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentOperations mockDcOps = ResourceUtils.mockOperations(DeploymentOperations.class);
 
 
         String clusterCmNamespace = "test";
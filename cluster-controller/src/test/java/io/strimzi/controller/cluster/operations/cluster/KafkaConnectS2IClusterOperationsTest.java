@@ -41,7 +41,6 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @RunWith(VertxUnitRunner.class)
@@ -61,11 +60,11 @@ public class KafkaConnectS2IClusterOperationsTest {
 
     @Test
     public void testCreateCluster(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -135,11 +134,11 @@ public class KafkaConnectS2IClusterOperationsTest {
 
     @Test
     public void testUpdateClusterNoDiff(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -214,13 +213,64 @@ public class KafkaConnectS2IClusterOperationsTest {
         });
     }
 
+    @Test
+    public void testUpdateClusterWithoutBuildChange(TestContext context) {
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
+
+        String clusterCmName = "foo";
+        String clusterCmNamespace = "test";
+
+        ConfigMap clusterCm = ResourceUtils.createEmptyKafkaConnectS2IClusterConfigMap(clusterCmNamespace, clusterCmName);
+        KafkaConnectS2ICluster connect = KafkaConnectS2ICluster.fromConfigMap(clusterCm);
+        clusterCm.getData().put(KafkaConnectCluster.KEY_CONNECT_CONFIG, "{\"producer.linger.ms\": 20}"); // Change only the worker configuration
+
+        when(mockCmOps.get(clusterCmNamespace, clusterCmName)).thenReturn(clusterCm);
+        when(mockServiceOps.get(clusterCmNamespace, connect.getName())).thenReturn(connect.generateService());
+        when(mockDcOps.get(clusterCmNamespace, connect.getName())).thenReturn(connect.generateDeploymentConfig());
+        when(mockIsOps.get(clusterCmNamespace, connect.getSourceImageStreamName())).thenReturn(connect.generateSourceImageStream());
+        when(mockIsOps.get(clusterCmNamespace, connect.getName())).thenReturn(connect.generateTargetImageStream());
+        when(mockBcOps.get(clusterCmNamespace, connect.getName())).thenReturn(connect.generateBuildConfig());
+
+        when(mockServiceOps.patch(any(), any(), any())).thenReturn(Future.succeededFuture());
+
+        ArgumentCaptor<DeploymentConfig> dcCaptor = ArgumentCaptor.forClass(DeploymentConfig.class);
+        when(mockDcOps.patch(any(), any(), dcCaptor.capture())).thenReturn(Future.succeededFuture());
+
+        ArgumentCaptor<String> isNameCaptor = ArgumentCaptor.forClass(String.class);
+        when(mockIsOps.patch(any(), isNameCaptor.capture(), any())).thenReturn(Future.succeededFuture());
+
+        ArgumentCaptor<BuildConfig> bcCaptor = ArgumentCaptor.forClass(BuildConfig.class);
+        when(mockBcOps.patch(any(), any(), bcCaptor.capture())).thenReturn(Future.succeededFuture());
+
+        KafkaConnectS2IClusterOperations ops = new KafkaConnectS2IClusterOperations(vertx, true,
+                mockCmOps, mockDcOps, mockServiceOps, mockIsOps, mockBcOps);
+
+        Async async = context.async();
+        ops.update(clusterCmNamespace, clusterCmName, createResult -> {
+            context.assertTrue(createResult.succeeded());
+
+            // The Deployment Config is rolled with the new configuration
+            context.assertEquals(1, dcCaptor.getAllValues().size());
+
+            // Neither the Build Config nor the source Image Stream are touched, so no new build is started
+            context.assertEquals(0, bcCaptor.getAllValues().size());
+            context.assertEquals(asList(connect.getName()), isNameCaptor.getAllValues());
+
+            async.complete();
+        });
+    }
+
     @Test
     public void testUpdateCluster(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -320,11 +370,11 @@ public class KafkaConnectS2IClusterOperationsTest {
 
     @Test
     public void testUpdateClusterFailure(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -385,11 +435,11 @@ public class KafkaConnectS2IClusterOperationsTest {
     public void testUpdateClusterScaleUp(TestContext context) {
         String newReplicas = "4";
 
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -475,11 +525,11 @@ public class KafkaConnectS2IClusterOperationsTest {
     public void testUpdateClusterScaleDown(TestContext context) {
         String newReplicas = "2";
 
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -563,11 +613,11 @@ public class KafkaConnectS2IClusterOperationsTest {
 
     @Test
     public void testDeleteCluster(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
         String clusterCmName = "foo";
         String clusterCmNamespace = "test";
@@ -631,18 +681,18 @@ public class KafkaConnectS2IClusterOperationsTest {
 
     @Test
     public void testReconcile(TestContext context) {
-        ConfigMapOperations mockCmOps = mock(ConfigMapOperations.class);
-        ServiceOperations mockServiceOps = mock(ServiceOperations.class);
-        DeploymentConfigOperations mockDcOps = mock(DeploymentConfigOperations.class);
-        BuildConfigOperations mockBcOps = mock(BuildConfigOperations.class);
-        ImageStreamOperations mockIsOps = mock(ImageStreamOperations.class);
+        ConfigMapOperations mockCmOps = ResourceUtils.mockOperations(ConfigMapOperations.class);
+        ServiceOperations mockServiceOps = ResourceUtils.mockOperations(ServiceOperations.class);
+        DeploymentConfigOperations mockDcOps = ResourceUtils.mockOperations(DeploymentConfigOperations.class);
+        BuildConfigOperations mockBcOps = ResourceUtils.mockOperations(BuildConfigOperations.class);
+        ImageStreamOperations mockIsOps = ResourceUtils.mockOperations(ImageStreamOperations.class);
 
 
         String clusterCmNamespace = "test";
 
-        ConfigMap foo = ResourceUtils.createEmptyKafkaConnectClusterConfigMap(clusterCmNamespace, "foo");
-        ConfigMap bar = ResourceUtils.createEmptyKafkaConnectClusterConfigMap(clusterCmNamespace, "bar");
-        ConfigMap baz = ResourceUtils.createEmptyKafkaConnectClusterConfigMap(clusterCmNamespace, "baz");
+        ConfigMap foo = ResourceUtils.createEmptyKafkaConnectS2IClusterConfigMap(clusterCmNamespace, "foo");
+        ConfigMap bar = ResourceUtils.createEmptyKafkaConnectS2IClusterConfigMap(clusterCmNamespace, "bar");
+        ConfigMap baz = ResourceUtils.createEmptyKafkaConnectS2IClusterConfigMap(clusterCmNamespace, "baz");
         when(mockCmOps.list(eq(clusterCmNamespace), any())).thenReturn(asList(foo, bar));
         // when requested ConfigMap for a specific Kafka Connect S2I cluster
         when(mockCmOps.get(eq(clusterCmNamespace), eq("foo"))).thenReturn(foo);
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.cluster;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(VertxUnitRunner.class)
+public class ReconciliationQueueTest {
+
+    protected static Vertx vertx;
+
+    @BeforeClass
+    public static void before() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterClass
+    public static void after() {
+        vertx.close();
+    }
+
+    @Test
+    public void testBackoff() {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 1, 100, 1_000);
+        assertEquals(100, queue.backoffMs(1));
+        assertEquals(200, queue.backoffMs(2));
+        assertEquals(400, queue.backoffMs(3));
+        assertEquals(800, queue.backoffMs(4));
+        assertEquals(1_000, queue.backoffMs(5));
+        assertEquals(1_000, queue.backoffMs(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxConcurrent() {
+        new ReconciliationQueue(vertx, 0, 100, 1_000);
+    }
+
+    @Test
+    public void testCollapsesWhileRunning(TestContext context) {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 1, 100, 1_000);
+        Async async = context.async();
+        AtomicInteger runs = new AtomicInteger();
+
+        queue.enqueue("foo", fut -> {
+            runs.incrementAndGet();
+            // requests received while running are collapsed into a single rerun
+            queue.enqueue("foo", fut2 -> context.fail("Replaced by a later request"));
+            queue.enqueue("foo", fut2 -> context.fail("Replaced by a later request"));
+            queue.enqueue("foo", fut2 -> {
+                runs.incrementAndGet();
+                fut2.complete();
+                vertx.setTimer(50, t -> {
+                    context.assertEquals(2, runs.get());
+                    context.assertEquals(0, queue.size());
+                    async.complete();
+                });
+            });
+            fut.complete();
+        });
+    }
+
+    @Test
+    public void testMaxConcurrent(TestContext context) {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 2, 100, 1_000);
+        int clusters = 5;
+        Async async = context.async(clusters);
+        AtomicInteger running = new AtomicInteger();
+
+        for (int i = 0; i < clusters; i++) {
+            queue.enqueue("cluster-" + i, fut -> {
+                context.assertTrue(running.incrementAndGet() <= 2);
+                vertx.setTimer(20, t -> {
+                    running.decrementAndGet();
+                    fut.complete();
+                    async.countDown();
+                });
+            });
+        }
+    }
+
+    @Test
+    public void testRetryWithBackoff(TestContext context) {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 1, 50, 1_000);
+        Async async = context.async();
+        List<Long> starts = new ArrayList<>();
+
+        queue.enqueue("foo", fut -> {
+            starts.add(System.currentTimeMillis());
+            fut.fail("Simulated failure");
+            // requests received while backing off are collapsed into the retry
+            queue.enqueue("foo", fut2 -> context.fail("Replaced by a later request"));
+            queue.enqueue("foo", fut2 -> {
+                starts.add(System.currentTimeMillis());
+                fut2.complete();
+                context.assertEquals(2, starts.size());
+                context.assertTrue(starts.get(1) - starts.get(0) >= 50);
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testGivesUpAfterConsecutiveFailures(TestContext context) {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 1, 1, 1);
+        Async async = context.async();
+        AtomicInteger attempts = new AtomicInteger();
+
+        queue.enqueue("foo", fut -> {
+            attempts.incrementAndGet();
+            fut.fail("Simulated failure");
+        }, ar -> context.assertTrue(ar.failed()));
+        vertx.setTimer(500, t -> {
+            context.assertEquals(ReconciliationQueue.MAX_CONSECUTIVE_FAILURES, attempts.get());
+            context.assertEquals(0, queue.size());
+            // a later request is run again
+            queue.enqueue("foo", fut -> {
+                fut.complete();
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testThrowingActionIsRetried(TestContext context) {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 1, 10, 100);
+        Async async = context.async();
+        AtomicInteger attempts = new AtomicInteger();
+
+        queue.enqueue("foo", fut -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new RuntimeException("Simulated failure");
+            }
+            fut.complete();
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testResultHandlers(TestContext context) {
+        ReconciliationQueue queue = new ReconciliationQueue(vertx, 1, 10, 100);
+        Async async = context.async(3);
+        AtomicInteger runs = new AtomicInteger();
+
+        // keeps the only slot busy, so the requests for "bar" are collapsed while waiting
+        queue.enqueue("foo", fut -> vertx.setTimer(20, t -> fut.complete()));
+        Handler<Future<Void>> failOnce = fut -> {
+            if (runs.incrementAndGet() == 1) {
+                fut.fail("Simulated failure");
+            } else {
+                fut.complete();
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            queue.enqueue("bar", failOnce, ar -> {
+                context.assertTrue(ar.failed());
+                context.assertEquals(1, runs.get());
+                async.countDown();
+            });
+        }
+        queue.enqueue("foo", fut -> fut.complete(), ar -> {
+            context.assertTrue(ar.succeeded());
+            async.countDown();
+        });
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReassignmentPlannerTest {
+
+    /** 6 partitions with 2 replicas each, so 4 replicas on each of brokers 0, 1 and 2 */
+    private static Map<TopicPartition, List<Integer>> threeBrokers() {
+        Map<TopicPartition, List<Integer>> assignment = new HashMap<>();
+        assignment.put(new TopicPartition("foo", 0), asList(0, 1));
+        assignment.put(new TopicPartition("foo", 1), asList(1, 2));
+        assignment.put(new TopicPartition("foo", 2), asList(2, 0));
+        assignment.put(new TopicPartition("bar", 0), asList(0, 2));
+        assignment.put(new TopicPartition("bar", 1), asList(1, 0));
+        assignment.put(new TopicPartition("bar", 2), asList(2, 1));
+        return assignment;
+    }
+
+    private static Map<Integer, Integer> replicasPerBroker(Map<TopicPartition, List<Integer>> assignment) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (List<Integer> replicas : assignment.values()) {
+            for (Integer broker : replicas) {
+                counts.merge(broker, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void testBalancedIsUnchanged() {
+        assertTrue(ReassignmentPlanner.balance(threeBrokers(), asList(0, 1, 2)).isEmpty());
+    }
+
+    @Test
+    public void testBalanceOntoNewBroker() {
+        Map<TopicPartition, List<Integer>> current = threeBrokers();
+        Map<TopicPartition, List<Integer>> reassignment = ReassignmentPlanner.balance(current, asList(0, 1, 2, 3));
+
+        // 12 replicas over 4 brokers: only the 3 replicas needed by the new broker are moved
+        assertEquals(3, reassignment.size());
+        for (Map.Entry<TopicPartition, List<Integer>> entry : reassignment.entrySet()) {
+            List<Integer> before = current.get(entry.getKey());
+            List<Integer> after = entry.getValue();
+            assertEquals(before.size(), after.size());
+            assertEquals(after.size(), new HashSet<>(after).size());
+            assertTrue(after.contains(3));
+            int unchanged = 0;
+            for (int i = 0; i < after.size(); i++) {
+                if (after.get(i).equals(before.get(i))) {
+                    unchanged++;
+                }
+            }
+            assertEquals(1, unchanged);
+        }
+
+        Map<TopicPartition, List<Integer>> proposed = new HashMap<>(current);
+        proposed.putAll(reassignment);
+        Map<Integer, Integer> counts = replicasPerBroker(proposed);
+        for (int broker = 0; broker < 4; broker++) {
+            assertEquals(Integer.valueOf(3), counts.get(broker));
+        }
+    }
+
+    @Test
+    public void testBalanceOntoSeveralNewBrokers() {
+        Map<TopicPartition, List<Integer>> current = threeBrokers();
+        Map<TopicPartition, List<Integer>> reassignment = ReassignmentPlanner.balance(current, asList(0, 1, 2, 3, 4));
+
+        Map<TopicPartition, List<Integer>> proposed = new HashMap<>(current);
+        proposed.putAll(reassignment);
+        Map<Integer, Integer> counts = replicasPerBroker(proposed);
+        // 12 replicas over 5 brokers
+        for (int broker = 0; broker < 5; broker++) {
+            assertTrue(counts.get(broker) == 2 || counts.get(broker) == 3);
+        }
+        for (List<Integer> replicas : proposed.values()) {
+            assertEquals(replicas.size(), new HashSet<>(replicas).size());
+        }
+    }
+
+    @Test
+    public void testDrain() {
+        Map<TopicPartition, List<Integer>> current = threeBrokers();
+        Map<TopicPartition, List<Integer>> reassignment = ReassignmentPlanner.drain(current, asList(0, 1));
+
+        // the 4 partitions with a replica on broker 2 are moved, keeping their other replica first
+        assertEquals(4, reassignment.size());
+        assertEquals(asList(1, 0), reassignment.get(new TopicPartition("foo", 1)));
+        assertEquals(asList(0, 1), reassignment.get(new TopicPartition("foo", 2)));
+        assertEquals(asList(0, 1), reassignment.get(new TopicPartition("bar", 0)));
+        assertEquals(asList(1, 0), reassignment.get(new TopicPartition("bar", 2)));
+        assertTrue(ReassignmentPlanner.drain(current, asList(0, 1, 2)).isEmpty());
+    }
+
+    @Test
+    public void testDrainSpreadsMovedReplicas() {
+        Map<TopicPartition, List<Integer>> current = new HashMap<>();
+        for (int partition = 0; partition < 4; partition++) {
+            current.put(new TopicPartition("foo", partition), asList(3));
+        }
+        Map<TopicPartition, List<Integer>> proposed = new HashMap<>(current);
+        proposed.putAll(ReassignmentPlanner.drain(current, asList(0, 1)));
+        Map<Integer, Integer> counts = replicasPerBroker(proposed);
+        assertEquals(Integer.valueOf(2), counts.get(0));
+        assertEquals(Integer.valueOf(2), counts.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDrainWithTooFewRemainingBrokers() {
+        ReassignmentPlanner.drain(threeBrokers(), asList(0));
+    }
+
+    @Test
+    public void testBytesAfter() {
+        Map<TopicPartition, List<Integer>> current = threeBrokers();
+        Map<TopicPartition, List<Integer>> reassignment = ReassignmentPlanner.drain(current, asList(0, 1));
+        Map<Integer, Long> brokerBytes = new HashMap<>();
+        brokerBytes.put(0, 400L);
+        brokerBytes.put(1, 400L);
+        brokerBytes.put(2, 400L);
+        Map<TopicPartition, Long> partitionBytes = new HashMap<>();
+        for (TopicPartition partition : current.keySet()) {
+            partitionBytes.put(partition, 100L);
+        }
+
+        Map<Integer, Long> bytesAfter = ReassignmentPlanner.bytesAfter(current, reassignment, brokerBytes, partitionBytes);
+        // each remaining broker gains a replica of 2 of the 4 moved partitions
+        assertEquals(Long.valueOf(600L), bytesAfter.get(0));
+        assertEquals(Long.valueOf(600L), bytesAfter.get(1));
+    }
+}
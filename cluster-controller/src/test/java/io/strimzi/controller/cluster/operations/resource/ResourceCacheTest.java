@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.operations.resource;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(VertxUnitRunner.class)
+public class ResourceCacheTest {
+
+    private static final Map<String, String> LABELS = singletonMap("strimzi.io/kind", "cluster");
+
+    protected static Vertx vertx;
+
+    @BeforeClass
+    public static void before() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterClass
+    public static void after() {
+        vertx.close();
+    }
+
+    private static ConfigMap configMap(String namespace, String name, String resourceVersion, String type) {
+        Map<String, String> labels = new HashMap<>(LABELS);
+        labels.put("strimzi.io/type", type);
+        return new ConfigMapBuilder()
+                .withNewMetadata()
+                    .withNamespace(namespace)
+                    .withName(name)
+                    .withResourceVersion(resourceVersion)
+                    .withLabels(labels)
+                .endMetadata()
+                .build();
+    }
+
+    private static ConfigMapList list(String resourceVersion, ConfigMap... items) {
+        return new ConfigMapListBuilder()
+                .withNewMetadata()
+                    .withResourceVersion(resourceVersion)
+                .endMetadata()
+                .withItems(items)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> mockOperation() {
+        return mock(FilterWatchListDeletable.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStartAndRead() {
+        FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> op = mockOperation();
+        when(op.list()).thenReturn(list("10",
+                configMap("ns1", "foo", "1", "kafka"),
+                configMap("ns1", "bar", "2", "kafka-connect"),
+                configMap("ns2", "baz", "3", "kafka"),
+                configMap("other", "qux", "4", "kafka")));
+        ArgumentCaptor<Watcher> watcher = ArgumentCaptor.forClass(Watcher.class);
+        when(op.watch(eq("10"), watcher.capture())).thenReturn(mock(Watch.class));
+
+        ResourceCache<ConfigMap> cache = new ResourceCache<>(vertx, "ConfigMap", op,
+                new HashSet<>(asList("ns1", "ns2")), LABELS);
+        assertFalse(cache.covers("ns1"));
+        cache.start();
+
+        assertTrue(cache.covers("ns1"));
+        assertTrue(cache.covers("ns2"));
+        assertFalse(cache.covers("other"));
+        // the cache doesn't hold the resources without its labels
+        assertFalse(cache.covers("ns1", singletonMap("strimzi.io/type", "kafka")));
+        Map<String, String> kafkaLabels = new HashMap<>(LABELS);
+        kafkaLabels.put("strimzi.io/type", "kafka");
+        assertTrue(cache.covers("ns1", kafkaLabels));
+
+        assertEquals("foo", cache.get("ns1", "foo").getMetadata().getName());
+        assertNull(cache.get("ns2", "foo"));
+        assertEquals(1, cache.list("ns1", kafkaLabels).size());
+        assertEquals(2, cache.list("ns1", LABELS).size());
+        assertEquals(0, cache.list("other", LABELS).size());
+
+        // reads return copies
+        ConfigMap copy = cache.get("ns1", "foo");
+        copy.getMetadata().setResourceVersion("99");
+        assertNotSame(copy, cache.get("ns1", "foo"));
+        assertEquals("1", cache.get("ns1", "foo").getMetadata().getResourceVersion());
+
+        // watch events update the cache
+        watcher.getValue().eventReceived(Watcher.Action.MODIFIED, configMap("ns1", "foo", "11", "kafka"));
+        watcher.getValue().eventReceived(Watcher.Action.DELETED, configMap("ns1", "bar", "12", "kafka-connect"));
+        watcher.getValue().eventReceived(Watcher.Action.ADDED, configMap("other", "quux", "13", "kafka"));
+        assertEquals("11", cache.get("ns1", "foo").getMetadata().getResourceVersion());
+        assertNull(cache.get("ns1", "bar"));
+        assertNull(cache.get("other", "quux"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testListenersNotifiedOfChangesWhileWatchClosed(TestContext context) {
+        FilterWatchListDeletable<ConfigMap, ConfigMapList, Boolean, Watch, Watcher<ConfigMap>> op = mockOperation();
+        when(op.list()).thenReturn(
+                list("10",
+                        configMap("ns1", "foo", "1", "kafka"),
+                        configMap("ns1", "bar", "2", "kafka"),
+                        configMap("ns1", "baz", "3", "kafka")),
+                list("20",
+                        configMap("ns1", "foo", "1", "kafka"),
+                        configMap("ns1", "bar", "15", "kafka"),
+                        configMap("ns1", "qux", "16", "kafka")));
+        ArgumentCaptor<Watcher> watcher = ArgumentCaptor.forClass(Watcher.class);
+        when(op.watch(any(), watcher.capture())).thenReturn(mock(Watch.class));
+
+        ResourceCache<ConfigMap> cache = new ResourceCache<>(vertx, "ConfigMap", op,
+                new HashSet<>(asList("ns1")), LABELS);
+        cache.start();
+
+        Async async = context.async(3);
+        List<String> events = new ArrayList<>();
+        cache.addListener("ns1", (action, cm) -> {
+            synchronized (events) {
+                events.add(action + " " + cm.getMetadata().getName());
+            }
+            async.countDown();
+        });
+
+        // the watch closes: the resources are listed again and only the differences are notified
+        watcher.getValue().onClose(new KubernetesClientException("Simulated"));
+        async.await();
+
+        context.assertEquals(new HashSet<>(asList("MODIFIED bar", "ADDED qux", "DELETED baz")), new HashSet<>(events));
+        context.assertNull(cache.get("ns1", "baz"));
+        context.assertEquals("15", cache.get("ns1", "bar").getMetadata().getResourceVersion());
+    }
+}
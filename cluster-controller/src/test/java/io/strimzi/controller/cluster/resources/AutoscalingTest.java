@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AutoscalingTest {
+
+    private final Autoscaling autoscaling = Autoscaling.fromJson(new JsonObject(
+            "{\"min-nodes\": 2, \"max-nodes\": 6, \"lag-per-node\": 1000, \"scale-up-cooldown\": 60000, \"scale-down-cooldown\": 600000}"));
+
+    @Test
+    public void testDefaults() {
+        Autoscaling defaults = Autoscaling.fromJson(new JsonObject("{\"max-nodes\": 4}"));
+
+        assertEquals(Autoscaling.DEFAULT_MIN_NODES, defaults.getMinNodes());
+        assertEquals(4, defaults.getMaxNodes());
+        assertEquals(Autoscaling.DEFAULT_LAG_PER_NODE, defaults.getLagPerNode());
+        assertEquals(Autoscaling.DEFAULT_SCALE_UP_COOLDOWN_MS, defaults.getScaleUpCooldownMs());
+        assertEquals(Autoscaling.DEFAULT_SCALE_DOWN_COOLDOWN_MS, defaults.getScaleDownCooldownMs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingMaxNodes() {
+        Autoscaling.fromJson(new JsonObject("{\"min-nodes\": 2}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxNodesLessThanMinNodes() {
+        Autoscaling.fromJson(new JsonObject("{\"min-nodes\": 3, \"max-nodes\": 2}"));
+    }
+
+    @Test
+    public void testDesiredReplicas() {
+        // enough workers for 1000 records of lag each
+        assertEquals(4, autoscaling.desiredReplicas(10, 3500));
+        // no more workers than tasks
+        assertEquals(3, autoscaling.desiredReplicas(3, 3500));
+        // within the bounds
+        assertEquals(2, autoscaling.desiredReplicas(10, 0));
+        assertEquals(6, autoscaling.desiredReplicas(10, 100_000));
+    }
+
+    @Test
+    public void testNextReplicas() {
+        // scaling up goes straight to the desired number, once its cooldown has passed
+        assertEquals(5, autoscaling.nextReplicas(2, 5, 60_000));
+        assertEquals(2, autoscaling.nextReplicas(2, 5, 59_999));
+        // scaling down removes a single worker, once its cooldown has passed
+        assertEquals(4, autoscaling.nextReplicas(5, 2, 600_000));
+        assertEquals(5, autoscaling.nextReplicas(5, 2, 599_999));
+        assertEquals(3, autoscaling.nextReplicas(3, 3, Long.MAX_VALUE));
+    }
+}
@@ -5,14 +5,24 @@
 package io.strimzi.controller.cluster.resources;
 
 import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
 import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.WeightedPodAffinityTerm;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
 import io.strimzi.controller.cluster.ResourceUtils;
+import io.vertx.core.json.JsonObject;
 import org.junit.Test;
 
+import java.util.List;
+
 import static io.strimzi.controller.cluster.ResourceUtils.labels;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class KafkaClusterTest {
@@ -37,6 +47,24 @@ public class KafkaClusterTest {
         assertEquals(metricsCmJson, metricsCm.getData().get(AbstractCluster.METRICS_CONFIG_FILE));
     }
 
+    @Test
+    public void testMetricsProfile() {
+        String profileJson = "{\"profile\": \"standard\"}";
+        KafkaCluster profileKc = KafkaCluster.fromConfigMap(ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image,
+                healthDelay, healthTimeout, profileJson));
+
+        ConfigMap metricsCm = profileKc.generateMetricsConfigMap();
+        assertEquals(KafkaMetricsConfig.fromJson(new JsonObject(profileJson)).getExporterConfig(),
+                new JsonObject(metricsCm.getData().get(AbstractCluster.METRICS_CONFIG_FILE)));
+        assertFalse(profileKc.diff(metricsCm, profileKc.generateStatefulSet(true)).isMetricsChanged());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMetricsPerPartitionRule() {
+        KafkaCluster.fromConfigMap(ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout,
+                "{\"rules\": [{\"pattern\": \"kafka.cluster<type=Partition, name=(.+), topic=(.+), partition=(.+)><>Value\"}]}"));
+    }
+
     @Test
     public void testGenerateService() {
         Service headful = kc.generateService();
@@ -114,6 +142,118 @@ public class KafkaClusterTest {
 
     // TODO test volume claim templates
 
+    @Test
+    public void testVolumeMountHack() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson,
+                "{\"type\": \"persistent-claim\", \"size\": \"1Gi\"}");
+        KafkaCluster kc = KafkaCluster.fromConfigMap(cm);
+
+        // No init container on OpenShift
+        assertTrue(kc.generateStatefulSet(true).getSpec().getTemplate().getSpec().getInitContainers().isEmpty());
+
+        // On Kubernetes the init container only does the recursive chown when needed
+        StatefulSet ss = kc.generateStatefulSet(false);
+        assertEquals(new Long(1001), ss.getSpec().getTemplate().getSpec().getSecurityContext().getFsGroup());
+        List<Container> initContainers = ss.getSpec().getTemplate().getSpec().getInitContainers();
+        assertEquals(1, initContainers.size());
+        String command = initContainers.get(0).getCommand().get(2);
+        assertTrue(command, command.contains("chown -R 1001:1001"));
+        assertTrue(command, command.contains(".strimzi-ownership"));
+    }
+
+    @Test
+    public void testVolumeMountHackFsGroupOnly() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson,
+                "{\"type\": \"persistent-claim\", \"size\": \"1Gi\", \"fs-group-only\": true}");
+        StatefulSet ss = KafkaCluster.fromConfigMap(cm).generateStatefulSet(false);
+        assertEquals(new Long(1001), ss.getSpec().getTemplate().getSpec().getSecurityContext().getFsGroup());
+        assertTrue(ss.getSpec().getTemplate().getSpec().getInitContainers().isEmpty());
+    }
+
+    @Test
+    public void testDiffFsGroupOnly() {
+        KafkaCluster withHack = KafkaCluster.fromConfigMap(ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas,
+                image, healthDelay, healthTimeout, metricsCmJson, "{\"type\": \"persistent-claim\", \"size\": \"1Gi\"}"));
+        KafkaCluster fsGroupOnly = KafkaCluster.fromConfigMap(ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas,
+                image, healthDelay, healthTimeout, metricsCmJson, "{\"type\": \"persistent-claim\", \"size\": \"1Gi\", \"fs-group-only\": true}"));
+
+        assertFalse(fsGroupOnly.diff(fsGroupOnly.generateMetricsConfigMap(), fsGroupOnly.generateStatefulSet(false)).isDifferent());
+
+        ClusterDiffResult diff = fsGroupOnly.diff(withHack.generateMetricsConfigMap(), withHack.generateStatefulSet(false));
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+        assertTrue(fsGroupOnly.patchStatefulSet(withHack.generateStatefulSet(false)).getSpec().getTemplate().getSpec().getInitContainers().isEmpty());
+
+        diff = withHack.diff(fsGroupOnly.generateMetricsConfigMap(), fsGroupOnly.generateStatefulSet(false));
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+        assertEquals(withHack.generateStatefulSet(false).getSpec().getTemplate().getSpec().getInitContainers(),
+                withHack.patchStatefulSet(fsGroupOnly.generateStatefulSet(false)).getSpec().getTemplate().getSpec().getInitContainers());
+
+        // there's no init container on OpenShift either way
+        assertFalse(fsGroupOnly.diff(withHack.generateMetricsConfigMap(), withHack.generateStatefulSet(true)).isDifferent());
+    }
+
+    private KafkaCluster kafkaClusterWithJbod(int volumes) {
+        StringBuilder storage = new StringBuilder("{\"type\": \"jbod\", \"volumes\": [");
+        for (int i = 0; i < volumes; i++) {
+            storage.append(i > 0 ? ", " : "").append("{\"type\": \"persistent-claim\", \"size\": \"1Gi\"}");
+        }
+        storage.append("]}");
+        return KafkaCluster.fromConfigMap(ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image,
+                healthDelay, healthTimeout, metricsCmJson, storage.toString()));
+    }
+
+    @Test
+    public void testJbod() {
+        KafkaCluster kc = kafkaClusterWithJbod(2);
+        StatefulSet ss = kc.generateStatefulSet(false);
+
+        assertEquals(2, ss.getSpec().getVolumeClaimTemplates().size());
+        assertEquals("data-0", ss.getSpec().getVolumeClaimTemplates().get(0).getMetadata().getName());
+        assertEquals("data-1", ss.getSpec().getVolumeClaimTemplates().get(1).getMetadata().getName());
+        Container container = ss.getSpec().getTemplate().getSpec().getContainers().get(0);
+        assertEquals("/var/lib/kafka/data-0", container.getVolumeMounts().get(0).getMountPath());
+        assertEquals("/var/lib/kafka/data-1", container.getVolumeMounts().get(1).getMountPath());
+        assertEquals("/var/lib/kafka/data-0,/var/lib/kafka/data-1", container.getEnv().stream()
+                .filter(var -> "KAFKA_DATA_VOLUMES".equals(var.getName())).findFirst().get().getValue());
+
+        // The init container fixes the ownership of both volumes
+        Container initContainer = ss.getSpec().getTemplate().getSpec().getInitContainers().get(0);
+        assertEquals(2, initContainer.getVolumeMounts().size());
+        assertTrue(initContainer.getCommand().get(2).contains("chown -R 1001:1001 /var/lib/kafka/data-1"));
+
+        assertEquals(asList("data-0-" + kc.getName() + "-1", "data-1-" + kc.getName() + "-1"), kc.getPersistentVolumeClaimNames(1));
+
+        KafkaCluster kc2 = KafkaCluster.fromStatefulSet(ss, namespace, cluster);
+        assertEquals(Storage.StorageType.JBOD, kc2.getStorage().type());
+        assertEquals(2, kc2.getStorage().volumes().size());
+        assertFalse(kc.diff(kc.generateMetricsConfigMap(), ss).isDifferent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJbodEphemeralVolume() {
+        KafkaCluster.fromConfigMap(ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image,
+                healthDelay, healthTimeout, metricsCmJson, "{\"type\": \"jbod\", \"volumes\": [{\"type\": \"ephemeral\"}]}"));
+    }
+
+    @Test
+    public void testDiffJbodVolumeAdded() {
+        KafkaCluster other = kafkaClusterWithJbod(2);
+        ClusterDiffResult diff = kafkaClusterWithJbod(3).diff(other.generateMetricsConfigMap(), other.generateStatefulSet(true));
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isVolumesAdded());
+        assertTrue(diff.isRollingUpdate());
+    }
+
+    @Test
+    public void testDiffJbodVolumeRemoved() {
+        KafkaCluster other = kafkaClusterWithJbod(2);
+        ClusterDiffResult diff = kafkaClusterWithJbod(1).diff(other.generateMetricsConfigMap(), other.generateStatefulSet(true));
+        assertFalse(diff.isDifferent());
+        assertFalse(diff.isVolumesAdded());
+    }
+
     @Test
     public void testDiffNoDiffs() {
         ClusterDiffResult diff = kc.diff(kc.generateMetricsConfigMap(), kc.generateStatefulSet(true));
@@ -196,6 +336,244 @@ public class KafkaClusterTest {
         assertFalse(diff.isMetricsChanged());
     }
 
+    @Test
+    public void testResources() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_RESOURCES, "{\"requests\": {\"cpu\": \"1\", \"memory\": \"2Gi\"}, \"limits\": {\"memory\": \"4Gi\"}}");
+        KafkaCluster kc = KafkaCluster.fromConfigMap(cm);
+
+        StatefulSet ss = kc.generateStatefulSet(true);
+        ResourceRequirements resources = ss.getSpec().getTemplate().getSpec().getContainers().get(0).getResources();
+        assertEquals("1", resources.getRequests().get("cpu").getAmount());
+        assertEquals("2Gi", resources.getRequests().get("memory").getAmount());
+        assertEquals("4Gi", resources.getLimits().get("memory").getAmount());
+        assertFalse(resources.getLimits().containsKey("cpu"));
+
+        // without resources in the ConfigMap the container has none
+        assertNull(this.kc.generateStatefulSet(true).getSpec().getTemplate().getSpec().getContainers().get(0).getResources());
+
+        assertFalse(KafkaCluster.fromStatefulSet(ss, namespace, cluster).getResources().isDifferent(kc.getResources()));
+        assertFalse(kc.diff(kc.generateMetricsConfigMap(), ss).isRollingUpdate());
+    }
+
+    @Test
+    public void testDiffResources() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_RESOURCES, "{\"limits\": {\"memory\": \"4Gi\"}}");
+        KafkaCluster other = KafkaCluster.fromConfigMap(cm);
+        ClusterDiffResult diff = kc.diff(other.generateMetricsConfigMap(), other.generateStatefulSet(true));
+        assertTrue(diff.isDifferent());
+        assertFalse(diff.isScaleDown());
+        assertFalse(diff.isScaleUp());
+        assertTrue(diff.isRollingUpdate());
+        assertFalse(diff.isMetricsChanged());
+    }
+
+    private KafkaCluster kafkaClusterWithConfig(String kafkaConfig) {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_KAFKA_CONFIG, kafkaConfig);
+        return KafkaCluster.fromConfigMap(cm);
+    }
+
+    @Test
+    public void testKafkaConfig() {
+        KafkaCluster kc = kafkaClusterWithConfig("{\"num.io.threads\": 16, \"socket.send.buffer.bytes\": \"1048576\"}");
+        StatefulSet ss = kc.generateStatefulSet(true);
+        String properties = ss.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv().stream()
+                .filter(var -> "KAFKA_CONFIGURATION".equals(var.getName())).findFirst().get().getValue();
+        assertEquals("num.io.threads=16\nsocket.send.buffer.bytes=1048576\n", properties);
+
+        assertEquals(kc.getConfiguration().getOptions(), KafkaCluster.fromStatefulSet(ss, namespace, cluster).getConfiguration().getOptions());
+        assertEquals(1, kc.getConfiguration().getDynamicOptions().size());
+        assertFalse(kc.diff(kc.generateMetricsConfigMap(), ss).isDifferent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKafkaConfigForbiddenOption() {
+        kafkaClusterWithConfig("{\"listeners\": \"PLAINTEXT://:9092\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKafkaConfigInvalidValue() {
+        kafkaClusterWithConfig("{\"num.io.threads\": {\"value\": 16}}");
+    }
+
+    @Test
+    public void testDiffKafkaConfigDynamic() {
+        KafkaCluster other = kafkaClusterWithConfig("{\"num.io.threads\": 8}");
+        KafkaCluster kc = kafkaClusterWithConfig("{\"num.io.threads\": 16}");
+        ClusterDiffResult diff = kc.diff(other.generateMetricsConfigMap(), other.generateStatefulSet(true));
+        assertTrue(diff.isDifferent());
+        assertFalse(diff.isRollingUpdate());
+        assertTrue(diff.isDynamicConfigChanged());
+    }
+
+    @Test
+    public void testDiffKafkaConfigStatic() {
+        KafkaCluster kc = kafkaClusterWithConfig("{\"num.io.threads\": 16, \"socket.send.buffer.bytes\": 1048576}");
+        ClusterDiffResult diff = kc.diff(this.kc.generateMetricsConfigMap(), this.kc.generateStatefulSet(true));
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+        assertTrue(diff.isDynamicConfigChanged());
+    }
+
+    @Test
+    public void testDiffKafkaConfigConnectionLimit() {
+        KafkaCluster other = kafkaClusterWithConfig("{\"max.connections.per.ip\": 100}");
+        KafkaCluster kc = kafkaClusterWithConfig("{\"max.connections.per.ip\": 200}");
+        ClusterDiffResult diff = kc.diff(other.generateMetricsConfigMap(), other.generateStatefulSet(true));
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+        assertTrue(kc.getConfiguration().getDynamicOptions().isEmpty());
+    }
+
+    @Test
+    public void testDefaultPlacement() {
+        PodSpec podSpec = kc.generateStatefulSet(true).getSpec().getTemplate().getSpec();
+        List<WeightedPodAffinityTerm> terms = podSpec.getAffinity().getPodAntiAffinity().getPreferredDuringSchedulingIgnoredDuringExecution();
+        assertEquals(1, terms.size());
+        assertEquals(AbstractCluster.HOSTNAME_TOPOLOGY_KEY, terms.get(0).getPodAffinityTerm().getTopologyKey());
+        assertEquals(labels("strimzi.io/name", cluster + "-kafka"), terms.get(0).getPodAffinityTerm().getLabelSelector().getMatchLabels());
+        assertTrue(podSpec.getTolerations().isEmpty());
+        assertNull(podSpec.getServiceAccountName());
+    }
+
+    @Test
+    public void testPlacement() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_PLACEMENT, "{\"affinity\": {\"nodeAffinity\": {\"requiredDuringSchedulingIgnoredDuringExecution\": "
+                + "{\"nodeSelectorTerms\": [{\"matchExpressions\": [{\"key\": \"dedicated\", \"operator\": \"In\", \"values\": [\"kafka\"]}]}]}}}, "
+                + "\"tolerations\": [{\"key\": \"dedicated\", \"operator\": \"Equal\", \"value\": \"kafka\", \"effect\": \"NoSchedule\"}]}");
+        KafkaCluster kc = KafkaCluster.fromConfigMap(cm);
+
+        StatefulSet ss = kc.generateStatefulSet(true);
+        PodSpec podSpec = ss.getSpec().getTemplate().getSpec();
+        assertEquals("dedicated", podSpec.getAffinity().getNodeAffinity().getRequiredDuringSchedulingIgnoredDuringExecution()
+                .getNodeSelectorTerms().get(0).getMatchExpressions().get(0).getKey());
+        // the provided affinity replaces the default pod anti-affinity
+        assertNull(podSpec.getAffinity().getPodAntiAffinity());
+        assertEquals(1, podSpec.getTolerations().size());
+        assertEquals("NoSchedule", podSpec.getTolerations().get(0).getEffect());
+
+        assertFalse(KafkaCluster.fromStatefulSet(ss, namespace, cluster).getPlacement().isDifferent(kc.getPlacement()));
+        assertFalse(kc.diff(kc.generateMetricsConfigMap(), ss).isDifferent());
+    }
+
+    @Test
+    public void testDiffPlacement() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_PLACEMENT, "{\"tolerations\": [{\"key\": \"dedicated\", \"operator\": \"Exists\"}]}");
+        KafkaCluster other = KafkaCluster.fromConfigMap(cm);
+        ClusterDiffResult diff = kc.diff(other.generateMetricsConfigMap(), other.generateStatefulSet(true));
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+        assertFalse(diff.isScaleUp());
+        assertFalse(diff.isScaleDown());
+    }
+
+    @Test
+    public void testRack() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_RACK, "{\"topologyKey\": \"failure-domain.beta.kubernetes.io/zone\"}");
+        KafkaCluster kc = KafkaCluster.fromConfigMap(cm);
+
+        StatefulSet ss = kc.generateStatefulSet(true);
+        PodSpec podSpec = ss.getSpec().getTemplate().getSpec();
+        assertEquals(KafkaCluster.RACK_SERVICE_ACCOUNT, podSpec.getServiceAccountName());
+        List<EnvVar> env = podSpec.getContainers().get(0).getEnv();
+        assertEquals("failure-domain.beta.kubernetes.io/zone", env.stream()
+                .filter(var -> "KAFKA_RACK_TOPOLOGY_KEY".equals(var.getName())).findFirst().get().getValue());
+        assertEquals("spec.nodeName", env.stream()
+                .filter(var -> "KAFKA_NODE_NAME".equals(var.getName())).findFirst().get().getValueFrom().getFieldRef().getFieldPath());
+
+        // the brokers are spread across racks as well as across nodes
+        List<WeightedPodAffinityTerm> terms = podSpec.getAffinity().getPodAntiAffinity().getPreferredDuringSchedulingIgnoredDuringExecution();
+        assertEquals(2, terms.size());
+        assertEquals("failure-domain.beta.kubernetes.io/zone", terms.get(1).getPodAffinityTerm().getTopologyKey());
+
+        assertEquals(kc.getRackTopologyKey(), KafkaCluster.fromStatefulSet(ss, namespace, cluster).getRackTopologyKey());
+        assertFalse(kc.diff(kc.generateMetricsConfigMap(), ss).isDifferent());
+
+        ClusterDiffResult diff = this.kc.diff(kc.generateMetricsConfigMap(), ss);
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRackWithoutTopologyKey() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_RACK, "{}");
+        KafkaCluster.fromConfigMap(cm);
+    }
+
+    @Test
+    public void testRebalancing() {
+        assertFalse(kc.getRebalancing().isScaleUp());
+        assertTrue(kc.getRebalancing().isScaleDown());
+        assertNull(kc.getRebalancing().getThrottle());
+
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_REBALANCING, "{\"scale-up\": true, \"throttle\": 10485760}");
+        KafkaCluster kc = KafkaCluster.fromConfigMap(cm);
+        assertTrue(kc.getRebalancing().isScaleUp());
+        assertEquals(Long.valueOf(10485760L), kc.getRebalancing().getThrottle());
+        assertEquals(Rebalancing.DEFAULT_TIMEOUT_MS, kc.getRebalancing().getTimeoutMs());
+
+        // rebalancing doesn't change the brokers
+        assertFalse(kc.diff(kc.generateMetricsConfigMap(), this.kc.generateStatefulSet(true)).isDifferent());
+    }
+
+    @Test
+    public void testStorageCapacity() {
+        assertEquals(Long.valueOf(100L * 1024 * 1024 * 1024),
+                Storage.fromJson(new JsonObject("{\"type\": \"persistent-claim\", \"size\": \"100Gi\"}")).capacityBytes());
+        assertEquals(Long.valueOf(500_000_000L),
+                Storage.fromJson(new JsonObject("{\"type\": \"persistent-claim\", \"size\": \"500M\"}")).capacityBytes());
+        assertEquals(Long.valueOf(3L * 1024 * 1024 * 1024),
+                Storage.fromJson(new JsonObject("{\"type\": \"jbod\", \"volumes\": [" +
+                        "{\"type\": \"persistent-claim\", \"size\": \"1Gi\"}, " +
+                        "{\"type\": \"persistent-claim\", \"size\": \"2Gi\"}]}")).capacityBytes());
+        assertNull(Storage.fromJson(new JsonObject("{\"type\": \"ephemeral\"}")).capacityBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRebalancingWithInvalidThrottle() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(KafkaCluster.KEY_REBALANCING, "{\"scale-up\": true, \"throttle\": 0}");
+        KafkaCluster.fromConfigMap(cm);
+    }
+
+    @Test
+    public void testIsUpToDate() {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getMetadata().setResourceVersion("42");
+        KafkaCluster kc = KafkaCluster.fromConfigMap(cm);
+        String hash = kc.getDesiredStateHash(true);
+        assertEquals(hash, KafkaCluster.fromConfigMap(cm).getDesiredStateHash(true));
+
+        StatefulSet ss = kc.generateStatefulSet(true);
+        ss.getMetadata().setGeneration(2L);
+        assertFalse(kc.isUpToDate(ss, hash));
+
+        ss.getMetadata().getAnnotations().putAll(kc.getDesiredStateAnnotations(hash, 2L));
+        assertTrue(kc.isUpToDate(ss, hash));
+
+        // the StatefulSet spec has been changed by somebody else
+        ss.getMetadata().setGeneration(3L);
+        assertFalse(kc.isUpToDate(ss, hash));
+        ss.getMetadata().setGeneration(2L);
+
+        // the ConfigMap has been changed
+        cm.getMetadata().setResourceVersion("43");
+        assertFalse(KafkaCluster.fromConfigMap(cm).isUpToDate(ss, hash));
+
+        // the generated resources have changed
+        cm.getMetadata().setResourceVersion("42");
+        cm.getData().put(KafkaCluster.KEY_IMAGE, "another-image");
+        KafkaCluster changed = KafkaCluster.fromConfigMap(cm);
+        assertFalse(changed.isUpToDate(ss, changed.getDesiredStateHash(true)));
+    }
+
     @Test
     public void testPodNames() {
 
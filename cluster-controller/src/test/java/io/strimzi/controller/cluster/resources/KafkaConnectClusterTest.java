@@ -171,6 +171,85 @@ public class KafkaConnectClusterTest {
         assertFalse(diff.isMetricsChanged());
     }
 
+    @Test
+    public void testDiffWithAutoscaling() {
+        ConfigMap autoscaledCm = ResourceUtils.createEmptyKafkaConnectClusterConfigMap(namespace, cluster);
+        autoscaledCm.getData().put(KafkaConnectCluster.KEY_AUTOSCALING, "{\"min-nodes\": 2, \"max-nodes\": 6}");
+        autoscaledCm.getData().put(KafkaConnectCluster.KEY_REPLICAS, "8");
+        KafkaConnectCluster autoscaledKc = KafkaConnectCluster.fromConfigMap(autoscaledCm);
+        assertEquals(6, autoscaledKc.replicas);
+
+        // the deployed number of replicas is kept within the bounds
+        Deployment dep = autoscaledKc.generateDeployment();
+        dep.getSpec().setReplicas(4);
+        ClusterDiffResult diff = autoscaledKc.diff(dep);
+        assertFalse(diff.isScaleDown());
+        assertFalse(diff.isScaleUp());
+        assertEquals(4, autoscaledKc.replicas);
+
+        dep.getSpec().setReplicas(1);
+        diff = autoscaledKc.diff(dep);
+        assertTrue(diff.isScaleUp());
+        assertEquals(2, autoscaledKc.replicas);
+
+        dep.getSpec().setReplicas(7);
+        diff = autoscaledKc.diff(dep);
+        assertTrue(diff.isScaleDown());
+        assertEquals(6, autoscaledKc.replicas);
+    }
+
+    private KafkaConnectCluster kafkaConnectClusterWithConfig(String connectConfig) {
+        ConfigMap configCm = ResourceUtils.createKafkaConnectClusterConfigMap(namespace, cluster, replicas, image,
+                healthDelay, healthTimeout, bootstrapServers, groupID, configReplicationFactor, offsetReplicationFactor,
+                statusReplicationFactor, keyConverter, valueConverter, keyConverterSchemas, valuesConverterSchema);
+        configCm.getData().put(KafkaConnectCluster.KEY_CONNECT_CONFIG, connectConfig);
+        return KafkaConnectCluster.fromConfigMap(configCm);
+    }
+
+    @Test
+    public void testConnectConfig() {
+        KafkaConnectCluster configKc = kafkaConnectClusterWithConfig(
+                "{\"offset.flush.interval.ms\": 10000, \"producer.linger.ms\": 20, \"producer.compression.type\": \"lz4\"}");
+        Deployment dep = configKc.generateDeployment();
+        String properties = dep.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv().stream()
+                .filter(var -> "KAFKA_CONNECT_CONFIGURATION".equals(var.getName())).findFirst().get().getValue();
+        assertEquals("offset.flush.interval.ms=10000\nproducer.compression.type=lz4\nproducer.linger.ms=20\n", properties);
+
+        assertEquals(configKc.getConfiguration().getOptions(), KafkaConnectCluster.fromDeployment(namespace, cluster, dep).getConfiguration().getOptions());
+        assertFalse(configKc.diff(dep).isDifferent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConnectConfigForbiddenOption() {
+        kafkaConnectClusterWithConfig("{\"plugin.path\": \"/tmp\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConnectConfigForbiddenClientOption() {
+        kafkaConnectClusterWithConfig("{\"consumer.bootstrap.servers\": \"other-kafka:9092\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConnectConfigInvalidTuningValue() {
+        kafkaConnectClusterWithConfig("{\"producer.batch.size\": -1}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConnectConfigInvalidCompressionType() {
+        kafkaConnectClusterWithConfig("{\"producer.compression.type\": \"brotli\"}");
+    }
+
+    @Test
+    public void testDiffConnectConfig() {
+        KafkaConnectCluster configKc = kafkaConnectClusterWithConfig("{\"consumer.max.poll.records\": 2000}");
+        ClusterDiffResult diff = configKc.diff(kc.generateDeployment());
+        assertTrue(diff.isDifferent());
+        assertFalse(diff.isScaleDown());
+        assertFalse(diff.isScaleUp());
+        assertTrue(diff.isRollingUpdate());
+        assertFalse(diff.isMetricsChanged());
+    }
+
     @Test
     public void testDiffLabels() {
         ClusterDiffResult diff;
@@ -382,4 +461,15 @@ public class KafkaConnectClusterTest {
         assertEquals(new Integer(healthTimeout), dep.getSpec().getTemplate().getSpec().getContainers().get(0).getReadinessProbe().getTimeoutSeconds());
         assertEquals(getExpectedEnvVars(), dep.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv());
     }
+
+    @Test
+    public void testPatchDeploymentKeepsLastScaleTime()   {
+        Deployment orig = kc.generateDeployment();
+        KafkaConnectCluster.setLastScaleTime(orig, 1234L);
+
+        Deployment dep = kc.patchDeployment(orig);
+
+        assertEquals(1234L, KafkaConnectCluster.getLastScaleTime(dep));
+        assertEquals(0L, KafkaConnectCluster.getLastScaleTime(kc.patchDeployment(kc.generateDeployment())));
+    }
 }
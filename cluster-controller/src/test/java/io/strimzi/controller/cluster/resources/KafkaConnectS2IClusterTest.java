@@ -159,6 +159,24 @@ public class KafkaConnectS2IClusterTest {
         assertFalse(diff.isMetricsChanged());
     }
 
+    @Test
+    public void testDiffConnectConfig() {
+        ConfigMap configCm = ResourceUtils.createKafkaConnectS2IClusterConfigMap(namespace, cluster, replicas, image,
+                healthDelay, healthTimeout, bootstrapServers, groupID, configReplicationFactor, offsetReplicationFactor,
+                statusReplicationFactor, keyConverter, valueConverter, keyConverterSchemas, valuesConverterSchema);
+        configCm.getData().put(KafkaConnectCluster.KEY_CONNECT_CONFIG, "{\"producer.linger.ms\": 20}");
+        KafkaConnectS2ICluster configKc = KafkaConnectS2ICluster.fromConfigMap(configCm);
+
+        DeploymentConfig dep = configKc.generateDeploymentConfig();
+        assertEquals(configKc.getConfiguration().getOptions(),
+                KafkaConnectS2ICluster.fromDeployment(namespace, cluster, dep, configKc.generateSourceImageStream()).getConfiguration().getOptions());
+
+        ClusterDiffResult diff = configKc.diff(kc.generateDeploymentConfig(), kc.generateSourceImageStream(), kc.generateTargetImageStream(), kc.generateBuildConfig());
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isRollingUpdate());
+        assertFalse(diff.isBuildChanged());
+    }
+
     @Test
     public void testDiffScaleUp() {
         DeploymentConfig dep = kc.generateDeploymentConfig();
@@ -203,12 +221,23 @@ public class KafkaConnectS2IClusterTest {
         kc.setImage("my-image:tag");
         ClusterDiffResult diff = kc.diff(kc.generateDeploymentConfig(), kc.generateSourceImageStream(), kc.generateTargetImageStream(), bc);
         assertTrue(diff.isDifferent());
+        assertTrue(diff.isBuildChanged());
         assertFalse(diff.isScaleDown());
         assertFalse(diff.isScaleUp());
         assertFalse(diff.isRollingUpdate());
         assertFalse(diff.isMetricsChanged());
     }
 
+    @Test
+    public void testDiffBuildConfigNotIncremental() {
+        BuildConfig bc = kc.generateBuildConfig();
+        bc.getSpec().getStrategy().getSourceStrategy().setIncremental(null);
+        ClusterDiffResult diff = kc.diff(kc.generateDeploymentConfig(), kc.generateSourceImageStream(), kc.generateTargetImageStream(), bc);
+        assertTrue(diff.isDifferent());
+        assertTrue(diff.isBuildChanged());
+        assertFalse(diff.isRollingUpdate());
+    }
+
     @Test
     public void testDiffLabels() {
         ClusterDiffResult diff;
@@ -471,6 +500,7 @@ public class KafkaConnectS2IClusterTest {
         assertEquals("Source", bc.getSpec().getStrategy().getType());
         assertEquals("ImageStreamTag", bc.getSpec().getStrategy().getSourceStrategy().getFrom().getKind());
         assertEquals(kc.getSourceImageStreamName() + ":" + kc.sourceImageTag, bc.getSpec().getStrategy().getSourceStrategy().getFrom().getName());
+        assertEquals(Boolean.TRUE, bc.getSpec().getStrategy().getSourceStrategy().getIncremental());
         assertEquals(2, bc.getSpec().getTriggers().size());
         assertEquals("ConfigChange", bc.getSpec().getTriggers().get(0).getType());
         assertEquals("ImageChange", bc.getSpec().getTriggers().get(1).getType());
@@ -521,6 +551,7 @@ public class KafkaConnectS2IClusterTest {
 
         assertEquals(ResourceUtils.labels(ClusterController.STRIMZI_CLUSTER_LABEL, cluster, ClusterController.STRIMZI_TYPE_LABEL, "kafka-connect-s2i", ClusterController.STRIMZI_KIND_LABEL, "cluster", "strimzi.io/name", kc.kafkaConnectClusterName(cluster)), bc.getMetadata().getLabels());
         assertEquals(kc.getSourceImageStreamName() + ":" + kc.sourceImageTag, bc.getSpec().getStrategy().getSourceStrategy().getFrom().getName());
+        assertEquals(Boolean.TRUE, bc.getSpec().getStrategy().getSourceStrategy().getIncremental());
     }
 
     @Test
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KafkaMetricsConfigTest {
+
+    private static final String EXAMPLE_CONFIG = "{\"lowercaseOutputName\": true, \"rules\": ["
+            + "{\"pattern\": \"kafka.server<type=(.+), name=(.+)PerSec\\\\w*><>Count\", \"name\": \"kafka_server_$1_$2_total\"},"
+            + "{\"pattern\": \"kafka.server<type=(.+), name=(.+)PerSec\\\\w*, topic=(.+)><>Count\", \"name\": \"kafka_server_$1_$2_total\", \"labels\": {\"topic\": \"$3\"}}]}";
+
+    @Test
+    public void testUserConfigIsUnchanged() {
+        JsonObject json = new JsonObject(EXAMPLE_CONFIG);
+        assertEquals(json, KafkaMetricsConfig.fromJson(json).getExporterConfig());
+    }
+
+    @Test
+    public void testProfiles() {
+        JsonObject minimal = KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"minimal\"}")).getExporterConfig();
+        JsonObject standard = KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"standard\"}")).getExporterConfig();
+        JsonObject perTopic = KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"per-topic\", \"topics\": \"orders|payments\"}")).getExporterConfig();
+
+        assertFalse(minimal.containsKey(KafkaMetricsConfig.PROFILE_FIELD));
+        assertTrue(minimal.getJsonArray(KafkaMetricsConfig.RULES_FIELD).size() < standard.getJsonArray(KafkaMetricsConfig.RULES_FIELD).size());
+        assertTrue(standard.getJsonArray(KafkaMetricsConfig.RULES_FIELD).size() < perTopic.getJsonArray(KafkaMetricsConfig.RULES_FIELD).size());
+        assertFalse(standard.getJsonArray(KafkaMetricsConfig.WHITELIST_FIELD).contains("kafka.server:type=BrokerTopicMetrics,name=*,topic=*"));
+        assertTrue(perTopic.getJsonArray(KafkaMetricsConfig.WHITELIST_FIELD).contains("kafka.server:type=BrokerTopicMetrics,name=*,topic=*"));
+        assertFalse(perTopic.containsKey(KafkaMetricsConfig.TOPICS_FIELD));
+
+        JsonArray rules = perTopic.getJsonArray(KafkaMetricsConfig.RULES_FIELD);
+        assertEquals("kafka.server<type=BrokerTopicMetrics, name=(.+)PerSec, topic=(orders|payments)><>Count",
+                rules.getJsonObject(rules.size() - 1).getString("pattern"));
+    }
+
+    @Test
+    public void testProfileWithAdditionalRules() {
+        JsonObject config = KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"minimal\", \"lowercaseOutputName\": false, "
+                + "\"whitelistObjectNames\": [\"kafka.server:type=SessionExpireListener,name=*\"], "
+                + "\"rules\": [{\"pattern\": \"kafka.server<type=SessionExpireListener, name=(.+)><>Count\"}]}")).getExporterConfig();
+
+        assertFalse(config.getBoolean("lowercaseOutputName"));
+        assertTrue(config.getJsonArray(KafkaMetricsConfig.WHITELIST_FIELD).contains("kafka.server:type=SessionExpireListener,name=*"));
+        JsonArray rules = config.getJsonArray(KafkaMetricsConfig.RULES_FIELD);
+        assertEquals("kafka.server<type=SessionExpireListener, name=(.+)><>Count", rules.getJsonObject(rules.size() - 1).getString("pattern"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProfile() {
+        KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"everything\"}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTopics() {
+        KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"per-topic\", \"topics\": \"orders(\"}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPerPartitionRule() {
+        KafkaMetricsConfig.fromJson(new JsonObject("{\"rules\": [{\"pattern\": \"kafka.log<type=Log, name=(.+), topic=(.+), partition=(.+)><>Value\"}]}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPerClientRule() {
+        KafkaMetricsConfig.fromJson(new JsonObject("{\"rules\": [{\"pattern\": \"kafka.server<type=(.+)><>(.+)\"}]}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCatchAllRule() {
+        KafkaMetricsConfig.fromJson(new JsonObject("{\"rules\": [{\"name\": \"kafka_$0\"}]}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHighCardinalityRuleWithProfile() {
+        KafkaMetricsConfig.fromJson(new JsonObject("{\"profile\": \"standard\", \"rules\": [{\"pattern\": \".*\"}]}"));
+    }
+}
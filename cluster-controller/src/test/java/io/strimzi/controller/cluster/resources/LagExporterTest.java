@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.EnvVarBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.strimzi.controller.cluster.ResourceUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LagExporterTest {
+
+    private final String namespace = "test";
+    private final String cluster = "foo";
+    private final int replicas = 3;
+    private final String image = "my-image:latest";
+    private final int healthDelay = 120;
+    private final int healthTimeout = 30;
+    private final String metricsCmJson = "{\"animal\":\"wombat\"}";
+
+    private final String leImage = "my-lag-exporter-image";
+    private final long lePollIntervalMs = 15000;
+    private final String leGroups = "orders-.*";
+
+    private final String lagExporterJson = "{ " +
+            "\"image\":\"" + leImage + "\", " +
+            "\"pollIntervalMs\":" + lePollIntervalMs + ", " +
+            "\"groups\":\"" + leGroups + "\"" +
+            " }";
+
+    private final ConfigMap cm = createConfigMap(lagExporterJson);
+    private final LagExporter le = LagExporter.fromConfigMap(cm);
+
+    private ConfigMap createConfigMap(String lagExporterJson) {
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+        cm.getData().put(LagExporter.KEY_CONFIG, lagExporterJson);
+        return cm;
+    }
+
+    private List<EnvVar> getExpectedEnvVars() {
+        List<EnvVar> expected = new ArrayList<>();
+        expected.add(new EnvVarBuilder().withName(LagExporter.KEY_KAFKA_BOOTSTRAP_SERVERS).withValue(LagExporter.defaultBootstrapServers(cluster)).build());
+        expected.add(new EnvVarBuilder().withName(LagExporter.KEY_POLL_INTERVAL_MS).withValue(String.valueOf(lePollIntervalMs)).build());
+        expected.add(new EnvVarBuilder().withName(LagExporter.KEY_GROUPS).withValue(leGroups).build());
+
+        return expected;
+    }
+
+    @Test
+    public void testFromConfigMapNoConfig() {
+
+        ConfigMap cm = ResourceUtils.createKafkaClusterConfigMap(namespace, cluster, replicas, image, healthDelay, healthTimeout, metricsCmJson);
+
+        assertNull(LagExporter.fromConfigMap(cm));
+    }
+
+    @Test
+    public void testFromConfigMapDefaultConfig() {
+
+        LagExporter le = LagExporter.fromConfigMap(createConfigMap("{ }"));
+
+        assertEquals(LagExporter.DEFAULT_IMAGE, le.getImage());
+        assertEquals(LagExporter.DEFAULT_POLL_INTERVAL_MS, le.getPollIntervalMs());
+        assertEquals(LagExporter.DEFAULT_GROUPS, le.getGroups());
+        assertEquals(LagExporter.defaultBootstrapServers(cluster), le.getKafkaBootstrapServers());
+        assertTrue(le.isMetricsEnabled());
+    }
+
+    @Test
+    public void testFromConfigMap() {
+
+        assertEquals(namespace, le.namespace);
+        assertEquals(cluster, le.cluster);
+        assertEquals(leImage, le.getImage());
+        assertEquals(LagExporter.DEFAULT_REPLICAS, le.replicas);
+        assertEquals(lePollIntervalMs, le.getPollIntervalMs());
+        assertEquals(leGroups, le.getGroups());
+        assertEquals(LagExporter.defaultBootstrapServers(cluster), le.getKafkaBootstrapServers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromConfigMapPollIntervalTooShort() {
+        LagExporter.fromConfigMap(createConfigMap("{\"pollIntervalMs\": 10}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromConfigMapInvalidGroups() {
+        LagExporter.fromConfigMap(createConfigMap("{\"groups\": \"orders-(\"}"));
+    }
+
+    @Test
+    public void testFromDeployment() {
+
+        LagExporter leFromDep = LagExporter.fromDeployment(namespace, cluster, le.generateDeployment());
+
+        assertEquals(le.namespace, leFromDep.namespace);
+        assertEquals(le.cluster, leFromDep.cluster);
+        assertEquals(le.getImage(), leFromDep.getImage());
+        assertEquals(le.replicas, leFromDep.replicas);
+        assertEquals(le.healthCheckInitialDelay, leFromDep.healthCheckInitialDelay);
+        assertEquals(le.healthCheckTimeout, leFromDep.healthCheckTimeout);
+        assertEquals(le.getPollIntervalMs(), leFromDep.getPollIntervalMs());
+        assertEquals(le.getGroups(), leFromDep.getGroups());
+        assertEquals(le.getKafkaBootstrapServers(), leFromDep.getKafkaBootstrapServers());
+    }
+
+    @Test
+    public void testGenerateDeployment() {
+
+        Deployment dep = le.generateDeployment();
+
+        assertEquals(LagExporter.lagExporterName(cluster), dep.getMetadata().getName());
+        assertEquals(namespace, dep.getMetadata().getNamespace());
+        assertEquals(new Integer(LagExporter.DEFAULT_REPLICAS), dep.getSpec().getReplicas());
+        assertEquals(1, dep.getSpec().getTemplate().getSpec().getContainers().size());
+        assertEquals(LagExporter.lagExporterName(cluster), dep.getSpec().getTemplate().getSpec().getContainers().get(0).getName());
+        assertEquals(leImage, dep.getSpec().getTemplate().getSpec().getContainers().get(0).getImage());
+        assertEquals(getExpectedEnvVars(), dep.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv());
+        assertEquals("/healthy", dep.getSpec().getTemplate().getSpec().getContainers().get(0).getLivenessProbe().getHttpGet().getPath());
+        assertEquals("/ready", dep.getSpec().getTemplate().getSpec().getContainers().get(0).getReadinessProbe().getHttpGet().getPath());
+        assertEquals(1, dep.getSpec().getTemplate().getSpec().getContainers().get(0).getPorts().size());
+        assertEquals(new Integer(le.metricsPort), dep.getSpec().getTemplate().getSpec().getContainers().get(0).getPorts().get(0).getContainerPort());
+        assertEquals(le.metricsPortName, dep.getSpec().getTemplate().getSpec().getContainers().get(0).getPorts().get(0).getName());
+        assertEquals(le.getPrometheusAnnotations(), dep.getSpec().getTemplate().getMetadata().getAnnotations());
+        assertEquals("Recreate", dep.getSpec().getStrategy().getType());
+    }
+
+    @Test
+    public void testEnvVars()   {
+        assertEquals(getExpectedEnvVars(), le.getEnvVars());
+    }
+
+    @Test
+    public void testDiffNoDiffs() {
+
+        ClusterDiffResult diff = le.diff(le.generateDeployment());
+
+        assertFalse(diff.isDifferent());
+    }
+
+    @Test
+    public void testDiffImage() {
+
+        Deployment dep = le.generateDeployment();
+        dep.getSpec().getTemplate().getSpec().getContainers().get(0).setImage("diff-image");
+
+        assertTrue(le.diff(dep).isDifferent());
+    }
+
+    @Test
+    public void testDiffPollInterval() {
+
+        testDiffEnvVar(LagExporter.KEY_POLL_INTERVAL_MS, "60000");
+    }
+
+    @Test
+    public void testDiffGroups() {
+
+        testDiffEnvVar(LagExporter.KEY_GROUPS, ".+");
+    }
+
+    private void testDiffEnvVar(String name, String value) {
+
+        Deployment dep = le.generateDeployment();
+
+        List<EnvVar> newEnvVars = dep.getSpec().getTemplate().getSpec().getContainers().get(0).getEnv()
+                .stream().map(envVar -> {
+
+                    if (envVar.getName().equals(name)) {
+                        return new EnvVarBuilder().withName(name).withValue(value).build();
+                    } else {
+                        return envVar;
+                    }
+
+                }).collect(Collectors.toList());
+
+        dep.getSpec().getTemplate().getSpec().getContainers().get(0).setEnv(newEnvVars);
+
+        assertTrue(le.diff(dep).isDifferent());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.cluster.resources;
+
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
+import io.fabric8.kubernetes.api.model.ResourceRequirementsBuilder;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourcesTest {
+
+    @Test
+    public void testParseQuantity() {
+        assertEquals(0, new BigDecimal("0.5").compareTo(Resources.parseQuantity("500m")));
+        assertEquals(0, new BigDecimal("2").compareTo(Resources.parseQuantity("2")));
+        assertEquals(0, new BigDecimal("1000").compareTo(Resources.parseQuantity("1k")));
+        assertEquals(0, new BigDecimal("1000").compareTo(Resources.parseQuantity("1e3")));
+        assertEquals(0, new BigDecimal("2147483648").compareTo(Resources.parseQuantity("2Gi")));
+        assertEquals(0, new BigDecimal("2000000000").compareTo(Resources.parseQuantity("2G")));
+        assertEquals(0, new BigDecimal("1000000000000000000").compareTo(Resources.parseQuantity("1E")));
+        assertNull(Resources.parseQuantity("2GB"));
+        assertNull(Resources.parseQuantity("lots"));
+    }
+
+    @Test
+    public void testNotDifferentWhenCanonicalized() {
+        Resources resources = new Resources().withRequests("0.5", "2048Mi").withLimits("2000m", "4096Mi");
+
+        // the API server returns the quantities in their canonical form
+        ResourceRequirements deployed = new Resources().withRequests("500m", "2Gi").withLimits("2", "4Gi").toResourceRequirements();
+
+        assertFalse(resources.isDifferent(Resources.fromResourceRequirements(deployed)));
+    }
+
+    @Test
+    public void testDifferent() {
+        Resources resources = new Resources().withRequests("0.5", "2Gi");
+
+        assertTrue(resources.isDifferent(new Resources().withRequests("501m", "2Gi")));
+        assertTrue(resources.isDifferent(new Resources().withRequests("500m", "2G")));
+        assertTrue(resources.isDifferent(new Resources().withRequests("500m", null)));
+    }
+
+    @Test
+    public void testNotDifferentWhenRequestsDefaultToLimits() {
+        Resources resources = new Resources().withLimits("1", "2Gi");
+
+        // the API server fills in the missing requests from the limits
+        ResourceRequirements deployed = new Resources().withRequests("1", "2Gi").withLimits("1", "2Gi").toResourceRequirements();
+
+        assertFalse(resources.isDifferent(Resources.fromResourceRequirements(deployed)));
+        assertTrue(resources.isDifferent(new Resources().withRequests("500m", "2Gi").withLimits("1", "2Gi")));
+    }
+
+    @Test
+    public void testFromJsonNumbers() {
+        Resources resources = Resources.fromJson(new JsonObject("{\"requests\": {\"cpu\": 1, \"memory\": 1073741824}, \"limits\": {\"cpu\": 0.5}}"));
+
+        ResourceRequirements requirements = resources.toResourceRequirements();
+        assertEquals("1", requirements.getRequests().get(Resources.CPU_FIELD).getAmount());
+        assertEquals("1073741824", requirements.getRequests().get(Resources.MEMORY_FIELD).getAmount());
+        assertEquals("0.5", requirements.getLimits().get(Resources.CPU_FIELD).getAmount());
+
+        assertFalse(resources.isDifferent(new Resources().withRequests("1000m", "1Gi").withLimits("500m", null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromJsonInvalidQuantity() {
+        Resources.fromJson(new JsonObject("{\"requests\": {\"memory\": \"2GB\"}}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromJsonInvalidType() {
+        Resources.fromJson(new JsonObject("{\"requests\": {\"cpu\": true}}"));
+    }
+
+    @Test
+    public void testUnparseableQuantitiesComparedAsWritten() {
+        ResourceRequirements requirements = new ResourceRequirementsBuilder()
+                .withRequests(Collections.singletonMap(Resources.CPU_FIELD, new Quantity("weird")))
+                .build();
+
+        assertFalse(Resources.fromResourceRequirements(requirements).isDifferent(Resources.fromResourceRequirements(requirements)));
+    }
+}
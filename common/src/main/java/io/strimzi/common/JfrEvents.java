@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Commits {@link ProfilingEvent}s as JFR events when the JVM has the {@code jdk.jfr} API (Java 11 and later).
+ *
+ * <p>Each {@link ProfilingEvent.Kind} of hot path has its own event type, named after it (for example
+ * {@code io.strimzi.ReadinessWait}), so that flight recordings can be filtered and their thresholds configured by kind.
+ * The controllers are built for Java 8, so they can't subclass {@code jdk.jfr.Event}.
+ * Instead the event types are defined when this class is loaded, through {@code jdk.jfr.EventFactory},
+ * and their events are created and committed reflectively.
+ * When the API is missing, {@link #begin(ProfilingEvent.Kind)} returns null and the events are logged instead.</p>
+ */
+final class JfrEvents {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrEvents.class);
+
+    /** The prefix of the names of the JFR event types, under which the events appear in flight recordings. */
+    static final String EVENT_NAME_PREFIX = "io.strimzi.";
+
+    private static final String[][] FIELDS = {
+        {"name", "Name"},
+        {"beginThread", "Begin Thread"},
+        {"success", "Success"},
+        {"fields", "Fields"}
+    };
+
+    private static final Map<ProfilingEvent.Kind, Object> FACTORIES;
+    private static final Method NEW_EVENT;
+    private static final Method BEGIN;
+    private static final Method END;
+    private static final Method SET;
+    private static final Method SHOULD_COMMIT;
+    private static final Method COMMIT;
+
+    static {
+        Map<ProfilingEvent.Kind, Object> factories = new EnumMap<>(ProfilingEvent.Kind.class);
+        Method newEvent = null;
+        Method begin = null;
+        Method end = null;
+        Method set = null;
+        Method shouldCommit = null;
+        Method commit = null;
+        try {
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            Class<?> label = Class.forName("jdk.jfr.Label");
+            Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+            Constructor<?> newField = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+            Method create = eventFactory.getMethod("create", List.class, List.class);
+
+            List<Object> fields = new ArrayList<>(FIELDS.length);
+            for (String[] field : FIELDS) {
+                fields.add(newField.newInstance(field[0].equals("success") ? boolean.class : String.class, field[0],
+                        Arrays.asList(newAnnotation.newInstance(label, field[1]))));
+            }
+            for (ProfilingEvent.Kind kind : ProfilingEvent.Kind.values()) {
+                List<Object> annotations = Arrays.asList(
+                        newAnnotation.newInstance(Class.forName("jdk.jfr.Name"), eventName(kind)),
+                        newAnnotation.newInstance(label, "Strimzi " + kind.label()),
+                        newAnnotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] {"Strimzi"}),
+                        newAnnotation.newInstance(Class.forName("jdk.jfr.Description"), kind.description()),
+                        // the events are committed reflectively, so their stack traces are of no use
+                        newAnnotation.newInstance(Class.forName("jdk.jfr.StackTrace"), false));
+                factories.put(kind, create.invoke(null, annotations, fields));
+            }
+
+            newEvent = eventFactory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            set = event.getMethod("set", int.class, Object.class);
+            shouldCommit = event.getMethod("shouldCommit");
+            commit = event.getMethod("commit");
+            LOGGER.debug("Defined JFR events {}", factories.keySet());
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOGGER.debug("JFR events are unavailable", e);
+            factories.clear();
+        }
+        FACTORIES = Collections.unmodifiableMap(factories);
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SET = set;
+        SHOULD_COMMIT = shouldCommit;
+        COMMIT = commit;
+    }
+
+    private JfrEvents() {
+    }
+
+    /** Whether the events are committed as JFR events. */
+    static boolean isAvailable() {
+        return !FACTORIES.isEmpty();
+    }
+
+    /**
+     * @return The name of the JFR event type of the given kind, for example {@code io.strimzi.ApiCall} for
+     * {@link ProfilingEvent.Kind#API_CALL}.
+     */
+    static String eventName(ProfilingEvent.Kind kind) {
+        StringBuilder sb = new StringBuilder(EVENT_NAME_PREFIX);
+        for (String word : kind.name().split("_")) {
+            sb.append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Create and begin a JFR event of the given kind.
+     * @return The event, or null if JFR events are unavailable.
+     */
+    static Object begin(ProfilingEvent.Kind kind) {
+        Object factory = FACTORIES.get(kind);
+        if (factory == null) {
+            return null;
+        }
+        try {
+            Object event = NEW_EVENT.invoke(factory);
+            BEGIN.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debug("Unable to begin JFR event", e);
+            return null;
+        }
+    }
+
+    /**
+     * End the given JFR event, set its fields and commit it, if the recording settings call for it.
+     */
+    static void commit(Object event, String name, String beginThread, boolean success, String fields) {
+        try {
+            END.invoke(event);
+            if ((Boolean) SHOULD_COMMIT.invoke(event)) {
+                SET.invoke(event, 0, name);
+                SET.invoke(event, 1, beginThread);
+                SET.invoke(event, 2, success);
+                SET.invoke(event, 3, fields);
+                COMMIT.invoke(event);
+            }
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debug("Unable to commit JFR event", e);
+        }
+    }
+}
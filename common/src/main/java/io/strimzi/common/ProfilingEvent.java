@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.common;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timed event on one of the controllers' hot paths, for profiling.
+ *
+ * <p>An event is {@linkplain #begin(Kind, String) begun}, optionally given some fields,
+ * and {@linkplain #end() ended}, at which point it is committed if it took at least the configured threshold.
+ * When the JVM supports custom JFR events (Java 11 and later) committed events are
+ * {@linkplain JfrEvents JFR events}, with a distinct event type for each {@link Kind} (such as {@code io.strimzi.ApiCall}),
+ * which appear in flight recordings.
+ * Otherwise they're written to the {@code ProfilingEvent} logger, together with the thread which began them.</p>
+ *
+ * <p>Events are disabled by default. When disabled {@link #begin(Kind, String)} returns a shared instance
+ * which ignores everything, so instrumented code doesn't allocate or read the clock.</p>
+ */
+public class ProfilingEvent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ProfilingEvent");
+
+    /** The hot paths which are profiled, each with its own JFR event type. */
+    public enum Kind {
+        RECONCILIATION("Reconciliation",
+                "A reconciliation of a topic or a cluster, from when it starts running to when it completes"),
+        RECONCILIATION_PASS("Reconciliation Pass",
+                "A periodic reconciliation of all the clusters in a namespace, from listing them to reconciling the last one"),
+        DIFF("Diff",
+                "Computing the difference between two states"),
+        API_CALL("API Call",
+                "A call to Kafka, ZooKeeper or Kubernetes"),
+        LOCK_WAIT("Lock Wait",
+                "Waiting for exclusive access to a topic or a cluster"),
+        READINESS_WAIT("Readiness Wait",
+                "Waiting for something to become ready"),
+        REASSIGNMENT("Reassignment",
+                "A partition reassignment, from computing it to its completion");
+
+        private final String label;
+        private final String description;
+
+        Kind(String label, String description) {
+            this.label = label;
+            this.description = description;
+        }
+
+        /** The human-readable name of the events of this kind. */
+        public String label() {
+            return label;
+        }
+
+        /** What the events of this kind time. */
+        public String description() {
+            return description;
+        }
+    }
+
+    private static final ProfilingEvent NOOP = new ProfilingEvent(null, null) {
+        @Override
+        public ProfilingEvent with(String field, Object value) {
+            return this;
+        }
+
+        @Override
+        public void end(AsyncResult<?> result) {
+        }
+
+        @Override
+        public <T> Handler<AsyncResult<T>> ending(Handler<AsyncResult<T>> handler) {
+            return handler;
+        }
+    };
+
+    private static volatile boolean enabled = false;
+    private static volatile long thresholdNanos = 0;
+
+    private final Kind kind;
+    private final String name;
+    private final String thread;
+    private final long startNanos;
+    private final Object jfrEvent;
+    private final StringBuilder fields = new StringBuilder();
+    private boolean ended = false;
+
+    private ProfilingEvent(Kind kind, String name) {
+        this.kind = kind;
+        this.name = name;
+        this.thread = kind != null ? Thread.currentThread().getName() : null;
+        this.jfrEvent = kind != null ? JfrEvents.begin(kind) : null;
+        this.startNanos = kind != null ? System.nanoTime() : 0;
+    }
+
+    /** Enable events, committing those which take at least the given number of milliseconds. */
+    public static void enable(long thresholdMs) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        enabled = true;
+        LOGGER.info("Profiling events enabled, committed as {}", JfrEvents.isAvailable() ? "JFR events" : "log messages");
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Begin an event of the given kind. */
+    public static ProfilingEvent begin(Kind kind, String name) {
+        return enabled ? new ProfilingEvent(kind, name) : NOOP;
+    }
+
+    /** Add a field to this event. */
+    public ProfilingEvent with(String field, Object value) {
+        synchronized (fields) {
+            fields.append(' ').append(field).append('=').append(value);
+        }
+        return this;
+    }
+
+    /** End this event successfully. */
+    public void end() {
+        end(null);
+    }
+
+    /** Wrap the given handler so that it ends this event with the result before handling it. */
+    public <T> Handler<AsyncResult<T>> ending(Handler<AsyncResult<T>> handler) {
+        return ar -> {
+            end(ar);
+            handler.handle(ar);
+        };
+    }
+
+    /**
+     * End this event, with the outcome of the given result (or successfully if it's null).
+     * Ending an event more than once has no effect.
+     */
+    public void end(AsyncResult<?> result) {
+        long durationNanos = System.nanoTime() - startNanos;
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+        }
+        if (durationNanos < thresholdNanos) {
+            return;
+        }
+        boolean success = result == null || result.succeeded();
+        String fieldString;
+        synchronized (fields) {
+            fieldString = fields.toString();
+        }
+        if (jfrEvent != null) {
+            JfrEvents.commit(jfrEvent, name, thread, success, fieldString.trim());
+        } else if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("kind={} name={} durationMs={} thread={} success={}{}",
+                    kind, name, String.format("%.3f", durationNanos / 1e6), thread, success, fieldString);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.common;
+
+import io.vertx.core.Future;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProfilingEventTest {
+
+    @After
+    public void disable() {
+        ProfilingEvent.disable();
+    }
+
+    @Test
+    public void testDisabled() {
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, "test");
+
+        assertSame(event, ProfilingEvent.begin(ProfilingEvent.Kind.API_CALL, "other"));
+        assertSame(event, event.with("field", "value"));
+        event.end();
+    }
+
+    @Test
+    public void testEnabled() {
+        ProfilingEvent.enable(0);
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, "test");
+
+        assertNotSame(event, ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, "test"));
+        event.with("field", "value").end(Future.failedFuture("failed"));
+        // ending again has no effect
+        event.end();
+    }
+
+    @Test
+    public void testEndingHandlesResult() {
+        ProfilingEvent.enable(0);
+        Future<String> result = Future.future();
+
+        ProfilingEvent.begin(ProfilingEvent.Kind.API_CALL, "test").ending(result.completer()).handle(Future.succeededFuture("done"));
+
+        assertTrue(result.succeeded());
+    }
+
+    @Test
+    public void testJfrEventNames() {
+        assertEquals("io.strimzi.ApiCall", JfrEvents.eventName(ProfilingEvent.Kind.API_CALL));
+        assertEquals("io.strimzi.ReconciliationPass", JfrEvents.eventName(ProfilingEvent.Kind.RECONCILIATION_PASS));
+        assertEquals("io.strimzi.Diff", JfrEvents.eventName(ProfilingEvent.Kind.DIFF));
+    }
+}
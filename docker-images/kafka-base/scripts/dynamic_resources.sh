@@ -0,0 +1,91 @@
+#!/bin/bash
+
+# Container-aware JVM sizing, sourced by the run scripts.
+#
+# The JDK 8 in the image doesn't size its heap from the container's memory limit, so the heap,
+# the direct memory and the GC are derived here from the cgroup limits.
+# Memory which isn't given to the JVM is left for the page cache, which Kafka (and, less so, Zookeeper)
+# relies on far more than on a large heap.
+# Nothing is changed when the user has provided KAFKA_HEAP_OPTS or KAFKA_JVM_PERFORMANCE_OPTS,
+# or when the container has no memory limit.
+
+# The container's memory limit in bytes, or nothing if it's unlimited
+function get_memory_limit {
+  local limit
+  if [ -f /sys/fs/cgroup/memory.max ]; then
+    # cgroup v2
+    limit=$(cat /sys/fs/cgroup/memory.max)
+  elif [ -f /sys/fs/cgroup/memory/memory.limit_in_bytes ]; then
+    # cgroup v1
+    limit=$(cat /sys/fs/cgroup/memory/memory.limit_in_bytes)
+  fi
+  # an unlimited cgroup v1 reports (nearly) the largest 64-bit number
+  if [ -n "$limit" ] && [ "$limit" != "max" ] && [ ${#limit} -lt 19 ]; then
+    echo "$limit"
+  fi
+}
+
+# The number of CPUs of the container's CPU limit (rounded up), or nothing if it's unlimited
+function get_cpu_limit {
+  local quota
+  local period
+  if [ -f /sys/fs/cgroup/cpu.max ]; then
+    # cgroup v2
+    read quota period < /sys/fs/cgroup/cpu.max
+  elif [ -f /sys/fs/cgroup/cpu/cpu.cfs_quota_us ]; then
+    # cgroup v1
+    quota=$(cat /sys/fs/cgroup/cpu/cpu.cfs_quota_us)
+    period=$(cat /sys/fs/cgroup/cpu/cpu.cfs_period_us)
+  fi
+  if [ -n "$quota" ] && [ "$quota" != "max" ] && [ "$quota" -gt 0 ] && [ -n "$period" ]; then
+    echo $(( (quota + period - 1) / period ))
+  fi
+}
+
+# Configure the JVM from the container's limits
+#
+# $1: the percentage of the memory limit to use for the heap
+# $2: the maximum heap size in MiB
+# $3: the percentage of the memory limit to allow for direct memory
+function configure_jvm_resources {
+  local heap_percentage=$1
+  local max_heap_mib=$2
+  local direct_percentage=$3
+
+  local memory_limit=$(get_memory_limit)
+  local cpu_limit=$(get_cpu_limit)
+
+  if [ -z "$memory_limit" ]; then
+    echo "No container memory limit, using the default JVM sizing"
+    return
+  fi
+
+  local limit_mib=$(( memory_limit / 1048576 ))
+  local heap_mib=$(( limit_mib * heap_percentage / 100 ))
+  if [ "$heap_mib" -gt "$max_heap_mib" ]; then
+    heap_mib=$max_heap_mib
+  fi
+  local direct_mib=$(( limit_mib * direct_percentage / 100 ))
+
+  if [ -z "$KAFKA_HEAP_OPTS" ]; then
+    # fixed heap size, so the JVM never has to grow it (and the page cache never has to shrink)
+    export KAFKA_HEAP_OPTS="-Xms${heap_mib}m -Xmx${heap_mib}m -XX:MaxDirectMemorySize=${direct_mib}m"
+    echo "Memory limit ${limit_mib}MiB, heap ${heap_mib}MiB, direct memory ${direct_mib}MiB"
+  fi
+
+  if [ -z "$KAFKA_JVM_PERFORMANCE_OPTS" ]; then
+    local gc_opts
+    if [ "$heap_mib" -lt 1024 ] || [ "${cpu_limit:-2}" -lt 2 ]; then
+      # G1 isn't worth its overhead for small heaps or a single CPU
+      gc_opts="-XX:+UseSerialGC"
+    else
+      gc_opts="-XX:+UseG1GC -XX:MaxGCPauseMillis=20 -XX:InitiatingHeapOccupancyPercent=35 -XX:+ExplicitGCInvokesConcurrent"
+    fi
+    if [ -n "$cpu_limit" ]; then
+      # otherwise the JVM sizes its thread pools from the host's CPUs
+      gc_opts="$gc_opts -XX:ParallelGCThreads=${cpu_limit} -XX:ConcGCThreads=$(( (cpu_limit + 3) / 4 ))"
+    fi
+    export KAFKA_JVM_PERFORMANCE_OPTS="-server $gc_opts -Djava.awt.headless=true"
+    echo "CPU limit ${cpu_limit:-none}, JVM options $KAFKA_JVM_PERFORMANCE_OPTS"
+  fi
+}
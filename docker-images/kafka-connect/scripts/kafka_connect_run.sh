@@ -56,6 +56,12 @@ offset.storage.replication.factor=${KAFKA_CONNECT_OFFSET_STORAGE_REPLICATION_FAC
 status.storage.replication.factor=${KAFKA_CONNECT_STATUS_STORAGE_REPLICATION_FACTOR:-3}
 EOF
 
+# Append the user provided configuration, which overrides the defaults above
+if [ -n "$KAFKA_CONNECT_CONFIGURATION" ]; then
+  echo "# User provided configuration" >> /tmp/strimzi-connect.properties
+  echo "$KAFKA_CONNECT_CONFIGURATION" >> /tmp/strimzi-connect.properties
+fi
+
 echo "Starting Kafka connect with configuration:"
 cat /tmp/strimzi-connect.properties
 echo ""
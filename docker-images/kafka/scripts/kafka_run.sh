@@ -9,10 +9,33 @@ export KAFKA_APP_LOGS_BASE_NAME="logs"
 export KAFKA_BROKER_ID=$(hostname | awk -F'-' '{print $NF}')
 echo "KAFKA_BROKER_ID=$KAFKA_BROKER_ID"
 
-# create data dir
-export KAFKA_LOG_DIRS=$KAFKA_VOLUME$KAFKA_LOG_BASE_NAME$KAFKA_BROKER_ID
+# create data dir, or one for each volume with JBOD storage
+if [ -n "$KAFKA_DATA_VOLUMES" ]; then
+  KAFKA_LOG_DIRS=""
+  for VOLUME in ${KAFKA_DATA_VOLUMES//,/ }; do
+    KAFKA_LOG_DIRS="${KAFKA_LOG_DIRS:+$KAFKA_LOG_DIRS,}$VOLUME/$KAFKA_LOG_BASE_NAME$KAFKA_BROKER_ID"
+  done
+  export KAFKA_LOG_DIRS
+else
+  export KAFKA_LOG_DIRS=$KAFKA_VOLUME$KAFKA_LOG_BASE_NAME$KAFKA_BROKER_ID
+fi
 echo "KAFKA_LOG_DIRS=$KAFKA_LOG_DIRS"
 
+# with rack awareness, the broker's rack is the value of the configured label (e.g. the zone) of the node it runs on
+if [ -n "$KAFKA_RACK_TOPOLOGY_KEY" ]; then
+  SERVICE_ACCOUNT_DIR="/var/run/secrets/kubernetes.io/serviceaccount"
+  KAFKA_RACK=$(curl -sf --cacert $SERVICE_ACCOUNT_DIR/ca.crt \
+    -H "Authorization: Bearer $(cat $SERVICE_ACCOUNT_DIR/token)" \
+    "https://kubernetes.default.svc/api/v1/nodes/$KAFKA_NODE_NAME" \
+    | python -c 'import json, sys; print(json.load(sys.stdin)["metadata"].get("labels", {}).get(sys.argv[1], ""))' "$KAFKA_RACK_TOPOLOGY_KEY")
+  if [ -z "$KAFKA_RACK" ]; then
+    echo "Unable to get the rack of the broker from the label $KAFKA_RACK_TOPOLOGY_KEY of node $KAFKA_NODE_NAME"
+    exit 1
+  fi
+  export KAFKA_RACK
+  echo "KAFKA_RACK=$KAFKA_RACK"
+fi
+
 # Disable Kafka's GC logging (which logs to a file)...
 export GC_LOG_ENABLED="false"
 # ... but enable equivalent GC logging to stdout
@@ -30,6 +53,11 @@ if [ "$KAFKA_METRICS_ENABLED" = "true" ]; then
   export KAFKA_OPTS="-javaagent:/opt/prometheus/jmx_prometheus_javaagent.jar=9404:/opt/prometheus/config/config.yml"
 fi
 
+# sizing the heap from the container's memory limit: half of it, but not more than 5GiB,
+# leaving the rest for the page cache
+source $KAFKA_HOME/dynamic_resources.sh
+configure_jvm_resources 50 5120 10
+
 # We don't need LOG_DIR because we write no log files, but setting it to a
 # directory avoids trying to create it (and logging a permission denied error)
 export LOG_DIR="$KAFKA_HOME"
@@ -66,6 +94,16 @@ socket.request.max.bytes=104857600
 group.initial.rebalance.delay.ms=0
 EOF
 
+if [ -n "$KAFKA_RACK" ]; then
+  echo "broker.rack=${KAFKA_RACK}" >> /tmp/strimzi.properties
+fi
+
+# Append the user provided configuration, which overrides the defaults above
+if [ -n "$KAFKA_CONFIGURATION" ]; then
+  echo "# User provided configuration" >> /tmp/strimzi.properties
+  echo "$KAFKA_CONFIGURATION" >> /tmp/strimzi.properties
+fi
+
 echo "Starting Kafka with configuration:"
 cat /tmp/strimzi.properties
 echo ""
@@ -65,5 +65,10 @@ if [ "$ZOOKEEPER_METRICS_ENABLED" = "true" ]; then
   export KAFKA_OPTS="-javaagent:/opt/prometheus/jmx_prometheus_javaagent.jar=9404:/opt/prometheus/config/config.yml"
 fi
 
+# sizing the heap from the container's memory limit: Zookeeper keeps its data in memory
+# and makes little use of the page cache, so most of it goes to the heap
+source $KAFKA_HOME/dynamic_resources.sh
+configure_jvm_resources 75 3072 10
+
 # starting Zookeeper with final configuration
 exec $KAFKA_HOME/bin/zookeeper-server-start.sh /tmp/zookeeper.properties
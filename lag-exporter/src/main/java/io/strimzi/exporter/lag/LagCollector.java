@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.exporter.lag;
+
+import kafka.admin.AdminClient;
+import kafka.coordinator.group.GroupOverview;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.collection.JavaConverters;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the lag of the consumer groups of a Kafka cluster.
+ *
+ * <p>The committed offsets of each group are read with a single request to its coordinator, through the admin
+ * client of the Kafka broker, because the admin client of this version of Kafka has no consumer group API.
+ * The end offsets of all the partitions are then read at once with a consumer, which doesn't join any group.</p>
+ */
+public class LagCollector implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LagCollector.class);
+
+    private final String bootstrapServers;
+    private AdminClient adminClient;
+    private KafkaConsumer<byte[], byte[]> consumer;
+
+    public LagCollector(String bootstrapServers) {
+        this.bootstrapServers = bootstrapServers;
+    }
+
+    /**
+     * Collect the lag of the consumer groups whose id matches the given pattern.
+     * This blocks, so it mustn't be called from an event loop thread.
+     * @param groups The pattern of the ids of the groups.
+     * @return The lag of each partition with a committed offset, by group.
+     */
+    public Map<String, Map<TopicPartition, Long>> collect(Pattern groups) {
+        if (adminClient == null) {
+            connect();
+        }
+
+        Map<String, Map<TopicPartition, Long>> committed = new HashMap<>();
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (GroupOverview group : JavaConverters.seqAsJavaListConverter(adminClient.listAllConsumerGroupsFlattened()).asJava()) {
+            if (groups.matcher(group.groupId()).matches()) {
+                Map<TopicPartition, Long> offsets = new HashMap<>();
+                for (Map.Entry<TopicPartition, Object> offset : JavaConverters.mapAsJavaMapConverter(
+                        adminClient.listGroupOffsets(group.groupId())).asJava().entrySet()) {
+                    long value = ((Number) offset.getValue()).longValue();
+                    // a negative offset means there's no committed offset for the partition
+                    if (value >= 0) {
+                        offsets.put(offset.getKey(), value);
+                    }
+                }
+                committed.put(group.groupId(), offsets);
+                partitions.addAll(offsets.keySet());
+            }
+        }
+
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+        Map<String, Map<TopicPartition, Long>> lags = new HashMap<>(committed.size());
+        for (Map.Entry<String, Map<TopicPartition, Long>> group : committed.entrySet()) {
+            Map<TopicPartition, Long> lag = new HashMap<>(group.getValue().size());
+            for (Map.Entry<TopicPartition, Long> offset : group.getValue().entrySet()) {
+                Long endOffset = endOffsets.get(offset.getKey());
+                if (endOffset != null) {
+                    lag.put(offset.getKey(), Math.max(0, endOffset - offset.getValue()));
+                }
+            }
+            lags.put(group.getKey(), lag);
+        }
+        LOGGER.debug("Collected the lag of {} groups over {} partitions", lags.size(), partitions.size());
+        return lags;
+    }
+
+    private void connect() {
+        Properties adminProps = new Properties();
+        adminProps.setProperty(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        adminClient = AdminClient.create(adminProps);
+
+        Properties consumerProps = new Properties();
+        consumerProps.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        consumerProps.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        consumerProps.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        consumerProps.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        consumer = new KafkaConsumer<>(consumerProps);
+    }
+
+    /**
+     * Close the clients, which are connected again by the next {@link #collect(Pattern)}.
+     */
+    @Override
+    public void close() {
+        if (adminClient != null) {
+            adminClient.close();
+            adminClient = null;
+        }
+        if (consumer != null) {
+            consumer.close();
+            consumer = null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.exporter.lag;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Polls the lag of the consumer groups at a fixed interval, and exposes the lag of each group on each topic
+ * in the Prometheus text format on {@code /metrics}. A scrape returns the lag from the last successful poll, so the
+ * cost of a scrape doesn't depend on the number of groups, and {@code /ready} only succeeds once a poll has succeeded.
+ * The number of failed polls and the time of the last successful one are rendered on each scrape, so that they
+ * reflect the polls which failed since then.
+ */
+public class LagExporter extends AbstractVerticle {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(LagExporter.class);
+
+    public static final int METRICS_PORT = 9404;
+
+    private final LagCollector collector;
+    private final long pollIntervalMs;
+    private final Pattern groups;
+
+    private volatile String lagMetrics = null;
+    private volatile long lastPollMs = 0;
+    private final AtomicLong pollErrors = new AtomicLong();
+    private boolean stopped = false;
+
+    /**
+     * @param collector The collector of the lag of the consumer groups.
+     * @param pollIntervalMs The interval between the end of a poll and the start of the next one.
+     * @param groups The pattern of the ids of the consumer groups to export.
+     */
+    public LagExporter(LagCollector collector, long pollIntervalMs, Pattern groups) {
+        this.collector = collector;
+        this.pollIntervalMs = pollIntervalMs;
+        this.groups = groups;
+    }
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        vertx.createHttpServer()
+                .requestHandler(request -> {
+                    if (request.path().equals("/metrics")) {
+                        String current = lagMetrics;
+                        if (current != null) {
+                            request.response().setStatusCode(HttpResponseStatus.OK.code())
+                                    .putHeader("Content-Type", "text/plain; version=0.0.4")
+                                    .end(current + formatPollStatus(pollErrors.get(), lastPollMs));
+                        } else {
+                            request.response().setStatusCode(HttpResponseStatus.SERVICE_UNAVAILABLE.code()).end();
+                        }
+                    } else if (request.path().equals("/healthy")) {
+                        request.response().setStatusCode(HttpResponseStatus.OK.code()).end();
+                    } else if (request.path().equals("/ready")) {
+                        request.response().setStatusCode(lagMetrics != null ? HttpResponseStatus.OK.code()
+                                : HttpResponseStatus.SERVICE_UNAVAILABLE.code()).end();
+                    } else {
+                        request.response().setStatusCode(HttpResponseStatus.NOT_FOUND.code()).end();
+                    }
+                })
+                .listen(METRICS_PORT, ar -> {
+                    if (ar.succeeded()) {
+                        poll();
+                        startFuture.complete();
+                    } else {
+                        startFuture.fail(ar.cause());
+                    }
+                });
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        vertx.executeBlocking(fut -> {
+            collector.close();
+            fut.complete();
+        }, ar -> { });
+    }
+
+    /**
+     * Poll the lag on a worker thread.
+     */
+    private void poll() {
+        vertx.<Map<String, Map<TopicPartition, Long>>>executeBlocking(fut -> {
+            try {
+                fut.complete(collector.collect(groups));
+            } catch (Exception e) {
+                // reconnect on the next poll, in case the clients are in a bad state
+                collector.close();
+                fut.fail(e);
+            }
+        }, this::polled);
+    }
+
+    /**
+     * Record the outcome of a poll, then schedule the next poll.
+     */
+    private void polled(AsyncResult<Map<String, Map<TopicPartition, Long>>> ar) {
+        if (ar.succeeded()) {
+            lagMetrics = formatLags(ar.result());
+            lastPollMs = System.currentTimeMillis();
+        } else {
+            pollErrors.incrementAndGet();
+            LOGGER.warn("Error polling the lag of the consumer groups", ar.cause());
+        }
+        if (!stopped) {
+            vertx.setTimer(pollIntervalMs, timerId -> poll());
+        }
+    }
+
+    /**
+     * Format the given lags in the Prometheus text format, summing the lag of the partitions of each topic.
+     * @param lags The lag of each partition, by group.
+     * @return The metrics.
+     */
+    static String formatLags(Map<String, Map<TopicPartition, Long>> lags) {
+        Map<String, Map<String, long[]>> byTopic = new TreeMap<>();
+        for (Map.Entry<String, Map<TopicPartition, Long>> group : lags.entrySet()) {
+            Map<String, long[]> topics = byTopic.computeIfAbsent(group.getKey(), g -> new TreeMap<>());
+            for (Map.Entry<TopicPartition, Long> partition : group.getValue().entrySet()) {
+                // the sum and the maximum of the lag of the partitions
+                long[] lag = topics.computeIfAbsent(partition.getKey().topic(), t -> new long[2]);
+                lag[0] += partition.getValue();
+                lag[1] = Math.max(lag[1], partition.getValue());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP kafka_consumergroup_lag The number of records of the topic not yet consumed by the group\n");
+        sb.append("# TYPE kafka_consumergroup_lag gauge\n");
+        for (Map.Entry<String, Map<String, long[]>> group : byTopic.entrySet()) {
+            for (Map.Entry<String, long[]> topic : group.getValue().entrySet()) {
+                sample(sb, "kafka_consumergroup_lag", group.getKey(), topic.getKey(), topic.getValue()[0]);
+            }
+        }
+        sb.append("# HELP kafka_consumergroup_lag_max The highest number of records of a partition of the topic not yet consumed by the group\n");
+        sb.append("# TYPE kafka_consumergroup_lag_max gauge\n");
+        for (Map.Entry<String, Map<String, long[]>> group : byTopic.entrySet()) {
+            for (Map.Entry<String, long[]> topic : group.getValue().entrySet()) {
+                sample(sb, "kafka_consumergroup_lag_max", group.getKey(), topic.getKey(), topic.getValue()[1]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Format the outcome of the polls so far in the Prometheus text format.
+     * @param pollErrors The number of polls which failed so far.
+     * @param timestampMs The time of the last successful poll.
+     * @return The metrics.
+     */
+    static String formatPollStatus(long pollErrors, long timestampMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP kafka_consumergroup_lag_poll_timestamp_seconds The time of the last successful poll of the lag\n");
+        sb.append("# TYPE kafka_consumergroup_lag_poll_timestamp_seconds gauge\n");
+        sb.append("kafka_consumergroup_lag_poll_timestamp_seconds ").append(timestampMs / 1000.0).append('\n');
+        sb.append("# HELP kafka_consumergroup_lag_poll_errors_total The number of failed polls of the lag\n");
+        sb.append("# TYPE kafka_consumergroup_lag_poll_errors_total counter\n");
+        sb.append("kafka_consumergroup_lag_poll_errors_total ").append(pollErrors).append('\n');
+        return sb.toString();
+    }
+
+    private static void sample(StringBuilder sb, String name, String group, String topic, long value) {
+        sb.append(name)
+                .append("{group=\"").append(escape(group))
+                .append("\",topic=\"").append(escape(topic))
+                .append("\"} ").append(value).append('\n');
+    }
+
+    /**
+     * Escape a label value as required by the Prometheus text format.
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.exporter.lag;
+
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+/**
+ * The entry-point to the lag exporter, which deploys a {@link LagExporter} configured from the environment.
+ */
+public class Main {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(Main.class);
+
+    public static final String KEY_KAFKA_BOOTSTRAP_SERVERS = "STRIMZI_KAFKA_BOOTSTRAP_SERVERS";
+    public static final String KEY_POLL_INTERVAL_MS = "STRIMZI_POLL_INTERVAL_MS";
+    public static final String KEY_GROUPS = "STRIMZI_GROUPS";
+
+    public static final long DEFAULT_POLL_INTERVAL_MS = 30_000;
+    public static final String DEFAULT_GROUPS = ".+";
+
+    public static void main(String[] args) {
+        String bootstrapServers = System.getenv(KEY_KAFKA_BOOTSTRAP_SERVERS);
+        if (bootstrapServers == null) {
+            throw new IllegalArgumentException(KEY_KAFKA_BOOTSTRAP_SERVERS + " has to be set");
+        }
+        String pollIntervalMs = System.getenv(KEY_POLL_INTERVAL_MS);
+        String groups = System.getenv(KEY_GROUPS);
+
+        LagExporter exporter = new LagExporter(new LagCollector(bootstrapServers),
+                pollIntervalMs != null ? Long.parseLong(pollIntervalMs) : DEFAULT_POLL_INTERVAL_MS,
+                Pattern.compile(groups != null ? groups : DEFAULT_GROUPS));
+
+        Vertx vertx = Vertx.vertx();
+        vertx.deployVerticle(exporter, ar -> {
+            if (ar.succeeded()) {
+                LOGGER.info("Lag exporter deployed for Kafka cluster {}", bootstrapServers);
+            } else {
+                LOGGER.error("Error deploying the lag exporter", ar.cause());
+                System.exit(1);
+            }
+        });
+    }
+}
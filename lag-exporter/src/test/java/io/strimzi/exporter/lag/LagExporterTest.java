@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.exporter.lag;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LagExporterTest {
+
+    @Test
+    public void testFormat() {
+        Map<TopicPartition, Long> orders = new HashMap<>();
+        orders.put(new TopicPartition("orders", 0), 10L);
+        orders.put(new TopicPartition("orders", 1), 5L);
+        orders.put(new TopicPartition("payments", 0), 0L);
+        Map<String, Map<TopicPartition, Long>> lags = new HashMap<>();
+        lags.put("billing", orders);
+        lags.put("idle", new HashMap<>());
+
+        String metrics = LagExporter.formatLags(lags);
+
+        assertTrue(metrics.contains("kafka_consumergroup_lag{group=\"billing\",topic=\"orders\"} 15\n"));
+        assertTrue(metrics.contains("kafka_consumergroup_lag{group=\"billing\",topic=\"payments\"} 0\n"));
+        assertTrue(metrics.contains("kafka_consumergroup_lag_max{group=\"billing\",topic=\"orders\"} 10\n"));
+        assertFalse(metrics.contains("idle"));
+        assertFalse(metrics.contains("kafka_consumergroup_lag_poll_"));
+    }
+
+    @Test
+    public void testFormatPollStatus() {
+        String metrics = LagExporter.formatPollStatus(2, 1_500);
+
+        assertTrue(metrics.contains("kafka_consumergroup_lag_poll_timestamp_seconds 1.5\n"));
+        assertTrue(metrics.contains("kafka_consumergroup_lag_poll_errors_total 2\n"));
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("a\\\"b\\\\c\\nd", LagExporter.escape("a\"b\\c\nd"));
+    }
+}
@@ -34,6 +34,17 @@ public class Config {
         }
     };
 
+    /** A java Boolean */
+    private static final Type<? extends Boolean> BOOLEAN = new Type<Boolean>() {
+        @Override
+        public Boolean parse(String s) {
+            if (!"true".equals(s) && !"false".equals(s)) {
+                throw new IllegalArgumentException("Expected true or false, but got '" + s + "'");
+            }
+            return Boolean.parseBoolean(s);
+        }
+    };
+
     /**
      * A time duration.
      */
@@ -45,6 +56,20 @@ public class Config {
         }
     };
 
+    /**
+     * The kind of {@link TopicStore} to use.
+     */
+    private static final Type<? extends String> TOPIC_STORE_KIND = new Type<String>() {
+        @Override
+        public String parse(String s) {
+            if (!TOPIC_STORE_ZOOKEEPER.equals(s) && !TOPIC_STORE_KAFKA.equals(s)) {
+                throw new IllegalArgumentException("Unknown topic store '" + s + "', expected one of "
+                        + TOPIC_STORE_ZOOKEEPER + ", " + TOPIC_STORE_KAFKA);
+            }
+            return s;
+        }
+    };
+
     /**
      * A kubernetes selector.
      */
@@ -85,6 +110,17 @@ public class Config {
     public static final String TC_PERIODIC_INTERVAL_MS = "STRIMZI_FULL_RECONCILIATION_INTERVAL_MS";
     public static final String TC_REASSIGN_THROTTLE = "STRIMZI_REASSIGN_THROTTLE";
     public static final String TC_REASSIGN_VERIFY_INTERVAL_MS = "STRIMZI_REASSIGN_VERIFY_INTERVAL_MS";
+    public static final String TC_REASSIGN_THROTTLE_MAX = "STRIMZI_REASSIGN_THROTTLE_MAX";
+    public static final String TC_REASSIGN_BATCH_WINDOW_MS = "STRIMZI_REASSIGN_BATCH_WINDOW_MS";
+    public static final String TC_TOPIC_STORE = "STRIMZI_TOPIC_STORE";
+    public static final String TC_TOPIC_STORE_TOPIC = "STRIMZI_TOPIC_STORE_TOPIC";
+    public static final String TC_TRACING_ENABLED = "STRIMZI_TRACING_ENABLED";
+    public static final String TC_PROFILING_EVENTS_ENABLED = "STRIMZI_PROFILING_EVENTS_ENABLED";
+    public static final String TC_PROFILING_EVENTS_THRESHOLD_MS = "STRIMZI_PROFILING_EVENTS_THRESHOLD_MS";
+    public static final String TC_SNAPSHOT_INTERVAL_MS = "STRIMZI_SNAPSHOT_INTERVAL_MS";
+
+    public static final String TOPIC_STORE_ZOOKEEPER = "zookeeper";
+    public static final String TOPIC_STORE_KAFKA = "kafka";
 
     private static final Map<String, Value<?>> CONFIG_VALUES = new HashMap<>();
 
@@ -115,6 +151,42 @@ public class Config {
      */
     public static final Value<Long> REASSIGN_VERIFY_INTERVAL_MS = new Value<>(TC_REASSIGN_VERIFY_INTERVAL_MS, DURATION, "120000");
 
+    /**
+     * The upper bound for the interbroker throttled rate when a reassignment is in progress.
+     * When set, the throttle starts at {@link #REASSIGN_THROTTLE} and is raised towards this value
+     * while the new followers are limited by the throttle. When unset the throttle is not adjusted.
+     */
+    public static final Value<Long> REASSIGN_THROTTLE_MAX = new Value<>(TC_REASSIGN_THROTTLE_MAX, LONG, false);
+
+    /**
+     * How long to wait for further replication factor changes, so they can be merged into a single reassignment.
+     */
+    public static final Value<Long> REASSIGN_BATCH_WINDOW_MS = new Value<>(TC_REASSIGN_BATCH_WINDOW_MS, DURATION, "5000");
+
+    /**
+     * Where the controller keeps its private copy of the topic state:
+     * {@code zookeeper} (see {@link ZkTopicStore}) or {@code kafka} (see {@link KafkaTopicStore}).
+     */
+    public static final Value<String> TOPIC_STORE = new Value<>(TC_TOPIC_STORE, TOPIC_STORE_KIND, TOPIC_STORE_ZOOKEEPER);
+
+    /** The name of the compacted topic used by {@link KafkaTopicStore}. */
+    public static final Value<String> TOPIC_STORE_TOPIC = new Value<>(TC_TOPIC_STORE_TOPIC, STRING, "__strimzi_topic_store");
+
+    /** Whether reconciliations are traced (see {@link Tracer}). */
+    public static final Value<Boolean> TRACING_ENABLED = new Value<>(TC_TRACING_ENABLED, BOOLEAN, "false");
+
+    /** Whether {@link io.strimzi.common.ProfilingEvent}s are recorded. */
+    public static final Value<Boolean> PROFILING_EVENTS_ENABLED = new Value<>(TC_PROFILING_EVENTS_ENABLED, BOOLEAN, "false");
+
+    /** The minimum duration of a {@link io.strimzi.common.ProfilingEvent} for it to be recorded. */
+    public static final Value<Long> PROFILING_EVENTS_THRESHOLD_MS = new Value<>(TC_PROFILING_EVENTS_THRESHOLD_MS, DURATION, "0");
+
+    /**
+     * The period between snapshots of the controller state (see {@link StateSnapshot}),
+     * which let a restarted controller only reconcile the topics which changed while it wasn't running.
+     */
+    public static final Value<Long> SNAPSHOT_INTERVAL_MS = new Value<>(TC_SNAPSHOT_INTERVAL_MS, DURATION, "300000");
+
 
     static {
         Map<String, Value<?>> configValues = CONFIG_VALUES;
@@ -126,6 +198,14 @@ public class Config {
         addConfigValue(configValues, FULL_RECONCILIATION_INTERVAL_MS);
         addConfigValue(configValues, REASSIGN_THROTTLE);
         addConfigValue(configValues, REASSIGN_VERIFY_INTERVAL_MS);
+        addConfigValue(configValues, REASSIGN_THROTTLE_MAX);
+        addConfigValue(configValues, REASSIGN_BATCH_WINDOW_MS);
+        addConfigValue(configValues, TOPIC_STORE);
+        addConfigValue(configValues, TOPIC_STORE_TOPIC);
+        addConfigValue(configValues, TRACING_ENABLED);
+        addConfigValue(configValues, PROFILING_EVENTS_ENABLED);
+        addConfigValue(configValues, PROFILING_EVENTS_THRESHOLD_MS);
+        addConfigValue(configValues, SNAPSHOT_INTERVAL_MS);
     }
 
     static void addConfigValue(Map<String, Value<?>> configValues, Value<?> cv) {
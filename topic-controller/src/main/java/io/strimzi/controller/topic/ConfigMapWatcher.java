@@ -13,6 +13,7 @@ import io.vertx.core.Handler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.HttpURLConnection;
 import java.util.Map;
 
 class ConfigMapWatcher implements Watcher<ConfigMap> {
@@ -21,15 +22,36 @@ class ConfigMapWatcher implements Watcher<ConfigMap> {
 
     private Controller controller;
     private final LabelPredicate cmPredicate;
+    private final Runnable onResourceVersionGone;
+    private volatile String resourceVersion;
 
-    public ConfigMapWatcher(Controller controller, LabelPredicate cmPredicate) {
+    /**
+     * @param controller    Controller instance
+     * @param cmPredicate   the predicate selecting the topic ConfigMaps
+     * @param resourceVersion   the resourceVersion the watch starts from, or null
+     * @param onResourceVersionGone called when the watch is closed because its resourceVersion is too old,
+     *                              so events may have been missed
+     */
+    public ConfigMapWatcher(Controller controller, LabelPredicate cmPredicate, String resourceVersion, Runnable onResourceVersionGone) {
         this.controller = controller;
         this.cmPredicate = cmPredicate;
+        this.resourceVersion = resourceVersion;
+        this.onResourceVersionGone = onResourceVersionGone;
+    }
+
+    /**
+     * The resourceVersion of the last event received, from which a new watch can be resumed.
+     */
+    public String resourceVersion() {
+        return resourceVersion;
     }
 
     public void eventReceived(Action action, ConfigMap configMap) {
         ObjectMeta metadata = configMap.getMetadata();
         Map<String, String> labels = metadata.getLabels();
+        if (metadata.getResourceVersion() != null) {
+            resourceVersion = metadata.getResourceVersion();
+        }
         if (cmPredicate.test(configMap)) {
             String name = metadata.getName();
             LOGGER.info("ConfigMap watch received event {} on map {} with labels {}", action, name, labels);
@@ -67,5 +89,9 @@ class ConfigMapWatcher implements Watcher<ConfigMap> {
 
     public void onClose(KubernetesClientException e) {
         LOGGER.debug("Closing {}", this);
+        if (e != null && e.getCode() == HttpURLConnection.HTTP_GONE) {
+            LOGGER.warn("ConfigMap watch from resourceVersion {} is too old, events may have been missed", resourceVersion);
+            onResourceVersionGone.run();
+        }
     }
 }
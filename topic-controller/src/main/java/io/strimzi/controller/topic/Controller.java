@@ -7,6 +7,7 @@ package io.strimzi.controller.topic;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.EventBuilder;
 import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.strimzi.common.ProfilingEvent;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
@@ -32,6 +33,7 @@ public class Controller {
     private final String namespace;
     private TopicStore topicStore;
     private final InFlight<TopicName> inFlight;
+    private final Tracer tracer;
 
     enum EventType {
         INFO("Info"),
@@ -322,16 +324,30 @@ public class Controller {
                       TopicStore topicStore,
                       LabelPredicate cmPredicate,
                       String namespace) {
-        this.kafka = kafka;
-        this.k8s = k8s;
+        this(vertx, kafka, k8s, topicStore, cmPredicate, namespace, Tracer.DISABLED);
+    }
+
+    public Controller(Vertx vertx, Kafka kafka,
+                      K8s k8s,
+                      TopicStore topicStore,
+                      LabelPredicate cmPredicate,
+                      String namespace,
+                      Tracer tracer) {
+        this.tracer = tracer;
+        this.kafka = tracer.traced(kafka);
+        this.k8s = tracer.traced(k8s);
         this.vertx = vertx;
         this.cmPredicate = cmPredicate;
-        this.topicStore = topicStore;
+        this.topicStore = tracer.traced(topicStore);
         this.inFlight = new InFlight<>(vertx);
         this.namespace = namespace;
     }
 
-    void reconcile(ConfigMap cm, TopicName topicName) {
+    /**
+     * Reconcile the given topic, reading its Kafka and private state,
+     * invoking the given handler once the reconciliation is done.
+     */
+    void reconcile(ConfigMap cm, TopicName topicName, Handler<AsyncResult<Void>> handler) {
         try {
             Topic k8sTopic = cm != null ? TopicSerialization.fromConfigMap(cm) : null;
             Future<Topic> topicResult = Future.future();
@@ -339,16 +355,22 @@ public class Controller {
             kafka.topicMetadata(topicName, metadataResult.completer());
             topicStore.read(topicName, topicResult.completer());
             CompositeFuture.all(topicResult, metadataResult).setHandler(ar -> {
+                if (ar.failed()) {
+                    LOGGER.error("Error reconciling topic {}: ", topicName, ar.cause());
+                    handler.handle(Future.failedFuture(ar.cause()));
+                    return;
+                }
                 Topic privateTopic = ar.result().resultAt(0);
                 TopicMetadata kafkaTopicMeta = ar.result().resultAt(1);
                 Topic kafkaTopic = TopicSerialization.fromTopicMetadata(kafkaTopicMeta);
-                reconcile(cm, k8sTopic, kafkaTopic, privateTopic, reconcileResult -> {
-                });
+                reconcile(cm, k8sTopic, kafkaTopic, privateTopic, handler);
             });
         } catch (InvalidConfigMapException e) {
             LOGGER.error("Error reconciling ConfigMap {}: Invalid 'data' section: ", cm.getMetadata().getName(), e.getMessage());
+            handler.handle(Future.failedFuture(e));
         } catch (ControllerException e) {
             LOGGER.error("Error reconciling ConfigMap {}: ", cm.getMetadata().getName(), e);
+            handler.handle(Future.failedFuture(e));
         }
     }
 
@@ -453,7 +475,10 @@ public class Controller {
     }
 
     private void update2Way(HasMetadata involvedObject, Topic k8sTopic, Topic kafkaTopic, Handler<AsyncResult<Void>> reconciliationResultHandler) {
+        ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, "update2Way")
+                .with("topic", kafkaTopic.getTopicName());
         TopicDiff diff = TopicDiff.diff(kafkaTopic, k8sTopic);
+        diffEvent.end();
         if (diff.isEmpty()) {
             // they're the same => do nothing, but stil create the private copy
             LOGGER.debug("cm created in k8s and topic created in kafka, but they're identical => just creating in topicStore");
@@ -507,11 +532,14 @@ public class Controller {
                     "Topic '" + kafkaTopic.getTopicName() + "' is already managed via ConfigMap '" + privateTopic.getMapName() + "' it cannot also be managed via the ConfiMap '" + k8sTopic.getMapName() + "'")));
             return;
         }
+        ProfilingEvent diffEvent = ProfilingEvent.begin(ProfilingEvent.Kind.DIFF, "update3Way")
+                .with("topic", kafkaTopic.getTopicName());
         TopicDiff oursKafka = TopicDiff.diff(privateTopic, kafkaTopic);
         LOGGER.debug("topicStore->kafkaTopic: {}", oursKafka);
         TopicDiff oursK8s = TopicDiff.diff(privateTopic, k8sTopic);
         LOGGER.debug("topicStore->k8sTopic: {}", oursK8s);
         String conflict = oursKafka.conflict(oursK8s);
+        diffEvent.end();
         if (conflict != null) {
             final String message = "ConfigMap and Topic both changed in a conflicting way: " + conflict;
             LOGGER.error(message);
@@ -535,7 +563,11 @@ public class Controller {
                 } else {
                     if (merged.changesReplicationFactor()) {
                         LOGGER.error("Changes replication factor");
-                        enqueue(new ChangeReplicationFactor(result, involvedObject, null));
+                        enqueue(new ChangeReplicationFactor(result, involvedObject, rfResult -> {
+                            if (rfResult.failed()) {
+                                LOGGER.error("Error changing replication factor of topic {}", result.getTopicName(), rfResult.cause());
+                            }
+                        }));
                     }
                     // TODO What if we increase min.in.sync.replicas and the number of replicas,
                     // such that the old number of replicas < the new min isr? But likewise
@@ -571,18 +603,18 @@ public class Controller {
 
     /** Called when a topic znode is deleted in ZK */
     void onTopicDeleted(TopicName topicName, Handler<AsyncResult<Void>> handler) {
-        Handler<Future<Void>> futureHandler = new Reconciliation("onTopicDeleted") {
+        Reconciliation futureHandler = new Reconciliation("onTopicDeleted") {
             @Override
             public void handle(Future<Void> fut) {
                 Controller.this.reconcileOnTopicChange(topicName, null, fut.completer());
             }
         };
-        inFlight.enqueue(topicName, handler, futureHandler);
+        enqueueReconciliation(topicName, topicName.asMapName(), handler, futureHandler);
 
     }
 
     void onTopicConfigChanged(TopicName topicName, Handler<AsyncResult<Void>> resultHandler) {
-        Handler<Future<Void>> futureHandler = new Reconciliation("onTopicConfigChanged") {
+        Reconciliation futureHandler = new Reconciliation("onTopicConfigChanged") {
             @Override
             public void handle(Future<Void> fut) {
                 kafka.topicMetadata(topicName, metadataResult -> {
@@ -595,11 +627,11 @@ public class Controller {
                 });
             }
         };
-        inFlight.enqueue(topicName, resultHandler, futureHandler);
+        enqueueReconciliation(topicName, topicName.asMapName(), resultHandler, futureHandler);
     }
 
     void onTopicPartitionsChanged(TopicName topicName, Handler<AsyncResult<Void>> resultHandler) {
-        Handler<Future<Void>> futureHandler = new Reconciliation("onTopicPartitionsChanged") {
+        Reconciliation futureHandler = new Reconciliation("onTopicPartitionsChanged") {
             @Override
             public void handle(Future<Void> fut) {
 
@@ -640,7 +672,7 @@ public class Controller {
                 });
             }
         };
-        inFlight.enqueue(topicName, resultHandler, futureHandler);
+        enqueueReconciliation(topicName, topicName.asMapName(), resultHandler, futureHandler);
     }
 
     private void reconcileOnTopicChange(TopicName topicName, Topic kafkaTopic, Handler<AsyncResult<Void>> resultHandler) {
@@ -698,10 +730,11 @@ public class Controller {
     void onTopicCreated(TopicName topicName, Handler<AsyncResult<Void>> resultHandler) {
         // XXX currently runs on the ZK thread, requiring a synchronized inFlight
         // is it better to put this check in the topic deleted event?
-        Handler<Future<Void>> futureHandler = new Reconciliation("onTopicCreated") {
+        Reconciliation futureHandler = new Reconciliation("onTopicCreated") {
             @Override
             public void handle(Future<Void> fut) {
-
+                ProfilingEvent readinessEvent = ProfilingEvent.begin(ProfilingEvent.Kind.READINESS_WAIT, "topicMetadata")
+                        .with("topic", topicName);
                 TopicMetadataHandler handler = new TopicMetadataHandler(vertx, kafka, topicName) {
 
                     @Override
@@ -714,25 +747,28 @@ public class Controller {
                                 // with exponential backoff.
                                 retry();
                             } else {
+                                readinessEvent.end();
                                 // We now have the metadata we need to create the
                                 // ConfigMap...
                                 Topic kafkaTopic = TopicSerialization.fromTopicMetadata(metadataResult.result());
                                 reconcileOnTopicChange(topicName, kafkaTopic, fut);
                             }
                         } else {
+                            readinessEvent.end(metadataResult);
                             fut.handle(metadataResult.map((Void) null));
                         }
                     }
 
                     @Override
                     public void onMaxAttemptsExceeded(MaxAttemptsExceededException e) {
+                        readinessEvent.end(Future.failedFuture(e));
                         fut.fail(e);
                     }
                 };
                 kafka.topicMetadata(topicName, handler);
             }
         };
-        inFlight.enqueue(topicName, resultHandler, futureHandler);
+        enqueueReconciliation(topicName, topicName.asMapName(), resultHandler, futureHandler);
     }
 
     /** Called when a ConfigMap is added in k8s */
@@ -745,13 +781,13 @@ public class Controller {
                 resultHandler.handle(Future.failedFuture(e));
                 return;
             }
-            Handler<Future<Void>> action = new Reconciliation("onConfigMapAdded") {
+            Reconciliation action = new Reconciliation("onConfigMapAdded") {
                 @Override
                 public void handle(Future<Void> fut) {
                     Controller.this.reconcileOnCmChange(configMap, k8sTopic, false, fut);
                 }
             };
-            inFlight.enqueue(new TopicName(configMap), resultHandler, action);
+            enqueueReconciliation(new TopicName(configMap), new MapName(configMap), resultHandler, action);
         } else {
             resultHandler.handle(Future.succeededFuture());
         }
@@ -770,6 +806,52 @@ public class Controller {
         }
     };
 
+    /**
+     * Enqueue the given reconciliation of the given topic with the {@link #inFlight}.
+     * If tracing is enabled the reconciliation is traced, with a child span for the time spent waiting in the queue,
+     * and the trace is active for the topic and its ConfigMap while the reconciliation runs.
+     * If {@link ProfilingEvent}s are enabled the time spent waiting in the queue and running are recorded as
+     * {@link ProfilingEvent.Kind#LOCK_WAIT} and {@link ProfilingEvent.Kind#RECONCILIATION} events.
+     */
+    private void enqueueReconciliation(TopicName topicName, MapName mapName,
+                                       Handler<AsyncResult<Void>> resultHandler, Reconciliation action) {
+        if (!tracer.isEnabled() && !ProfilingEvent.isEnabled()) {
+            inFlight.enqueue(topicName, resultHandler, action);
+            return;
+        }
+        Span root = tracer.startTrace(action.name)
+                .tag("topic", topicName)
+                .tag("configMap", mapName);
+        Span queued = root.child("inflight.queue");
+        ProfilingEvent queuedEvent = ProfilingEvent.begin(ProfilingEvent.Kind.LOCK_WAIT, action.name)
+                .with("topic", topicName);
+        ProfilingEvent[] reconciliationEvent = new ProfilingEvent[1];
+        Reconciliation traced = new Reconciliation(action.name) {
+            @Override
+            public void handle(Future<Void> fut) {
+                queued.finish();
+                queuedEvent.end();
+                reconciliationEvent[0] = ProfilingEvent.begin(ProfilingEvent.Kind.RECONCILIATION, action.name)
+                        .with("topic", topicName);
+                tracer.activate(root, topicName, mapName);
+                action.handle(fut);
+            }
+
+            @Override
+            public String toString() {
+                return action.toString();
+            }
+        };
+        inFlight.enqueue(topicName, ar -> {
+            tracer.deactivate(root, topicName, mapName);
+            root.finish(ar);
+            if (reconciliationEvent[0] != null) {
+                reconciliationEvent[0].end(ar);
+            }
+            resultHandler.handle(ar);
+        }, traced);
+    }
+
     /** Called when a ConfigMap is modified in k8s */
     void onConfigMapModified(ConfigMap configMap, Handler<AsyncResult<Void>> handler) {
         if (cmPredicate.test(configMap)) {
@@ -786,10 +868,7 @@ public class Controller {
                     Controller.this.reconcileOnCmChange(configMap, k8sTopic, true, fut);
                 }
             };
-            inFlight.enqueue(new TopicName(configMap),
-                    handler,
-                    action
-            );
+            enqueueReconciliation(new TopicName(configMap), new MapName(configMap), handler, action);
         } else {
             handler.handle(Future.succeededFuture());
         }
@@ -826,8 +905,7 @@ public class Controller {
                     Controller.this.reconcileOnCmChange(configMap, null, false, fut);
                 }
             };
-            inFlight.enqueue(new TopicName(configMap), handler,
-                    handlerHandler);
+            enqueueReconciliation(new TopicName(configMap), new MapName(configMap), handler, handlerHandler);
         } else {
             handler.handle(Future.succeededFuture());
         }
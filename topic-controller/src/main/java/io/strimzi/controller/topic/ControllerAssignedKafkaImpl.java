@@ -8,8 +8,6 @@ import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.CompositeFuture;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import org.apache.kafka.clients.admin.AdminClient;
@@ -17,27 +15,30 @@ import org.apache.kafka.clients.admin.NewPartitions;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.common.KafkaFuture;
 import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionReplica;
+import org.apache.kafka.common.requests.DescribeLogDirsResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * An implementation of {@link Kafka} which leave partition assignment decisions to the Kafka controller.
@@ -48,10 +49,12 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(ControllerAssignedKafkaImpl.class);
     private final Config config;
+    private final ReassignmentCoordinator reassignmentCoordinator;
 
     public ControllerAssignedKafkaImpl(AdminClient adminClient, Vertx vertx, Config config) {
         super(adminClient, vertx);
         this.config = config;
+        this.reassignmentCoordinator = new ReassignmentCoordinator(vertx, config, this);
     }
 
     @Override
@@ -78,108 +81,8 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
 
     @Override
     public void changeReplicationFactor(Topic topic, Handler<AsyncResult<Void>> handler) {
-
         LOGGER.info("Changing replication factor of topic {} to {}", topic.getTopicName(), topic.getNumReplicas());
-
-        final String zookeeper = config.get(Config.ZOOKEEPER_CONNECT);
-        Future<File> generateFuture = Future.future();
-
-        // generate a reassignment
-        vertx.executeBlocking(fut -> {
-            try {
-                LOGGER.debug("Generating reassignment json for topic {}", topic.getTopicName());
-                String reassignment = generateReassignment(topic, zookeeper);
-                LOGGER.debug("Reassignment json for topic {}: {}", topic.getTopicName(), reassignment);
-                File reassignmentJsonFile = createTmpFile("-reassignment.json");
-                try (Writer w = new OutputStreamWriter(new FileOutputStream(reassignmentJsonFile), StandardCharsets.UTF_8)) {
-                    w.write(reassignment);
-                }
-                fut.complete(reassignmentJsonFile);
-            } catch (Exception e) {
-                fut.fail(e);
-            }
-        },
-            generateFuture.completer());
-
-        Future<File> executeFuture = Future.future();
-
-        generateFuture.compose(reassignmentJsonFile -> {
-            // execute the reassignment
-            vertx.executeBlocking(fut -> {
-                final Long throttle = config.get(Config.REASSIGN_THROTTLE);
-                try {
-                    LOGGER.debug("Starting reassignment for topic {} with throttle {}", topic.getTopicName(), throttle);
-                    executeReassignment(reassignmentJsonFile, zookeeper, throttle);
-                    fut.complete(reassignmentJsonFile);
-                } catch (Exception e) {
-                    fut.fail(e);
-                }
-            },
-                executeFuture.completer());
-        }, executeFuture);
-
-        Future<Void> periodicFuture = Future.future();
-        Future<Void> reassignmentFinishedFuture = Future.future();
-
-        executeFuture.compose(reassignmentJsonFile -> {
-            // Poll repeatedly, calling --verify to remove the throttle
-            long timeout = 10_000;
-            long first = System.currentTimeMillis();
-            final Long periodMs = config.get(Config.REASSIGN_VERIFY_INTERVAL_MS);
-            LOGGER.debug("Verifying reassignment every {} seconds", TimeUnit.SECONDS.convert(periodMs, TimeUnit.MILLISECONDS));
-            vertx.setPeriodic(periodMs, timerId ->
-                vertx.<Boolean>executeBlocking(fut -> {
-                    LOGGER.debug(String.format("Verifying reassignment for topic {} (timer id=%s)", topic.getTopicName(), timerId));
-
-                    final Long throttle = config.get(Config.REASSIGN_THROTTLE);
-                    final boolean reassignmentComplete;
-                    try {
-                        reassignmentComplete = verifyReassignment(reassignmentJsonFile, zookeeper, throttle);
-                    } catch (Exception e) {
-                        fut.fail(e);
-                        return;
-                    }
-                    fut.complete(reassignmentComplete);
-                },
-                    ar -> {
-                        if (ar.succeeded()) {
-                            if (ar.result()) {
-                                LOGGER.info("Reassignment complete");
-                                delete(reassignmentJsonFile);
-                                LOGGER.debug("Cancelling timer " + timerId);
-                                vertx.cancelTimer(timerId);
-                                reassignmentFinishedFuture.complete();
-                            } else if (System.currentTimeMillis() - first > timeout) {
-                                LOGGER.error("Reassignment timed out");
-                                delete(reassignmentJsonFile);
-                                LOGGER.debug("Cancelling timer " + timerId);
-                                vertx.cancelTimer(timerId);
-                                reassignmentFinishedFuture.fail("Timeout");
-                            }
-                        } else {
-                            //reassignmentFinishedFuture.fail(ar.cause());
-                            LOGGER.error("Error while verifying reassignment", ar.cause());
-                        }
-                    }
-                )
-            );
-            periodicFuture.complete();
-        },
-            periodicFuture);
-
-
-        CompositeFuture.all(periodicFuture, reassignmentFinishedFuture).map((Void) null).setHandler(handler);
-
-        // TODO The algorithm should really be more like this:
-        // 1. Use the cmdline tool to generate an assignment
-        // 2. Set the throttles
-        // 3. Update the reassign_partitions znode
-        // 4. Watch for changes or deletion of reassign_partitions
-        //    a. Update the throttles
-        //    b. complete the handler
-        // Doing this is much better because means we don't have to batch reassignments
-        // and also means we need less state for reassignment
-        // though we aren't relieved of the statefullness wrt removing throttles :-(
+        reassignmentCoordinator.submit(topic, handler);
     }
 
     private static void delete(File file) {
@@ -215,7 +118,10 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
         }
     }
 
-    private boolean verifyReassignment(File reassignmentJsonFile, String zookeeper, Long throttle) throws IOException, InterruptedException {
+    /**
+     * Run {@code --verify} for the given reassignment, returning the number of partitions whose reassignment is still in progress.
+     */
+    int verifyReassignment(File reassignmentJsonFile, String zookeeper, Long throttle) throws IOException, InterruptedException {
         List<String> verifyArgs = new ArrayList<>();
         addJavaArgs(verifyArgs);
         // command args
@@ -230,10 +136,10 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
         verifyArgs.add("--verify");
         VerifyLineParser verifyLineParser = new VerifyLineParser();
         executeSubprocess(verifyArgs).forEachLineStdout(verifyLineParser);
-        return verifyLineParser.inProgress == 0;
+        return verifyLineParser.inProgress;
     }
 
-    private void executeReassignment(File reassignmentJsonFile, String zookeeper, Long throttle) throws IOException, InterruptedException {
+    void executeReassignment(File reassignmentJsonFile, String zookeeper, Long throttle) throws IOException, InterruptedException {
         List<String> executeArgs = new ArrayList<>();
         addJavaArgs(executeArgs);
         executeArgs.add("--zookeeper");
@@ -261,7 +167,36 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
         }
     }
 
-    private String generateReassignment(Topic topic, String zookeeper) throws IOException, InterruptedException, ExecutionException {
+    /**
+     * Change the throttle of the given reassignment, which is already in progress.
+     * This relies on {@code --execute} updating the throttle when there is an existing reassignment running.
+     */
+    void changeThrottle(File reassignmentJsonFile, String zookeeper, long throttle) throws IOException, InterruptedException {
+        List<String> executeArgs = new ArrayList<>();
+        addJavaArgs(executeArgs);
+        executeArgs.add("--zookeeper");
+        executeArgs.add(zookeeper);
+        executeArgs.add("--throttle");
+        executeArgs.add(Long.toString(throttle));
+        executeArgs.add("--reassignment-json-file");
+        executeArgs.add(reassignmentJsonFile.toString());
+        executeArgs.add("--execute");
+
+        if (!executeSubprocess(executeArgs).forEachLineStdout(line -> {
+            if (line.contains("Partitions reassignment failed due to")
+                    || line.contains("Failed to reassign partitions")) {
+                throw new TransientControllerException("Throttle change failed: " + line);
+            } else if (line.contains("The throttle limit was set to")) {
+                return true;
+            } else {
+                return null;
+            }
+        })) {
+            throw new TransientControllerException("Throttle change neither failed nor finished");
+        }
+    }
+
+    ReassignmentCoordinator.Reassignment generateReassignment(Collection<Topic> topics, String zookeeper) throws IOException, InterruptedException, ExecutionException {
         JsonFactory factory = new JsonFactory();
 
         File topicsToMove = createTmpFile("-topics-to-move.json");
@@ -270,13 +205,16 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
             gen.writeStartObject();
             gen.writeNumberField("version", 1);
             gen.writeArrayFieldStart("topics");
-            gen.writeStartObject();
-            gen.writeStringField("topic", topic.getTopicName().toString());
-            gen.writeEndObject();
+            for (Topic topic : topics) {
+                gen.writeStartObject();
+                gen.writeStringField("topic", topic.getTopicName().toString());
+                gen.writeEndObject();
+            }
             gen.writeEndArray();
             gen.writeEndObject();
             gen.flush();
         }
+        List<Integer> brokers = brokers();
         List<String> executeArgs = new ArrayList<>();
         addJavaArgs(executeArgs);
         executeArgs.add("--zookeeper");
@@ -284,26 +222,65 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
         executeArgs.add("--topics-to-move-json-file");
         executeArgs.add(topicsToMove.toString());
         executeArgs.add("--broker-list");
-        executeArgs.add(brokerList());
+        executeArgs.add(brokers.stream().map(String::valueOf).collect(Collectors.joining(",")));
         executeArgs.add("--generate");
 
         final ProcessResult processResult = executeSubprocess(executeArgs);
         delete(topicsToMove);
-        String json = processResult.forEachLineStdout(new ReassignmentLineParser());
-        return json;
+        ReassignmentLineParser parser = new ReassignmentLineParser();
+        String proposed = processResult.forEachLineStdout(parser);
+        LOGGER.debug("Proposed reassignment json for topics {}: {}", topics, proposed);
+        if (proposed == null) {
+            throw new TransientControllerException("Reassignment generation did not propose a reassignment");
+        }
+        return ReassignmentCoordinator.reassignment(createTmpFile("-reassignment.json"),
+                parser.current, proposed, topics, brokers);
+    }
 
+    /**
+     * Use the AdminClient to determine how far, in bytes, the replicas being added by the given reassignment
+     * are behind the largest replica of their partition, summed over all the partitions being reassigned.
+     */
+    long followerLag(ReassignmentCoordinator.Reassignment reassignment) throws InterruptedException, ExecutionException {
+        Set<Integer> brokers = new HashSet<>();
+        for (List<Integer> replicas : reassignment.proposed.values()) {
+            brokers.addAll(replicas);
+        }
+        Map<Integer, Map<String, DescribeLogDirsResponse.LogDirInfo>> logDirs = adminClient.describeLogDirs(brokers).all().get();
+        Map<TopicPartitionReplica, Long> sizes = new HashMap<>();
+        Map<TopicPartition, Long> maxSizes = new HashMap<>();
+        for (Map.Entry<Integer, Map<String, DescribeLogDirsResponse.LogDirInfo>> brokerDirs : logDirs.entrySet()) {
+            for (DescribeLogDirsResponse.LogDirInfo dirInfo : brokerDirs.getValue().values()) {
+                for (Map.Entry<TopicPartition, DescribeLogDirsResponse.ReplicaInfo> replica : dirInfo.replicaInfos.entrySet()) {
+                    TopicPartition tp = replica.getKey();
+                    long size = replica.getValue().size;
+                    sizes.merge(new TopicPartitionReplica(tp.topic(), tp.partition(), brokerDirs.getKey()), size, Math::max);
+                    maxSizes.merge(tp, size, Math::max);
+                }
+            }
+        }
+        long lag = 0;
+        for (Map.Entry<TopicPartition, List<Integer>> entry : reassignment.proposed.entrySet()) {
+            TopicPartition tp = entry.getKey();
+            List<Integer> current = reassignment.current.getOrDefault(tp, Collections.emptyList());
+            for (Integer broker : entry.getValue()) {
+                if (!current.contains(broker)) {
+                    long size = sizes.getOrDefault(new TopicPartitionReplica(tp.topic(), tp.partition(), broker), 0L);
+                    lag += Math.max(0, maxSizes.getOrDefault(tp, 0L) - size);
+                }
+            }
+        }
+        return lag;
     }
 
-    /** Use the AdminClient to get a comma-separated list of the broker ids in the Kafka cluster */
-    private String brokerList() throws InterruptedException, ExecutionException {
-        StringBuilder sb = new StringBuilder();
+    /** Use the AdminClient to get the broker ids in the Kafka cluster */
+    private List<Integer> brokers() throws InterruptedException, ExecutionException {
+        List<Integer> result = new ArrayList<>();
         for (Node node: adminClient.describeCluster().nodes().get()) {
-            if (sb.length() != 0) {
-                sb.append(",");
-            }
-            sb.append(node.id());
+            result.add(node.id());
         }
-        return sb.toString();
+        Collections.sort(result);
+        return result;
     }
 
     protected void addJavaArgs(List<String> verifyArgs) {
@@ -390,6 +367,8 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
 
     private static class ReassignmentLineParser implements Function<String, String> {
         boolean returnLine = false;
+        boolean currentLine = false;
+        String current = null;
 
         @Override
         public String apply(String line) {
@@ -399,7 +378,14 @@ public class ControllerAssignedKafkaImpl extends BaseKafkaImpl {
             if (returnLine) {
                 return line;
             }
-            if (line.contains("Proposed partition reassignment configuration")) {
+            if (currentLine) {
+                // The line following this one is the JSON representation of the current assignment
+                current = line;
+                currentLine = false;
+            }
+            if (line.contains("Current partition replica assignment")) {
+                currentLine = true;
+            } else if (line.contains("Proposed partition reassignment configuration")) {
                 // Return the line following this one, since that's the JSON representation of the reassignment
                 returnLine = true;
             }
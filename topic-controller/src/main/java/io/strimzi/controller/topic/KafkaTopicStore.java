@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link TopicStore} that stores the topic state in a compacted Kafka topic,
+ * keyed by topic name, with a {@code null} value (tombstone) for a deleted topic.
+ *
+ * <p>Reads are served from an in-memory view of the topic which is rebuilt
+ * (by consuming it from the beginning) when the store is created.
+ * Writes are sent using an idempotent producer and only applied to the view once acknowledged.</p>
+ *
+ * <p>This assumes the controller is the only writer to the topic.
+ * Concurrent operations on the same topic must be serialized by the caller (as the {@link Controller} does).</p>
+ */
+public class KafkaTopicStore implements TopicStore, AutoCloseable {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(KafkaTopicStore.class);
+
+    private static final int MAX_REPLICATION_FACTOR = 3;
+
+    private final Vertx vertx;
+    private final String storeTopic;
+    private final Producer<String, byte[]> producer;
+    private final Map<TopicName, Topic> view = new ConcurrentHashMap<>();
+
+    KafkaTopicStore(Vertx vertx, String storeTopic, Producer<String, byte[]> producer) {
+        this.vertx = vertx;
+        this.storeTopic = storeTopic;
+        this.producer = producer;
+    }
+
+    /**
+     * Asynchronously create a KafkaTopicStore, creating the store topic if necessary
+     * and rebuilding the view from its contents, and call the given handler with the result.
+     */
+    public static void create(Vertx vertx, AdminClient adminClient, String bootstrapServers, String storeTopic,
+                              Handler<AsyncResult<KafkaTopicStore>> handler) {
+        vertx.executeBlocking(fut -> {
+            try {
+                createStoreTopic(adminClient, storeTopic);
+                KafkaTopicStore store = new KafkaTopicStore(vertx, storeTopic, createProducer(bootstrapServers));
+                store.restore(bootstrapServers);
+                fut.complete(store);
+            } catch (Exception e) {
+                fut.fail(e);
+            }
+        }, handler);
+    }
+
+    private static void createStoreTopic(AdminClient adminClient, String storeTopic) throws InterruptedException, ExecutionException {
+        int numBrokers = adminClient.describeCluster().nodes().get().size();
+        short replicationFactor = (short) Math.max(1, Math.min(MAX_REPLICATION_FACTOR, numBrokers));
+        Map<String, String> configs = new HashMap<>();
+        configs.put(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT);
+        configs.put(TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, Integer.toString(Math.max(1, replicationFactor - 1)));
+        NewTopic newTopic = new NewTopic(storeTopic, 1, replicationFactor).configs(configs);
+        try {
+            adminClient.createTopics(Collections.singleton(newTopic)).all().get();
+            LOGGER.info("Created topic store topic {}", storeTopic);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TopicExistsException) {
+                LOGGER.debug("Topic store topic {} already exists", storeTopic);
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private static Producer<String, byte[]> createProducer(String bootstrapServers) {
+        Properties props = new Properties();
+        props.setProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.setProperty(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        props.setProperty(ProducerConfig.ACKS_CONFIG, "all");
+        props.setProperty(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        return new KafkaProducer<>(props);
+    }
+
+    /**
+     * Rebuild the view by consuming the store topic from the beginning up to its current end.
+     */
+    private void restore(String bootstrapServers) {
+        Properties props = new Properties();
+        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        TopicPartition partition = new TopicPartition(storeTopic, 0);
+        long t0 = System.currentTimeMillis();
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(props)) {
+            consumer.assign(Collections.singleton(partition));
+            consumer.seekToBeginning(Collections.singleton(partition));
+            long endOffset = consumer.endOffsets(Collections.singleton(partition)).get(partition);
+            while (consumer.position(partition) < endOffset) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(100)) {
+                    apply(record.key(), record.value());
+                }
+            }
+        }
+        LOGGER.info("Restored {} topics from topic store topic {} in {}ms",
+                view.size(), storeTopic, System.currentTimeMillis() - t0);
+    }
+
+    /** Apply a record from the store topic to the view. */
+    void apply(String key, byte[] value) {
+        TopicName topicName = new TopicName(key);
+        if (value == null) {
+            view.remove(topicName);
+        } else {
+            view.put(topicName, TopicSerialization.fromJson(value));
+        }
+    }
+
+    private void write(TopicName topicName, Topic topic, Handler<AsyncResult<Void>> handler) {
+        byte[] value = topic != null ? TopicSerialization.toJson(topic) : null;
+        Context context = vertx.getOrCreateContext();
+        LOGGER.debug("{} record for topic {}", topic != null ? "write" : "tombstone", topicName);
+        producer.send(new ProducerRecord<>(storeTopic, topicName.toString(), value), (metadata, exception) ->
+            context.runOnContext(v -> {
+                if (exception != null) {
+                    handler.handle(Future.failedFuture(exception));
+                } else {
+                    if (topic != null) {
+                        view.put(topicName, topic);
+                    } else {
+                        view.remove(topicName);
+                    }
+                    handler.handle(Future.succeededFuture());
+                }
+            }));
+    }
+
+    @Override
+    public void read(TopicName topicName, Handler<AsyncResult<Topic>> handler) {
+        handler.handle(Future.succeededFuture(view.get(topicName)));
+    }
+
+    @Override
+    public void create(Topic topic, Handler<AsyncResult<Void>> handler) {
+        if (view.containsKey(topic.getTopicName())) {
+            handler.handle(Future.failedFuture(new EntityExistsException()));
+        } else {
+            write(topic.getTopicName(), topic, handler);
+        }
+    }
+
+    @Override
+    public void update(Topic topic, Handler<AsyncResult<Void>> handler) {
+        if (!view.containsKey(topic.getTopicName())) {
+            handler.handle(Future.failedFuture(new NoSuchEntityExistsException()));
+        } else {
+            write(topic.getTopicName(), topic, handler);
+        }
+    }
+
+    @Override
+    public void delete(TopicName topicName, Handler<AsyncResult<Void>> handler) {
+        if (!view.containsKey(topicName)) {
+            handler.handle(Future.failedFuture(new NoSuchEntityExistsException()));
+        } else {
+            write(topicName, null, handler);
+        }
+    }
+
+    @Override
+    public void close() {
+        producer.close(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the partition reassignments needed to change the replication factor of topics.
+ *
+ * <p>Kafka only permits a single reassignment to be in progress at a time, so changes requested
+ * within {@link Config#REASSIGN_BATCH_WINDOW_MS} of each other (or while a reassignment is already
+ * running) are merged into a single reassignment covering all the affected topics.</p>
+ *
+ * <p>When {@link Config#REASSIGN_THROTTLE_MAX} is configured the interbroker throttle starts at
+ * {@link Config#REASSIGN_THROTTLE} and is raised, up to the maximum, while the new followers are
+ * catching up at the throttled rate or falling further behind.</p>
+ */
+class ReassignmentCoordinator {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ReassignmentCoordinator.class);
+
+    /** The fraction of the throttle above which we consider the followers to be limited by it. */
+    static final double THROTTLE_BOUND_FRACTION = 0.9;
+
+    /** The factor by which the throttle is raised when the followers are limited by it. */
+    static final double THROTTLE_INCREASE_FACTOR = 1.5;
+
+    /** The minimum time without any observed progress before a reassignment is considered to have timed out. */
+    static final long MIN_STALL_TIMEOUT_MS = 10_000;
+
+    /** The number of consecutive failures to verify a reassignment after which we give up on it. */
+    static final int MAX_CONSECUTIVE_VERIFY_FAILURES = 3;
+
+    private final Vertx vertx;
+    private final Config config;
+    private final ControllerAssignedKafkaImpl kafka;
+
+    private final Map<TopicName, PendingChange> pending = new LinkedHashMap<>();
+    private boolean batchScheduled = false;
+    private boolean inProgress = false;
+
+    ReassignmentCoordinator(Vertx vertx, Config config, ControllerAssignedKafkaImpl kafka) {
+        this.vertx = vertx;
+        this.config = config;
+        this.kafka = kafka;
+    }
+
+    /**
+     * A replication factor change which has been requested, but whose reassignment has not yet started.
+     */
+    private static class PendingChange {
+        private Topic topic;
+        private final List<Handler<AsyncResult<Void>>> handlers = new ArrayList<>(1);
+
+        PendingChange(Topic topic) {
+            this.topic = topic;
+        }
+    }
+
+    /**
+     * A reassignment which has been generated for a batch of topics.
+     */
+    static class Reassignment {
+        final File file;
+        final Map<TopicPartition, List<Integer>> current;
+        final Map<TopicPartition, List<Integer>> proposed;
+
+        Reassignment(File file, Map<TopicPartition, List<Integer>> current, Map<TopicPartition, List<Integer>> proposed) {
+            this.file = file;
+            this.current = current;
+            this.proposed = proposed;
+        }
+
+        /** The ids of the brokers which will receive a new replica. */
+        Set<Integer> receivingBrokers() {
+            Set<Integer> result = new HashSet<>();
+            for (Map.Entry<TopicPartition, List<Integer>> entry : proposed.entrySet()) {
+                List<Integer> added = new ArrayList<>(entry.getValue());
+                added.removeAll(current.getOrDefault(entry.getKey(), Collections.emptyList()));
+                result.addAll(added);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Request that the replication factor of the given topic be changed to {@code topic.getNumReplicas()}.
+     * The given handler will be called once the reassignment containing the topic has completed.
+     */
+    synchronized void submit(Topic topic, Handler<AsyncResult<Void>> handler) {
+        PendingChange change = pending.get(topic.getTopicName());
+        if (change == null) {
+            change = new PendingChange(topic);
+            pending.put(topic.getTopicName(), change);
+        } else {
+            LOGGER.debug("Replacing pending replication factor change for topic {}", topic.getTopicName());
+            change.topic = topic;
+        }
+        change.handlers.add(handler);
+        if (!batchScheduled && !inProgress) {
+            scheduleBatch();
+        }
+    }
+
+    private void scheduleBatch() {
+        batchScheduled = true;
+        long windowMs = config.get(Config.REASSIGN_BATCH_WINDOW_MS);
+        LOGGER.debug("Starting reassignment in {}ms", windowMs);
+        if (windowMs <= 0) {
+            vertx.runOnContext(v -> startBatch());
+        } else {
+            vertx.setTimer(windowMs, timerId -> startBatch());
+        }
+    }
+
+    private void startBatch() {
+        List<PendingChange> batch;
+        synchronized (this) {
+            batchScheduled = false;
+            inProgress = true;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        List<Topic> topics = new ArrayList<>(batch.size());
+        for (PendingChange change : batch) {
+            topics.add(change.topic);
+        }
+        LOGGER.info("Starting reassignment for {} topic(s)", topics.size());
+        Future<Void> result = Future.future();
+        result.setHandler(ar -> {
+            synchronized (this) {
+                inProgress = false;
+                if (!pending.isEmpty() && !batchScheduled) {
+                    scheduleBatch();
+                }
+            }
+            for (PendingChange change : batch) {
+                for (Handler<AsyncResult<Void>> handler : change.handlers) {
+                    handler.handle(ar);
+                }
+            }
+        });
+        reassign(topics, result);
+    }
+
+    private void reassign(List<Topic> topics, Future<Void> reassignmentFinishedFuture) {
+        final String zookeeper = config.get(Config.ZOOKEEPER_CONNECT);
+        final Long initialThrottle = config.get(Config.REASSIGN_THROTTLE);
+        final Long maxThrottle = config.get(Config.REASSIGN_THROTTLE_MAX);
+
+        Future<Reassignment> generateFuture = Future.future();
+
+        // generate a single reassignment for all the topics
+        vertx.executeBlocking(fut -> {
+            try {
+                fut.complete(kafka.generateReassignment(topics, zookeeper));
+            } catch (Exception e) {
+                fut.fail(e);
+            }
+        },
+            generateFuture.completer());
+
+        Future<Reassignment> executeFuture = Future.future();
+
+        generateFuture.compose(reassignment -> {
+            // execute the reassignment
+            vertx.executeBlocking(fut -> {
+                try {
+                    LOGGER.debug("Starting reassignment of {} partition(s) with throttle {}", reassignment.proposed.size(), initialThrottle);
+                    kafka.executeReassignment(reassignment.file, zookeeper, initialThrottle);
+                    fut.complete(reassignment);
+                } catch (Exception e) {
+                    fut.fail(e);
+                }
+            },
+                executeFuture.completer());
+        }, executeFuture);
+
+        executeFuture.setHandler(ar -> {
+            if (ar.failed()) {
+                reassignmentFinishedFuture.fail(ar.cause());
+            } else {
+                awaitReassignment(ar.result(), zookeeper, initialThrottle, maxThrottle, reassignmentFinishedFuture);
+            }
+        });
+    }
+
+    /**
+     * Periodically verify the given reassignment, adjusting the throttle as it progresses,
+     * until it completes, stalls or can't be verified anymore.
+     */
+    private void awaitReassignment(Reassignment reassignment, String zookeeper, Long initialThrottle, Long maxThrottle,
+                                   Future<Void> reassignmentFinishedFuture) {
+        final Long periodMs = config.get(Config.REASSIGN_VERIFY_INTERVAL_MS);
+        // Large reassignments take a long time, so only time out if we've not observed any progress for a while
+        final long stallTimeoutMs = Math.max(MIN_STALL_TIMEOUT_MS, 5 * periodMs);
+        final VerifyState state = new VerifyState(initialThrottle);
+        LOGGER.debug("Verifying reassignment every {} seconds", TimeUnit.SECONDS.convert(periodMs, TimeUnit.MILLISECONDS));
+        vertx.setPeriodic(periodMs, timerId ->
+            vertx.<Boolean>executeBlocking(fut -> {
+                LOGGER.debug("Verifying reassignment of {} partition(s) (timer id={})", reassignment.proposed.size(), timerId);
+                try {
+                    int inProgress = kafka.verifyReassignment(reassignment.file, zookeeper, state.throttle);
+                    state.progress(inProgress);
+                    if (inProgress > 0 && maxThrottle != null) {
+                        adjustThrottle(reassignment, zookeeper, maxThrottle, state);
+                    }
+                    fut.complete(inProgress == 0);
+                } catch (Exception e) {
+                    fut.fail(e);
+                }
+            },
+                verifyResult -> {
+                    if (verified(verifyResult, state, stallTimeoutMs, reassignmentFinishedFuture)) {
+                        LOGGER.debug("Cancelling timer " + timerId);
+                        vertx.cancelTimer(timerId);
+                    }
+                }
+            )
+        );
+    }
+
+    /**
+     * Handle the outcome of verifying a reassignment, completing the given future if the reassignment completed,
+     * or failing it if the reassignment has stalled or has failed to be verified too many times.
+     * @return Whether the reassignment is finished, so that it shouldn't be verified anymore.
+     */
+    private static boolean verified(AsyncResult<Boolean> verifyResult, VerifyState state, long stallTimeoutMs,
+                                    Future<Void> reassignmentFinishedFuture) {
+        if (verifyResult.succeeded()) {
+            state.failures = 0;
+            if (verifyResult.result()) {
+                LOGGER.info("Reassignment complete");
+                reassignmentFinishedFuture.complete();
+                return true;
+            }
+        } else {
+            state.failures++;
+            LOGGER.error("Error while verifying reassignment ({} consecutive error(s))", state.failures, verifyResult.cause());
+            if (state.failures >= MAX_CONSECUTIVE_VERIFY_FAILURES) {
+                reassignmentFinishedFuture.fail(verifyResult.cause());
+                return true;
+            }
+        }
+        // a verify which keeps failing also counts as no progress
+        if (System.currentTimeMillis() - state.lastProgress > stallTimeoutMs) {
+            LOGGER.error("Reassignment timed out");
+            reassignmentFinishedFuture.fail("Timeout");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * What we've observed about a reassignment in progress.
+     */
+    private static class VerifyState {
+        Long throttle;
+        long lastProgress = System.currentTimeMillis();
+        int inProgress = Integer.MAX_VALUE;
+        long lag = -1;
+        long lagTime;
+        int failures;
+
+        VerifyState(Long throttle) {
+            this.throttle = throttle;
+        }
+
+        void progress(int inProgress) {
+            if (inProgress < this.inProgress) {
+                this.lastProgress = System.currentTimeMillis();
+            }
+            this.inProgress = inProgress;
+        }
+    }
+
+    private void adjustThrottle(Reassignment reassignment, String zookeeper, long maxThrottle, VerifyState state) {
+        final long lag;
+        try {
+            lag = kafka.followerLag(reassignment);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to determine follower lag, not adjusting throttle", e);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (state.lag >= 0 && now > state.lagTime) {
+            if (lag < state.lag) {
+                state.lastProgress = now;
+            }
+            int receivingBrokers = Math.max(1, reassignment.receivingBrokers().size());
+            double rate = (state.lag - lag) * 1000.0 / (now - state.lagTime) / receivingBrokers;
+            long newThrottle = nextThrottle(state.throttle, maxThrottle, rate);
+            if (!Long.valueOf(newThrottle).equals(state.throttle)) {
+                LOGGER.info("Followers catching up at {} bytes/s per broker with lag {} bytes, changing throttle from {} to {}",
+                        (long) rate, lag, state.throttle, newThrottle);
+                try {
+                    kafka.changeThrottle(reassignment.file, zookeeper, newThrottle);
+                    state.throttle = newThrottle;
+                } catch (Exception e) {
+                    LOGGER.warn("Unable to change throttle", e);
+                }
+            }
+        }
+        state.lag = lag;
+        state.lagTime = now;
+    }
+
+    /**
+     * Compute the throttle to use next, given the current throttle and the rate (in bytes per second per broker)
+     * at which the new followers have been catching up.
+     * The throttle is raised when the followers are catching up at (close to) the throttled rate, since the throttle
+     * is then what's limiting the reassignment, or when the followers are falling further behind, since the throttle
+     * is then lower than the rate at which the partitions are being produced to.
+     * The throttle never exceeds the given {@code maxThrottle}, which bounds the network bandwidth the reassignment
+     * may take away from clients.
+     */
+    static long nextThrottle(Long throttle, long maxThrottle, double bytesPerSecondPerBroker) {
+        if (throttle == null || throttle >= maxThrottle) {
+            return throttle == null ? maxThrottle : throttle;
+        }
+        if (bytesPerSecondPerBroker < 0
+                || bytesPerSecondPerBroker >= THROTTLE_BOUND_FRACTION * throttle) {
+            return Math.min(maxThrottle, (long) Math.ceil(throttle * THROTTLE_INCREASE_FACTOR));
+        }
+        return throttle;
+    }
+
+    /**
+     * Parse the given reassignment JSON (as understood by {@code kafka-reassign-partitions.sh}) into
+     * a map of partition to replicas.
+     */
+    static Map<TopicPartition, List<Integer>> parseAssignment(JsonNode reassignment) {
+        Map<TopicPartition, List<Integer>> result = new LinkedHashMap<>();
+        for (JsonNode partition : reassignment.path("partitions")) {
+            List<Integer> replicas = new ArrayList<>();
+            for (JsonNode replica : partition.path("replicas")) {
+                replicas.add(replica.asInt());
+            }
+            result.put(new TopicPartition(partition.path("topic").asText(), partition.path("partition").asInt()), replicas);
+        }
+        return result;
+    }
+
+    /**
+     * Rewrite the given proposed reassignment (as generated by {@code kafka-reassign-partitions.sh --generate},
+     * which preserves the existing replication factor) so that each partition of the given topics
+     * has the required number of replicas. Replicas are removed from the end of the replica list, so the
+     * preferred leader is preserved, and added from the given brokers, spreading partitions across them.
+     */
+    static ObjectNode changeReplicationFactor(ObjectNode proposal, Map<String, Integer> replicationFactors, List<Integer> brokers) {
+        for (JsonNode node : proposal.path("partitions")) {
+            ObjectNode partition = (ObjectNode) node;
+            Integer rf = replicationFactors.get(partition.path("topic").asText());
+            if (rf == null) {
+                continue;
+            }
+            if (rf > brokers.size()) {
+                throw new ControllerException("Cannot change replication factor of topic " + partition.path("topic").asText()
+                        + " to " + rf + " with only " + brokers.size() + " brokers");
+            }
+            setReplicas(partition, replicas(partition, rf, brokers));
+        }
+        return proposal;
+    }
+
+    /**
+     * The replicas of the given partition of a proposed reassignment, with replicas removed from the end of the list
+     * or added from the given brokers so that there are {@code rf} of them.
+     */
+    private static List<Integer> replicas(ObjectNode partition, int rf, List<Integer> brokers) {
+        List<Integer> replicas = new ArrayList<>();
+        for (JsonNode replica : partition.path("replicas")) {
+            replicas.add(replica.asInt());
+        }
+        while (replicas.size() > rf) {
+            replicas.remove(replicas.size() - 1);
+        }
+        int offset = partition.path("partition").asInt() + (replicas.isEmpty() ? 0 : replicas.get(0));
+        for (int i = 0; replicas.size() < rf; i++) {
+            Integer broker = brokers.get((offset + i) % brokers.size());
+            if (!replicas.contains(broker)) {
+                replicas.add(broker);
+            }
+        }
+        return replicas;
+    }
+
+    /**
+     * Set the replicas of the given partition of a proposed reassignment, and their log dirs if it has any.
+     */
+    private static void setReplicas(ObjectNode partition, List<Integer> replicas) {
+        ArrayNode replicasNode = partition.putArray("replicas");
+        for (Integer replica : replicas) {
+            replicasNode.add(replica);
+        }
+        if (partition.has("log_dirs")) {
+            ArrayNode logDirs = partition.putArray("log_dirs");
+            for (int i = 0; i < replicas.size(); i++) {
+                logDirs.add("any");
+            }
+        }
+    }
+
+    /**
+     * Build a {@link Reassignment} from the current and proposed assignment output by
+     * {@code kafka-reassign-partitions.sh --generate}, adjusted for the replication factors of the given topics,
+     * writing the reassignment JSON to the given file.
+     */
+    static Reassignment reassignment(File file, String currentJson, String proposedJson,
+                                     Collection<Topic> topics, List<Integer> brokers) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Integer> replicationFactors = new HashMap<>();
+        for (Topic topic : topics) {
+            replicationFactors.put(topic.getTopicName().toString(), (int) topic.getNumReplicas());
+        }
+        Map<TopicPartition, List<Integer>> current = currentJson != null
+                ? parseAssignment(mapper.readTree(currentJson)) : Collections.emptyMap();
+        ObjectNode proposal = changeReplicationFactor((ObjectNode) mapper.readTree(proposedJson), replicationFactors, brokers);
+        mapper.writeValue(file, proposal);
+        return new Reassignment(file, current, parseAssignment(proposal));
+    }
+}
@@ -8,14 +8,19 @@ import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.Watch;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.strimzi.common.ProfilingEvent;
 import io.strimzi.controller.topic.zk.Zk;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -34,18 +39,28 @@ public class Session extends AbstractVerticle {
 
     ControllerAssignedKafkaImpl kafka;
     AdminClient adminClient;
-    K8sImpl k8s;
+    K8s k8s;
     Controller controller;
-    Watch topicCmWatch;
+    volatile Watch topicCmWatch;
+    volatile ConfigMapWatcher configMapWatcher;
     TopicsWatcher topicsWatcher;
     TopicConfigsWatcher topicConfigsWatcher;
     TopicWatcher topicWatcher;
+    TopicStore topicStore;
+    StateSnapshotStore snapshotStore;
+    final Tracer tracer;
     private volatile boolean stopped = false;
+    /** Whether the initial reconciliation (or the catch-up from a snapshot) is done */
+    private volatile boolean ready = false;
     private Zk zk;
 
     public Session(KubernetesClient kubeClient, Config config) {
         this.kubeClient = kubeClient;
         this.config = config;
+        this.tracer = new Tracer(config.get(Config.TRACING_ENABLED));
+        if (config.get(Config.PROFILING_EVENTS_ENABLED)) {
+            ProfilingEvent.enable(config.get(Config.PROFILING_EVENTS_THRESHOLD_MS));
+        }
         StringBuilder sb = new StringBuilder(System.lineSeparator());
         for (Config.Value<?> v: Config.keys()) {
             sb.append("\t").append(v.key).append(": ").append(config.get(v)).append(System.lineSeparator());
@@ -64,7 +79,9 @@ public class Session extends AbstractVerticle {
             long timeout = 120_000L;
             LOGGER.info("Stopping");
             LOGGER.debug("Stopping kube watch");
-            topicCmWatch.close();
+            if (topicCmWatch != null) {
+                topicCmWatch.close();
+            }
             LOGGER.debug("Stopping zk watches");
             topicsWatcher.stop();
 
@@ -82,6 +99,14 @@ public class Session extends AbstractVerticle {
             }
             LOGGER.debug("Stopping kafka {}", kafka);
             kafka.stop();
+            if (topicStore instanceof AutoCloseable) {
+                LOGGER.debug("Closing TopicStore {}", topicStore);
+                try {
+                    ((AutoCloseable) topicStore).close();
+                } catch (Exception e) {
+                    LOGGER.warn("Error closing TopicStore {}", topicStore, e);
+                }
+            }
             try {
                 LOGGER.debug("Disconnecting from zookeeper {}", zk);
                 zk.disconnect();
@@ -96,7 +121,7 @@ public class Session extends AbstractVerticle {
     }
 
     @Override
-    public void start() {
+    public void start(Future<Void> startFuture) {
         LOGGER.info("Starting");
         Properties adminClientProps = new Properties();
         adminClientProps.setProperty(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, config.get(Config.KAFKA_BOOTSTRAP_SERVERS));
@@ -114,10 +139,28 @@ public class Session extends AbstractVerticle {
         this.zk = Zk.create(vertx, config.get(Config.ZOOKEEPER_CONNECT), this.config.get(Config.ZOOKEEPER_SESSION_TIMEOUT_MS).intValue());
         LOGGER.debug("Using ZooKeeper {}", zk);
 
-        ZkTopicStore topicStore = new ZkTopicStore(zk);
-        LOGGER.debug("Using TopicStore {}", topicStore);
+        Future<TopicStore> topicStoreFuture = Future.future();
+        createTopicStore(topicStoreFuture.completer());
+        topicStoreFuture.map(store -> {
+            this.topicStore = store;
+            LOGGER.debug("Using TopicStore {}", topicStore);
+            startController(cmPredicate, namespace);
+            return (Void) null;
+        }).setHandler(startFuture);
+    }
+
+    private void createTopicStore(Handler<AsyncResult<TopicStore>> handler) {
+        String kind = config.get(Config.TOPIC_STORE);
+        if (Config.TOPIC_STORE_KAFKA.equals(kind)) {
+            KafkaTopicStore.create(vertx, adminClient, config.get(Config.KAFKA_BOOTSTRAP_SERVERS),
+                    config.get(Config.TOPIC_STORE_TOPIC), ar -> handler.handle(ar.<TopicStore>map(store -> store)));
+        } else {
+            handler.handle(Future.succeededFuture(new ZkTopicStore(zk)));
+        }
+    }
 
-        this.controller = new Controller(vertx, kafka, k8s, topicStore, cmPredicate, namespace);
+    private void startController(LabelPredicate cmPredicate, String namespace) {
+        this.controller = new Controller(vertx, kafka, k8s, topicStore, cmPredicate, namespace, tracer);
         LOGGER.debug("Using Controller {}", controller);
 
         this.topicConfigsWatcher = new TopicConfigsWatcher(controller);
@@ -128,20 +171,53 @@ public class Session extends AbstractVerticle {
         LOGGER.debug("Using TopicsWatcher {}", topicsWatcher);
         topicsWatcher.start(zk);
 
-        Thread configMapThread = new Thread(() -> {
-            LOGGER.debug("Watching configmaps matching {}", cmPredicate);
-            Session.this.topicCmWatch = kubeClient.configMaps().inNamespace(kubeClient.getNamespace()).watch(new ConfigMapWatcher(controller, cmPredicate));
-            LOGGER.debug("Watching setup");
+        this.snapshotStore = new StateSnapshotStore(zk);
+        String scope = StateSnapshot.scope(namespace, cmPredicate);
+        snapshotStore.read(snapshotResult -> {
+            StateSnapshot usableSnapshot = null;
+            if (snapshotResult.failed()) {
+                LOGGER.warn("Error reading the state snapshot, reconciling all topics", snapshotResult.cause());
+            } else if (snapshotResult.result() == null) {
+                LOGGER.info("No state snapshot, reconciling all topics");
+            } else if (!scope.equals(snapshotResult.result().getScope())) {
+                LOGGER.info("Ignoring the state snapshot of {}, reconciling all topics", snapshotResult.result().getScope());
+            } else if (snapshotResult.result().getResourceVersion() == null) {
+                LOGGER.info("The state snapshot has no ConfigMap resourceVersion, reconciling all topics");
+            } else {
+                usableSnapshot = snapshotResult.result();
+            }
+            StateSnapshot snapshot = usableSnapshot;
+            String resourceVersion = snapshot != null ? snapshot.getResourceVersion() : null;
+
+            Thread configMapThread = new Thread(() -> {
+                watchConfigMaps(cmPredicate, resourceVersion);
 
-            // start the HTTP server for healthchecks
-            this.startHealthServer();
+                // start the HTTP server for healthchecks
+                this.startHealthServer();
 
-        }, "configmap-watcher");
-        LOGGER.debug("Starting {}", configMapThread);
-        configMapThread.start();
+            }, "configmap-watcher");
+            LOGGER.debug("Starting {}", configMapThread);
+            configMapThread.start();
+
+            Future<Void> catchUp = Future.future();
+            if (snapshot != null) {
+                // Only reconcile the topics which changed in Kafka since the snapshot;
+                // the changes to the ConfigMaps are replayed by the watch
+                reconcileChangedTopics(snapshot, catchUp.completer());
+            } else {
+                // Reconcile initially
+                reconcileTopics("initial", catchUp.completer());
+            }
+            catchUp.setHandler(ar -> {
+                if (ar.failed() && snapshot != null) {
+                    LOGGER.warn("Error catching up from the state snapshot, reconciling all topics", ar.cause());
+                    reconcileTopics("initial", this::reconciled);
+                } else {
+                    reconciled(ar);
+                }
+            });
+        });
 
-        // Reconcile initially
-        reconcileTopics("initial");
         // And periodically after that
         vertx.setPeriodic(this.config.get(Config.FULL_RECONCILIATION_INTERVAL_MS),
             timerId -> {
@@ -149,32 +225,124 @@ public class Session extends AbstractVerticle {
                     vertx.cancelTimer(timerId);
                     return;
                 }
-                reconcileTopics("periodic");
+                reconcileTopics("periodic", this::reconciled);
+            });
+        vertx.setPeriodic(this.config.get(Config.SNAPSHOT_INTERVAL_MS),
+            timerId -> {
+                if (stopped) {
+                    vertx.cancelTimer(timerId);
+                    return;
+                }
+                snapshot(scope);
             });
         LOGGER.info("Started");
     }
 
-    private void reconcileTopics(String reconciliationType) {
+    /**
+     * Watch the ConfigMaps, from the given resourceVersion if not null.
+     * If the resourceVersion is too old, watch them again from now on and reconcile all topics.
+     */
+    private void watchConfigMaps(LabelPredicate cmPredicate, String resourceVersion) {
+        LOGGER.debug("Watching configmaps matching {} from resourceVersion {}", cmPredicate, resourceVersion);
+        ConfigMapWatcher watcher = new ConfigMapWatcher(controller, cmPredicate, resourceVersion, () -> {
+            if (stopped) {
+                return;
+            }
+            this.ready = false;
+            new Thread(() -> watchConfigMaps(cmPredicate, null), "configmap-watcher").start();
+            context.runOnContext(ignored -> reconcileTopics("resync", this::reconciled));
+        });
+        this.configMapWatcher = watcher;
+        if (resourceVersion != null) {
+            this.topicCmWatch = kubeClient.configMaps().inNamespace(kubeClient.getNamespace()).watch(resourceVersion, watcher);
+        } else {
+            this.topicCmWatch = kubeClient.configMaps().inNamespace(kubeClient.getNamespace()).watch(watcher);
+        }
+        LOGGER.debug("Watching setup");
+    }
+
+    private void reconciled(AsyncResult<Void> result) {
+        if (result.succeeded()) {
+            if (!ready) {
+                awaitIdle();
+            }
+        } else {
+            LOGGER.error("Error performing reconciliation", result.cause());
+        }
+    }
+
+    /**
+     * Become ready once the ConfigMap watch is set up and the events it replayed have been handled.
+     */
+    private void awaitIdle() {
+        if (stopped || ready) {
+            return;
+        }
+        if (topicCmWatch == null || controller.isWorkInflight()) {
+            LOGGER.debug("Waiting for the inflight work to finish before being ready");
+            vertx.setTimer(1_000, timerId -> awaitIdle());
+        } else {
+            LOGGER.info("Caught up, now ready");
+            this.ready = true;
+        }
+    }
+
+    /**
+     * Reconcile the topics which were created, modified or deleted in Kafka since the given snapshot was taken.
+     * The handler fails if any of the reconciliations failed, so that the caller can fall back to a full reconciliation.
+     */
+    void reconcileChangedTopics(StateSnapshot snapshot, Handler<AsyncResult<Void>> handler) {
+        LOGGER.info("Starting reconciliation from the state snapshot");
+        snapshotStore.fingerprints(ar -> {
+            if (ar.failed()) {
+                handler.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+            Set<String> changed = snapshot.changedTopics(ar.result());
+            LOGGER.info("{} of {} topics changed in Kafka since the state snapshot", changed.size(), ar.result().size());
+            List<Future> reconciliations = new ArrayList<>(changed.size());
+            for (String name : changed) {
+                LOGGER.debug("snapshot reconciliation of topic {}", name);
+                reconciliations.add(reconcileTopic(new TopicName(name)));
+            }
+            CompositeFuture.join(reconciliations).setHandler(joined -> handler.handle(joined.map((Void) null)));
+        });
+    }
+
+    private Future<Void> reconcileTopic(TopicName topicName) {
+        Future<Void> result = Future.future();
+        k8s.getFromName(topicName.asMapName(), ar -> {
+            if (ar.failed()) {
+                result.fail(ar.cause());
+            } else {
+                controller.reconcile(ar.result(), topicName, result.completer());
+            }
+        });
+        return result;
+    }
+
+    private void reconcileTopics(String reconciliationType, Handler<AsyncResult<Void>> handler) {
         LOGGER.info("Starting {} reconciliation", reconciliationType);
         kafka.listTopics(arx -> {
             if (arx.succeeded()) {
                 Set<String> kafkaTopics = arx.result();
                 LOGGER.debug("Reconciling kafka topics {}", kafkaTopics);
+                List<Future> reconciliations = new ArrayList<>(kafkaTopics.size());
                 // First reconcile the topics in kafka
                 for (String name : kafkaTopics) {
                     LOGGER.debug("{} reconciliation of topic {}", reconciliationType, name);
-                    TopicName topicName = new TopicName(name);
-                    k8s.getFromName(topicName.asMapName(), ar -> {
-                        ConfigMap cm = ar.result();
-                        // TODO need to check inflight
-                        // TODO And need to prevent pileup of inflight periodic reconciliations
-                        controller.reconcile(cm, topicName);
-                    });
+                    // TODO need to check inflight
+                    // TODO And need to prevent pileup of inflight periodic reconciliations
+                    reconciliations.add(reconcileTopic(new TopicName(name)));
                 }
 
                 LOGGER.debug("Reconciling configmaps");
                 // Then those in k8s which aren't in kafka
                 k8s.listMaps(ar -> {
+                    if (ar.failed()) {
+                        handler.handle(Future.failedFuture(ar.cause()));
+                        return;
+                    }
                     List<ConfigMap> configMaps = ar.result();
                     Map<String, ConfigMap> configMapsMap = configMaps.stream().collect(Collectors.toMap(
                         cm -> cm.getMetadata().getName(),
@@ -186,14 +354,52 @@ public class Session extends AbstractVerticle {
                         // TODO need to check inflight
                         // TODO And need to prevent pileup of inflight periodic reconciliations
                         TopicName topicName = new TopicName(cm);
-                        controller.reconcile(cm, topicName);
+                        Future<Void> reconciliation = Future.future();
+                        controller.reconcile(cm, topicName, reconciliation.completer());
+                        reconciliations.add(reconciliation);
                     }
 
                     // Finally those in private store which we've not dealt with so far...
                     // TODO ^^
+
+                    // Failures are logged by the controller, and retried by the next periodic reconciliation
+                    CompositeFuture.join(reconciliations).setHandler(joined -> {
+                        LOGGER.info("Finished {} reconciliation", reconciliationType);
+                        handler.handle(Future.succeededFuture());
+                    });
                 });
             } else {
                 LOGGER.error("Error performing {} reconciliation", reconciliationType, arx.cause());
+                handler.handle(Future.failedFuture(arx.cause()));
+            }
+        });
+    }
+
+    /**
+     * Persist a snapshot of the topic fingerprints and the ConfigMap watch resourceVersion.
+     * This is skipped while the controller hasn't caught up or is reconciling topics,
+     * so that the snapshot never claims changes which haven't been fully handled yet.
+     */
+    private void snapshot(String scope) {
+        ConfigMapWatcher watcher = this.configMapWatcher;
+        if (!ready || watcher == null || controller.isWorkInflight()) {
+            LOGGER.debug("Skipping state snapshot, work in progress");
+            return;
+        }
+        String resourceVersion = watcher.resourceVersion();
+        snapshotStore.fingerprints(ar -> {
+            if (ar.failed()) {
+                LOGGER.warn("Error computing the topic fingerprints for the state snapshot", ar.cause());
+            } else if (!ready || controller.isWorkInflight()) {
+                LOGGER.debug("Skipping state snapshot, work in progress");
+            } else {
+                snapshotStore.write(new StateSnapshot(scope, resourceVersion, ar.result()), writeResult -> {
+                    if (writeResult.succeeded()) {
+                        LOGGER.debug("Wrote state snapshot of {} topics at resourceVersion {}", ar.result().size(), resourceVersion);
+                    } else {
+                        LOGGER.warn("Error writing the state snapshot", writeResult.cause());
+                    }
+                });
             }
         });
     }
@@ -209,7 +415,16 @@ public class Session extends AbstractVerticle {
                     if (request.path().equals("/healthy")) {
                         request.response().setStatusCode(HttpResponseStatus.OK.code()).end();
                     } else if (request.path().equals("/ready")) {
-                        request.response().setStatusCode(HttpResponseStatus.OK.code()).end();
+                        // not ready until caught up with the changes made while the controller wasn't running
+                        request.response().setStatusCode(ready ? HttpResponseStatus.OK.code() : HttpResponseStatus.SERVICE_UNAVAILABLE.code()).end();
+                    } else if (request.path().equals("/traces")) {
+                        if (tracer.isEnabled()) {
+                            request.response().setStatusCode(HttpResponseStatus.OK.code())
+                                    .putHeader("Content-Type", "application/json")
+                                    .end(tracer.recentTraces().encode());
+                        } else {
+                            request.response().setStatusCode(HttpResponseStatus.NOT_FOUND.code()).end();
+                        }
                     }
                 })
                 .listen(HEALTH_SERVER_PORT);
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timed operation within a reconciliation.
+ * The model follows OpenTracing: spans belong to a trace, have a parent (except for the root span of the trace),
+ * and carry tags, but it's entirely in-process: a trace is exported as JSON by the {@link Tracer}
+ * when its root span finishes.
+ */
+public class Span {
+
+    /** A span which records nothing, used when tracing is disabled. */
+    public static final Span NOOP = new Span(null, null, null, "noop") {
+        @Override
+        public Span child(String name) {
+            return this;
+        }
+
+        @Override
+        public Span tag(String key, Object value) {
+            return this;
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public boolean isNoop() {
+            return true;
+        }
+    };
+
+    private final Tracer tracer;
+    private final Span root;
+    private final String traceId;
+    private final String spanId;
+    private final String parentId;
+    private final String name;
+    private final long startEpochMicros;
+    private final long startNanos;
+    private final Map<String, Object> tags = new LinkedHashMap<>();
+    /** For the root span, all the spans in the trace, in the order they were started. */
+    private final List<Span> spans;
+    private volatile long durationMicros = -1;
+
+    private Span(Tracer tracer, Span root, Span parent, String name) {
+        this.tracer = tracer;
+        this.root = root != null ? root : this;
+        this.spanId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        this.traceId = parent != null ? parent.traceId : spanId;
+        this.parentId = parent != null ? parent.spanId : null;
+        this.name = name;
+        this.startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+        this.spans = root == null ? new ArrayList<>() : null;
+    }
+
+    /** Start the root span of a new trace. */
+    static Span root(Tracer tracer, String name) {
+        Span span = new Span(tracer, null, null, name);
+        span.spans.add(span);
+        return span;
+    }
+
+    /** Start a child of this span. */
+    public Span child(String name) {
+        Span span = new Span(tracer, root, this, name);
+        synchronized (root.spans) {
+            root.spans.add(span);
+        }
+        return span;
+    }
+
+    public Span tag(String key, Object value) {
+        synchronized (tags) {
+            tags.put(key, value instanceof Number || value instanceof Boolean ? value : String.valueOf(value));
+        }
+        return this;
+    }
+
+    /** Finish this span. If this is the root span the trace is exported. */
+    public void finish() {
+        if (durationMicros < 0) {
+            durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            if (root == this) {
+                tracer.export(this);
+            }
+        }
+    }
+
+    /** Finish this span, tagging it with the failure if the given result failed. */
+    public void finish(AsyncResult<?> result) {
+        if (result.failed()) {
+            tag("error", true);
+            tag("error.message", String.valueOf(result.cause()));
+        }
+        finish();
+    }
+
+    public boolean isNoop() {
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public boolean isFinished() {
+        return durationMicros >= 0;
+    }
+
+    private JsonObject spanJson() {
+        JsonObject json = new JsonObject()
+                .put("traceId", traceId)
+                .put("spanId", spanId)
+                .put("name", name)
+                .put("startMicros", startEpochMicros);
+        if (parentId != null) {
+            json.put("parentId", parentId);
+        }
+        if (isFinished()) {
+            json.put("durationMicros", durationMicros);
+        }
+        synchronized (tags) {
+            if (!tags.isEmpty()) {
+                json.put("tags", new JsonObject(new LinkedHashMap<>(tags)));
+            }
+        }
+        return json;
+    }
+
+    /**
+     * The JSON representation of the whole trace this span belongs to.
+     * Spans which haven't finished (for example work which continues after the reconciliation completed)
+     * lack a {@code durationMicros}.
+     */
+    public JsonObject toJson() {
+        JsonArray array = new JsonArray();
+        synchronized (root.spans) {
+            for (Span span : root.spans) {
+                array.add(span.spanJson());
+            }
+        }
+        return new JsonObject()
+                .put("traceId", traceId)
+                .put("name", root.name)
+                .put("spans", array);
+    }
+
+    @Override
+    public String toString() {
+        return "Span(name=" + name + ", traceId=" + traceId + ", spanId=" + spanId + ")";
+    }
+}
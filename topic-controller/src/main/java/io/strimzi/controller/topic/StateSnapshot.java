@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * What the controller last knew, so that after a restart it only has to reconcile what changed in the meantime:
+ * the topics in Kafka with a fingerprint of their partitions and configuration,
+ * and the resourceVersion from which the ConfigMap watch can be resumed.
+ * The snapshot is only valid for the same namespace and ConfigMap labels (its {@linkplain #getScope() scope}).
+ */
+class StateSnapshot {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int VERSION = 1;
+
+    private final String scope;
+    private final String resourceVersion;
+    private final Map<String, String> fingerprints;
+
+    StateSnapshot(String scope, String resourceVersion, Map<String, String> fingerprints) {
+        this.scope = scope;
+        this.resourceVersion = resourceVersion;
+        this.fingerprints = Collections.unmodifiableMap(fingerprints);
+    }
+
+    /**
+     * The scope of the snapshots taken by a controller with the given configuration.
+     */
+    static String scope(String namespace, LabelPredicate cmPredicate) {
+        return namespace + "/" + cmPredicate;
+    }
+
+    /**
+     * The fingerprint of a topic, from the {@code Stat}s of its {@code /brokers/topics} and {@code /config/topics}
+     * znodes (either of which can be null if the znode doesn't exist).
+     * It changes whenever the partitions or the configuration of the topic are modified, or the topic is recreated.
+     */
+    static String fingerprint(Stat partitions, Stat config) {
+        return (partitions != null ? Long.toHexString(partitions.getMzxid()) : "-")
+                + "." + (config != null ? Long.toHexString(config.getMzxid()) : "-");
+    }
+
+    String getScope() {
+        return scope;
+    }
+
+    String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    Map<String, String> getFingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * The topics which were created, modified or deleted since this snapshot was taken,
+     * given the current fingerprints of the topics in Kafka.
+     */
+    Set<String> changedTopics(Map<String, String> currentFingerprints) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : currentFingerprints.entrySet()) {
+            if (!entry.getValue().equals(fingerprints.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String name : fingerprints.keySet()) {
+            if (!currentFingerprints.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * The gzipped JSON representation of this snapshot.
+     */
+    byte[] toBytes() {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("version", VERSION);
+        root.put("scope", scope);
+        root.put("resourceVersion", resourceVersion);
+        ObjectNode topics = root.putObject("topics");
+        for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+            topics.put(entry.getKey(), entry.getValue());
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(bytes)) {
+                MAPPER.writeValue(out, root);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The snapshot from its {@linkplain #toBytes() representation}.
+     * @throws IOException if the representation is corrupted or of an unknown version.
+     */
+    static StateSnapshot fromBytes(byte[] bytes) throws IOException {
+        JsonNode root;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            root = MAPPER.readTree(in);
+        }
+        if (root == null || root.path("version").asInt() != VERSION) {
+            throw new IOException("Unsupported snapshot version " + (root != null ? root.path("version") : null));
+        }
+        Map<String, String> fingerprints = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> topics = root.path("topics").fields();
+        while (topics.hasNext()) {
+            Map.Entry<String, JsonNode> entry = topics.next();
+            fingerprints.put(entry.getKey(), entry.getValue().asText());
+        }
+        JsonNode resourceVersion = root.path("resourceVersion");
+        return new StateSnapshot(root.path("scope").asText(),
+                resourceVersion.isTextual() ? resourceVersion.asText() : null,
+                fingerprints);
+    }
+}
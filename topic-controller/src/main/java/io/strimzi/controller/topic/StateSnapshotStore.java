@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.strimzi.controller.topic.zk.AclBuilder;
+import io.strimzi.controller.topic.zk.AclBuilder.Permission;
+import io.strimzi.controller.topic.zk.Zk;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the {@link StateSnapshot} of the controller in a ZooKeeper znode,
+ * and computes the current fingerprints of the topics from the znodes of Kafka.
+ */
+class StateSnapshotStore {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(StateSnapshotStore.class);
+
+    public static final String SNAPSHOT_PATH = "/strimzi/snapshot";
+
+    private static final String TOPICS_ZNODE = "/brokers/topics";
+    private static final String TOPIC_CONFIGS_ZNODE = "/config/topics";
+
+    private final Zk zk;
+
+    private final List<ACL> acl;
+
+    StateSnapshotStore(Zk zk) {
+        this.zk = zk;
+        this.acl = new AclBuilder().setWorld(Permission.values()).build();
+    }
+
+    /**
+     * Read the persisted snapshot, which is null if there's none or it can't be used.
+     */
+    void read(Handler<AsyncResult<StateSnapshot>> handler) {
+        zk.getData(SNAPSHOT_PATH, result -> {
+            if (result.succeeded()) {
+                StateSnapshot snapshot = null;
+                try {
+                    snapshot = StateSnapshot.fromBytes(result.result());
+                } catch (IOException e) {
+                    LOGGER.warn("Ignoring unreadable snapshot {}", SNAPSHOT_PATH, e);
+                }
+                handler.handle(Future.succeededFuture(snapshot));
+            } else if (result.cause() instanceof KeeperException.NoNodeException) {
+                handler.handle(Future.succeededFuture(null));
+            } else {
+                handler.handle(Future.failedFuture(result.cause()));
+            }
+        });
+    }
+
+    /**
+     * Persist the given snapshot, replacing the previous one.
+     */
+    void write(StateSnapshot snapshot, Handler<AsyncResult<Void>> handler) {
+        byte[] data = snapshot.toBytes();
+        LOGGER.debug("update znode {} with {} bytes", SNAPSHOT_PATH, data.length);
+        zk.setData(SNAPSHOT_PATH, data, -1, result -> {
+            if (result.failed() && result.cause() instanceof KeeperException.NoNodeException) {
+                zk.create("/strimzi", null, acl, CreateMode.PERSISTENT, parentResult -> {
+                    if (parentResult.failed() && !(parentResult.cause() instanceof KeeperException.NodeExistsException)) {
+                        handler.handle(parentResult);
+                    } else {
+                        LOGGER.debug("create znode {}", SNAPSHOT_PATH);
+                        zk.create(SNAPSHOT_PATH, data, acl, CreateMode.PERSISTENT, handler);
+                    }
+                });
+            } else {
+                handler.handle(result);
+            }
+        });
+    }
+
+    /**
+     * Compute the current {@linkplain StateSnapshot#fingerprint(Stat, Stat) fingerprint} of each topic in Kafka.
+     * This only reads the {@code Stat} of two znodes per topic, which is much cheaper than reconciling the topic.
+     */
+    void fingerprints(Handler<AsyncResult<Map<String, String>>> handler) {
+        zk.children(TOPICS_ZNODE, childrenResult -> {
+            if (childrenResult.failed()) {
+                handler.handle(Future.failedFuture(childrenResult.cause()));
+                return;
+            }
+            List<String> names = childrenResult.result();
+            List<Future> stats = new ArrayList<>(2 * names.size());
+            for (String name : names) {
+                stats.add(stat(TOPICS_ZNODE + "/" + name));
+                stats.add(stat(TOPIC_CONFIGS_ZNODE + "/" + name));
+            }
+            CompositeFuture.all(stats).setHandler(ar -> {
+                if (ar.failed()) {
+                    handler.handle(Future.failedFuture(ar.cause()));
+                    return;
+                }
+                Map<String, String> fingerprints = new HashMap<>(names.size());
+                for (int i = 0; i < names.size(); i++) {
+                    fingerprints.put(names.get(i), StateSnapshot.fingerprint(ar.result().resultAt(2 * i), ar.result().resultAt(2 * i + 1)));
+                }
+                handler.handle(Future.succeededFuture(fingerprints));
+            });
+        });
+    }
+
+    /**
+     * The Stat of the given znode, null if it doesn't exist.
+     */
+    private Future<Stat> stat(String path) {
+        Future<Stat> result = Future.future();
+        zk.exists(path, ar -> {
+            if (ar.failed() && ar.cause() instanceof KeeperException.NoNodeException) {
+                result.complete(null);
+            } else {
+                result.handle(ar);
+            }
+        });
+        return result;
+    }
+}
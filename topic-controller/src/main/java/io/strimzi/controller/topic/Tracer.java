@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Event;
+import io.strimzi.common.ProfilingEvent;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link Span}s for reconciliations and the backend calls made on their behalf.
+ *
+ * <p>A trace is started for each reconciliation, and is <em>active</em> for its topic while the reconciliation is running
+ * (the {@link InFlight} guarantees there's at most one such reconciliation per topic).
+ * The {@link Kafka}, {@link K8s} and {@link TopicStore} returned by {@link #traced(Kafka)} etc. record a child span
+ * of the active trace for each call about a topic, and, if {@link ProfilingEvent}s are enabled,
+ * an {@link ProfilingEvent.Kind#API_CALL} event.</p>
+ *
+ * <p>Finished traces are logged as JSON to the {@code Trace} logger and the most recent
+ * are retained for {@link #recentTraces()}.</p>
+ */
+public class Tracer {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(Tracer.class);
+    private final static Logger TRACE_LOGGER = LoggerFactory.getLogger("Trace");
+
+    /** The number of finished traces retained for {@link #recentTraces()}. */
+    static final int RECENT_TRACES = 100;
+
+    /** A tracer which doesn't record anything. */
+    public static final Tracer DISABLED = new Tracer(false);
+
+    private final boolean enabled;
+    private final Map<TopicName, Span> activeByTopic = new ConcurrentHashMap<>();
+    private final Map<MapName, Span> activeByMap = new ConcurrentHashMap<>();
+    private final Deque<Span> recent = new ArrayDeque<>(RECENT_TRACES);
+
+    public Tracer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Start a new trace, with a root span of the given name. */
+    public Span startTrace(String name) {
+        return enabled ? Span.root(this, name) : Span.NOOP;
+    }
+
+    /** Make the given trace the active one for the given topic and ConfigMap. */
+    void activate(Span root, TopicName topicName, MapName mapName) {
+        if (!root.isNoop()) {
+            activeByTopic.put(topicName, root);
+            if (mapName != null) {
+                activeByMap.put(mapName, root);
+            }
+        }
+    }
+
+    /** Make the given trace no longer active for the given topic and ConfigMap. */
+    void deactivate(Span root, TopicName topicName, MapName mapName) {
+        if (!root.isNoop()) {
+            activeByTopic.remove(topicName, root);
+            if (mapName != null) {
+                activeByMap.remove(mapName, root);
+            }
+        }
+    }
+
+    /** The root span of the trace active for the given topic, or {@link Span#NOOP}. */
+    Span active(TopicName topicName) {
+        Span span = topicName != null ? activeByTopic.get(topicName) : null;
+        return span != null ? span : Span.NOOP;
+    }
+
+    /** The root span of the trace active for the given ConfigMap, or {@link Span#NOOP}. */
+    Span active(MapName mapName) {
+        Span span = mapName != null ? activeByMap.get(mapName) : null;
+        return span != null ? span : Span.NOOP;
+    }
+
+    void export(Span root) {
+        if (TRACE_LOGGER.isInfoEnabled()) {
+            TRACE_LOGGER.info("{}", root.toJson().encode());
+        }
+        synchronized (recent) {
+            if (recent.size() == RECENT_TRACES) {
+                recent.removeFirst();
+            }
+            recent.addLast(root);
+        }
+    }
+
+    /** The most recently finished traces, oldest first, as JSON. */
+    public JsonArray recentTraces() {
+        JsonArray result = new JsonArray();
+        synchronized (recent) {
+            for (Span span : recent) {
+                result.add(span.toJson());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wrap the given handler for a call about the given subject so that a child span of the given parent
+     * and an {@link ProfilingEvent.Kind#API_CALL} event are finished when the call completes.
+     */
+    private static <T> Handler<AsyncResult<T>> traced(Span parent, Object subject, String name, String component,
+                                                      Handler<AsyncResult<T>> handler) {
+        ProfilingEvent event = ProfilingEvent.begin(ProfilingEvent.Kind.API_CALL, name)
+                .with("component", component)
+                .with("subject", subject);
+        if (parent.isNoop() && !ProfilingEvent.isEnabled()) {
+            return handler;
+        }
+        Span span = parent.child(name).tag("component", component);
+        return ar -> {
+            span.finish(ar);
+            event.end(ar);
+            handler.handle(ar);
+        };
+    }
+
+    private <T> Handler<AsyncResult<T>> traced(TopicName topicName, String name, String component, Handler<AsyncResult<T>> handler) {
+        return traced(active(topicName), topicName, name, component, handler);
+    }
+
+    private <T> Handler<AsyncResult<T>> traced(MapName mapName, String name, String component, Handler<AsyncResult<T>> handler) {
+        return traced(active(mapName), mapName, name, component, handler);
+    }
+
+    /** Whether the backends need wrapping, either for tracing or for {@link ProfilingEvent}s. */
+    private boolean wrap() {
+        return enabled || ProfilingEvent.isEnabled();
+    }
+
+    /** Wrap the given Kafka so that calls about a topic are recorded as spans of the active trace. */
+    public Kafka traced(Kafka kafka) {
+        if (!wrap()) {
+            return kafka;
+        }
+        LOGGER.debug("Tracing {}", kafka);
+        return new Kafka() {
+            @Override
+            public void createTopic(Topic newTopic, Handler<AsyncResult<Void>> handler) {
+                kafka.createTopic(newTopic, traced(newTopic.getTopicName(), "kafka.createTopic", "kafka", handler));
+            }
+
+            @Override
+            public void deleteTopic(TopicName topicName, Handler<AsyncResult<Void>> handler) {
+                kafka.deleteTopic(topicName, traced(topicName, "kafka.deleteTopic", "kafka", handler));
+            }
+
+            @Override
+            public void updateTopicConfig(Topic topic, Handler<AsyncResult<Void>> handler) {
+                kafka.updateTopicConfig(topic, traced(topic.getTopicName(), "kafka.updateTopicConfig", "kafka", handler));
+            }
+
+            @Override
+            public void increasePartitions(Topic topic, Handler<AsyncResult<Void>> handler) {
+                kafka.increasePartitions(topic, traced(topic.getTopicName(), "kafka.increasePartitions", "kafka", handler));
+            }
+
+            @Override
+            public void changeReplicationFactor(Topic topic, Handler<AsyncResult<Void>> handler) {
+                kafka.changeReplicationFactor(topic, traced(topic.getTopicName(), "kafka.changeReplicationFactor", "kafka", handler));
+            }
+
+            @Override
+            public void topicMetadata(TopicName topicName, Handler<AsyncResult<TopicMetadata>> handler) {
+                kafka.topicMetadata(topicName, traced(topicName, "kafka.topicMetadata", "kafka", handler));
+            }
+
+            @Override
+            public void listTopics(Handler<AsyncResult<Set<String>>> handler) {
+                kafka.listTopics(handler);
+            }
+
+            @Override
+            public String toString() {
+                return "Traced(" + kafka + ")";
+            }
+        };
+    }
+
+    /** Wrap the given K8s so that calls about a ConfigMap are recorded as spans of the active trace. */
+    public K8s traced(K8s k8s) {
+        if (!wrap()) {
+            return k8s;
+        }
+        LOGGER.debug("Tracing {}", k8s);
+        return new K8s() {
+            @Override
+            public void createConfigMap(ConfigMap cm, Handler<AsyncResult<Void>> handler) {
+                k8s.createConfigMap(cm, traced(new MapName(cm), "k8s.createConfigMap", "k8s", handler));
+            }
+
+            @Override
+            public void updateConfigMap(ConfigMap cm, Handler<AsyncResult<Void>> handler) {
+                k8s.updateConfigMap(cm, traced(new MapName(cm), "k8s.updateConfigMap", "k8s", handler));
+            }
+
+            @Override
+            public void deleteConfigMap(MapName mapName, Handler<AsyncResult<Void>> handler) {
+                k8s.deleteConfigMap(mapName, traced(mapName, "k8s.deleteConfigMap", "k8s", handler));
+            }
+
+            @Override
+            public void listMaps(Handler<AsyncResult<List<ConfigMap>>> handler) {
+                k8s.listMaps(handler);
+            }
+
+            @Override
+            public void getFromName(MapName mapName, Handler<AsyncResult<ConfigMap>> handler) {
+                k8s.getFromName(mapName, traced(mapName, "k8s.getFromName", "k8s", handler));
+            }
+
+            @Override
+            public void createEvent(Event event, Handler<AsyncResult<Void>> handler) {
+                MapName mapName = event.getInvolvedObject() != null && event.getInvolvedObject().getName() != null
+                        ? new MapName(event.getInvolvedObject().getName()) : null;
+                k8s.createEvent(event, traced(mapName, "k8s.createEvent", "k8s", handler));
+            }
+
+            @Override
+            public String toString() {
+                return "Traced(" + k8s + ")";
+            }
+        };
+    }
+
+    /** Wrap the given TopicStore so that calls are recorded as spans of the active trace. */
+    public TopicStore traced(TopicStore topicStore) {
+        if (!wrap()) {
+            return topicStore;
+        }
+        LOGGER.debug("Tracing {}", topicStore);
+        String component = topicStore instanceof ZkTopicStore ? "zookeeper"
+                : topicStore instanceof KafkaTopicStore ? "kafka" : "topicStore";
+        return new TopicStore() {
+            @Override
+            public void read(TopicName name, Handler<AsyncResult<Topic>> handler) {
+                topicStore.read(name, traced(name, "topicStore.read", component, handler));
+            }
+
+            @Override
+            public void create(Topic topic, Handler<AsyncResult<Void>> handler) {
+                topicStore.create(topic, traced(topic.getTopicName(), "topicStore.create", component, handler));
+            }
+
+            @Override
+            public void update(Topic topic, Handler<AsyncResult<Void>> handler) {
+                topicStore.update(topic, traced(topic.getTopicName(), "topicStore.update", component, handler));
+            }
+
+            @Override
+            public void delete(TopicName topic, Handler<AsyncResult<Void>> handler) {
+                topicStore.delete(topic, traced(topic, "topicStore.delete", component, handler));
+            }
+
+            @Override
+            public String toString() {
+                return "Traced(" + topicStore + ")";
+            }
+        };
+    }
+}
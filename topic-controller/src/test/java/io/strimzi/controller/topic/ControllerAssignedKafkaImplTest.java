@@ -32,6 +32,7 @@ public class ControllerAssignedKafkaImplTest {
         map.put(Config.KAFKA_BOOTSTRAP_SERVERS.key, "localhost:9092");
         map.put(Config.NAMESPACE.key, "default");
         map.put(Config.REASSIGN_VERIFY_INTERVAL_MS.key, "1000");
+        map.put(Config.REASSIGN_BATCH_WINDOW_MS.key, "0");
         config = new Config(map);
     }
 
@@ -217,6 +218,32 @@ public class ControllerAssignedKafkaImplTest {
         });
     }
 
+    /**
+     * Test the case where --verify keeps failing.
+     * We should give up after a few attempts and fail the handler, rather than verifying forever.
+     */
+    @Test
+    public void changeReplicationFactor_PersistentErrorInVerify(TestContext context) {
+        MockAdminClient adminClient = new MockAdminClient();
+        Vertx vertx = Vertx.vertx();
+        Topic topic = new Topic.Builder("changeReplicationFactor", 2, (short) 2, emptyMap()).build();
+        String[] partitions = new String[]{"changeReplicationFactor-0", "changeReplicationFactor-1"};
+        Subclass sub = new Subclass(adminClient, vertx, config, asList(
+                Subclass.generate("{\"version\":1,\"partitions\":[{\"topic\":\"test-topic\",\"partition\":0,\"replicas\":[0],\"log_dirs\":[\"any\"]},{\"topic\":\"test-topic\",\"partition\":1,\"replicas\":[0],\"log_dirs\":[\"any\"]}]}",
+                        "{\"version\":1,\"partitions\":[{\"topic\":\"test-topic\",\"partition\":0,\"replicas\":[0],\"log_dirs\":[\"any\"]},{\"topic\":\"test-topic\",\"partition\":1,\"replicas\":[0],\"log_dirs\":[\"any\"]}]}"),
+                Subclass.executeStarted(),
+                Subclass.verifyInProgress(partitions),
+                Subclass.verifyFail("Bang!"),
+                Subclass.verifyFail("Bang!"),
+                Subclass.verifyFail("Bang!"),
+                Subclass.verifySuccess(partitions)));
+        Async async = context.async();
+        sub.changeReplicationFactor(topic, ar -> {
+            context.assertFalse(ar.succeeded());
+            async.complete();
+        });
+    }
+
     /**
      * Test the case where the --gexecute execution fails because a reassignment is currently running.
      * We should give up and fail the handler, on the basis that we will retry later as a result of
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A scale benchmark for the {@link Controller}, using {@link MockKafka}, {@link MockK8s} and {@link MockTopicStore}
+ * (optionally with injected per-call latencies) in place of the real backends.
+ * It's deliberately not named {@code *Test}, so it doesn't run as part of the normal build. Run it with
+ * <pre>
+ * mvn test -pl topic-controller -Dtest=ControllerBenchmark -Dbenchmark.topics=10000 -Dbenchmark.kafkaLatencyMs=5
+ * </pre>
+ *
+ * <p>The following system properties are understood:</p>
+ * <dl>
+ *     <dt>benchmark.topics</dt><dd>The number of topics (default 1000)</dd>
+ *     <dt>benchmark.events</dt><dd>The number of ConfigMap modifications in the steady state phase (default: the number of topics)</dd>
+ *     <dt>benchmark.outstanding</dt><dd>The maximum number of events which have not yet been applied (default 100)</dd>
+ *     <dt>benchmark.kafkaLatencyMs</dt><dd>Latency added to each {@link Kafka} call (default 0)</dd>
+ *     <dt>benchmark.k8sLatencyMs</dt><dd>Latency added to each {@link K8s} call (default 0)</dd>
+ *     <dt>benchmark.storeLatencyMs</dt><dd>Latency added to each {@link TopicStore} call (default 0)</dd>
+ *     <dt>benchmark.timeoutMs</dt><dd>How long each phase may take before the benchmark fails (default 600000)</dd>
+ * </dl>
+ *
+ * <p>Two phases are measured:</p>
+ * <ol>
+ *     <li>Initial sync: a ConfigMap exists for each topic, but the topics don't exist in Kafka.
+ *         Each ConfigMap is added, as the ConfigMap watch does when the controller starts.</li>
+ *     <li>Steady state: the ConfigMaps are modified to change a topic config.</li>
+ * </ol>
+ * <p>For each phase the elapsed time, throughput, p50/p99/max event-to-applied latency
+ * (including the time spent queued in {@link InFlight}) and the heap used are reported.</p>
+ *
+ * <p>{@link Session} can't be driven here because it creates the real AdminClient, ZooKeeper and Kubernetes clients,
+ * so the benchmark drives the {@link Controller} through the same entry points that the Session's watchers use.</p>
+ */
+public class ControllerBenchmark {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ControllerBenchmark.class);
+
+    private static final LabelPredicate CM_PREDICATE = LabelPredicate.fromString("strimzi.io/kind=topic");
+
+    private final int numTopics = Integer.getInteger("benchmark.topics", 1_000);
+    private final int numEvents = Integer.getInteger("benchmark.events", numTopics);
+    private final int maxOutstanding = Integer.getInteger("benchmark.outstanding", 100);
+    private final long kafkaLatencyMs = Long.getLong("benchmark.kafkaLatencyMs", 0L);
+    private final long k8sLatencyMs = Long.getLong("benchmark.k8sLatencyMs", 0L);
+    private final long storeLatencyMs = Long.getLong("benchmark.storeLatencyMs", 0L);
+    private final long timeoutMs = Long.getLong("benchmark.timeoutMs", 600_000L);
+
+    private Vertx vertx;
+    private Context context;
+    private MockKafka mockKafka;
+    private MockK8s mockK8s;
+    private MockTopicStore mockTopicStore;
+    private Controller controller;
+
+    public static void main(String[] args) throws Exception {
+        ControllerBenchmark benchmark = new ControllerBenchmark();
+        benchmark.setup();
+        try {
+            benchmark.benchmark();
+        } finally {
+            benchmark.teardown();
+        }
+    }
+
+    /**
+     * Wrap the given delegate so that the result handler passed to each method is called
+     * {@code latencyMs} after the delegate produces its result.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T withLatency(Vertx vertx, Class<T> type, T delegate, long latencyMs) {
+        if (latencyMs <= 0) {
+            return delegate;
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object[] delegateArgs = args;
+            if (args != null && args.length > 0 && args[args.length - 1] instanceof Handler) {
+                Handler<Object> handler = (Handler<Object>) args[args.length - 1];
+                delegateArgs = args.clone();
+                delegateArgs[args.length - 1] = (Handler<Object>) result -> vertx.setTimer(latencyMs, timerId -> handler.handle(result));
+            }
+            try {
+                return method.invoke(delegate, delegateArgs);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }));
+    }
+
+    private static TopicMetadata topicMetadata(Topic topic) {
+        List<Node> nodes = new ArrayList<>();
+        for (int nodeId = 0; nodeId < topic.getNumReplicas(); nodeId++) {
+            nodes.add(new Node(nodeId, "localhost", 9092 + nodeId));
+        }
+        List<TopicPartitionInfo> partitions = new ArrayList<>();
+        for (int partitionId = 0; partitionId < topic.getNumPartitions(); partitionId++) {
+            partitions.add(new TopicPartitionInfo(partitionId, nodes.get(0), nodes, nodes));
+        }
+        List<ConfigEntry> configs = new ArrayList<>();
+        for (Map.Entry<String, String> entry : topic.getConfig().entrySet()) {
+            configs.add(new ConfigEntry(entry.getKey(), entry.getValue()));
+        }
+        return new TopicMetadata(new TopicDescription(topic.getTopicName().toString(), false, partitions),
+                new org.apache.kafka.clients.admin.Config(configs));
+    }
+
+    @Before
+    public void setup() {
+        vertx = Vertx.vertx();
+        // Run everything on a single context, as the controller does in a Session
+        context = vertx.getOrCreateContext();
+
+        mockKafka = new MockKafka();
+        mockKafka.setCreateTopicResponse(t -> Future.succeededFuture())
+                .setUpdateTopicResponse(t -> Future.succeededFuture())
+                .setDeleteTopicResponse(t -> Future.succeededFuture())
+                .setTopicMetadataResponse(t -> {
+                    Topic topic = mockKafka.getTopicState(t);
+                    return Future.succeededFuture(topic != null ? topicMetadata(topic) : null);
+                });
+        mockK8s = new MockK8s();
+        mockK8s.setCreateResponse(n -> Future.succeededFuture())
+                .setModifyResponse(n -> Future.succeededFuture())
+                .setDeleteResponse(n -> Future.succeededFuture());
+        mockTopicStore = new MockTopicStore();
+        mockTopicStore.setCreateTopicResponse(t -> Future.succeededFuture())
+                .setDeleteTopicResponse(t -> Future.succeededFuture());
+
+        controller = new Controller(vertx,
+                withLatency(vertx, Kafka.class, mockKafka, kafkaLatencyMs),
+                withLatency(vertx, K8s.class, mockK8s, k8sLatencyMs),
+                withLatency(vertx, TopicStore.class, mockTopicStore, storeLatencyMs),
+                CM_PREDICATE, "benchmark");
+    }
+
+    @After
+    public void teardown() {
+        vertx.close();
+    }
+
+    @Test
+    public void benchmark() throws InterruptedException {
+        LOGGER.info("Benchmarking {} topics, {} events, {} outstanding, latencies: kafka={}ms, k8s={}ms, store={}ms",
+                numTopics, numEvents, maxOutstanding, kafkaLatencyMs, k8sLatencyMs, storeLatencyMs);
+        long baselineHeap = usedHeap();
+
+        List<ConfigMap> configMaps = new ArrayList<>(numTopics);
+        for (int i = 0; i < numTopics; i++) {
+            Topic topic = new Topic.Builder("topic-" + i, 3, (short) 2,
+                    Collections.singletonMap("retention.ms", "3600000")).build();
+            ConfigMap cm = TopicSerialization.toConfigMap(topic, CM_PREDICATE);
+            configMaps.add(cm);
+            mockK8s.createConfigMap(cm, ar -> { });
+        }
+
+        Phase initialSync = run("Initial sync", configMaps, controller::onConfigMapAdded);
+        for (int i = 0; i < numTopics; i++) {
+            assertNotNull("Topic topic-" + i + " was not created", mockKafka.getTopicState(new TopicName("topic-" + i)));
+        }
+        initialSync.report(baselineHeap);
+
+        List<ConfigMap> modifications = new ArrayList<>(numEvents);
+        for (int i = 0; i < numEvents; i++) {
+            Topic topic = new Topic.Builder("topic-" + i % numTopics, 3, (short) 2,
+                    Collections.singletonMap("retention.ms", Integer.toString(3_600_000 + i))).build();
+            modifications.add(TopicSerialization.toConfigMap(topic, CM_PREDICATE));
+        }
+        Phase steadyState = run("Steady state", modifications, controller::onConfigMapModified);
+        steadyState.report(baselineHeap);
+
+        assertEquals("Failed initial sync events", 0, initialSync.failures);
+        assertEquals("Failed steady state events", 0, steadyState.failures);
+        assertTrue("Work still inflight", !controller.isWorkInflight());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Phase run(String name, List<ConfigMap> events, BiConsumer<ConfigMap, Handler<AsyncResult<Void>>> action) throws InterruptedException {
+        Phase phase = new Phase(name, events, action);
+        context.runOnContext(v -> phase.submit());
+        if (!phase.done.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new AssertionError(name + " did not complete within " + timeoutMs + "ms: "
+                    + phase.completed + " of " + events.size() + " events applied");
+        }
+        return phase;
+    }
+
+    /**
+     * Submits events to the controller, keeping at most {@link #maxOutstanding} events not yet applied,
+     * and records the event-to-applied latency of each.
+     * Apart from {@link #done}, the state is only accessed on the {@link #context}.
+     */
+    private class Phase {
+        private final String name;
+        private final List<ConfigMap> events;
+        private final BiConsumer<ConfigMap, Handler<AsyncResult<Void>>> action;
+        private final long[] latencies;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int next = 0;
+        private int outstanding = 0;
+        private volatile int completed = 0;
+        private volatile int failures = 0;
+        private long startNs;
+        private long endNs;
+
+        Phase(String name, List<ConfigMap> events, BiConsumer<ConfigMap, Handler<AsyncResult<Void>>> action) {
+            this.name = name;
+            this.events = events;
+            this.action = action;
+            this.latencies = new long[events.size()];
+        }
+
+        void submit() {
+            if (next == 0) {
+                startNs = System.nanoTime();
+            }
+            while (outstanding < maxOutstanding && next < events.size()) {
+                int i = next++;
+                long submittedNs = System.nanoTime();
+                outstanding++;
+                action.accept(events.get(i), ar -> {
+                    latencies[i] = System.nanoTime() - submittedNs;
+                    if (ar.failed()) {
+                        LOGGER.warn("{}: event {} failed", name, i, ar.cause());
+                        failures++;
+                    }
+                    outstanding--;
+                    completed++;
+                    if (completed == events.size()) {
+                        endNs = System.nanoTime();
+                        done.countDown();
+                    } else {
+                        submit();
+                    }
+                });
+            }
+        }
+
+        void report(long baselineHeap) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double elapsedMs = (endNs - startNs) / 1e6;
+            LOGGER.info("{}: {} events in {} ms ({} events/s); latency p50={}ms p99={}ms max={}ms; heap used {} MiB; {} failures",
+                    name, events.size(), String.format("%.0f", elapsedMs),
+                    String.format("%.1f", events.size() / (elapsedMs / 1000)),
+                    String.format("%.2f", percentile(sorted, 0.50) / 1e6),
+                    String.format("%.2f", percentile(sorted, 0.99) / 1e6),
+                    String.format("%.2f", sorted[sorted.length - 1] / 1e6),
+                    (usedHeap() - baselineHeap) / (1024 * 1024),
+                    failures);
+        }
+
+        private long percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(VertxUnitRunner.class)
+public class KafkaTopicStoreTest {
+
+    private Vertx vertx = Vertx.vertx();
+
+    private MockProducer<String, byte[]> producer;
+
+    private KafkaTopicStore store;
+
+    @Before
+    public void setup() {
+        this.producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        this.store = new KafkaTopicStore(vertx, "store", producer);
+    }
+
+    @After
+    public void teardown() {
+        vertx.close();
+    }
+
+    private Topic read(TestContext context, String name) {
+        Async async = context.async();
+        Future<Topic> fut = Future.future();
+        store.read(new TopicName(name), ar -> {
+            fut.complete(ar.result());
+            async.complete();
+        });
+        async.await();
+        return fut.result();
+    }
+
+    @Test
+    public void testCrud(TestContext context) {
+        Topic topic = new Topic.Builder("my_topic", 2,
+                (short) 3, Collections.singletonMap("foo", "bar")).build();
+
+        // Create the topic
+        Async async0 = context.async();
+        store.create(topic, ar -> {
+            context.assertTrue(ar.succeeded());
+            async0.complete();
+        });
+        async0.await();
+        assertEquals(1, producer.history().size());
+        assertEquals("my_topic", producer.history().get(0).key());
+
+        // Read the topic
+        Topic readTopic = read(context, "my_topic");
+        assertEquals(topic.getTopicName(), readTopic.getTopicName());
+        assertEquals(topic.getNumPartitions(), readTopic.getNumPartitions());
+        assertEquals(topic.getNumReplicas(), readTopic.getNumReplicas());
+        assertEquals(topic.getConfig(), readTopic.getConfig());
+
+        // try to create it again: assert an error
+        Async async1 = context.async();
+        store.create(topic, ar -> {
+            context.assertFalse(ar.succeeded());
+            context.assertTrue(ar.cause() instanceof TopicStore.EntityExistsException);
+            async1.complete();
+        });
+        async1.await();
+
+        // update my_topic
+        Async async2 = context.async();
+        Topic updated = new Topic.Builder(topic)
+                .withNumPartitions(3)
+                .withConfigEntry("fruit", "apple").build();
+        store.update(updated, ar -> {
+            context.assertTrue(ar.succeeded());
+            async2.complete();
+        });
+        async2.await();
+        assertEquals(updated.getConfig(), read(context, "my_topic").getConfig());
+
+        // delete it, which should write a tombstone
+        Async async3 = context.async();
+        store.delete(updated.getTopicName(), ar -> {
+            context.assertTrue(ar.succeeded());
+            async3.complete();
+        });
+        async3.await();
+        assertNull(producer.history().get(2).value());
+        assertNull(read(context, "my_topic"));
+
+        // delete it again: assert an error
+        Async async4 = context.async();
+        store.delete(updated.getTopicName(), ar -> {
+            context.assertFalse(ar.succeeded());
+            context.assertTrue(ar.cause() instanceof TopicStore.NoSuchEntityExistsException);
+            async4.complete();
+        });
+        async4.await();
+    }
+
+    @Test
+    public void testUpdateNonexistent(TestContext context) {
+        Topic topic = new Topic.Builder("my_topic", 2, (short) 3, Collections.emptyMap()).build();
+        Async async = context.async();
+        store.update(topic, ar -> {
+            context.assertFalse(ar.succeeded());
+            context.assertTrue(ar.cause() instanceof TopicStore.NoSuchEntityExistsException);
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testFailedWriteIsNotApplied(TestContext context) {
+        this.producer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        this.store = new KafkaTopicStore(vertx, "store", producer);
+        Topic topic = new Topic.Builder("my_topic", 2, (short) 3, Collections.emptyMap()).build();
+        Async async = context.async();
+        store.create(topic, ar -> {
+            context.assertFalse(ar.succeeded());
+            store.read(topic.getTopicName(), readResult -> {
+                context.assertNull(readResult.result());
+                async.complete();
+            });
+        });
+        producer.errorNext(new RuntimeException("Bang!"));
+    }
+
+    @Test
+    public void testRestore(TestContext context) {
+        Topic topic = new Topic.Builder("my_topic", 2, (short) 3, Collections.emptyMap()).build();
+        Topic other = new Topic.Builder("other_topic", 1, (short) 1, Collections.emptyMap()).build();
+        store.apply("my_topic", TopicSerialization.toJson(topic));
+        store.apply("other_topic", TopicSerialization.toJson(other));
+        store.apply("my_topic", null);
+
+        assertNull(read(context, "my_topic"));
+        assertEquals(other.getTopicName(), read(context, "other_topic").getTopicName());
+    }
+}
@@ -26,6 +26,21 @@ public class MockK8s implements K8s {
     private Function<MapName, AsyncResult<Void>> modifyResponse = n -> Future.failedFuture("Unexpected. ");
     private Function<MapName, AsyncResult<Void>> deleteResponse = n -> Future.failedFuture("Unexpected. ");
 
+    public MockK8s setCreateResponse(Function<MapName, AsyncResult<Void>> createResponse) {
+        this.createResponse = createResponse;
+        return this;
+    }
+
+    public MockK8s setModifyResponse(Function<MapName, AsyncResult<Void>> modifyResponse) {
+        this.modifyResponse = modifyResponse;
+        return this;
+    }
+
+    public MockK8s setDeleteResponse(Function<MapName, AsyncResult<Void>> deleteResponse) {
+        this.deleteResponse = deleteResponse;
+        return this;
+    }
+
     public MockK8s setCreateResponse(MapName mapName, Exception exception) {
         Function<MapName, AsyncResult<Void>> old = createResponse;
         createResponse = n -> {
@@ -72,6 +72,16 @@ public class MockTopicStore implements TopicStore {
         context.assertEquals(topic, topics.get(topic.getTopicName()));
     }
 
+    public MockTopicStore setCreateTopicResponse(Function<TopicName, AsyncResult<Void>> createTopicResponse) {
+        this.createTopicResponse = createTopicResponse;
+        return this;
+    }
+
+    public MockTopicStore setDeleteTopicResponse(Function<TopicName, AsyncResult<Void>> deleteTopicResponse) {
+        this.deleteTopicResponse = deleteTopicResponse;
+        return this;
+    }
+
     public MockTopicStore setCreateTopicResponse(TopicName createTopic, Exception exception) {
         Function<TopicName, AsyncResult<Void>> old = this.createTopicResponse;
         this.createTopicResponse = t -> {
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ReassignmentCoordinatorTest {
+
+    private static final String PROPOSAL = "{\"version\":1,\"partitions\":["
+            + "{\"topic\":\"foo\",\"partition\":0,\"replicas\":[0,1],\"log_dirs\":[\"any\",\"any\"]},"
+            + "{\"topic\":\"foo\",\"partition\":1,\"replicas\":[1,2],\"log_dirs\":[\"any\",\"any\"]},"
+            + "{\"topic\":\"bar\",\"partition\":0,\"replicas\":[2,0],\"log_dirs\":[\"any\",\"any\"]}]}";
+
+    private Map<TopicPartition, List<Integer>> rewrite(Map<String, Integer> replicationFactors, List<Integer> brokers) throws IOException {
+        ObjectNode proposal = (ObjectNode) new ObjectMapper().readTree(PROPOSAL);
+        return ReassignmentCoordinator.parseAssignment(
+                ReassignmentCoordinator.changeReplicationFactor(proposal, replicationFactors, brokers));
+    }
+
+    @Test
+    public void testIncreaseReplicationFactor() throws IOException {
+        Map<TopicPartition, List<Integer>> result = rewrite(singletonMap("foo", 3), asList(0, 1, 2));
+        assertEquals(asList(0, 1, 2), result.get(new TopicPartition("foo", 0)));
+        assertEquals(asList(1, 2, 0), result.get(new TopicPartition("foo", 1)));
+        // Topics which aren't being changed are left alone
+        assertEquals(asList(2, 0), result.get(new TopicPartition("bar", 0)));
+    }
+
+    @Test
+    public void testDecreaseReplicationFactorPreservesPreferredLeader() throws IOException {
+        Map<TopicPartition, List<Integer>> result = rewrite(singletonMap("bar", 1), asList(0, 1, 2));
+        assertEquals(asList(2), result.get(new TopicPartition("bar", 0)));
+        assertEquals(asList(0, 1), result.get(new TopicPartition("foo", 0)));
+    }
+
+    @Test
+    public void testNotEnoughBrokers() throws IOException {
+        try {
+            rewrite(singletonMap("foo", 4), asList(0, 1, 2));
+            fail("Should throw");
+        } catch (ControllerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNextThrottle() {
+        // Followers limited by the throttle: raise it
+        assertEquals(1_500L, ReassignmentCoordinator.nextThrottle(1_000L, 10_000L, 990));
+        // Followers falling behind: raise it
+        assertEquals(1_500L, ReassignmentCoordinator.nextThrottle(1_000L, 10_000L, -10));
+        // Followers not limited by the throttle: leave it alone
+        assertEquals(1_000L, ReassignmentCoordinator.nextThrottle(1_000L, 10_000L, 500));
+        // Never exceed the maximum
+        assertEquals(10_000L, ReassignmentCoordinator.nextThrottle(9_000L, 10_000L, 9_000));
+        assertEquals(10_000L, ReassignmentCoordinator.nextThrottle(10_000L, 10_000L, 10_000));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonMap;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionTest {
+
+    private static final Map<String, String> MANDATORY_CONFIG = new HashMap<>();
+
+    static {
+        MANDATORY_CONFIG.put(Config.ZOOKEEPER_CONNECT.key, "localhost:2181");
+        MANDATORY_CONFIG.put(Config.KAFKA_BOOTSTRAP_SERVERS.key, "localhost:9092");
+        MANDATORY_CONFIG.put(Config.NAMESPACE.key, "default");
+    }
+
+    private final StateSnapshot snapshot = new StateSnapshot("scope", "1", singletonMap("unchanged", "fingerprint"));
+    private final List<TopicName> reconciled = new ArrayList<>();
+    private Session session;
+
+    @Before
+    public void setup() {
+        session = new Session(null, new Config(MANDATORY_CONFIG));
+        session.k8s = new MockK8s();
+        session.snapshotStore = new StateSnapshotStore(null) {
+            @Override
+            void fingerprints(Handler<AsyncResult<Map<String, String>>> handler) {
+                Map<String, String> fingerprints = new HashMap<>();
+                fingerprints.put("unchanged", "fingerprint");
+                fingerprints.put("changed", "fingerprint");
+                fingerprints.put("failing", "fingerprint");
+                handler.handle(Future.succeededFuture(fingerprints));
+            }
+        };
+    }
+
+    private void reconcileFailing(String failingTopic) {
+        session.controller = new MockController() {
+            @Override
+            void reconcile(ConfigMap cm, TopicName topicName, Handler<AsyncResult<Void>> handler) {
+                reconciled.add(topicName);
+                if (topicName.toString().equals(failingTopic)) {
+                    handler.handle(Future.failedFuture("Simulated failure"));
+                } else {
+                    handler.handle(Future.succeededFuture());
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testReconcileChangedTopics(TestContext context) {
+        reconcileFailing(null);
+        Async async = context.async();
+        session.reconcileChangedTopics(snapshot, ar -> {
+            context.assertTrue(ar.succeeded());
+            context.assertEquals(2, reconciled.size());
+            context.assertFalse(reconciled.contains(new TopicName("unchanged")));
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testReconcileChangedTopicsFailure(TestContext context) {
+        reconcileFailing("failing");
+        Async async = context.async();
+        session.reconcileChangedTopics(snapshot, ar -> {
+            context.assertTrue(ar.failed());
+            // the other reconciliations still run
+            context.assertEquals(2, reconciled.size());
+            async.complete();
+        });
+    }
+}
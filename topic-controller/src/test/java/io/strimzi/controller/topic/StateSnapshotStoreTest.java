@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.strimzi.controller.topic.zk.AclBuilder;
+import io.strimzi.controller.topic.zk.ZkImpl;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.ACL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(VertxUnitRunner.class)
+public class StateSnapshotStoreTest {
+
+    private EmbeddedZooKeeper zkServer;
+
+    private Vertx vertx = Vertx.vertx();
+
+    private ZkImpl zk;
+
+    private StateSnapshotStore store;
+
+    private final List<ACL> acl = new AclBuilder().setWorld(AclBuilder.Permission.values()).build();
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        this.zkServer = new EmbeddedZooKeeper();
+        this.zk = new ZkImpl(vertx, zkServer.getZkConnectString(), 60000, false);
+        this.store = new StateSnapshotStore(zk);
+    }
+
+    @After
+    public void teardown() {
+        if (this.zkServer != null) {
+            this.zkServer.close();
+        }
+        vertx.close();
+    }
+
+    private void create(TestContext context, String path, String data) {
+        Async async = context.async();
+        zk.create(path, data.getBytes(), acl, CreateMode.PERSISTENT, ar -> {
+            context.assertTrue(ar.succeeded(), String.valueOf(ar.cause()));
+            async.complete();
+        });
+        async.await();
+    }
+
+    private Map<String, String> fingerprints(TestContext context) {
+        Async async = context.async();
+        Future<Map<String, String>> result = Future.future();
+        store.fingerprints(ar -> {
+            context.assertTrue(ar.succeeded(), String.valueOf(ar.cause()));
+            result.complete(ar.result());
+            async.complete();
+        });
+        async.await();
+        return result.result();
+    }
+
+    private StateSnapshot read(TestContext context) {
+        Async async = context.async();
+        Future<StateSnapshot> result = Future.future();
+        store.read(ar -> {
+            context.assertTrue(ar.succeeded(), String.valueOf(ar.cause()));
+            result.complete(ar.result());
+            async.complete();
+        });
+        async.await();
+        return result.result();
+    }
+
+    private void write(TestContext context, StateSnapshot snapshot) {
+        Async async = context.async();
+        store.write(snapshot, ar -> {
+            context.assertTrue(ar.succeeded(), String.valueOf(ar.cause()));
+            async.complete();
+        });
+        async.await();
+    }
+
+    @Test
+    public void testReadWrite(TestContext context) {
+        assertNull(read(context));
+
+        write(context, new StateSnapshot("ns/", "1", Collections.singletonMap("my-topic", "a.1")));
+        assertEquals("1", read(context).getResourceVersion());
+
+        write(context, new StateSnapshot("ns/", "2", Collections.singletonMap("my-topic", "a.2")));
+        StateSnapshot snapshot = read(context);
+        assertEquals("2", snapshot.getResourceVersion());
+        assertEquals(Collections.singletonMap("my-topic", "a.2"), snapshot.getFingerprints());
+    }
+
+    @Test
+    public void testFingerprints(TestContext context) {
+        create(context, "/brokers", "");
+        create(context, "/brokers/topics", "");
+        create(context, "/config", "");
+        create(context, "/config/topics", "");
+        create(context, "/brokers/topics/my-topic", "{\"partitions\":{\"0\":[0]}}");
+
+        Map<String, String> before = fingerprints(context);
+        assertEquals(Collections.singleton("my-topic"), before.keySet());
+
+        create(context, "/config/topics/my-topic", "{\"config\":{\"retention.ms\":\"1000\"}}");
+        Map<String, String> after = fingerprints(context);
+        assertNotEquals(before.get("my-topic"), after.get("my-topic"));
+        assertEquals(after, fingerprints(context));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class StateSnapshotTest {
+
+    private static Stat stat(long mzxid) {
+        Stat stat = new Stat();
+        stat.setMzxid(mzxid);
+        return stat;
+    }
+
+    private static Map<String, String> fingerprints(String... namesAndFingerprints) {
+        Map<String, String> fingerprints = new HashMap<>();
+        for (int i = 0; i < namesAndFingerprints.length; i += 2) {
+            fingerprints.put(namesAndFingerprints[i], namesAndFingerprints[i + 1]);
+        }
+        return fingerprints;
+    }
+
+    @Test
+    public void testFingerprint() {
+        assertEquals(StateSnapshot.fingerprint(stat(10), stat(12)), StateSnapshot.fingerprint(stat(10), stat(12)));
+        assertNotEquals(StateSnapshot.fingerprint(stat(10), stat(12)), StateSnapshot.fingerprint(stat(11), stat(12)));
+        assertNotEquals(StateSnapshot.fingerprint(stat(10), stat(12)), StateSnapshot.fingerprint(stat(10), stat(13)));
+        assertNotEquals(StateSnapshot.fingerprint(stat(10), stat(12)), StateSnapshot.fingerprint(stat(10), null));
+    }
+
+    @Test
+    public void testChangedTopics() {
+        StateSnapshot snapshot = new StateSnapshot("ns/strimzi.io/kind=topic", "1234",
+                fingerprints("unchanged", "a.1", "modified", "b.2", "deleted", "c.3"));
+
+        assertEquals(new HashSet<>(asList("modified", "deleted", "created")),
+                snapshot.changedTopics(fingerprints("unchanged", "a.1", "modified", "b.4", "created", "d.5")));
+        assertEquals(new HashSet<>(), snapshot.changedTopics(snapshot.getFingerprints()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StateSnapshot snapshot = new StateSnapshot("ns/strimzi.io/kind=topic", "1234",
+                fingerprints("my-topic", "a.1", "other-topic", "b.-"));
+
+        StateSnapshot read = StateSnapshot.fromBytes(snapshot.toBytes());
+        assertEquals(snapshot.getScope(), read.getScope());
+        assertEquals(snapshot.getResourceVersion(), read.getResourceVersion());
+        assertEquals(snapshot.getFingerprints(), read.getFingerprints());
+    }
+
+    @Test
+    public void testRoundTripWithoutResourceVersion() throws IOException {
+        StateSnapshot read = StateSnapshot.fromBytes(new StateSnapshot("ns/", null, new HashMap<>()).toBytes());
+        assertNull(read.getResourceVersion());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorrupted() throws IOException {
+        StateSnapshot.fromBytes("{\"version\": 1}".getBytes());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-2018, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.controller.topic;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(VertxUnitRunner.class)
+public class TracerTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @After
+    public void teardown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testDisabled() {
+        Tracer tracer = new Tracer(false);
+        assertSame(Span.NOOP, tracer.startTrace("foo"));
+        MockKafka kafka = new MockKafka();
+        assertSame(kafka, tracer.traced(kafka));
+        Span.NOOP.child("bar").tag("x", 1).finish();
+        assertEquals(0, tracer.recentTraces().size());
+    }
+
+    @Test
+    public void testExportedOnRootFinish() {
+        Tracer tracer = new Tracer(true);
+        Span root = tracer.startTrace("root").tag("topic", new TopicName("my-topic"));
+        Span child = root.child("child");
+        child.finish(Future.failedFuture(new RuntimeException("Bang!")));
+        assertEquals(0, tracer.recentTraces().size());
+        root.finish();
+        root.finish();
+
+        JsonArray traces = tracer.recentTraces();
+        assertEquals(1, traces.size());
+        JsonObject trace = traces.getJsonObject(0);
+        assertEquals("root", trace.getString("name"));
+        JsonArray spans = trace.getJsonArray("spans");
+        assertEquals(2, spans.size());
+        JsonObject rootJson = spans.getJsonObject(0);
+        JsonObject childJson = spans.getJsonObject(1);
+        assertEquals("my-topic", rootJson.getJsonObject("tags").getString("topic"));
+        assertFalse(rootJson.containsKey("parentId"));
+        assertEquals(rootJson.getString("spanId"), childJson.getString("parentId"));
+        assertEquals(root.getTraceId(), childJson.getString("traceId"));
+        assertTrue(childJson.getJsonObject("tags").getBoolean("error"));
+        assertTrue(childJson.containsKey("durationMicros"));
+    }
+
+    @Test
+    public void testRecentTracesBounded() {
+        Tracer tracer = new Tracer(true);
+        for (int i = 0; i < Tracer.RECENT_TRACES + 5; i++) {
+            tracer.startTrace("trace-" + i).finish();
+        }
+        JsonArray traces = tracer.recentTraces();
+        assertEquals(Tracer.RECENT_TRACES, traces.size());
+        assertEquals("trace-5", traces.getJsonObject(0).getString("name"));
+    }
+
+    @Test
+    public void testReconciliationTraced(TestContext context) {
+        Tracer tracer = new Tracer(true);
+        MockKafka mockKafka = new MockKafka();
+        MockTopicStore mockTopicStore = new MockTopicStore();
+        MockK8s mockK8s = new MockK8s();
+        LabelPredicate cmPredicate = LabelPredicate.fromString("kind=topic,app=strimzi");
+        Controller controller = new Controller(vertx, mockKafka, mockK8s, mockTopicStore, cmPredicate,
+                "default-namespace", tracer);
+
+        TopicName topicName = new TopicName("my-topic");
+        mockKafka.setCreateTopicResponse(topicName.toString(), null);
+        mockKafka.setTopicMetadataResponse(topicName, null, null);
+        mockTopicStore.setCreateTopicResponse(topicName, null);
+        Map<String, String> data = new HashMap<>();
+        data.put(TopicSerialization.CM_KEY_PARTITIONS, "10");
+        data.put(TopicSerialization.CM_KEY_REPLICAS, "2");
+        ConfigMap cm = new ConfigMapBuilder().withNewMetadata()
+                .withName(topicName.toString())
+                .withLabels(cmPredicate.labels()).endMetadata()
+                .withData(data).build();
+
+        Async async = context.async();
+        controller.onConfigMapAdded(cm, ar -> {
+            context.assertTrue(ar.succeeded());
+            JsonArray traces = tracer.recentTraces();
+            context.assertEquals(1, traces.size());
+            JsonObject trace = traces.getJsonObject(0);
+            context.assertEquals("onConfigMapAdded", trace.getString("name"));
+            List<String> names = new ArrayList<>();
+            for (Object span : trace.getJsonArray("spans")) {
+                names.add(((JsonObject) span).getString("name"));
+            }
+            context.assertTrue(names.contains("inflight.queue"), names.toString());
+            context.assertTrue(names.contains("kafka.topicMetadata"), names.toString());
+            context.assertTrue(names.contains("topicStore.read"), names.toString());
+            context.assertTrue(names.contains("kafka.createTopic"), names.toString());
+            context.assertTrue(names.contains("topicStore.create"), names.toString());
+            context.assertEquals(Span.NOOP, tracer.active(topicName));
+            async.complete();
+        });
+    }
+}